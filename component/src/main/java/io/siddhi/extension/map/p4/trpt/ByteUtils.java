@@ -49,6 +49,25 @@ public class ByteUtils {
         }
     }
 
+    /**
+     * Returns the address held as two longs in network order, where IPv4-mapped IPv6 values become IPv4 addresses.
+     * @param high - the upper 64 bits
+     * @param low - the lower 64 bits
+     * @return - the address
+     */
+    public static InetAddress getInetAddress(final long high, final long low) {
+        final byte[] addrBytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            addrBytes[i] = (byte) (high >>> (56 - i * 8));
+            addrBytes[i + 8] = (byte) (low >>> (56 - i * 8));
+        }
+        try {
+            return InetAddress.getByAddress(addrBytes);
+        } catch (UnknownHostException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static String getMacStr(final byte[] bytes, final int startIndex) {
         if (bytes.length < 6) {
             return "";
@@ -89,12 +108,11 @@ public class ByteUtils {
         if (theBytes.length < start + count) {
             return 0;
         }
-        final StringBuffer hexStr = new StringBuffer();
+        long out = 0;
         for (int i = 0; i < count; i++) {
-            final String byteHex = String.format("%02x", theBytes[start + i]);
-            hexStr.append(byteHex);
+            out = (out << 8) | (theBytes[start + i] & 0xff);
         }
-        return Long.parseUnsignedLong(hexStr.toString(), 16);
+        return out;
     }
 
     public static long getHashFromBytes(final byte[] theBytes, final int start, final int count) {
@@ -62,6 +62,32 @@ public class DropHeader {
         return Hex.encodeHexString(Arrays.copyOfRange(bytes, 16, 32));
     }
 
+    /**
+     * Returns the upper 64 bits of the drop key without creating a string.
+     * @return - the bits in network order
+     */
+    public long getDropKeyHigh() {
+        return ByteUtils.getLongFromBytes(this.bytes, 16, 8);
+    }
+
+    /**
+     * Returns the lower 64 bits of the drop key without creating a string.
+     * @return - the bits in network order
+     */
+    public long getDropKeyLow() {
+        return ByteUtils.getLongFromBytes(this.bytes, 24, 8);
+    }
+
+    /**
+     * Returns the hex string form of a drop key held as two longs as returned by getDropKey().
+     * @param high - the upper 64 bits
+     * @param low - the lower 64 bits
+     * @return - the 32 character hex string
+     */
+    public static String toDropKey(final long high, final long low) {
+        return String.format("%016x%016x", high, low);
+    }
+
     public JsonObject toJson() {
         final JsonObject outJson = new JsonObject();
 
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.siddhi.extension.map.p4.trpt;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Declarative description of a Telemetry Report header as fields of a bit offset, bit width and type, along with
+ * a function locating the header within the report bytes. Each field is compiled into a MethodHandle reading its
+ * value with its offsets, widths and masks bound as constants, so that a field is read without per field switches
+ * and without parsing the report into header objects. New or vendor specific headers and
+ * fields are described by building a layout rather than by writing a header class.
+ */
+public class HeaderLayout {
+
+    /**
+     * The type of a field's value.
+     */
+    public enum Type {
+        // An unsigned integer of up to 64 bits
+        UNSIGNED,
+        // An IPv4 or IPv6 address of 32 or 128 bits formatted as per InetAddress.getHostAddress()
+        ADDRESS,
+        // A 48 bit MAC address formatted as colon separated hex
+        MAC,
+        // Whole bytes formatted as a hex string
+        HEX
+    }
+
+    private static final MethodHandle READ_BYTES = findReader("readBytes", long.class, int.class, int.class);
+    private static final MethodHandle READ_BITS = findReader("readBits", long.class, int.class, int.class,
+            int.class, long.class);
+    private static final MethodHandle FORMAT_ADDRESS = findReader("formatAddress", String.class, int.class,
+            int.class);
+    private static final MethodHandle FORMAT_MAC = findReader("formatMac", String.class, int.class);
+    private static final MethodHandle FORMAT_HEX = findReader("formatHex", String.class, int.class, int.class);
+
+    private final String name;
+    private final ToIntFunction<byte[]> locator;
+    private final List<Field> fields;
+    private final int length;
+
+    private HeaderLayout(final String name, final ToIntFunction<byte[]> locator, final List<Field> fields) {
+        this.name = name;
+        this.locator = locator;
+        this.fields = Collections.unmodifiableList(fields);
+        int end = 0;
+        for (final Field field : fields) {
+            field.layout = this;
+            end = Math.max(end, (field.bitOffset + field.bitWidth + 7) / 8);
+        }
+        this.length = end;
+    }
+
+    /**
+     * Starts the layout of a header.
+     * @param name - the header's JSON path such as 'ipHdr' or 'intHdr.mdHdr'
+     * @param locator - returns the offset of the header within the report bytes or -1 when it is absent
+     * @return - the builder
+     */
+    public static Builder builder(final String name, final ToIntFunction<byte[]> locator) {
+        return new Builder(name, locator);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the number of bytes spanned by the layout's fields.
+     * @return - the length
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the offset of the header.
+     * @param bytes - the report bytes
+     * @return - the offset or -1 when the header is absent or truncated
+     */
+    public int locate(final byte[] bytes) {
+        final int offset = locator.applyAsInt(bytes);
+        return offset < 0 || bytes.length < offset + length ? -1 : offset;
+    }
+
+    /**
+     * Returns the field of the name.
+     * @param fieldName - the field name
+     * @return - the field or null when the layout has none of the name
+     */
+    public Field getField(final String fieldName) {
+        for (final Field field : fields) {
+            if (field.name.equals(fieldName)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A field compiled into a reader of its value.
+     */
+    public static class Field {
+
+        private HeaderLayout layout;
+        private final String name;
+        private final int bitOffset;
+        private final int bitWidth;
+        private final Type type;
+        // (byte[] bytes, int headerOffset) returning long for UNSIGNED fields and String for the others
+        private final MethodHandle reader;
+
+        private Field(final String name, final int bitOffset, final int bitWidth, final Type type) {
+            this.name = name;
+            this.bitOffset = bitOffset;
+            this.bitWidth = bitWidth;
+            this.type = type;
+            this.reader = compile(bitOffset, bitWidth, type);
+        }
+
+        public HeaderLayout getLayout() {
+            return layout;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getPath() {
+            return layout.name + "." + name;
+        }
+
+        public int getBitOffset() {
+            return bitOffset;
+        }
+
+        public int getBitWidth() {
+            return bitWidth;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * Returns the offset of the field's header.
+         * @param bytes - the report bytes
+         * @return - the offset or -1 when the header is absent or truncated
+         */
+        public int locate(final byte[] bytes) {
+            return layout.locate(bytes);
+        }
+
+        /**
+         * Returns the value of an UNSIGNED field.
+         * @param bytes - the report bytes
+         * @param offset - the header offset as returned by locate()
+         * @return - the value
+         */
+        public long getLong(final byte[] bytes, final int offset) {
+            try {
+                return (long) reader.invokeExact(bytes, offset);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Returns the value of an ADDRESS, MAC or HEX field.
+         * @param bytes - the report bytes
+         * @param offset - the header offset as returned by locate()
+         * @return - the formatted value
+         */
+        public String getString(final byte[] bytes, final int offset) {
+            try {
+                return (String) reader.invokeExact(bytes, offset);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Builds a single layout from its fields in any order.
+     */
+    public static class Builder {
+
+        private final String name;
+        private final ToIntFunction<byte[]> locator;
+        private final List<Field> fields = new ArrayList<>();
+
+        private Builder(final String name, final ToIntFunction<byte[]> locator) {
+            this.name = name;
+            this.locator = locator;
+        }
+
+        /**
+         * Adds an UNSIGNED field.
+         * @param fieldName - the field's name within the header's JSON
+         * @param bitOffset - the offset of its most significant bit from the start of the header
+         * @param bitWidth - the number of bits
+         * @return - this builder
+         */
+        public Builder field(final String fieldName, final int bitOffset, final int bitWidth) {
+            return field(fieldName, bitOffset, bitWidth, Type.UNSIGNED);
+        }
+
+        /**
+         * Adds a field.
+         * @param fieldName - the field's name within the header's JSON
+         * @param bitOffset - the offset of its most significant bit from the start of the header
+         * @param bitWidth - the number of bits
+         * @param type - the type of its value
+         * @return - this builder
+         * @throws IllegalArgumentException - when the field cannot be read as the type
+         */
+        public Builder field(final String fieldName, final int bitOffset, final int bitWidth, final Type type) {
+            if (bitOffset < 0 || bitWidth < 1) {
+                throw new IllegalArgumentException("Invalid bit offset or width of field " + fieldName);
+            }
+            if (type == Type.UNSIGNED) {
+                if ((bitOffset % 8 + bitWidth + 7) / 8 > Long.BYTES) {
+                    throw new IllegalArgumentException("Field " + fieldName + " spans more than 8 bytes");
+                }
+            } else if (bitOffset % 8 != 0 || bitWidth % 8 != 0) {
+                throw new IllegalArgumentException(type + " field " + fieldName + " must be whole bytes");
+            } else if (type == Type.ADDRESS && bitWidth != 32 && bitWidth != 128) {
+                throw new IllegalArgumentException("ADDRESS field " + fieldName + " must be 32 or 128 bits");
+            } else if (type == Type.MAC && bitWidth != 48) {
+                throw new IllegalArgumentException("MAC field " + fieldName + " must be 48 bits");
+            }
+            for (final Field field : fields) {
+                if (field.name.equals(fieldName)) {
+                    throw new IllegalArgumentException("Duplicate field " + fieldName);
+                }
+            }
+            fields.add(new Field(fieldName, bitOffset, bitWidth, type));
+            return this;
+        }
+
+        /**
+         * Compiles the layout's fields.
+         * @return - the layout
+         */
+        public HeaderLayout build() {
+            return new HeaderLayout(name, locator, new ArrayList<>(fields));
+        }
+    }
+
+    /**
+     * Binds the field's constants to the reader of its type, leaving a (byte[], int) handle.
+     */
+    private static MethodHandle compile(final int bitOffset, final int bitWidth, final Type type) {
+        final int byteOffset = bitOffset / 8;
+        final int byteCount = (bitOffset % 8 + bitWidth + 7) / 8;
+        switch (type) {
+            case ADDRESS:
+                return MethodHandles.insertArguments(FORMAT_ADDRESS, 2, byteOffset, byteCount);
+            case MAC:
+                return MethodHandles.insertArguments(FORMAT_MAC, 2, byteOffset);
+            case HEX:
+                return MethodHandles.insertArguments(FORMAT_HEX, 2, byteOffset, byteCount);
+            default:
+                if (bitOffset % 8 == 0 && bitWidth % 8 == 0) {
+                    return MethodHandles.insertArguments(READ_BYTES, 2, byteOffset, byteCount);
+                }
+                final int shift = byteCount * 8 - bitOffset % 8 - bitWidth;
+                final long mask = bitWidth == 64 ? -1L : (1L << bitWidth) - 1;
+                return MethodHandles.insertArguments(READ_BITS, 2, byteOffset, byteCount, shift, mask);
+        }
+    }
+
+    private static MethodHandle findReader(final String readerName, final Class<?> returnType,
+                                           final Class<?>... constants) {
+        final Class<?>[] params = new Class<?>[constants.length + 2];
+        params[0] = byte[].class;
+        params[1] = int.class;
+        System.arraycopy(constants, 0, params, 2, constants.length);
+        try {
+            return MethodHandles.lookup().findStatic(HeaderLayout.class, readerName,
+                    MethodType.methodType(returnType, params));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static long readBytes(final byte[] bytes, final int offset, final int byteOffset, final int byteCount) {
+        long out = 0;
+        for (int i = offset + byteOffset, end = i + byteCount; i < end; i++) {
+            out = (out << 8) | (bytes[i] & 0xff);
+        }
+        return out;
+    }
+
+    private static long readBits(final byte[] bytes, final int offset, final int byteOffset, final int byteCount,
+                                 final int shift, final long mask) {
+        return (readBytes(bytes, offset, byteOffset, byteCount) >>> shift) & mask;
+    }
+
+    private static String formatAddress(final byte[] bytes, final int offset, final int byteOffset,
+                                        final int byteCount) {
+        final int start = offset + byteOffset;
+        try {
+            return InetAddress.getByAddress(Arrays.copyOfRange(bytes, start, start + byteCount)).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String formatMac(final byte[] bytes, final int offset, final int byteOffset) {
+        return ByteUtils.getMacStr(bytes, offset + byteOffset);
+    }
+
+    private static String formatHex(final byte[] bytes, final int offset, final int byteOffset, final int byteCount) {
+        final int start = offset + byteOffset;
+        return Hex.encodeHexString(Arrays.copyOfRange(bytes, start, start + byteCount));
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.siddhi.extension.map.p4.trpt;
+
+import io.siddhi.extension.map.p4.trpt.HeaderLayout.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Layouts of the fixed fields of each Telemetry Report header, named by the header's path within the report JSON so
+ * that mapping paths such as 'ipHdr.srcAddr' resolve to compiled fields. The IP header has a layout per version, each
+ * locating the header only within reports of its version. Bit string fields such as 'telemRptHdr.repMdBits' and the
+ * INT metadata stack are left to the header classes. Unlike some of the header class getters, every UNSIGNED field
+ * is read as unsigned. RawField and so ReportFilter read their fields through these layouts.
+ */
+public class HeaderLayouts {
+
+    public static final HeaderLayout TRPT_HDR = HeaderLayout.builder(TelemetryReport.TRPT_HDR_KEY, bytes -> 0)
+            .field(TelemetryReportHeader.TRPT_VER_KEY, 0, 4)
+            .field(TelemetryReportHeader.TRPT_HW_ID_KEY, 4, 6)
+            // As read by TelemetryReportHeader.getSequenceId()
+            .field(TelemetryReportHeader.TRPT_SEQ_NO_KEY, 10, 16)
+            .field(TelemetryReportHeader.TRPT_NODE_ID_KEY, 32, 32)
+            .field(TelemetryReportHeader.TRPT_RPT_TYPE_KEY, 64, 4)
+            .field(TelemetryReportHeader.TRPT_IN_TYPE_KEY, 68, 4)
+            .field(TelemetryReportHeader.TRPT_RPT_LEN_KEY, 72, 8)
+            .field(TelemetryReportHeader.TRPT_META_LEN_KEY, 80, 8)
+            .field(TelemetryReportHeader.TRPT_D_KEY, 88, 1)
+            .field(TelemetryReportHeader.TRPT_Q_KEY, 89, 1)
+            .field(TelemetryReportHeader.TRPT_F_KEY, 90, 1)
+            .field(TelemetryReportHeader.TRPT_I_KEY, 91, 1)
+            .field(TelemetryReportHeader.TRPT_DOMAIN_ID_KEY, 112, 16)
+            .build();
+
+    public static final HeaderLayout DROP_HDR = HeaderLayout.builder(TelemetryReport.DROP_HDR_KEY,
+            RawReport::getDropHdrOffset)
+            .field(DropHeader.DROP_HDR_TIMESTAMP_HDR_KEY, 0, 32)
+            .field(DropHeader.DROP_HDR_DROP_COUNT_KEY, 32, 32)
+            .field(DropHeader.DROP_HDR_DROP_KEY_KEY, 128, 128, Type.HEX)
+            .build();
+
+    public static final HeaderLayout INT_ETH_HDR = HeaderLayout.builder(TelemetryReport.INT_ETH_HDR_KEY,
+            bytes -> RawReport.isDropReport(bytes) ? -1 : RawReport.TRPT_HDR_LEN)
+            .field(IntEthernetHeader.IETH_HDR_DST_MAC_KEY, 0, 48, Type.MAC)
+            .field(IntEthernetHeader.IETH_HDR_SRC_MAC_KEY, 48, 48, Type.MAC)
+            .field(IntEthernetHeader.IETH_TYPE_KEY, 96, 16)
+            .build();
+
+    public static final HeaderLayout IPV4_HDR = HeaderLayout.builder(TelemetryReport.IP_HDR_KEY,
+            bytes -> RawReport.getIpVersion(bytes) == 4 ? RawReport.getIpHdrOffset(bytes) : -1)
+            .field(IpHeader.IP_HDR_VER_KEY, 0, 4)
+            .field(IpHeader.IP_HDR_LEN_KEY, 16, 16)
+            .field(IpHeader.IP_HDR_NEXT_PROTO_KEY, 72, 8)
+            .field(IpHeader.IP_HDR_SRC_ADDR_KEY, 96, 32, Type.ADDRESS)
+            .field(IpHeader.IP_HDR_DST_ADDR_KEY, 128, 32, Type.ADDRESS)
+            .build();
+
+    public static final HeaderLayout IPV6_HDR = HeaderLayout.builder(TelemetryReport.IP_HDR_KEY,
+            bytes -> RawReport.getIpVersion(bytes) == 6 ? RawReport.getIpHdrOffset(bytes) : -1)
+            .field(IpHeader.IP_HDR_VER_KEY, 0, 4)
+            .field(IpHeader.IP_HDR_LEN_KEY, 32, 16)
+            .field(IpHeader.IP_HDR_NEXT_PROTO_KEY, 48, 8)
+            .field(IpHeader.IP_HDR_SRC_ADDR_KEY, 64, 128, Type.ADDRESS)
+            .field(IpHeader.IP_HDR_DST_ADDR_KEY, 192, 128, Type.ADDRESS)
+            .build();
+
+    public static final HeaderLayout UDP_INT_HDR = HeaderLayout.builder(TelemetryReport.UDP_INT_HDR_KEY,
+            HeaderLayouts::getUdpIntHdrOffset)
+            .field(UdpIntHeader.UDP_INT_HDR_SRC_PORT_KEY, 0, 16)
+            .field(UdpIntHeader.UDP_INT_HDR_DST_PORT_KEY, 16, 16)
+            .field(UdpIntHeader.UDP_INT_HDR_LEN_KEY, 32, 16)
+            .build();
+
+    public static final HeaderLayout INT_SHIM_HDR = HeaderLayout.builder(TelemetryReport.INT_HDR_KEY + "."
+            + IntHeader.INT_HDR_SHIM_HDR_KEY, RawReport::getIntHdrOffset)
+            .field(IntShimHeader.INT_SHIM_HDR_TYPE_KEY, 0, 4)
+            .field(IntShimHeader.INT_SHIM_HDR_NPT_KEY, 4, 2)
+            .field(IntShimHeader.INT_SHIM_HDR_LEN_KEY, 8, 8)
+            .field(IntShimHeader.INT_SHIM_HDR_NEXT_PROTO_KEY, 24, 8)
+            .build();
+
+    public static final HeaderLayout INT_MD_HDR = HeaderLayout.builder(TelemetryReport.INT_HDR_KEY + "."
+            + IntHeader.INT_HDR_MD_HDR_KEY, HeaderLayouts::getIntMdHdrOffset)
+            .field(IntMetadataHeader.INT_MD_HDR_VER_KEY, 0, 4)
+            .field(IntMetadataHeader.INT_MD_HDR_D_KEY, 6, 1)
+            .field(IntMetadataHeader.INT_MD_HDR_E_KEY, 7, 1)
+            .field(IntMetadataHeader.INT_MD_HDR_M_KEY, 8, 1)
+            .field(IntMetadataHeader.INT_MD_HDR_MD_LEN_KEY, 19, 5)
+            .field(IntMetadataHeader.INT_MD_HDR_REMAIN_HOP_CNT_KEY, 24, 8)
+            .field(IntMetadataHeader.INT_MD_HDR_DOMAIN_ID_KEY, 48, 16)
+            .build();
+
+    public static final HeaderLayout PROTO_HDR = HeaderLayout.builder(TelemetryReport.PROTO_HDR_KEY,
+            RawReport::getProtoHdrOffset)
+            .field(ProtoHeader.PROTO_HDR_SRC_PORT_KEY, 0, 16)
+            .field(ProtoHeader.PROTO_HDR_DST_PORT_KEY, 16, 16)
+            .build();
+
+    private static final int INT_SHIM_HDR_LEN = 4;
+    private static final List<HeaderLayout> LAYOUTS = Collections.unmodifiableList(Arrays.asList(TRPT_HDR, DROP_HDR,
+            INT_ETH_HDR, IPV4_HDR, IPV6_HDR, UDP_INT_HDR, INT_SHIM_HDR, INT_MD_HDR, PROTO_HDR));
+
+    private HeaderLayouts() {
+    }
+
+    public static List<HeaderLayout> getLayouts() {
+        return LAYOUTS;
+    }
+
+    /**
+     * Returns the mapping paths of every field.
+     * @return - the paths such as 'ipHdr.srcAddr'
+     */
+    public static Set<String> getPaths() {
+        final Set<String> paths = new LinkedHashSet<>();
+        for (final HeaderLayout layout : LAYOUTS) {
+            for (final HeaderLayout.Field field : layout.getFields()) {
+                paths.add(field.getPath());
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the fields of a mapping path, being one per layout of the path's header, where at most one header
+     * is located within any report.
+     * @param path - the mapping path such as 'ipHdr.srcAddr'
+     * @return - the fields or null when the path does not denote a field of a layout
+     */
+    public static HeaderLayout.Field[] resolve(final String path) {
+        final int split = path.lastIndexOf('.');
+        if (split < 0) {
+            return null;
+        }
+        final String headerName = path.substring(0, split);
+        final List<HeaderLayout.Field> fields = new ArrayList<>(2);
+        for (final HeaderLayout layout : LAYOUTS) {
+            if (layout.getName().equals(headerName)) {
+                final HeaderLayout.Field field = layout.getField(path.substring(split + 1));
+                if (field != null) {
+                    fields.add(field);
+                }
+            }
+        }
+        return fields.isEmpty() ? null : fields.toArray(new HeaderLayout.Field[0]);
+    }
+
+    private static int getUdpIntHdrOffset(final byte[] bytes) {
+        final int ipOffset = RawReport.getIpHdrOffset(bytes);
+        return ipOffset < 0 ? -1 : ipOffset + RawReport.getIpHdrLen(RawReport.getIpVersion(bytes));
+    }
+
+    private static int getIntMdHdrOffset(final byte[] bytes) {
+        final int intOffset = RawReport.getIntHdrOffset(bytes);
+        return intOffset < 0 ? -1 : intOffset + INT_SHIM_HDR_LEN;
+    }
+}
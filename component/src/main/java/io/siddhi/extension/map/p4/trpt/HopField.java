@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt;
+
+/**
+ * Per hop INT metadata fields as selected by the instruction bitmap of the INT metadata header.
+ * Each instruction bit, numbered from the most significant, adds a fixed number of 4 byte words to the metadata of
+ * every hop, appended in bit order, and some words hold more than one field. Fields are addressed by mapping paths
+ * such as 'intHdr.mdStackHdr.hops[0].hopLatency', where hop 0 is the first INT hop of the packet's path.
+ */
+public enum HopField {
+
+    NODE_ID("nodeId", 0, 0, 4),
+    INGRESS_PORT("ingressPort", 1, 0, 2),
+    EGRESS_PORT("egressPort", 1, 2, 2),
+    HOP_LATENCY("hopLatency", 2, 0, 4),
+    QUEUE_ID("queueId", 3, 0, 1),
+    QUEUE_OCCUPANCY("queueOccupancy", 3, 1, 3),
+    INGRESS_TIMESTAMP("ingressTimestamp", 4, 0, 8),
+    EGRESS_TIMESTAMP("egressTimestamp", 5, 0, 8),
+    L2_INGRESS_PORT("l2IngressPort", 6, 0, 4),
+    L2_EGRESS_PORT("l2EgressPort", 6, 4, 4),
+    TX_UTILIZATION("txUtilization", 7, 0, 4),
+    BUFFER_ID("bufferId", 8, 0, 1),
+    BUFFER_OCCUPANCY("bufferOccupancy", 8, 1, 3);
+
+    public static final String HOPS_PATH = TelemetryReport.INT_HDR_KEY + "." + IntHeader.INT_HDR_MD_STACK_HDR_KEY
+            + "." + IntMetadataStackHeader.INT_MD_STACK_HOPS_KEY;
+
+    /**
+     * The instruction bitmap of node IDs alone, as assumed when the instructions are unknown.
+     */
+    public static final int NODE_ID_INSTRUCTIONS = 0x8000;
+
+    // Words added per hop by each instruction bit, where bits 9 to 14 are reserved and bit 15 is the checksum
+    private static final int[] INSTRUCTION_WORDS = {1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+    private static final HopField[] FIELDS = values();
+
+    private final String name;
+    private final int instruction;
+    private final int offset;
+    private final int length;
+
+    HopField(final String name, final int instruction, final int offset, final int length) {
+        this.name = name;
+        this.instruction = instruction;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns true when the instruction bitmap selects this field.
+     * @param instructions - the 16 bit instruction bitmap
+     * @return - true when selected
+     */
+    public boolean isSelected(final int instructions) {
+        return isSelected(instructions, instruction);
+    }
+
+    /**
+     * Returns the offset of this field within each hop's metadata.
+     * @param instructions - the 16 bit instruction bitmap
+     * @return - the byte offset or -1 when the field is not selected
+     */
+    public int getOffset(final int instructions) {
+        if (!isSelected(instructions)) {
+            return -1;
+        }
+        int words = 0;
+        for (int bit = 0; bit < instruction; bit++) {
+            if (isSelected(instructions, bit)) {
+                words += INSTRUCTION_WORDS[bit];
+            }
+        }
+        return words * 4 + offset;
+    }
+
+    /**
+     * Returns the number of 4 byte words of metadata each hop carries for an instruction bitmap.
+     * @param instructions - the 16 bit instruction bitmap
+     * @return - the word count
+     */
+    public static int getHopWords(final int instructions) {
+        int words = 0;
+        for (int bit = 0; bit < INSTRUCTION_WORDS.length; bit++) {
+            if (isSelected(instructions, bit)) {
+                words += INSTRUCTION_WORDS[bit];
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Returns the field of a name.
+     * @param name - the name such as 'hopLatency'
+     * @return - the field
+     * @throws IllegalArgumentException - when there is no such field
+     */
+    public static HopField fromName(final String name) {
+        for (final HopField field : FIELDS) {
+            if (field.name.equals(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hop field " + name);
+    }
+
+    private static boolean isSelected(final int instructions, final int bit) {
+        return ((instructions >>> (15 - bit)) & 1) != 0;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A mapping path addressing a per hop INT metadata field such as 'intHdr.mdStackHdr.hops[0].hopLatency', or the
+ * field of the hop being mapped such as 'intHdr.mdStackHdr.hops[i].hopLatency' when flattening reports into an
+ * event per hop.
+ */
+public final class HopPath {
+
+    private static final Pattern HOP_PATH_PATTERN = Pattern.compile(Pattern.quote(HopField.HOPS_PATH)
+            + "\\[(\\d+|i)]\\.(\\w+)");
+
+    public static final int CURRENT_HOP = -1;
+
+    // The hop index or CURRENT_HOP
+    public final int hop;
+    public final HopField field;
+
+    private HopPath(final int hop, final HopField field) {
+        this.hop = hop;
+        this.field = field;
+    }
+
+    /**
+     * Parses a mapping path.
+     * @param path - the mapping path
+     * @return - the hop path or null when the path does not address a hop
+     * @throws IllegalArgumentException - when the path addresses an unknown hop field or an invalid hop
+     */
+    public static HopPath parse(final String path) {
+        final Matcher matcher = HOP_PATH_PATTERN.matcher(path);
+        if (!matcher.matches()) {
+            return null;
+        }
+        try {
+            final int hop = "i".equals(matcher.group(1)) ? CURRENT_HOP : Integer.parseInt(matcher.group(1));
+            return new HopPath(hop, HopField.fromName(matcher.group(2)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid hop index in " + path);
+        }
+    }
+
+    public boolean isCurrentHop() {
+        return hop == CURRENT_HOP;
+    }
+
+    /**
+     * Returns the field value of the report.
+     * @param trpt - the report
+     * @return - the value or null when the report has no such hop or its instructions omit the field
+     */
+    public Long getValue(final TelemetryReport trpt) {
+        return getValue(trpt, hop);
+    }
+
+    /**
+     * Returns the field value of the report.
+     * @param trpt - the report
+     * @param currentHop - the index of the hop being mapped, used when this path addresses the current hop
+     * @return - the value or null when the report has no such hop or its instructions omit the field
+     */
+    public Long getValue(final TelemetryReport trpt, final int currentHop) {
+        final int index = hop == CURRENT_HOP ? currentHop : hop;
+        if (trpt.intHdr == null || index < 0) {
+            return null;
+        }
+        final IntMetadataStackHeader stack = trpt.intHdr.mdStackHdr;
+        if (index >= stack.getNumHops() || !stack.hasHopField(field)) {
+            return null;
+        }
+        return stack.getHopValue(field, index);
+    }
+}
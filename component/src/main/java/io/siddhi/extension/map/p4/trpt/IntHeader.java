@@ -43,8 +43,8 @@ public class IntHeader {
         byteIndex += 4;
         mdHdr = new IntMetadataHeader(ByteUtils.getBytesFrag(bytes1, byteIndex, 12));
         byteIndex += 12;
-        mdStackHdr = new IntMetadataStackHeader(shimHdr.getLength() - INT_SHIM_SIZE,
-                ByteUtils.getBytesFrag(bytes1, byteIndex, bytes.length - byteIndex));
+        mdStackHdr = new IntMetadataStackHeader(shimHdr.getLength() - INT_SHIM_SIZE, mdHdr.getPerHopMdLen(),
+                mdHdr.getInstructionBitmap(), ByteUtils.getBytesFrag(bytes1, byteIndex, bytes.length - byteIndex));
 
         lastIndex = byteIndex + mdStackHdr.getLastIndex(); // Padding
     }
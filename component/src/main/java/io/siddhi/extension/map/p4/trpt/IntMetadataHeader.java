@@ -63,9 +63,7 @@ public class IntMetadataHeader {
     }
 
     public int getPerHopMdLen() {
-        int theByte = bytes[2];
-        final String byteStr = String.format("%05d", Integer.parseInt(Integer.toBinaryString(theByte)));
-        return Integer.parseInt(byteStr, 2);
+        return bytes[2] & 0x1f;
     }
 
     public int getRemainingHopCount() {
@@ -76,6 +74,14 @@ public class IntMetadataHeader {
         return ByteUtils.getBitString(bytes[4]) + ByteUtils.getBitString(bytes[5]);
     }
 
+    /**
+     * Returns the instructions as a number whose most significant of 16 bits is instruction bit 0.
+     * @return - the 16 bit instruction bitmap
+     */
+    public int getInstructionBitmap() {
+        return ((bytes[4] & 0xff) << 8) | (bytes[5] & 0xff);
+    }
+
     public long getDomainId() {
         return ByteUtils.getLongFromBytes(bytes, 6, 2);
     }
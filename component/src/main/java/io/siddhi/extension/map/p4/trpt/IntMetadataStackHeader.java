@@ -25,22 +25,52 @@ import java.util.List;
 
 /**
  * Responsible for extracting the bytes that represent INT metadata header values into usable values.
+ * The metadata of each hop is decoded as per the instruction bitmap into an array per HopField so that per hop
+ * values are read without allocation.
  */
 public class IntMetadataStackHeader {
 
     public static final String INT_MD_STACK_ORIG_MAC_KEY = "origMac";
     public static final String INT_MD_STACK_HOPS_KEY = "hops";
 
+    private static final HopField[] HOP_FIELDS = HopField.values();
+
     private final int numHops;
+    private final int hopLength;
+    private final int instructions;
     private final byte[] bytes;
     private final int lastHopIndex;
     private final List<Long> hops;
 
+    // Indexed by HopField ordinal then hop, where fields not selected by the instructions are null
+    private final long[][] hopValues = new long[HOP_FIELDS.length][];
+
+    /**
+     * Constructor for stacks carrying a 4 byte node ID per hop.
+     * @param numHops - the number of hops
+     * @param bytes - the bytes from the start of the stack
+     */
     public IntMetadataStackHeader(final int numHops, final byte[] bytes) {
-        this.numHops = numHops;
+        this(numHops, 1, HopField.NODE_ID_INSTRUCTIONS, bytes);
+    }
+
+    /**
+     * Constructor.
+     * @param stackWords - the number of 4 byte words of hop metadata within the stack
+     * @param hopWords - the number of 4 byte words of metadata per hop
+     * @param instructions - the 16 bit instruction bitmap of the INT metadata header
+     * @param bytes - the bytes from the start of the stack
+     */
+    public IntMetadataStackHeader(final int stackWords, final int hopWords, final int instructions,
+                                  final byte[] bytes) {
         this.bytes = bytes.clone();
-        this.lastHopIndex = numHops * 4;
+        this.lastHopIndex = stackWords * 4;
+        // Treated as a word per hop when the header omits the length
+        this.hopLength = Math.max(1, hopWords) * 4;
+        this.numHops = Math.max(0, lastHopIndex / hopLength);
+        this.instructions = instructions;
         this.hops = readHops();
+        readHopValues();
     }
 
     public byte[] getBytes() {
@@ -59,23 +89,83 @@ public class IntMetadataStackHeader {
         return ByteUtils.getMacStr(bytes, lastHopIndex);
     }
 
+    /**
+     * Returns the originating MAC address as a number.
+     * @return - the 48 bit MAC address
+     */
+    public long getOrigMacLong() {
+        return ByteUtils.getLongFromBytes(bytes, lastHopIndex, 6);
+    }
+
     public void setOrigMac(final String macAddress) {
         final byte[] macBytes = MacAddressUtil.parseMAC(macAddress);
         System.arraycopy(macBytes, 0, bytes, lastHopIndex, macBytes.length);
     }
 
+    /**
+     * Returns the first 4 byte word of each hop's metadata, being its node ID when the instructions include it.
+     * @return - the words with the first INT hop of the packet's path first
+     */
     public List<Long> getHops() {
         return new ArrayList<>(hops);
     }
 
+    public int getNumHops() {
+        return numHops;
+    }
+
+    public int getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * Returns true when each hop carries a field.
+     * @param field - the field
+     * @return - true when selected by the instructions and within the per hop metadata length
+     */
+    public boolean hasHopField(final HopField field) {
+        return hopValues[field.ordinal()] != null;
+    }
+
+    /**
+     * Returns a field of a hop.
+     * @param field - the field, which must be present as per hasHopField()
+     * @param hop - the hop index where hop 0 is the first INT hop of the packet's path
+     * @return - the value
+     */
+    public long getHopValue(final HopField field, final int hop) {
+        return hopValues[field.ordinal()][hop];
+    }
+
+    /**
+     * Returns the stack offset of a hop's metadata, where the most recent hop is at the top of the stack.
+     */
+    private int getHopOffset(final int hop) {
+        return (numHops - 1 - hop) * hopLength;
+    }
+
     private List<Long> readHops() {
         List<Long> out = new ArrayList<>(numHops);
         for (int i = 0; i < numHops; i++) {
-            out.add(ByteUtils.getLongFromBytes(bytes, lastHopIndex - (i * 4) - 4, 4));
+            out.add(ByteUtils.getLongFromBytes(bytes, getHopOffset(i), 4));
         }
         return out;
     }
 
+    private void readHopValues() {
+        for (final HopField field : HOP_FIELDS) {
+            final int offset = field.getOffset(instructions);
+            if (offset < 0 || offset + field.getLength() > hopLength) {
+                continue;
+            }
+            final long[] values = new long[numHops];
+            for (int i = 0; i < numHops; i++) {
+                values[i] = ByteUtils.getLongFromBytes(bytes, getHopOffset(i) + offset, field.getLength());
+            }
+            hopValues[field.ordinal()] = values;
+        }
+    }
+
     public JsonObject toJson() {
         final JsonObject outJson = new JsonObject();
 
@@ -95,6 +95,50 @@ public class IpHeader {
         return ByteUtils.getInetAddress(bytes, getVer(), byteIndex);
     }
 
+    /**
+     * Returns the upper 64 bits of the source address.
+     * @return - the bits in network order (always zero for IPv4)
+     */
+    public long getSrcAddrHigh() {
+        if (getVer() == 4) {
+            return 0;
+        }
+        return ByteUtils.getLongFromBytes(bytes, 8, 8);
+    }
+
+    /**
+     * Returns the lower 64 bits of the source address.
+     * @return - the bits in network order (the unsigned 32 bit address for IPv4)
+     */
+    public long getSrcAddrLow() {
+        if (getVer() == 4) {
+            return ByteUtils.getLongFromBytes(bytes, 12, 4);
+        }
+        return ByteUtils.getLongFromBytes(bytes, 16, 8);
+    }
+
+    /**
+     * Returns the upper 64 bits of the destination address.
+     * @return - the bits in network order (always zero for IPv4)
+     */
+    public long getDstAddrHigh() {
+        if (getVer() == 4) {
+            return 0;
+        }
+        return ByteUtils.getLongFromBytes(bytes, 24, 8);
+    }
+
+    /**
+     * Returns the lower 64 bits of the destination address.
+     * @return - the bits in network order (the unsigned 32 bit address for IPv4)
+     */
+    public long getDstAddrLow() {
+        if (getVer() == 4) {
+            return ByteUtils.getLongFromBytes(bytes, 16, 4);
+        }
+        return ByteUtils.getLongFromBytes(bytes, 32, 8);
+    }
+
     public void setDstAddr(final String ipAddr) {
         final InetAddress inetAddress = InetAddresses.forString(ipAddr);
         final byte[] ipAddrBytes = inetAddress.getAddress();
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt;
+
+/**
+ * Numeric Telemetry Report fields read directly from the report bytes by their mapping path. As with ReportField,
+ * values are 128 bit unsigned keys held as two longs where IPv4 addresses take their IPv4-mapped IPv6 form, and
+ * fields are absent when their header is missing or truncated. Each field is read through the HeaderLayouts field
+ * of its path, so that offsets and widths are declared once, other than the originating MAC which follows the
+ * variable length INT metadata stack.
+ */
+public enum RawField {
+
+    TRPT_VERSION(TelemetryReport.TRPT_HDR_KEY, TelemetryReportHeader.TRPT_VER_KEY),
+    HARDWARE_ID(TelemetryReport.TRPT_HDR_KEY, TelemetryReportHeader.TRPT_HW_ID_KEY),
+    SEQ_NO(TelemetryReport.TRPT_HDR_KEY, TelemetryReportHeader.TRPT_SEQ_NO_KEY),
+    NODE_ID(TelemetryReport.TRPT_HDR_KEY, TelemetryReportHeader.TRPT_NODE_ID_KEY),
+    RPT_TYPE(TelemetryReport.TRPT_HDR_KEY, TelemetryReportHeader.TRPT_RPT_TYPE_KEY),
+    IN_TYPE(TelemetryReport.TRPT_HDR_KEY, TelemetryReportHeader.TRPT_IN_TYPE_KEY),
+    RPT_LEN(TelemetryReport.TRPT_HDR_KEY, TelemetryReportHeader.TRPT_RPT_LEN_KEY),
+    META_LEN(TelemetryReport.TRPT_HDR_KEY, TelemetryReportHeader.TRPT_META_LEN_KEY),
+    TRPT_DOMAIN_ID(TelemetryReport.TRPT_HDR_KEY, TelemetryReportHeader.TRPT_DOMAIN_ID_KEY),
+    DROP_TIMESTAMP(TelemetryReport.DROP_HDR_KEY, DropHeader.DROP_HDR_TIMESTAMP_HDR_KEY),
+    DROP_COUNT(TelemetryReport.DROP_HDR_KEY, DropHeader.DROP_HDR_DROP_COUNT_KEY),
+    DROP_KEY(TelemetryReport.DROP_HDR_KEY, DropHeader.DROP_HDR_DROP_KEY_KEY),
+    IP_VERSION(TelemetryReport.IP_HDR_KEY, IpHeader.IP_HDR_VER_KEY),
+    IP_LEN(TelemetryReport.IP_HDR_KEY, IpHeader.IP_HDR_LEN_KEY),
+    NEXT_PROTO(TelemetryReport.IP_HDR_KEY, IpHeader.IP_HDR_NEXT_PROTO_KEY),
+    SRC_ADDR(TelemetryReport.IP_HDR_KEY, IpHeader.IP_HDR_SRC_ADDR_KEY),
+    DST_ADDR(TelemetryReport.IP_HDR_KEY, IpHeader.IP_HDR_DST_ADDR_KEY),
+    REMAINING_HOP_COUNT(TelemetryReport.INT_HDR_KEY + "." + IntHeader.INT_HDR_MD_HDR_KEY,
+            IntMetadataHeader.INT_MD_HDR_REMAIN_HOP_CNT_KEY),
+    INT_DOMAIN_ID(TelemetryReport.INT_HDR_KEY + "." + IntHeader.INT_HDR_MD_HDR_KEY,
+            IntMetadataHeader.INT_MD_HDR_DOMAIN_ID_KEY),
+    ORIG_MAC(TelemetryReport.INT_HDR_KEY + "." + IntHeader.INT_HDR_MD_STACK_HDR_KEY,
+            IntMetadataStackHeader.INT_MD_STACK_ORIG_MAC_KEY),
+    SRC_PORT(TelemetryReport.PROTO_HDR_KEY, ProtoHeader.PROTO_HDR_SRC_PORT_KEY),
+    DST_PORT(TelemetryReport.PROTO_HDR_KEY, ProtoHeader.PROTO_HDR_DST_PORT_KEY);
+
+    private static final long IPV4_MAPPED_PREFIX = 0xffff00000000L;
+    private static final int MAC_LEN = 6;
+
+    private final String path;
+    private final String name;
+    // One per layout of the header, null for fields of the INT metadata stack which has no fixed layout
+    private final HeaderLayout.Field[] layoutFields;
+
+    RawField(final String header, final String name) {
+        this.path = header + "." + name;
+        this.name = name;
+        this.layoutFields = HeaderLayouts.resolve(path);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the offset of the header containing this field.
+     * @param bytes - the report bytes
+     * @return - the offset or -1 when the header is absent or truncated
+     */
+    public int getHeaderOffset(final byte[] bytes) {
+        if (layoutFields == null) {
+            // ORIG_MAC follows the INT metadata stack
+            final int intOffset = RawReport.getIntHdrOffset(bytes);
+            if (intOffset < 0) {
+                return -1;
+            }
+            final int words = RawReport.getIntStackWords(bytes, intOffset);
+            final int offset = intOffset + RawReport.INT_FIXED_HDR_LEN + words * 4;
+            return words < 0 || bytes.length < offset + MAC_LEN ? -1 : intOffset;
+        }
+        for (final HeaderLayout.Field field : layoutFields) {
+            final int offset = field.locate(bytes);
+            if (offset >= 0) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the upper 64 bits of the field value.
+     * @param bytes - the report bytes
+     * @param offset - the header offset as returned by getHeaderOffset()
+     * @return - the bits (zero for every field other than IPv6 addresses and drop keys)
+     */
+    public long getHigh(final byte[] bytes, final int offset) {
+        if (layoutFields == null) {
+            return 0;
+        }
+        final HeaderLayout.Field field = getLayoutField(bytes, offset);
+        if (field.getBitWidth() <= Long.SIZE) {
+            return 0;
+        }
+        // Wider fields are whole bytes of which the last 16 are kept
+        final int end = offset + (field.getBitOffset() + field.getBitWidth()) / 8;
+        return ByteUtils.getLongFromBytes(bytes, end - 2 * Long.BYTES, Long.BYTES);
+    }
+
+    /**
+     * Returns the lower 64 bits of the field value.
+     * @param bytes - the report bytes
+     * @param offset - the header offset as returned by getHeaderOffset()
+     * @return - the bits
+     */
+    public long getLow(final byte[] bytes, final int offset) {
+        if (layoutFields == null) {
+            return ByteUtils.getLongFromBytes(bytes, offset + RawReport.INT_FIXED_HDR_LEN
+                    + RawReport.getIntStackWords(bytes, offset) * 4, MAC_LEN);
+        }
+        final HeaderLayout.Field field = getLayoutField(bytes, offset);
+        if (field.getType() == HeaderLayout.Type.UNSIGNED) {
+            return field.getLong(bytes, offset);
+        }
+        final int end = offset + (field.getBitOffset() + field.getBitWidth()) / 8;
+        if (field.getType() == HeaderLayout.Type.ADDRESS && field.getBitWidth() == Integer.SIZE) {
+            return IPV4_MAPPED_PREFIX | ByteUtils.getLongFromBytes(bytes, end - Integer.BYTES, Integer.BYTES);
+        }
+        final int count = Math.min(Long.BYTES, field.getBitWidth() / 8);
+        return ByteUtils.getLongFromBytes(bytes, end - count, count);
+    }
+
+    /**
+     * Returns the field of the layout located at the offset, being the only one for headers with a single layout.
+     */
+    private HeaderLayout.Field getLayoutField(final byte[] bytes, final int offset) {
+        if (layoutFields.length > 1) {
+            for (final HeaderLayout.Field field : layoutFields) {
+                if (field.locate(bytes) == offset) {
+                    return field;
+                }
+            }
+        }
+        return layoutFields[0];
+    }
+
+    /**
+     * Returns the field for a mapping path such as 'protoHdr.dstPort' or for the last element of the path alone
+     * such as 'dstPort' when no other field shares it.
+     * @param path - the mapping path
+     * @return - the field
+     * @throws IllegalArgumentException - when the path does not denote a supported field
+     */
+    public static RawField fromPath(final String path) {
+        RawField byName = null;
+        int nameMatches = 0;
+        for (final RawField field : values()) {
+            if (field.path.equals(path)) {
+                return field;
+            }
+            if (field.name.equals(path)) {
+                byName = field;
+                nameMatches++;
+            }
+        }
+        if (nameMatches == 1) {
+            return byName;
+        }
+        if (nameMatches > 1) {
+            throw new IllegalArgumentException("Ambiguous field " + path + " requires its full mapping path");
+        }
+        throw new IllegalArgumentException("Unsupported raw field - " + path);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt;
+
+import io.siddhi.extension.map.p4.trpt.util.Hashing;
+
+/**
+ * Locates header fields directly within the bytes of a Telemetry Report so that reports can be inspected without
+ * being parsed into a TelemetryReport. Header positions follow the same rules as the TelemetryReport constructor and
+ * offsets of -1 denote headers that are absent or truncated.
+ */
+public class RawReport {
+
+    public static final int TRPT_HDR_LEN = 24;
+    public static final int INT_ETH_HDR_LEN = 14;
+    public static final int UDP_INT_HDR_LEN = 8;
+    public static final int INT_FIXED_HDR_LEN = 16;
+    public static final int DROP_HDR_LEN = 32;
+    private static final int DROP_IN_TYPE = 2;
+    private static final int IPV4_ETH_TYPE = 0x800;
+    private static final int UDP_PROTO = 0x11;
+
+    private RawReport() {
+    }
+
+    public static int getInType(final byte[] bytes) {
+        return bytes.length > 8 ? bytes[8] & 0xf : -1;
+    }
+
+    public static boolean isDropReport(final byte[] bytes) {
+        return getInType(bytes) == DROP_IN_TYPE;
+    }
+
+    public static long getNodeId(final byte[] bytes) {
+        return ByteUtils.getLongFromBytes(bytes, 4, 4);
+    }
+
+    /**
+     * Returns the offset of the drop header.
+     * @param bytes - the report bytes
+     * @return - the offset or -1 for packet reports
+     */
+    public static int getDropHdrOffset(final byte[] bytes) {
+        if (!isDropReport(bytes) || bytes.length < TRPT_HDR_LEN + DROP_HDR_LEN) {
+            return -1;
+        }
+        return TRPT_HDR_LEN;
+    }
+
+    /**
+     * Returns the offset of the IP header.
+     * @param bytes - the report bytes
+     * @return - the offset or -1 for drop reports and reports truncated within the IP header
+     */
+    public static int getIpHdrOffset(final byte[] bytes) {
+        final int offset = TRPT_HDR_LEN + INT_ETH_HDR_LEN;
+        if (isDropReport(bytes) || bytes.length < offset
+                || bytes.length < offset + getIpHdrLen(getEthIpVersion(bytes))) {
+            return -1;
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the IP version as determined by the INT Ethernet type.
+     * @param bytes - the report bytes
+     * @return - 4, 6 or -1 for drop reports and reports truncated within the IP header
+     */
+    public static int getIpVersion(final byte[] bytes) {
+        if (getIpHdrOffset(bytes) < 0) {
+            return -1;
+        }
+        return getEthIpVersion(bytes);
+    }
+
+    public static int getIpHdrLen(final int ipVersion) {
+        return ipVersion == 4 ? 20 : 40;
+    }
+
+    /**
+     * Returns the offset of the INT shim header.
+     * @param bytes - the report bytes
+     * @return - the offset or -1 for drop reports
+     */
+    public static int getIntHdrOffset(final byte[] bytes) {
+        final int ipOffset = getIpHdrOffset(bytes);
+        if (ipOffset < 0) {
+            return -1;
+        }
+        final int offset = ipOffset + getIpHdrLen(getIpVersion(bytes)) + UDP_INT_HDR_LEN;
+        return bytes.length < offset + INT_FIXED_HDR_LEN ? -1 : offset;
+    }
+
+    /**
+     * Returns the number of 4 byte words within the INT metadata stack.
+     * @param bytes - the report bytes
+     * @param intOffset - the offset of the INT shim header
+     * @return - the number of words
+     */
+    public static int getIntStackWords(final byte[] bytes, final int intOffset) {
+        return bytes[intOffset + 1] - IntHeader.INT_SHIM_SIZE;
+    }
+
+    /**
+     * Returns the offset of the TCP or UDP header following the INT header.
+     * @param bytes - the report bytes
+     * @return - the offset or -1 for drop reports
+     */
+    public static int getProtoHdrOffset(final byte[] bytes) {
+        final int intOffset = getIntHdrOffset(bytes);
+        if (intOffset < 0) {
+            return -1;
+        }
+        // The metadata stack is followed by the originating MAC and padding
+        final int offset = intOffset + INT_FIXED_HDR_LEN + getIntStackWords(bytes, intOffset) * 4 + 8;
+        final int length = bytes[intOffset + 3] == UDP_PROTO ? 8 : 20;
+        return offset < intOffset || bytes.length < offset + length ? -1 : offset;
+    }
+
+    /**
+     * Returns the IP protocol.
+     * @param bytes - the report bytes
+     * @param ipOffset - the offset of the IP header
+     * @return - the protocol
+     */
+    public static int getNextProto(final byte[] bytes, final int ipOffset) {
+        return bytes[ipOffset + (getIpVersion(bytes) == 4 ? 9 : 6)] & 0xff;
+    }
+
+    /**
+     * Returns the offset of the source address.
+     * @param bytes - the report bytes
+     * @param ipOffset - the offset of the IP header
+     * @return - the offset of the 4 or 16 byte address
+     */
+    public static int getSrcAddrOffset(final byte[] bytes, final int ipOffset) {
+        return ipOffset + (getIpVersion(bytes) == 4 ? 12 : 8);
+    }
+
+    /**
+     * Returns the offset of the destination address.
+     * @param bytes - the report bytes
+     * @param ipOffset - the offset of the IP header
+     * @return - the offset of the 4 or 16 byte address
+     */
+    public static int getDstAddrOffset(final byte[] bytes, final int ipOffset) {
+        return ipOffset + (getIpVersion(bytes) == 4 ? 16 : 24);
+    }
+
+    /**
+     * Returns a hash of the 5-tuple of a packet report that is equal for every report of the flow regardless of
+     * the reporting node.
+     * @param bytes - the report bytes
+     * @return - the hash or 0 when the report has no 5-tuple
+     */
+    public static long flowHash(final byte[] bytes) {
+        final int protoOffset = getProtoHdrOffset(bytes);
+        if (protoOffset < 0) {
+            return 0;
+        }
+        final int ipOffset = getIpHdrOffset(bytes);
+        final int addrLen = getIpVersion(bytes) == 4 ? 4 : 16;
+        long hash = Hashing.hash64(getNextProto(bytes, ipOffset));
+        hash = hashBytes(hash, bytes, getSrcAddrOffset(bytes, ipOffset), addrLen);
+        hash = hashBytes(hash, bytes, getDstAddrOffset(bytes, ipOffset), addrLen);
+        hash = hashBytes(hash, bytes, protoOffset, 4);
+        return hash;
+    }
+
+    private static int getEthIpVersion(final byte[] bytes) {
+        return ByteUtils.getLongFromBytes(bytes, TRPT_HDR_LEN + 12, 2) == IPV4_ETH_TYPE ? 4 : 6;
+    }
+
+    private static long hashBytes(final long seed, final byte[] bytes, final int offset, final int count) {
+        long hash = seed;
+        for (int i = offset; i < offset + count; i += 4) {
+            hash = Hashing.hash64(hash, ByteUtils.getLongFromBytes(bytes, i, 4));
+        }
+        return hash;
+    }
+}
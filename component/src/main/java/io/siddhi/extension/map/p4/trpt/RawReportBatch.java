@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt;
+
+import java.util.Arrays;
+
+/**
+ * Batch of Telemetry Reports decoded column-wise, with the values of selected RawFields extracted from every report
+ * of the batch in one pass into parallel primitive arrays. Filters then narrow a selection vector of row numbers one
+ * column at a time, each as a tight loop over primitive arrays without branching on the values compared, which the
+ * JIT compiler can unroll and vectorize, so that only the reports surviving the filters need be parsed. Comparisons
+ * are unsigned and false for rows lacking the field, as with ReportFilter.
+ */
+public class RawReportBatch {
+
+    public static final int EQ = 0;
+    public static final int NE = 1;
+    public static final int LT = 2;
+    public static final int LE = 3;
+    public static final int GT = 4;
+    public static final int GE = 5;
+
+    private final RawField[] fields;
+    // Indexed by RawField ordinal, -1 for fields not decoded
+    private final int[] columnIndexes = new int[RawField.values().length];
+    private byte[][] reports;
+    private long[][] highs;
+    private long[][] lows;
+    private boolean[][] present;
+    private int[] selection;
+    private int size;
+    private int selected;
+
+    /**
+     * Constructor.
+     * @param fields - the fields to decode
+     * @param capacity - the initial number of reports held, grown as required
+     */
+    public RawReportBatch(final RawField[] fields, final int capacity) {
+        this.fields = fields.clone();
+        Arrays.fill(columnIndexes, -1);
+        for (int i = 0; i < fields.length; i++) {
+            columnIndexes[fields[i].ordinal()] = i;
+        }
+        allocate(Math.max(1, capacity));
+    }
+
+    /**
+     * Decodes reports, replacing the batch's contents and selecting every report.
+     * @param batchReports - the report bytes
+     * @param from - the index of the first report
+     * @param count - the number of reports
+     */
+    public void decode(final byte[][] batchReports, final int from, final int count) {
+        if (count > reports.length) {
+            allocate(count);
+        }
+        size = count;
+        for (int row = 0; row < count; row++) {
+            final byte[] bytes = batchReports[from + row];
+            reports[row] = bytes;
+            for (int c = 0; c < fields.length; c++) {
+                final RawField field = fields[c];
+                final int offset = field.getHeaderOffset(bytes);
+                present[c][row] = offset >= 0;
+                highs[c][row] = offset >= 0 ? field.getHigh(bytes, offset) : 0;
+                lows[c][row] = offset >= 0 ? field.getLow(bytes, offset) : 0;
+            }
+        }
+        selectAll();
+    }
+
+    /**
+     * Selects every report of the batch.
+     */
+    public void selectAll() {
+        for (int row = 0; row < size; row++) {
+            selection[row] = row;
+        }
+        selected = size;
+    }
+
+    /**
+     * Narrows the selection to the reports whose field compares with a value as given.
+     * @param field - the field, which must have been decoded
+     * @param op - the comparison, being one of EQ, NE, LT, LE, GT or GE
+     * @param high - the upper 64 bits of the value
+     * @param low - the lower 64 bits of the value
+     * @return - the number of reports selected
+     */
+    public int select(final RawField field, final int op, final long high, final long low) {
+        selected = select(field, op, high, low, selection, selected);
+        return selected;
+    }
+
+    /**
+     * Narrows a list of rows in place to the reports whose field compares with a value as given.
+     * @param field - the field, which must have been decoded
+     * @param op - the comparison, being one of EQ, NE, LT, LE, GT or GE
+     * @param high - the upper 64 bits of the value
+     * @param low - the lower 64 bits of the value
+     * @param rows - the rows in ascending order
+     * @param count - the number of rows
+     * @return - the number of rows kept at the start of the list
+     */
+    public int select(final RawField field, final int op, final long high, final long low, final int[] rows,
+                      final int count) {
+        final int c = getColumn(field);
+        final long[] columnHighs = highs[c];
+        final long[] columnLows = lows[c];
+        final boolean[] columnPresent = present[c];
+        // The comparison as the outcomes it accepts, so that rows are matched without branching on it
+        final boolean acceptLess = op == NE || op == LT || op == LE;
+        final boolean acceptEqual = op == EQ || op == LE || op == GE;
+        final boolean acceptGreater = op == NE || op == GT || op == GE;
+        // Flipping the sign bit turns unsigned comparisons into signed ones
+        final long flippedHigh = high ^ Long.MIN_VALUE;
+        final long flippedLow = low ^ Long.MIN_VALUE;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            final int row = rows[i];
+            final long rowHigh = columnHighs[row] ^ Long.MIN_VALUE;
+            final long rowLow = columnLows[row] ^ Long.MIN_VALUE;
+            final boolean less = rowHigh < flippedHigh | (rowHigh == flippedHigh & rowLow < flippedLow);
+            final boolean equal = rowHigh == flippedHigh & rowLow == flippedLow;
+            final boolean match = (less & acceptLess) | (equal & acceptEqual) | (!less & !equal & acceptGreater);
+            rows[kept] = row;
+            kept += match & columnPresent[row] ? 1 : 0;
+        }
+        return kept;
+    }
+
+    /**
+     * Returns the column of a decoded field.
+     * @param field - the field
+     * @return - the column
+     * @throws IllegalArgumentException - when the field is not decoded
+     */
+    public int getColumn(final RawField field) {
+        final int c = columnIndexes[field.ordinal()];
+        if (c < 0) {
+            throw new IllegalArgumentException("Field " + field.getPath() + " is not decoded");
+        }
+        return c;
+    }
+
+    public boolean isPresent(final RawField field, final int row) {
+        return present[getColumn(field)][row];
+    }
+
+    public long getHigh(final RawField field, final int row) {
+        return highs[getColumn(field)][row];
+    }
+
+    public long getLow(final RawField field, final int row) {
+        return lows[getColumn(field)][row];
+    }
+
+    public byte[] getReport(final int row) {
+        return reports[row];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the selected rows in ascending order, being the first getSelected() entries.
+     * @return - the rows
+     */
+    public int[] getSelection() {
+        return selection;
+    }
+
+    public int getSelected() {
+        return selected;
+    }
+
+    /**
+     * Replaces the selection.
+     * @param rows - the rows in ascending order
+     * @param count - the number of rows
+     */
+    public void setSelection(final int[] rows, final int count) {
+        System.arraycopy(rows, 0, selection, 0, count);
+        selected = count;
+    }
+
+    private void allocate(final int capacity) {
+        reports = new byte[capacity][];
+        highs = new long[fields.length][capacity];
+        lows = new long[fields.length][capacity];
+        present = new boolean[fields.length][capacity];
+        selection = new int[capacity];
+        size = 0;
+        selected = 0;
+    }
+}
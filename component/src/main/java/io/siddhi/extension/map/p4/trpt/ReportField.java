@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt;
+
+/**
+ * Numeric Telemetry Report fields addressable by their mapping path so that extensions can key on them without
+ * creating strings. Values are returned as 128 bit keys held as two longs, where IPv4 addresses are returned in their
+ * IPv4-mapped IPv6 form (::ffff:a.b.c.d) so that both IP versions share one key space.
+ */
+public enum ReportField {
+
+    NODE_ID(TelemetryReport.TRPT_HDR_KEY + "." + TelemetryReportHeader.TRPT_NODE_ID_KEY),
+    ORIG_MAC(TelemetryReport.INT_HDR_KEY + "." + IntHeader.INT_HDR_MD_STACK_HDR_KEY + "."
+            + IntMetadataStackHeader.INT_MD_STACK_ORIG_MAC_KEY),
+    SRC_ADDR(TelemetryReport.IP_HDR_KEY + "." + IpHeader.IP_HDR_SRC_ADDR_KEY),
+    DST_ADDR(TelemetryReport.IP_HDR_KEY + "." + IpHeader.IP_HDR_DST_ADDR_KEY),
+    NEXT_PROTO(TelemetryReport.IP_HDR_KEY + "." + IpHeader.IP_HDR_NEXT_PROTO_KEY),
+    SRC_PORT(TelemetryReport.PROTO_HDR_KEY + "." + ProtoHeader.PROTO_HDR_SRC_PORT_KEY),
+    DST_PORT(TelemetryReport.PROTO_HDR_KEY + "." + ProtoHeader.PROTO_HDR_DST_PORT_KEY),
+    DROP_KEY(TelemetryReport.DROP_HDR_KEY + "." + DropHeader.DROP_HDR_DROP_KEY_KEY);
+
+    private static final long IPV4_MAPPED_PREFIX = 0xffff00000000L;
+
+    private final String path;
+
+    ReportField(final String path) {
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the last element of the mapping path, such as 'dstPort' for 'protoHdr.dstPort'.
+     * @return - the name
+     */
+    public String getName() {
+        return path.substring(path.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Returns the class of the values returned by decode().
+     * @return - String for addresses, MACs and drop keys, Long for node IDs and Integer for the others
+     */
+    public Class<?> getValueClass() {
+        switch (this) {
+            case NODE_ID:
+                return Long.class;
+            case NEXT_PROTO:
+            case SRC_PORT:
+            case DST_PORT:
+                return Integer.class;
+            default:
+                return String.class;
+        }
+    }
+
+    /**
+     * Converts a key held as two longs back into the field's value as it appears within the report JSON.
+     * @param high - the upper 64 bits as returned by getHigh()
+     * @param low - the lower 64 bits as returned by getLow()
+     * @return - the value of the class returned by getValueClass()
+     */
+    public Object decode(final long high, final long low) {
+        switch (this) {
+            case NODE_ID:
+                return low;
+            case NEXT_PROTO:
+            case SRC_PORT:
+            case DST_PORT:
+                return (int) low;
+            case SRC_ADDR:
+            case DST_ADDR:
+                return ByteUtils.getInetAddress(high, low).getHostAddress();
+            case ORIG_MAC:
+                final StringBuilder mac = new StringBuilder(17);
+                for (int shift = 40; shift >= 0; shift -= 8) {
+                    mac.append(String.format("%02x", (low >>> shift) & 0xff));
+                    if (shift > 0) {
+                        mac.append(':');
+                    }
+                }
+                return mac.toString();
+            default:
+                return String.format("%016x%016x", high, low);
+        }
+    }
+
+    /**
+     * Returns true when the report carries the header containing this field.
+     * @param trpt - the report
+     * @return - false for packet header fields of drop reports
+     */
+    public boolean isPresent(final TelemetryReport trpt) {
+        switch (this) {
+            case NODE_ID:
+                return true;
+            case ORIG_MAC:
+                return trpt.intHdr != null;
+            case SRC_PORT:
+            case DST_PORT:
+                return trpt.protoHdr != null;
+            case DROP_KEY:
+                return trpt.dropHdr != null;
+            default:
+                return trpt.ipHdr != null;
+        }
+    }
+
+    /**
+     * Returns the upper 64 bits of the field value.
+     * @param trpt - the report
+     * @return - the bits (zero for every field other than IPv6 addresses and drop keys)
+     */
+    public long getHigh(final TelemetryReport trpt) {
+        switch (this) {
+            case SRC_ADDR:
+                return trpt.ipHdr.getSrcAddrHigh();
+            case DST_ADDR:
+                return trpt.ipHdr.getDstAddrHigh();
+            case DROP_KEY:
+                return trpt.dropHdr.getDropKeyHigh();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Returns the lower 64 bits of the field value.
+     * @param trpt - the report
+     * @return - the bits
+     */
+    public long getLow(final TelemetryReport trpt) {
+        switch (this) {
+            case NODE_ID:
+                return trpt.trptHdr.getNodeId();
+            case ORIG_MAC:
+                return trpt.intHdr.mdStackHdr.getOrigMacLong();
+            case SRC_ADDR:
+                return mapAddrLow(trpt.ipHdr, trpt.ipHdr.getSrcAddrLow());
+            case DST_ADDR:
+                return mapAddrLow(trpt.ipHdr, trpt.ipHdr.getDstAddrLow());
+            case NEXT_PROTO:
+                return trpt.ipHdr.getNextProto() & 0xff;
+            case SRC_PORT:
+                return trpt.protoHdr.getSrcPort();
+            case DST_PORT:
+                return trpt.protoHdr.getDstPort();
+            case DROP_KEY:
+                return trpt.dropHdr.getDropKeyLow();
+            default:
+                throw new IllegalStateException("Unhandled field " + this);
+        }
+    }
+
+    private static long mapAddrLow(final IpHeader ipHdr, final long low) {
+        if (ipHdr.getVer() == 4) {
+            return IPV4_MAPPED_PREFIX | low;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the field for a mapping path such as 'protoHdr.dstPort'.
+     * @param path - the mapping path
+     * @return - the field
+     * @throws IllegalArgumentException - when the path does not denote a supported numeric field
+     */
+    public static ReportField fromPath(final String path) {
+        for (final ReportField field : values()) {
+            if (field.path.equals(path)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported numeric field - " + path);
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A predicate over the raw bytes of a Telemetry Report compiled from an expression such as
+ * "inType == 2 and (dstPort == 53 or srcPort == 53)".
+ * Comparisons take the form 'field op value' where the field is a RawField mapping path, op is one of
+ * ==, !=, &lt;, &lt;=, &gt; or &gt;= and the value is a decimal or 0x prefixed hex integer or an IP address, and are
+ * combined with and/&amp;&amp;, or/|| and not/! along with parentheses. Comparisons are unsigned and are false when
+ * the field is absent from the report, so that reports are rejected after reading only the bytes compared.
+ */
+public class ReportFilter {
+
+    // Indexed by the comparisons of RawReportBatch
+    private static final String[] OPERATORS = {"==", "!=", "<", "<=", ">", ">="};
+    private static final int EQ = RawReportBatch.EQ;
+    private static final int NE = RawReportBatch.NE;
+    private static final int LT = RawReportBatch.LT;
+    private static final int LE = RawReportBatch.LE;
+    private static final int GT = RawReportBatch.GT;
+
+    private final Node root;
+    private final String expression;
+    private final RawField[] fields;
+
+    private ReportFilter(final Node root, final String expression, final RawField[] fields) {
+        this.root = root;
+        this.expression = expression;
+        this.fields = fields;
+    }
+
+    /**
+     * Compiles a filter expression.
+     * @param expression - the expression
+     * @return - the filter
+     * @throws IllegalArgumentException - when the expression is invalid
+     */
+    public static ReportFilter compile(final String expression) {
+        final Parser parser = new Parser(tokenize(expression));
+        final Node root = parser.parseOr();
+        if (parser.pos < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.pos) + "' in filter "
+                    + expression);
+        }
+        return new ReportFilter(root, expression, parser.fields.toArray(new RawField[0]));
+    }
+
+    /**
+     * Evaluates the filter against the report bytes.
+     * @param bytes - the report bytes
+     * @return - true when the report matches
+     */
+    public boolean test(final byte[] bytes) {
+        return root.test(bytes);
+    }
+
+    /**
+     * Narrows the selection of a batch to the reports matching the filter, evaluating each comparison over the
+     * batch's columns.
+     * @param batch - the batch, which must have decoded the fields returned by getFields()
+     * @return - the number of reports selected
+     */
+    public int select(final RawReportBatch batch) {
+        final int[] rows = Arrays.copyOf(batch.getSelection(), batch.getSelected());
+        batch.setSelection(rows, root.select(batch, rows, rows.length));
+        return batch.getSelected();
+    }
+
+    /**
+     * Returns the fields compared by the filter.
+     * @return - the fields
+     */
+    public RawField[] getFields() {
+        return fields.clone();
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * Compiled expression tree node.
+     */
+    private interface Node {
+        boolean test(byte[] bytes);
+
+        /**
+         * Narrows rows of a batch in place to those matching.
+         * @param batch - the batch
+         * @param rows - the rows in ascending order
+         * @param count - the number of rows
+         * @return - the number of rows kept at the start of the list
+         */
+        int select(RawReportBatch batch, int[] rows, int count);
+    }
+
+    /**
+     * Conjunction, where the right operand only examines the rows kept by the left.
+     */
+    private static final class And implements Node {
+
+        private final Node left;
+        private final Node right;
+
+        private And(final Node left, final Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(final byte[] bytes) {
+            return left.test(bytes) && right.test(bytes);
+        }
+
+        @Override
+        public int select(final RawReportBatch batch, final int[] rows, final int count) {
+            return right.select(batch, rows, left.select(batch, rows, count));
+        }
+    }
+
+    /**
+     * Disjunction, where the right operand only examines the rows rejected by the left.
+     */
+    private static final class Or implements Node {
+
+        private final Node left;
+        private final Node right;
+
+        private Or(final Node left, final Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(final byte[] bytes) {
+            return left.test(bytes) || right.test(bytes);
+        }
+
+        @Override
+        public int select(final RawReportBatch batch, final int[] rows, final int count) {
+            final int[] leftRows = Arrays.copyOf(rows, count);
+            final int numLeft = left.select(batch, leftRows, count);
+            final int[] rightRows = new int[count - numLeft];
+            final int numRest = difference(rows, count, leftRows, numLeft, rightRows);
+            final int numRight = right.select(batch, rightRows, numRest);
+            // Merges the two ascending lists
+            int l = 0;
+            int r = 0;
+            for (int i = 0; i < numLeft + numRight; i++) {
+                rows[i] = r == numRight || (l < numLeft && leftRows[l] < rightRows[r]) ? leftRows[l++]
+                        : rightRows[r++];
+            }
+            return numLeft + numRight;
+        }
+    }
+
+    /**
+     * Negation.
+     */
+    private static final class Not implements Node {
+
+        private final Node operand;
+
+        private Not(final Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean test(final byte[] bytes) {
+            return !operand.test(bytes);
+        }
+
+        @Override
+        public int select(final RawReportBatch batch, final int[] rows, final int count) {
+            final int[] matched = Arrays.copyOf(rows, count);
+            return difference(rows, count, matched, operand.select(batch, matched, count), rows);
+        }
+    }
+
+    /**
+     * Writes the rows of an ascending list absent from an ascending sublist of it, where the output may be the
+     * list itself.
+     * @return - the number of rows written
+     */
+    private static int difference(final int[] rows, final int count, final int[] sub, final int subCount,
+                                  final int[] out) {
+        int s = 0;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (s < subCount && sub[s] == rows[i]) {
+                s++;
+            } else {
+                out[kept++] = rows[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Comparison of a field against a constant.
+     */
+    private static final class Comparison implements Node {
+
+        private final RawField field;
+        private final int op;
+        private final long high;
+        private final long low;
+
+        private Comparison(final RawField field, final int op, final long high, final long low) {
+            this.field = field;
+            this.op = op;
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean test(final byte[] bytes) {
+            final int offset = field.getHeaderOffset(bytes);
+            if (offset < 0) {
+                return false;
+            }
+            int cmp = Long.compareUnsigned(field.getHigh(bytes, offset), high);
+            if (cmp == 0) {
+                cmp = Long.compareUnsigned(field.getLow(bytes, offset), low);
+            }
+            switch (op) {
+                case EQ:
+                    return cmp == 0;
+                case NE:
+                    return cmp != 0;
+                case LT:
+                    return cmp < 0;
+                case LE:
+                    return cmp <= 0;
+                case GT:
+                    return cmp > 0;
+                default:
+                    return cmp >= 0;
+            }
+        }
+
+        @Override
+        public int select(final RawReportBatch batch, final int[] rows, final int count) {
+            return batch.select(field, op, high, low, rows, count);
+        }
+    }
+
+    private static List<String> tokenize(final String expression) {
+        final List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < expression.length()) {
+            final char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if ("=!<>&|".indexOf(c) >= 0) {
+                int end = i + 1;
+                if (end < expression.length() && "=&|".indexOf(expression.charAt(end)) >= 0) {
+                    end++;
+                }
+                tokens.add(expression.substring(i, end));
+                i = end;
+            } else if (Character.isLetterOrDigit(c) || c == '.' || c == ':' || c == '_') {
+                int end = i + 1;
+                while (end < expression.length() && (Character.isLetterOrDigit(expression.charAt(end))
+                        || ".:_".indexOf(expression.charAt(end)) >= 0)) {
+                    end++;
+                }
+                tokens.add(expression.substring(i, end));
+                i = end;
+            } else {
+                throw new IllegalArgumentException("Unexpected character '" + c + "' in filter " + expression);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Recursive descent parser where 'not' binds tighter than 'and' which binds tighter than 'or'.
+     */
+    private static final class Parser {
+
+        private final List<String> tokens;
+        private final Set<RawField> fields = EnumSet.noneOf(RawField.class);
+        private int pos;
+
+        private Parser(final List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        private Node parseOr() {
+            Node node = parseAnd();
+            while (accept("or", "||")) {
+                final Node left = node;
+                final Node right = parseAnd();
+                node = new Or(left, right);
+            }
+            return node;
+        }
+
+        private Node parseAnd() {
+            Node node = parseNot();
+            while (accept("and", "&&")) {
+                final Node left = node;
+                final Node right = parseNot();
+                node = new And(left, right);
+            }
+            return node;
+        }
+
+        private Node parseNot() {
+            if (accept("not", "!")) {
+                final Node operand = parseNot();
+                return new Not(operand);
+            }
+            if (accept("(", "(")) {
+                final Node node = parseOr();
+                expect(")");
+                return node;
+            }
+            return parseComparison();
+        }
+
+        private Node parseComparison() {
+            final RawField field = RawField.fromPath(next());
+            fields.add(field);
+            final String opToken = next();
+            int op = -1;
+            for (int i = 0; i < OPERATORS.length; i++) {
+                if (OPERATORS[i].equals(opToken)) {
+                    op = i;
+                }
+            }
+            if (op < 0) {
+                throw new IllegalArgumentException("Invalid comparison operator '" + opToken + "'");
+            }
+            final String value = next();
+            if (value.indexOf(':') >= 0 || value.chars().filter(ch -> ch == '.').count() == 3) {
+                final long[] addr = parseAddress(value);
+                return new Comparison(field, op, addr[0], addr[1]);
+            }
+            try {
+                final long low = value.startsWith("0x") || value.startsWith("0X")
+                        ? Long.parseUnsignedLong(value.substring(2), 16) : Long.parseUnsignedLong(value);
+                return new Comparison(field, op, 0, low);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid filter value '" + value + "'");
+            }
+        }
+
+        private boolean accept(final String token, final String symbol) {
+            if (pos < tokens.size() && (tokens.get(pos).equalsIgnoreCase(token) || tokens.get(pos).equals(symbol))) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(final String token) {
+            if (!accept(token, token)) {
+                throw new IllegalArgumentException("Expected '" + token + "' in filter");
+            }
+        }
+
+        private String next() {
+            if (pos >= tokens.size()) {
+                throw new IllegalArgumentException("Incomplete filter expression");
+            }
+            return tokens.get(pos++);
+        }
+    }
+
+    /**
+     * Parses an IP address literal into its IPv4-mapped IPv6 form held as two longs.
+     * @param value - the literal
+     * @return - the upper and lower 64 bits
+     */
+    private static long[] parseAddress(final String value) {
+        // Only literals are accepted so that resolving never performs a name lookup
+        if (!value.matches("[0-9a-fA-F:.]+")) {
+            throw new IllegalArgumentException("Invalid filter address '" + value + "'");
+        }
+        final byte[] addr;
+        try {
+            addr = InetAddress.getByName(value).getAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid filter address '" + value + "'");
+        }
+        if (addr.length == 4) {
+            return new long[]{0, 0xffff00000000L | ByteUtils.getLongFromBytes(addr, 0, 4)};
+        }
+        return new long[]{ByteUtils.getLongFromBytes(addr, 0, 8), ByteUtils.getLongFromBytes(addr, 8, 8)};
+    }
+}
@@ -74,16 +74,8 @@ public class TelemetryReportHeader {
     }
 
     public long getSequenceId() {
-        // Create 16 bit binary string
-        final String fullFirstByteStr = String.format("%08d", Integer.parseInt(Integer.toBinaryString(bytes[1])));
-        final String firstByteStr = fullFirstByteStr.substring(2);
-        final String secondByteStr = String.format("%08d", Integer.parseInt(Integer.toBinaryString(bytes[2])));
-
-        int third = (bytes[3] & 0xf0) >>> 6;
-        final String thirdByteStr = String.format("%02d", Integer.parseInt(Integer.toBinaryString(third)));
-        final String outBytesStr = firstByteStr + secondByteStr + thirdByteStr;
-
-        return Long.parseLong(outBytesStr, 2);
+        // 16 bits being the lower 6 bits of byte 1, byte 2 and the upper 2 bits of byte 3
+        return ((bytes[1] & 0x3fL) << 10) | ((bytes[2] & 0xffL) << 2) | ((bytes[3] & 0xffL) >>> 6);
     }
 
     public long getNodeId() {
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.aggregator;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.ReportField;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.EntropySketch;
+import io.siddhi.extension.map.p4.trpt.util.Parameters;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregator estimating the Shannon entropy of a numeric Telemetry Report field.
+ */
+@Extension(
+        name = "entropy",
+        namespace = "p4trpt",
+        description = "Estimates the Shannon entropy (in nats) of a numeric Telemetry Report field such as the "
+                + "destination port or source address using a linear stable projection sketch whose memory is "
+                + "bounded by the number of projections regardless of the number of distinct values. Values are "
+                + "read from the IpHeader and ProtoHeader without creating strings. Combine with a batch window "
+                + "and 'group by' for per key entropy over tumbling intervals; as the sketch is linear, expired "
+                + "events of sliding windows are also supported. Reports without the field are ignored.",
+        parameters = {
+                @Parameter(name = "telemetry.report",
+                        description = "The TelemetryReport object produced by the 'telemRpt' mapping of the "
+                                + "p4-trpt source mapper",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "field",
+                        description = "The mapping path of the field, one of 'ipHdr.srcAddr', 'ipHdr.dstAddr', "
+                                + "'ipHdr.nextProto', 'protoHdr.srcPort', 'protoHdr.dstPort', "
+                                + "'telemRptHdr.nodeId' or 'intHdr.mdStackHdr.origMac'",
+                        type = {DataType.STRING}),
+                @Parameter(name = "projections",
+                        description = "The number of projections, trading memory and CPU for accuracy",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "64")
+        },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"telemetry.report", "field"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "field", "projections"})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The estimated entropy in nats",
+                type = {DataType.DOUBLE}),
+        examples = {
+                @Example(
+                        syntax = "from trptStream#window.timeBatch(10 sec)\n"
+                                + "select dstAddr, p4trpt:entropy(telemRpt, 'protoHdr.dstPort') as portEntropy,\n"
+                                + "    p4trpt:entropy(telemRpt, 'ipHdr.srcAddr') as srcEntropy\n"
+                                + "group by dstAddr\n"
+                                + "insert into entropyStream;",
+                        description = "Every 10 seconds, estimates the destination port and source address "
+                                + "entropy of the traffic towards each destination"
+                )
+        }
+)
+public class EntropyAggregatorExecutor
+        extends AttributeAggregatorExecutor<EntropyAggregatorExecutor.EntropyState> {
+
+    private static final String EXTENSION = "p4trpt:entropy";
+
+    private ReportField field;
+    private int numProjections;
+
+    @Override
+    protected StateFactory<EntropyState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                              ProcessingMode processingMode, boolean outputExpectsExpiredEvents,
+                                              ConfigReader configReader, SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 2 || attributeExpressionExecutors.length > 3) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects 2 or 3 parameters but found "
+                    + attributeExpressionExecutors.length);
+        }
+        field = Parameters.getReportField(EXTENSION, attributeExpressionExecutors[1], "field");
+        numProjections = 64;
+        if (attributeExpressionExecutors.length == 3) {
+            numProjections = (int) Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[2],
+                    "projections");
+            if (numProjections < 1) {
+                throw new SiddhiAppValidationException(EXTENSION + " projections must be positive");
+            }
+        }
+        return EntropyState::new;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.DOUBLE;
+    }
+
+    @Override
+    public Object processAdd(Object data, EntropyState state) {
+        return update(data, 1, state);
+    }
+
+    @Override
+    public Object processAdd(Object[] data, EntropyState state) {
+        return update(data[0], 1, state);
+    }
+
+    @Override
+    public Object processRemove(Object data, EntropyState state) {
+        return update(data, -1, state);
+    }
+
+    @Override
+    public Object processRemove(Object[] data, EntropyState state) {
+        return update(data[0], -1, state);
+    }
+
+    @Override
+    public Object processReset(EntropyState state) {
+        state.sketch.clear();
+        return 0.0;
+    }
+
+    private Object update(final Object trptObj, final long weight, final EntropyState state) {
+        if (trptObj instanceof TelemetryReport) {
+            final TelemetryReport trpt = (TelemetryReport) trptObj;
+            if (field.isPresent(trpt)) {
+                state.sketch.update(field.getHigh(trpt), field.getLow(trpt), weight);
+            }
+        }
+        return state.sketch.estimate();
+    }
+
+    /**
+     * The per group state holding the sketch.
+     */
+    class EntropyState extends State {
+
+        private EntropySketch sketch = new EntropySketch(numProjections);
+
+        @Override
+        public boolean canDestroy() {
+            return sketch.getTotal() == 0;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            final Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("sketch", sketch);
+            return snapshot;
+        }
+
+        @Override
+        public void restore(Map<String, Object> snapshot) {
+            sketch = (EntropySketch) snapshot.get("sketch");
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.function;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.ReportField;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.RuleClassifier;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Function classifying Telemetry Reports against an ACL style rule file.
+ */
+@Extension(
+        name = "classify",
+        namespace = "p4trpt",
+        description = "Returns the label of the first rule matching a packet report's source and destination "
+                + "addresses, ports and protocol, or null when no rule matches or the report is a drop report. "
+                + "Rules are loaded from a file with one rule per line given as 'srcPrefix dstPrefix srcPorts "
+                + "dstPorts protocol label', where prefixes are IPv4 or IPv6 CIDRs, ports are single ports or "
+                + "'low-high' ranges, protocols are numbers, 'tcp' or 'udp', any field may be '*' and '#' starts a "
+                + "comment. The rules are compiled into per field interval tables of rule bit vectors so that the "
+                + "cost per report grows with the number of rules divided by 64 rather than with each rule. The "
+                + "file is checked for changes each reload interval and replaced rules take effect atomically, "
+                + "where a file failing to compile is logged and the previous rules are kept.",
+        parameters = {
+                @Parameter(name = "telemetry.report",
+                        description = "The TelemetryReport object produced by the 'telemRpt' mapping of the "
+                                + "p4-trpt source mapper",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "rules.file",
+                        description = "The path of the rule file",
+                        type = {DataType.STRING}),
+                @Parameter(name = "reload.interval",
+                        description = "The interval in milliseconds between checks for changes to the rule file, "
+                                + "where 0 disables reloading",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "10000")
+        },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"telemetry.report", "rules.file"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "rules.file", "reload.interval"})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The label of the first matching rule",
+                type = {DataType.STRING}),
+        examples = {
+                @Example(
+                        syntax = "from trptStream\n"
+                                + "select p4trpt:classify(telemRpt, '/etc/trpt/tenants.rules') as tenant, telemRpt\n"
+                                + "insert into tenantStream;",
+                        description = "Labels each report with its tenant as per rules such as "
+                                + "'10.1.0.0/16 * * 1000-2000 tcp tenant-a'"
+                )
+        }
+)
+public class ClassifyFunctionExecutor extends FunctionExecutor<State> {
+
+    private static final String EXTENSION = "p4trpt:classify";
+
+    private ReloadableFile<RuleClassifier> rules;
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 2 || attributeExpressionExecutors.length > 3) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects 2 or 3 parameters but found "
+                    + attributeExpressionExecutors.length);
+        }
+        rules = ReloadableFile.load(EXTENSION, attributeExpressionExecutors, 1, "rules.file", siddhiQueryContext,
+                path -> new RuleClassifier(Files.readAllLines(path, StandardCharsets.UTF_8)));
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.STRING;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (!(data[0] instanceof TelemetryReport)) {
+            return null;
+        }
+        final TelemetryReport trpt = (TelemetryReport) data[0];
+        if (!ReportField.SRC_ADDR.isPresent(trpt)) {
+            return null;
+        }
+        final boolean hasPorts = ReportField.DST_PORT.isPresent(trpt);
+        final RuleClassifier current = rules.get();
+        final int rule = current.classify(ReportField.SRC_ADDR.getHigh(trpt), ReportField.SRC_ADDR.getLow(trpt),
+                ReportField.DST_ADDR.getHigh(trpt), ReportField.DST_ADDR.getLow(trpt),
+                hasPorts ? (int) ReportField.SRC_PORT.getLow(trpt) : 0,
+                hasPorts ? (int) ReportField.DST_PORT.getLow(trpt) : 0,
+                (int) ReportField.NEXT_PROTO.getLow(trpt));
+        return rule == RuleClassifier.NO_MATCH ? null : current.getLabel(rule);
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        throw new SiddhiAppValidationException(EXTENSION + " expects at least 2 parameters");
+    }
+}
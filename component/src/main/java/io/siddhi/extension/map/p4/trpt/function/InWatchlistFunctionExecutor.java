@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.function;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.ReportField;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.MappedWatchlist;
+import io.siddhi.extension.map.p4.trpt.util.Parameters;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+/**
+ * Function testing Telemetry Report addresses for membership of a watchlist file.
+ */
+@Extension(
+        name = "inWatchlist",
+        namespace = "p4trpt",
+        description = "Returns true when a report's source or destination address is listed within a watchlist "
+                + "file of one IPv4 or IPv6 address per line, where '#' starts a comment, and false otherwise "
+                + "including for drop reports. The watchlist is compiled into an index file beside it, named with "
+                + "an '.idx' suffix, holding a blocked Bloom filter and the sorted addresses, which is memory "
+                + "mapped so that millions of addresses are held off-heap and are paged in on demand. The index is "
+                + "only recompiled when the watchlist changes, so restarts map the existing index instantly. "
+                + "Addresses are checked as the numeric address bytes of the IpHeader, with the Bloom filter "
+                + "answering for most unlisted addresses and a binary search confirming the rest. The watchlist "
+                + "is checked for changes each reload interval, where a new index replaces the current one "
+                + "atomically and a watchlist failing to load is logged and the previous index kept.",
+        parameters = {
+                @Parameter(name = "telemetry.report",
+                        description = "The TelemetryReport object produced by the 'telemRpt' mapping of the "
+                                + "p4-trpt source mapper",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "field",
+                        description = "The mapping path of the address, either 'ipHdr.srcAddr' or 'ipHdr.dstAddr'",
+                        type = {DataType.STRING}),
+                @Parameter(name = "watchlist.file",
+                        description = "The path of the watchlist file, whose directory must be writable for the "
+                                + "index",
+                        type = {DataType.STRING}),
+                @Parameter(name = "reload.interval",
+                        description = "The interval in milliseconds between checks for changes to the watchlist "
+                                + "file, where 0 disables reloading",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "10000")
+        },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"telemetry.report", "field", "watchlist.file"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "field", "watchlist.file",
+                        "reload.interval"})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "True when the address is listed",
+                type = {DataType.BOOL}),
+        examples = {
+                @Example(
+                        syntax = "from trptStream[p4trpt:inWatchlist(telemRpt, 'ipHdr.srcAddr', "
+                                + "'/etc/trpt/bad-ips.txt')]\n"
+                                + "select telemRpt\n"
+                                + "insert into watchlistStream;",
+                        description = "Passes on the reports sent by watchlisted sources"
+                )
+        }
+)
+public class InWatchlistFunctionExecutor extends FunctionExecutor<State> {
+
+    private static final String EXTENSION = "p4trpt:inWatchlist";
+
+    private ReportField field;
+    private ReloadableFile<MappedWatchlist> watchlist;
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 3 || attributeExpressionExecutors.length > 4) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects 3 or 4 parameters but found "
+                    + attributeExpressionExecutors.length);
+        }
+        field = Parameters.getReportField(EXTENSION, attributeExpressionExecutors[1], "field");
+        if (field != ReportField.SRC_ADDR && field != ReportField.DST_ADDR) {
+            throw new SiddhiAppValidationException(EXTENSION + " field must be 'ipHdr.srcAddr' or 'ipHdr.dstAddr'");
+        }
+        watchlist = ReloadableFile.load(EXTENSION, attributeExpressionExecutors, 2, "watchlist.file",
+                siddhiQueryContext, MappedWatchlist::open);
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.BOOL;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (!(data[0] instanceof TelemetryReport)) {
+            return false;
+        }
+        final TelemetryReport trpt = (TelemetryReport) data[0];
+        return field.isPresent(trpt) && watchlist.get().contains(field.getHigh(trpt), field.getLow(trpt));
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        throw new SiddhiAppValidationException(EXTENSION + " expects at least 3 parameters");
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.function;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.ReportField;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.Parameters;
+import io.siddhi.extension.map.p4.trpt.util.PrefixTable;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Function labelling Telemetry Report addresses by longest prefix match against a prefix file.
+ */
+@Extension(
+        name = "lpm",
+        namespace = "p4trpt",
+        description = "Returns the label of the longest prefix containing a report's source or destination address, "
+                + "such as its subscriber group, CMTS or region, or null when no prefix matches or the report is a "
+                + "drop report. Prefixes are loaded from a file with one prefix per line given as 'prefix label', "
+                + "where prefixes are IPv4 or IPv6 CIDRs and '#' starts a comment. The prefixes are built into "
+                + "leaf pushed multibit tries of 16 then 8 bit strides (DIR-16-8-8 for IPv4) looked up with the "
+                + "numeric address bytes of the IpHeader, taking at most 3 array reads for IPv4 and 15 for IPv6. "
+                + "The file is checked for changes each reload interval, where a new table is built alongside the "
+                + "current one and replaces it atomically, and a file failing to load is logged and the previous "
+                + "table kept.",
+        parameters = {
+                @Parameter(name = "telemetry.report",
+                        description = "The TelemetryReport object produced by the 'telemRpt' mapping of the "
+                                + "p4-trpt source mapper",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "field",
+                        description = "The mapping path of the address, either 'ipHdr.srcAddr' or 'ipHdr.dstAddr'",
+                        type = {DataType.STRING}),
+                @Parameter(name = "prefix.file",
+                        description = "The path of the prefix file",
+                        type = {DataType.STRING}),
+                @Parameter(name = "reload.interval",
+                        description = "The interval in milliseconds between checks for changes to the prefix "
+                                + "file, where 0 disables reloading",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "10000")
+        },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"telemetry.report", "field", "prefix.file"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "field", "prefix.file", "reload.interval"})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The label of the longest matching prefix",
+                type = {DataType.STRING}),
+        examples = {
+                @Example(
+                        syntax = "from trptStream\n"
+                                + "select p4trpt:lpm(telemRpt, 'ipHdr.srcAddr', '/etc/trpt/subscribers.prefixes') "
+                                + "as srcGroup,\n"
+                                + "    p4trpt:lpm(telemRpt, 'ipHdr.dstAddr', '/etc/trpt/subscribers.prefixes') "
+                                + "as dstGroup, telemRpt\n"
+                                + "insert into groupedStream;",
+                        description = "Tags each report with the subscriber groups of its addresses as per "
+                                + "prefixes such as '10.1.0.0/16 cmts-east' and '2001:db8:1::/48 cmts-west'"
+                )
+        }
+)
+public class LpmFunctionExecutor extends FunctionExecutor<State> {
+
+    private static final String EXTENSION = "p4trpt:lpm";
+
+    private ReportField field;
+    private ReloadableFile<PrefixTable> prefixes;
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 3 || attributeExpressionExecutors.length > 4) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects 3 or 4 parameters but found "
+                    + attributeExpressionExecutors.length);
+        }
+        field = Parameters.getReportField(EXTENSION, attributeExpressionExecutors[1], "field");
+        if (field != ReportField.SRC_ADDR && field != ReportField.DST_ADDR) {
+            throw new SiddhiAppValidationException(EXTENSION + " field must be 'ipHdr.srcAddr' or 'ipHdr.dstAddr'");
+        }
+        prefixes = ReloadableFile.load(EXTENSION, attributeExpressionExecutors, 2, "prefix.file",
+                siddhiQueryContext, path -> new PrefixTable(Files.readAllLines(path, StandardCharsets.UTF_8)));
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.STRING;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (!(data[0] instanceof TelemetryReport)) {
+            return null;
+        }
+        final TelemetryReport trpt = (TelemetryReport) data[0];
+        if (!field.isPresent(trpt)) {
+            return null;
+        }
+        return prefixes.get().lookupLabel(field.getHigh(trpt), field.getLow(trpt));
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        throw new SiddhiAppValidationException(EXTENSION + " expects at least 3 parameters");
+    }
+}
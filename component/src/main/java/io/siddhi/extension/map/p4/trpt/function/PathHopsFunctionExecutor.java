@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.function;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.util.PathInterner;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+/**
+ * Function resolving path IDs interned by the p4-trpt source mapper back to their hops.
+ */
+@Extension(
+        name = "pathHops",
+        namespace = "p4trpt",
+        description = "Returns the node IDs of the hops of a path ID produced by the 'pathId' mapping of the p4-trpt "
+                + "source mapper as a JSON array in hop order, such as '[123,234]', or null when the path ID is "
+                + "unknown. Path IDs are local to the process, and a path not interned recently may be evicted to "
+                + "make room for new paths, after which its ID resolves to null.",
+        parameters = {
+                @Parameter(name = "path.id",
+                        description = "The path ID",
+                        type = {DataType.INT},
+                        dynamic = true)
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The node IDs of the path",
+                type = {DataType.STRING}),
+        examples = {
+                @Example(
+                        syntax = "from pathStream\n"
+                                + "select pathId, p4trpt:pathHops(pathId) as hops\n"
+                                + "insert into pathHopsStream;",
+                        description = "Adds the node IDs of each path to events carrying path IDs"
+                )
+        }
+)
+public class PathHopsFunctionExecutor extends FunctionExecutor<State> {
+
+    private static final String EXTENSION = "p4trpt:pathHops";
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length != 1) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects 1 parameter but found "
+                    + attributeExpressionExecutors.length);
+        }
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.STRING;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        throw new SiddhiAppValidationException(EXTENSION + " expects 1 parameter");
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        if (!(data instanceof Integer)) {
+            return null;
+        }
+        return PathInterner.getShared().getHopsJson((Integer) data);
+    }
+}
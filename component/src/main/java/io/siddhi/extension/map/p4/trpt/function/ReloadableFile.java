@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.function;
+
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.extension.map.p4.trpt.util.Parameters;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds a structure built from a file, rebuilding it whenever the file's modification time changes.
+ * Rebuilds happen on the Siddhi app's scheduler and are published by replacing a single reference, so executing
+ * threads see either the previous or the new structure in full. A file failing to load is logged and the previous
+ * structure kept.
+ * @param <T> - the structure type
+ */
+class ReloadableFile<T> {
+
+    private static final Logger log = Logger.getLogger(ReloadableFile.class);
+    private static final long DEFAULT_RELOAD_INTERVAL = 10000;
+
+    /**
+     * Builds the structure from the file.
+     * @param <T> - the structure type
+     */
+    interface Loader<T> {
+        T load(Path path) throws IOException;
+    }
+
+    private final Path path;
+    private final Loader<T> loader;
+    private FileTime loadedModifiedTime;
+    private volatile T value;
+
+    private ReloadableFile(final Path path, final Loader<T> loader) {
+        this.path = path;
+        this.loader = loader;
+    }
+
+    /**
+     * Loads the file named by a constant parameter and schedules reloading every interval given by the optional
+     * parameter following it.
+     * @param extension - the extension name used within error messages
+     * @param executors - the parameter executors
+     * @param fileIndex - the index of the file parameter
+     * @param fileName - the file parameter name used within error messages
+     * @param siddhiQueryContext - the query context
+     * @param loader - builds the structure
+     * @param <T> - the structure type
+     * @return - the loaded file
+     */
+    static <T> ReloadableFile<T> load(final String extension, final ExpressionExecutor[] executors,
+                                      final int fileIndex, final String fileName,
+                                      final SiddhiQueryContext siddhiQueryContext, final Loader<T> loader) {
+        final ReloadableFile<T> file = new ReloadableFile<>(
+                Paths.get(Parameters.getConstantString(extension, executors[fileIndex], fileName)), loader);
+        long reloadInterval = DEFAULT_RELOAD_INTERVAL;
+        if (executors.length > fileIndex + 1) {
+            reloadInterval = Parameters.getConstantLong(extension, executors[fileIndex + 1], "reload.interval");
+            if (reloadInterval < 0) {
+                throw new SiddhiAppValidationException(extension + " reload.interval must not be negative");
+            }
+        }
+        try {
+            file.reload();
+        } catch (IOException | RuntimeException e) {
+            throw new SiddhiAppValidationException(extension + " failed to load " + file.path + " - "
+                    + e.getMessage());
+        }
+        if (reloadInterval > 0) {
+            siddhiQueryContext.getSiddhiAppContext().getScheduledExecutorService().scheduleWithFixedDelay(
+                    file::reloadIfModified, reloadInterval, reloadInterval, TimeUnit.MILLISECONDS);
+        }
+        return file;
+    }
+
+    T get() {
+        return value;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    private void reload() throws IOException {
+        final FileTime modifiedTime = Files.getLastModifiedTime(path);
+        value = loader.load(path);
+        loadedModifiedTime = modifiedTime;
+        log.info("Loaded " + path);
+    }
+
+    private void reloadIfModified() {
+        try {
+            if (!Files.getLastModifiedTime(path).equals(loadedModifiedTime)) {
+                reload();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to reload " + path + ", keeping the previous contents", e);
+            try {
+                // Avoids retrying a broken file until it changes again
+                loadedModifiedTime = Files.getLastModifiedTime(path);
+            } catch (IOException ignored) {
+                // Retried at the next interval
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.function;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.ReportField;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.FileSubscriberLoader;
+import io.siddhi.extension.map.p4.trpt.util.Parameters;
+import io.siddhi.extension.map.p4.trpt.util.SubscriberLoader;
+import io.siddhi.extension.map.p4.trpt.util.WTinyLfuCache;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Function enriching Telemetry Reports with the attributes of the subscriber owning the originating MAC address.
+ */
+@Extension(
+        name = "subscriber",
+        namespace = "p4trpt",
+        description = "Returns the attributes of the subscriber owning the originating MAC address of a packet "
+                + "report's INT metadata stack, or null when the MAC address is unknown or the report is a drop "
+                + "report. Attributes are obtained from a pluggable SubscriberLoader, by default one reading a "
+                + "file of 'mac attributes' lines, and held within a size bounded W-TinyLFU cache keyed by the "
+                + "MAC address as a number. The cache admits a new MAC address over an existing one only when it "
+                + "has been seen more often, so scans of one-off addresses cannot evict the active subscribers. "
+                + "Entries older than the refresh interval are reloaded in the background on the Siddhi app's "
+                + "scheduler while the cached attributes continue to be returned, and entries older than the "
+                + "expiry interval are reloaded before being returned, so that lookups of active subscribers "
+                + "rarely reach the loader. Unknown MAC addresses are cached as well.",
+        parameters = {
+                @Parameter(name = "telemetry.report",
+                        description = "The TelemetryReport object produced by the 'telemRpt' mapping of the "
+                                + "p4-trpt source mapper",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "source",
+                        description = "The source passed to the loader's constructor, being the path of the "
+                                + "subscriber file for the default loader",
+                        type = {DataType.STRING}),
+                @Parameter(name = "max.size",
+                        description = "The maximum number of cached MAC addresses",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "100000"),
+                @Parameter(name = "refresh.after",
+                        description = "The age in milliseconds after which entries are reloaded in the background",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "60000"),
+                @Parameter(name = "expire.after",
+                        description = "The age in milliseconds after which entries are reloaded before being "
+                                + "returned, which must be at least the refresh interval",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "600000"),
+                @Parameter(name = "loader.class",
+                        description = "The class name of the SubscriberLoader implementation",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "io.siddhi.extension.map.p4.trpt.util.FileSubscriberLoader")
+        },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"telemetry.report", "source"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "source", "max.size"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "source", "max.size", "refresh.after"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "source", "max.size", "refresh.after",
+                        "expire.after"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "source", "max.size", "refresh.after",
+                        "expire.after", "loader.class"})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The attributes of the subscriber",
+                type = {DataType.STRING}),
+        examples = {
+                @Example(
+                        syntax = "from alertStream\n"
+                                + "select p4trpt:subscriber(telemRpt, '/etc/trpt/subscribers.txt') as subscriber, "
+                                + "telemRpt\n"
+                                + "insert into enrichedAlertStream;",
+                        description = "Adds the subscriber of the CPE originating each alerted report as per "
+                                + "lines such as '00:00:00:00:00:01 account=1234 tier=gold'"
+                )
+        }
+)
+public class SubscriberFunctionExecutor extends FunctionExecutor<State> {
+
+    private static final String EXTENSION = "p4trpt:subscriber";
+
+    private WTinyLfuCache<String> cache;
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 2 || attributeExpressionExecutors.length > 6) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects 2 to 6 parameters but found "
+                    + attributeExpressionExecutors.length);
+        }
+        final String source = Parameters.getConstantString(EXTENSION, attributeExpressionExecutors[1], "source");
+        final long maxSize = attributeExpressionExecutors.length > 2
+                ? Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[2], "max.size") : 100000;
+        final long refreshAfter = attributeExpressionExecutors.length > 3
+                ? Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[3], "refresh.after") : 60000;
+        final long expireAfter = attributeExpressionExecutors.length > 4
+                ? Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[4], "expire.after") : 600000;
+        final String loaderClass = attributeExpressionExecutors.length > 5
+                ? Parameters.getConstantString(EXTENSION, attributeExpressionExecutors[5], "loader.class")
+                : FileSubscriberLoader.class.getName();
+        if (maxSize < 2 || maxSize > Integer.MAX_VALUE / 4) {
+            throw new SiddhiAppValidationException(EXTENSION + " max.size must be between 2 and "
+                    + Integer.MAX_VALUE / 4);
+        }
+        if (refreshAfter <= 0 || expireAfter < refreshAfter) {
+            throw new SiddhiAppValidationException(EXTENSION + " refresh.after must be positive and expire.after "
+                    + "must be at least refresh.after");
+        }
+        final SubscriberLoader loader = createLoader(loaderClass, source);
+        cache = new WTinyLfuCache<>((int) maxSize, refreshAfter, expireAfter, loader::load,
+                siddhiQueryContext.getSiddhiAppContext().getScheduledExecutorService());
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.STRING;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (!(data[0] instanceof TelemetryReport)) {
+            return null;
+        }
+        final TelemetryReport trpt = (TelemetryReport) data[0];
+        if (!ReportField.ORIG_MAC.isPresent(trpt)) {
+            return null;
+        }
+        return cache.get(ReportField.ORIG_MAC.getLow(trpt), System.nanoTime());
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        throw new SiddhiAppValidationException(EXTENSION + " expects at least 2 parameters");
+    }
+
+    private static SubscriberLoader createLoader(final String className, final String source) {
+        try {
+            final Class<?> clazz = Class.forName(className);
+            if (!SubscriberLoader.class.isAssignableFrom(clazz)) {
+                throw new SiddhiAppValidationException(EXTENSION + " loader.class " + className
+                        + " does not implement " + SubscriberLoader.class.getName());
+            }
+            return (SubscriberLoader) clazz.getConstructor(String.class).newInstance(source);
+        } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException
+                | IllegalAccessException e) {
+            throw new SiddhiAppValidationException(EXTENSION + " cannot create loader " + className + " - "
+                    + e.getMessage());
+        } catch (InvocationTargetException e) {
+            throw new SiddhiAppValidationException(EXTENSION + " failed to create loader for " + source + " - "
+                    + e.getCause().getMessage());
+        }
+    }
+}
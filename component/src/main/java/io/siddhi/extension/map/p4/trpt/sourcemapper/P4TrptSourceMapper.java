@@ -19,6 +19,8 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import io.siddhi.annotation.Example;
 import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
 import io.siddhi.core.config.SiddhiAppContext;
 import io.siddhi.core.event.Event;
 import io.siddhi.core.stream.input.source.AttributeMapping;
@@ -26,13 +28,41 @@ import io.siddhi.core.stream.input.source.InputEventHandler;
 import io.siddhi.core.stream.input.source.SourceMapper;
 import io.siddhi.core.util.AttributeConverter;
 import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.extension.holder.ExternalReferencedHolder;
+import io.siddhi.core.util.timestamp.TimestampGenerator;
 import io.siddhi.core.util.transport.OptionHolder;
+import io.siddhi.extension.map.p4.trpt.ByteUtils;
+import io.siddhi.extension.map.p4.trpt.HeaderLayout;
+import io.siddhi.extension.map.p4.trpt.HeaderLayouts;
+import io.siddhi.extension.map.p4.trpt.HopPath;
+import io.siddhi.extension.map.p4.trpt.RawField;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+import io.siddhi.extension.map.p4.trpt.RawReportBatch;
+import io.siddhi.extension.map.p4.trpt.ReportFilter;
 import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.ChangeSuppressor;
+import io.siddhi.extension.map.p4.trpt.util.FlowCache;
+import io.siddhi.extension.map.p4.trpt.util.FlowRecord;
+import io.siddhi.extension.map.p4.trpt.util.Hashing;
+import io.siddhi.extension.map.p4.trpt.util.LoadShedder;
+import io.siddhi.extension.map.p4.trpt.util.LongHashIndex;
+import io.siddhi.extension.map.p4.trpt.util.PathInterner;
+import io.siddhi.extension.map.p4.trpt.util.ReportKeys;
+import io.siddhi.extension.map.p4.trpt.util.ReportRing;
+import io.siddhi.extension.map.p4.trpt.util.RotatingBloomFilter;
+import io.siddhi.query.api.definition.Attribute;
 import io.siddhi.query.api.definition.StreamDefinition;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
 import org.apache.log4j.Logger;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Siddhi P4 Telemetry Report source mapper extension.
@@ -41,21 +71,333 @@ import java.util.List;
 @Extension(
         name = "p4-trpt",
         namespace = "sourceMapper",
-        description = "Maps a P4 Telemetry Report byte array into JSON",
+        description = "Maps a P4 Telemetry Report byte array, or an array of them received together, into JSON. "
+                + "Mappings of fixed header fields such as 'ipHdr.srcAddr' are read from the report bytes through "
+                + "compiled header layouts without building JSON.",
+        parameters = {
+                @Parameter(name = "mode",
+                        description = "Either 'report' to map each Telemetry Report to an event or 'flow' to "
+                                + "aggregate packet reports into NetFlow style flow records and map each exported "
+                                + "record to an event, where the attribute mappings denote the flow record fields "
+                                + "described by the p4trpt:flowCache stream processor",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "report"),
+                @Parameter(name = "flatten",
+                        description = "Either 'none' to map each Telemetry Report to an event or 'hops' to map each "
+                                + "INT hop of a packet report to an event, where the mapping "
+                                + "'intHdr.mdStackHdr.hops[i].<field>' yields a field of the hop being mapped, the "
+                                + "special mapping 'hopIndex' yields its index and other mappings yield the fields "
+                                + "of its report. The events of a report are sent downstream as a single batch and "
+                                + "reports without INT hops such as drop reports are not mapped (only for byte "
+                                + "array input)",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "none"),
+                @Parameter(name = "filter",
+                        description = "Only maps reports matching an expression such as 'inType == 2' or "
+                                + "'dstPort == 53 and srcAddr != 10.0.0.1', combining comparisons of mapping paths "
+                                + "against integers or IP addresses with and, or, not and parentheses. The "
+                                + "expression is compiled into comparisons at fixed offsets of the report bytes, so "
+                                + "other reports are discarded before being parsed. Fields are addressed by their "
+                                + "mapping path or by their name alone when unique and comparisons against fields "
+                                + "absent from a report are false. Batches of reports given as an array of byte "
+                                + "arrays have the compared fields of every report extracted into columns first and "
+                                + "each comparison evaluated over a column in turn (only for byte array input)",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "none"),
+                @Parameter(name = "sample.rate",
+                        description = "The fraction of packet reports to map, where the decision is made from a "
+                                + "hash of the raw report bytes before any parsing so that every report of a sampled "
+                                + "flow is kept at every collector. Drop reports and reports of JSON string input "
+                                + "are never sampled. The special mapping 'sampleRate' yields the rate applied to "
+                                + "each report, or 1.0 when not sampled, for scaling counts back up. In flow mode it "
+                                + "yields the fraction of the flow's packets reported, weighing each report by the "
+                                + "rate it was kept at",
+                        type = {DataType.DOUBLE},
+                        optional = true,
+                        defaultValue = "1.0"),
+                @Parameter(name = "sample.key",
+                        description = "Either 'flow' to sample by the 5-tuple so that flows are kept or dropped as a "
+                                + "whole, or 'report' to sample by sequence number and node ID",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "flow"),
+                @Parameter(name = "dedup",
+                        description = "When 'true', reports are dropped before mapping when a report with the same "
+                                + "drop key and node ID, or the same flow key, node ID and sequence number, was "
+                                + "seen within the dedup horizon, as with mirrored copies. Duplicates are detected "
+                                + "in fixed memory with a rotating pair of Bloom filters, so a small fraction of "
+                                + "unique reports may be dropped as per 'dedup.fpp' (only for byte array input)",
+                        type = {DataType.BOOL},
+                        optional = true,
+                        defaultValue = "false"),
+                @Parameter(name = "dedup.horizon",
+                        description = "The minimum duration in milliseconds for which reports are remembered, where "
+                                + "reports are forgotten after at most twice this duration",
+                        type = {DataType.LONG},
+                        optional = true,
+                        defaultValue = "1000"),
+                @Parameter(name = "dedup.fpp",
+                        description = "The target probability of a unique report being dropped as a duplicate",
+                        type = {DataType.DOUBLE},
+                        optional = true,
+                        defaultValue = "0.001"),
+                @Parameter(name = "dedup.expected.reports",
+                        description = "The number of reports expected within a dedup horizon used to size the "
+                                + "Bloom filters",
+                        type = {DataType.LONG},
+                        optional = true,
+                        defaultValue = "1000000"),
+                @Parameter(name = "flow.active.timeout",
+                        description = "The maximum duration of a flow record in milliseconds when mode is 'flow', "
+                                + "where flows are timed by the Siddhi app's clock rather than report timestamps",
+                        type = {DataType.LONG},
+                        optional = true,
+                        defaultValue = "60000"),
+                @Parameter(name = "flow.idle.timeout",
+                        description = "The duration without reports in milliseconds after which a flow record is "
+                                + "exported when mode is 'flow'",
+                        type = {DataType.LONG},
+                        optional = true,
+                        defaultValue = "15000"),
+                @Parameter(name = "flow.max.flows",
+                        description = "The maximum number of flows held at once when mode is 'flow'",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "65536"),
+                @Parameter(name = "suppress",
+                        description = "When 'changes', packet reports are only mapped when the mapped attributes "
+                                + "of their flow, keyed by 5-tuple and node ID, differ from those of the flow's last "
+                                + "mapped report or when that report is older than 'suppress.refresh', so steady "
+                                + "flows are mapped once per refresh interval. Each flow keeps a 64 bit digest of "
+                                + "its mapped attribute values other than 'telemRpt' and 'jsonString' in fixed "
+                                + "memory, so a small fraction of changes may go unnoticed until the next refresh. "
+                                + "Drop reports and reports without a TCP or UDP header are never suppressed (only "
+                                + "for byte array input and not in flow mode)",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "none"),
+                @Parameter(name = "suppress.refresh",
+                        description = "The duration in milliseconds after which a flow's report is mapped even "
+                                + "when unchanged",
+                        type = {DataType.LONG},
+                        optional = true,
+                        defaultValue = "60000"),
+                @Parameter(name = "suppress.precision",
+                        description = "The number of significant bits of numeric attribute values included in the "
+                                + "digest, so that with a precision of 2 a latency of 5000 matches any from 4096 to "
+                                + "6143 and only larger changes are mapped, where 0 includes values exactly. Path "
+                                + "IDs are always included exactly",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "0"),
+                @Parameter(name = "suppress.max.flows",
+                        description = "The maximum number of flows whose digests are held at once, where flows "
+                                + "beyond it are evicted and their next report mapped",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "65536"),
+                @Parameter(name = "ring",
+                        description = "The name of a ring to which every mapped report's receive time, node ID, "
+                                + "addresses, protocol and ports are appended column-wise, holding the most recent "
+                                + "'ring.size' reports for ad-hoc queries through a 'p4-trpt-ring' table or the "
+                                + "ReportRing Java API. Reports dropped by the filter, sampling, shedding, dedup or "
+                                + "suppress options are not appended (only for byte array input)",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "none"),
+                @Parameter(name = "ring.size",
+                        description = "The number of reports held by the ring, taking 72 bytes each",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "1048576"),
+                @Parameter(name = "shed.latency",
+                        description = "Enables load shedding when the average time in milliseconds taken to hand "
+                                + "events downstream exceeds this value, as when a query or sink falls behind and "
+                                + "blocks the receiving thread. Reports are then shed by class as per 'shed.policy' "
+                                + "until the latency recovers, keeping or shedding whole flows, with the "
+                                + "'sampleRate' mapping reflecting the fraction kept. A value of 0 disables "
+                                + "shedding (only for byte array input)",
+                        type = {DataType.DOUBLE},
+                        optional = true,
+                        defaultValue = "0"),
+                @Parameter(name = "shed.policy",
+                        description = "Comma separated report classes shed in order of increasing priority being "
+                                + "'packet' and 'drop', where each class is fully shed before the next is touched "
+                                + "and unlisted classes are never shed",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "packet")
+        },
         examples = {
                 @Example(
                         syntax = "@map(type='p4-trpt')",
                         description = "Best when used with udp plugin when listening to the Telemetry Report port"
+                ),
+                @Example(
+                        syntax = "@map(type='p4-trpt', @attributes(telemRpt='telemRpt'))",
+                        description = "Maps the parsed TelemetryReport object itself for use by the p4trpt stream "
+                                + "processors and functions (only available for byte array input)"
+                ),
+                @Example(
+                        syntax = "@map(type='p4-trpt', @attributes(nodeId='telemRptHdr.nodeId', "
+                                + "firstHopLatency='intHdr.mdStackHdr.hops[0].hopLatency', "
+                                + "firstHopQueue='intHdr.mdStackHdr.hops[0].queueOccupancy'))",
+                        description = "Maps per hop INT metadata decoded as per the instruction bitmap, where hop 0 "
+                                + "is the first INT hop of the packet's path and the fields are nodeId, "
+                                + "ingressPort, egressPort, hopLatency, queueId, queueOccupancy, ingressTimestamp, "
+                                + "egressTimestamp, l2IngressPort, l2EgressPort, txUtilization, bufferId and "
+                                + "bufferOccupancy. Hop fields are read directly from the parsed report without "
+                                + "building JSON and are null when the report lacks the hop or the field (only "
+                                + "available for byte array input)"
+                ),
+                @Example(
+                        syntax = "@map(type='p4-trpt', flatten='hops', @attributes(srcAddr='ipHdr.srcAddr', "
+                                + "dstAddr='ipHdr.dstAddr', hopIndex='hopIndex', "
+                                + "nodeId='intHdr.mdStackHdr.hops[i].nodeId', "
+                                + "hopLatency='intHdr.mdStackHdr.hops[i].hopLatency'))",
+                        description = "Maps one event per INT hop carrying the hop's node and latency along with "
+                                + "the addresses of its report"
+                ),
+                @Example(
+                        syntax = "@map(type='p4-trpt', @attributes(dstAddr='ipHdr.dstAddr', pathId='pathId'))",
+                        description = "Maps the INT path of each packet report, being its sequence of hop node "
+                                + "IDs, as a compact int path ID shared by every report taking the same path, which "
+                                + "p4trpt:pathHops resolves back to the node IDs. Path IDs are local to the process, "
+                                + "and are null for reports without INT node IDs or once the interner is full of "
+                                + "recently used paths (only available for byte array input)"
+                ),
+                @Example(
+                        syntax = "@map(type='p4-trpt', mode='flow', flow.active.timeout='60000', "
+                                + "flow.idle.timeout='15000', @attributes(srcAddr='srcAddr', dstAddr='dstAddr', "
+                                + "dstPort='dstPort', packets='packets', bytes='bytes'))",
+                        description = "Emits one event per flow rather than per packet report"
+                ),
+                @Example(
+                        syntax = "@map(type='p4-trpt', filter='inType == 2 or protoHdr.dstPort == 53', "
+                                + "@attributes(telemRpt='telemRpt'))",
+                        description = "Maps only drop reports and reports of DNS queries"
+                ),
+                @Example(
+                        syntax = "@map(type='p4-trpt', dedup='true', dedup.horizon='500', "
+                                + "@attributes(telemRpt='telemRpt'))",
+                        description = "Drops copies of reports seen within the last 500 to 1000 milliseconds"
+                ),
+                @Example(
+                        syntax = "@map(type='p4-trpt', sample.rate='0.01', sample.key='flow', "
+                                + "@attributes(telemRpt='telemRpt', sampleRate='sampleRate'))",
+                        description = "Maps the reports of one in every hundred flows along with the sampling rate"
+                ),
+                @Example(
+                        syntax = "@map(type='p4-trpt', suppress='changes', suppress.refresh='30000', "
+                                + "suppress.precision='2', @attributes(srcAddr='ipHdr.srcAddr', "
+                                + "dstAddr='ipHdr.dstAddr', pathId='pathId', "
+                                + "firstHopLatency='intHdr.mdStackHdr.hops[0].hopLatency'))",
+                        description = "Maps a flow's report only when its path changes or its first hop latency "
+                                + "moves to another power of two half band, or every 30 seconds otherwise"
+                ),
+                @Example(
+                        syntax = "@map(type='p4-trpt', shed.latency='5', shed.policy='packet,drop', "
+                                + "@attributes(telemRpt='telemRpt', sampleRate='sampleRate'))",
+                        description = "Sheds packet reports then drop reports while handing events downstream takes "
+                                + "over 5 milliseconds on average"
+                ),
+                @Example(
+                        syntax = "@map(type='p4-trpt', ring='recent', ring.size='20000000', "
+                                + "@attributes(telemRpt='telemRpt'))",
+                        description = "Holds the last 20 million reports for queries through a table defined with "
+                                + "@store(type='p4-trpt-ring', ring='recent')"
                 )
         }
 )
 public class P4TrptSourceMapper extends SourceMapper {
 
     private static final Logger log = Logger.getLogger(P4TrptSourceMapper.class);
+    // The initial capacity of the batches used to filter batches of reports
+    private static final int FILTER_BATCH_SIZE = 256;
+
+    // Special mapping values
+    public static final String JSON_STRING_MAPPING = "jsonString";
+    public static final String TELEMETRY_REPORT_MAPPING = "telemRpt";
+    public static final String SAMPLE_RATE_MAPPING = "sampleRate";
+    public static final String HOP_INDEX_MAPPING = "hopIndex";
+    public static final String PATH_ID_MAPPING = "pathId";
+
+    // Options
+    public static final String MODE_OPTION = "mode";
+    public static final String FILTER_OPTION = "filter";
+    public static final String FLATTEN_OPTION = "flatten";
+    public static final String FLOW_ACTIVE_TIMEOUT_OPTION = "flow.active.timeout";
+    public static final String FLOW_IDLE_TIMEOUT_OPTION = "flow.idle.timeout";
+    public static final String FLOW_MAX_FLOWS_OPTION = "flow.max.flows";
+    public static final String DEDUP_OPTION = "dedup";
+    public static final String DEDUP_HORIZON_OPTION = "dedup.horizon";
+    public static final String DEDUP_FPP_OPTION = "dedup.fpp";
+    public static final String DEDUP_EXPECTED_REPORTS_OPTION = "dedup.expected.reports";
+    public static final String SAMPLE_RATE_OPTION = "sample.rate";
+    public static final String SAMPLE_KEY_OPTION = "sample.key";
+    public static final String SHED_LATENCY_OPTION = "shed.latency";
+    public static final String SHED_POLICY_OPTION = "shed.policy";
+    public static final String SUPPRESS_OPTION = "suppress";
+    public static final String SUPPRESS_REFRESH_OPTION = "suppress.refresh";
+    public static final String SUPPRESS_MAX_FLOWS_OPTION = "suppress.max.flows";
+    public static final String SUPPRESS_PRECISION_OPTION = "suppress.precision";
+    public static final String RING_OPTION = "ring";
+    public static final String RING_SIZE_OPTION = "ring.size";
+    public static final String SUPPRESS_NONE = "none";
+    public static final String SUPPRESS_CHANGES = "changes";
+    public static final String SAMPLE_KEY_FLOW = "flow";
+    public static final String SAMPLE_KEY_REPORT = "report";
+    public static final String REPORT_MODE = "report";
+    public static final String FLOW_MODE = "flow";
+    public static final String FLATTEN_NONE = "none";
+    public static final String FLATTEN_HOPS = "hops";
+
     private List<AttributeMapping> attributeMappingList;
+    // The hop path of each attribute mapping or null for mappings of other fields
+    private HopPath[] hopPaths;
+    // The compiled header layout fields of each attribute mapping or null for mappings resolved against the JSON
+    private HeaderLayout.Field[][] layoutFields;
+    private boolean jsonRequired;
+    // When set an event is mapped per INT hop
+    private boolean flattenHops;
     private final AttributeConverter attributeConverter = new AttributeConverter();
     private final JsonParser parser = new JsonParser();
 
+    // Only set when filtering, along with each thread's batch for filtering batches of reports
+    private ReportFilter filter;
+    private ThreadLocal<RawReportBatch> filterBatch;
+
+    // Reports are kept when the upper 53 bits of their sample hash are below the threshold
+    private double sampleRate = 1.0;
+    private long sampleThreshold;
+    private String sampleKey;
+
+    // Only set when shedding
+    private LoadShedder loadShedder;
+    private volatile boolean shedding;
+
+    // Only set when deduplicating
+    private RotatingBloomFilter dedupFilter;
+
+    // Only set when suppressing unchanged reports, along with the mappings left out of their digests and those
+    // digested exactly whatever the precision
+    private ChangeSuppressor suppressor;
+    private boolean[] undigested;
+    private boolean[] exact;
+    private int suppressPrecision;
+
+    // Only set when appending reports to a ring
+    private ReportRing ring;
+
+    // Only set in flow mode
+    private FlowCache flowCache;
+    private volatile InputEventHandler flowEventHandler;
+    private TimestampGenerator timestampGenerator;
+    private ScheduledFuture<?> expiryFuture;
+
     /**
      * The initialization method for {@link SourceMapper}, which will be called before other methods and validate
      * the all configuration and getting the initial values.
@@ -71,6 +413,280 @@ public class P4TrptSourceMapper extends SourceMapper {
                      List<AttributeMapping> attributeMappingList, ConfigReader configReader,
                      SiddhiAppContext siddhiAppContext) {
         this.attributeMappingList = attributeMappingList;
+        this.jsonRequired = false;
+        this.hopPaths = new HopPath[attributeMappingList.size()];
+        this.layoutFields = new HeaderLayout.Field[hopPaths.length][];
+        for (int i = 0; i < hopPaths.length; i++) {
+            final String mapping = attributeMappingList.get(i).getMapping();
+            try {
+                hopPaths[i] = HopPath.parse(mapping);
+            } catch (IllegalArgumentException e) {
+                throw new SiddhiAppValidationException("Invalid p4-trpt mapping - " + e.getMessage());
+            }
+            if (PATH_ID_MAPPING.equals(mapping) && attributeMappingList.get(i).getType() != Attribute.Type.INT) {
+                throw new SiddhiAppValidationException("The p4-trpt " + PATH_ID_MAPPING + " mapping requires an int "
+                        + "attribute");
+            }
+            if (hopPaths[i] == null && !TELEMETRY_REPORT_MAPPING.equals(mapping)
+                    && !SAMPLE_RATE_MAPPING.equals(mapping) && !HOP_INDEX_MAPPING.equals(mapping)
+                    && !PATH_ID_MAPPING.equals(mapping)) {
+                layoutFields[i] = HeaderLayouts.resolve(mapping);
+                if (layoutFields[i] == null) {
+                    this.jsonRequired = true;
+                }
+            }
+        }
+        initFlatten(optionHolder);
+        final String filterExpression = optionHolder.validateAndGetStaticValue(FILTER_OPTION, null);
+        if (filterExpression != null) {
+            try {
+                filter = ReportFilter.compile(filterExpression);
+                final RawField[] filterFields = filter.getFields();
+                filterBatch = ThreadLocal.withInitial(() -> new RawReportBatch(filterFields, FILTER_BATCH_SIZE));
+            } catch (IllegalArgumentException e) {
+                throw new SiddhiAppValidationException("Invalid p4-trpt mapper filter - " + e.getMessage());
+            }
+        }
+        initSampling(optionHolder);
+        initShedding(optionHolder);
+        if (Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(DEDUP_OPTION, "false"))) {
+            initDedup(optionHolder);
+        }
+        initSuppression(optionHolder);
+        initRing(optionHolder, siddhiAppContext);
+        final String mode = optionHolder.validateAndGetStaticValue(MODE_OPTION, REPORT_MODE);
+        if (FLOW_MODE.equals(mode)) {
+            initFlowMode(optionHolder, siddhiAppContext);
+        } else if (!REPORT_MODE.equals(mode)) {
+            throw new SiddhiAppValidationException("Invalid p4-trpt mapper mode - " + mode);
+        }
+    }
+
+    private void initFlatten(final OptionHolder optionHolder) {
+        final String flatten = optionHolder.validateAndGetStaticValue(FLATTEN_OPTION, FLATTEN_NONE);
+        if (FLATTEN_HOPS.equals(flatten)) {
+            flattenHops = true;
+        } else if (!FLATTEN_NONE.equals(flatten)) {
+            throw new SiddhiAppValidationException("Invalid p4-trpt mapper flatten - " + flatten);
+        }
+        for (int i = 0; i < hopPaths.length; i++) {
+            final boolean currentHop = (hopPaths[i] != null && hopPaths[i].isCurrentHop())
+                    || HOP_INDEX_MAPPING.equals(attributeMappingList.get(i).getMapping());
+            if (currentHop && !flattenHops) {
+                throw new SiddhiAppValidationException("The mapping " + attributeMappingList.get(i).getMapping()
+                        + " is only available with flatten='hops'");
+            }
+        }
+    }
+
+    private void initSampling(final OptionHolder optionHolder) {
+        try {
+            sampleRate = Double.parseDouble(optionHolder.validateAndGetStaticValue(SAMPLE_RATE_OPTION, "1.0"));
+        } catch (NumberFormatException e) {
+            throw new SiddhiAppValidationException("Invalid p4-trpt mapper sample.rate - " + e.getMessage());
+        }
+        if (!(sampleRate > 0 && sampleRate <= 1)) {
+            throw new SiddhiAppValidationException("p4-trpt mapper sample.rate must be within (0, 1]");
+        }
+        sampleThreshold = (long) (sampleRate * (1L << 53));
+        sampleKey = optionHolder.validateAndGetStaticValue(SAMPLE_KEY_OPTION, SAMPLE_KEY_FLOW);
+        if (!SAMPLE_KEY_FLOW.equals(sampleKey) && !SAMPLE_KEY_REPORT.equals(sampleKey)) {
+            throw new SiddhiAppValidationException("Invalid p4-trpt mapper sample.key - " + sampleKey);
+        }
+    }
+
+    private void initShedding(final OptionHolder optionHolder) {
+        final double latency;
+        try {
+            latency = Double.parseDouble(optionHolder.validateAndGetStaticValue(SHED_LATENCY_OPTION, "0"));
+        } catch (NumberFormatException e) {
+            throw new SiddhiAppValidationException("Invalid p4-trpt mapper shed.latency - " + e.getMessage());
+        }
+        if (latency < 0) {
+            throw new SiddhiAppValidationException("p4-trpt mapper shed.latency must not be negative");
+        }
+        if (latency == 0) {
+            return;
+        }
+        final String[] classNames = optionHolder.validateAndGetStaticValue(SHED_POLICY_OPTION, "packet")
+                .split(",");
+        final int[] policy = new int[classNames.length];
+        try {
+            for (int i = 0; i < classNames.length; i++) {
+                policy[i] = LoadShedder.classOf(classNames[i].trim());
+            }
+            loadShedder = new LoadShedder((long) (latency * 1_000_000), policy, System.nanoTime());
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppValidationException("Invalid p4-trpt mapper shed.policy - " + e.getMessage());
+        }
+    }
+
+    private void initDedup(final OptionHolder optionHolder) {
+        final long horizon;
+        final double fpp;
+        final long expectedReports;
+        try {
+            horizon = Long.parseLong(optionHolder.validateAndGetStaticValue(DEDUP_HORIZON_OPTION, "1000"));
+            fpp = Double.parseDouble(optionHolder.validateAndGetStaticValue(DEDUP_FPP_OPTION, "0.001"));
+            expectedReports = Long.parseLong(optionHolder.validateAndGetStaticValue(DEDUP_EXPECTED_REPORTS_OPTION,
+                    "1000000"));
+        } catch (NumberFormatException e) {
+            throw new SiddhiAppValidationException("Invalid p4-trpt mapper dedup option - " + e.getMessage());
+        }
+        try {
+            dedupFilter = new RotatingBloomFilter(horizon, expectedReports, fpp, System.currentTimeMillis());
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppValidationException("Invalid p4-trpt mapper dedup option - " + e.getMessage());
+        }
+    }
+
+    private void initSuppression(final OptionHolder optionHolder) {
+        final String suppress = optionHolder.validateAndGetStaticValue(SUPPRESS_OPTION, SUPPRESS_NONE);
+        if (SUPPRESS_NONE.equals(suppress)) {
+            return;
+        }
+        if (!SUPPRESS_CHANGES.equals(suppress)) {
+            throw new SiddhiAppValidationException("Invalid p4-trpt mapper suppress - " + suppress);
+        }
+        final long refresh;
+        final int maxFlows;
+        try {
+            refresh = Long.parseLong(optionHolder.validateAndGetStaticValue(SUPPRESS_REFRESH_OPTION, "60000"));
+            maxFlows = Integer.parseInt(optionHolder.validateAndGetStaticValue(SUPPRESS_MAX_FLOWS_OPTION,
+                    "65536"));
+            suppressPrecision = Integer.parseInt(optionHolder.validateAndGetStaticValue(SUPPRESS_PRECISION_OPTION,
+                    "0"));
+        } catch (NumberFormatException e) {
+            throw new SiddhiAppValidationException("Invalid p4-trpt mapper suppress option - " + e.getMessage());
+        }
+        if (refresh <= 0 || maxFlows <= 0) {
+            throw new SiddhiAppValidationException("p4-trpt mapper suppress options must be positive");
+        }
+        if (maxFlows > LongHashIndex.MAX_CAPACITY) {
+            throw new SiddhiAppValidationException("p4-trpt mapper suppress.max.flows must be at most "
+                    + LongHashIndex.MAX_CAPACITY);
+        }
+        if (suppressPrecision < 0 || suppressPrecision > 52) {
+            throw new SiddhiAppValidationException("p4-trpt mapper suppress.precision must be within [0, 52]");
+        }
+        undigested = new boolean[attributeMappingList.size()];
+        exact = new boolean[attributeMappingList.size()];
+        boolean digested = false;
+        for (int i = 0; i < undigested.length; i++) {
+            // Every report differs in these so they would defeat suppression
+            final String mapping = attributeMappingList.get(i).getMapping();
+            undigested[i] = TELEMETRY_REPORT_MAPPING.equals(mapping) || JSON_STRING_MAPPING.equals(mapping);
+            digested |= !undigested[i];
+            // Rounding path IDs would conflate the paths of neighbouring IDs and hide path changes
+            exact[i] = PATH_ID_MAPPING.equals(mapping);
+        }
+        if (!digested) {
+            throw new SiddhiAppValidationException("The suppress option requires mappings other than "
+                    + TELEMETRY_REPORT_MAPPING + " and " + JSON_STRING_MAPPING);
+        }
+        suppressor = new ChangeSuppressor(maxFlows, refresh);
+    }
+
+    private void initRing(final OptionHolder optionHolder, final SiddhiAppContext siddhiAppContext) {
+        final String ringName = optionHolder.validateAndGetStaticValue(RING_OPTION, null);
+        if (ringName == null) {
+            return;
+        }
+        try {
+            ring = ReportRing.share(ringName, Integer.parseInt(optionHolder.validateAndGetStaticValue(
+                    RING_SIZE_OPTION, "1048576")));
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppValidationException("Invalid p4-trpt mapper ring.size - " + e.getMessage());
+        }
+        // Stops sharing the ring once the app shuts down
+        final ReportRing sharedRing = ring;
+        siddhiAppContext.addEternalReferencedHolder(new ExternalReferencedHolder() {
+            @Override
+            public void start() {
+                // Shared since init
+            }
+
+            @Override
+            public void stop() {
+                ReportRing.release(ringName, sharedRing);
+            }
+        });
+    }
+
+    private void initFlowMode(final OptionHolder optionHolder, final SiddhiAppContext siddhiAppContext) {
+        final long activeTimeout;
+        final long idleTimeout;
+        final int maxFlows;
+        try {
+            activeTimeout = Long.parseLong(optionHolder.validateAndGetStaticValue(FLOW_ACTIVE_TIMEOUT_OPTION,
+                    "60000"));
+            idleTimeout = Long.parseLong(optionHolder.validateAndGetStaticValue(FLOW_IDLE_TIMEOUT_OPTION, "15000"));
+            maxFlows = Integer.parseInt(optionHolder.validateAndGetStaticValue(FLOW_MAX_FLOWS_OPTION, "65536"));
+        } catch (NumberFormatException e) {
+            throw new SiddhiAppValidationException("Invalid p4-trpt mapper flow option - " + e.getMessage());
+        }
+        if (activeTimeout <= 0 || idleTimeout <= 0 || maxFlows <= 0) {
+            throw new SiddhiAppValidationException("p4-trpt mapper flow options must be positive");
+        }
+        if (maxFlows > FlowCache.MAX_FLOWS) {
+            throw new SiddhiAppValidationException("p4-trpt mapper flow.max.flows must be at most "
+                    + FlowCache.MAX_FLOWS);
+        }
+        for (final AttributeMapping mapping : attributeMappingList) {
+            if (TELEMETRY_REPORT_MAPPING.equals(mapping.getMapping())
+                    || PATH_ID_MAPPING.equals(mapping.getMapping())) {
+                throw new SiddhiAppValidationException("The " + mapping.getMapping()
+                        + " mapping is not available in flow mode");
+            }
+        }
+        for (final HopPath hopPath : hopPaths) {
+            if (hopPath != null) {
+                throw new SiddhiAppValidationException("Hop mappings are not available in flow mode");
+            }
+        }
+        if (flattenHops) {
+            throw new SiddhiAppValidationException("The flatten option is not available in flow mode");
+        }
+        if (suppressor != null) {
+            throw new SiddhiAppValidationException("The suppress option is not available in flow mode");
+        }
+        // Flows are timed by the app's clock alone, both as reports arrive and when expiring idle flows
+        timestampGenerator = siddhiAppContext.getTimestampGenerator();
+        flowCache = new FlowCache(activeTimeout, idleTimeout, maxFlows, timestampGenerator.currentTime());
+        // Mappings resolve against the exported flow records rather than the reports
+        jsonRequired = false;
+
+        // Exports idle flows when no reports arrive to drive expiry, only while the app is running
+        final long checkInterval = Math.max(1, Math.min(activeTimeout, idleTimeout) / 16);
+        final ScheduledExecutorService executorService = siddhiAppContext.getScheduledExecutorService();
+        siddhiAppContext.addEternalReferencedHolder(new ExternalReferencedHolder() {
+            @Override
+            public synchronized void start() {
+                if (expiryFuture == null) {
+                    expiryFuture = executorService.scheduleAtFixedRate(P4TrptSourceMapper.this::expireIdleFlows,
+                            checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+                }
+            }
+
+            @Override
+            public synchronized void stop() {
+                if (expiryFuture != null) {
+                    expiryFuture.cancel(false);
+                    expiryFuture = null;
+                }
+            }
+        });
+    }
+
+    private void expireIdleFlows() {
+        final InputEventHandler handler = flowEventHandler;
+        if (handler != null) {
+            try {
+                expireFlows(handler);
+            } catch (Throwable e) {
+                log.error("Unexpected error exporting flow records", e);
+            }
+        }
     }
 
     /**
@@ -81,7 +697,7 @@ public class P4TrptSourceMapper extends SourceMapper {
      */
     @Override
     public Class[] getSupportedInputEventClasses() {
-        return new Class[]{String.class, byte[].class, ByteBuffer.class};
+        return new Class[]{String.class, byte[].class, ByteBuffer.class, byte[][].class};
     }
 
     /**
@@ -95,52 +711,421 @@ public class P4TrptSourceMapper extends SourceMapper {
             throws InterruptedException {
         log.debug("Event object class - " + eventObject.getClass().getName());
         log.debug("Event values - " + eventObject);
+        if (flowCache != null) {
+            flowEventHandler = inputEventHandler;
+        }
 
-        final JsonObject trptJson;
+        final byte[] rawBytes;
+        JsonObject trptJson = null;
 
         long timestamp = System.currentTimeMillis();
         if (eventObject instanceof ByteBuffer) {
-            final TelemetryReport telemetryReport = new TelemetryReport(((ByteBuffer) eventObject).array());
+            rawBytes = ((ByteBuffer) eventObject).array();
             timestamp = ((ByteBuffer) eventObject).getLong();
-             trptJson = telemetryReport.toJson();
         } else if (eventObject instanceof byte[]) {
-            final TelemetryReport telemetryReport = new TelemetryReport((byte[]) eventObject);
-            trptJson = telemetryReport.toJson();
+            rawBytes = (byte[]) eventObject;
         } else if (eventObject instanceof String) {
             String eventString = (String) eventObject;
             eventString = eventString.substring(eventString.indexOf(':') + 1);
+            rawBytes = null;
             trptJson = (JsonObject) parser.parse(eventString);
+        } else if (eventObject instanceof byte[][]) {
+            mapBatch((byte[][]) eventObject, timestamp, inputEventHandler);
+            return;
         } else {
             throw new RuntimeException("Invalid object, cannot continue to process");
         }
-        int ctr = 0;
 
+        if (filter != null) {
+            if (rawBytes == null) {
+                throw new InterruptedException("The filter option is only available for byte array input");
+            }
+            if (!filter.test(rawBytes)) {
+                return;
+            }
+        }
+        final List<Event> events = new ArrayList<>(1);
+        mapReport(rawBytes, trptJson, timestamp, events);
+        send(events, inputEventHandler);
+    }
 
-        final Object[] eventAttr = new Object[attributeMappingList.size()];
-        for (final AttributeMapping mapping : attributeMappingList) {
-            eventAttr[ctr++] = extractField(trptJson, mapping);
-            log.debug("Extracted field " + eventAttr[ctr - 1] + " with mapping " + mapping.getMapping());
+    /**
+     * Maps a batch of reports received together, as with a multi-report datagram or a batch of consumer records.
+     * The filter is evaluated over columns of the batch's filtered fields so that only matching reports are parsed,
+     * and the events of every surviving report are sent downstream as a single batch.
+     */
+    private void mapBatch(final byte[][] reports, final long timestamp, final InputEventHandler inputEventHandler)
+            throws InterruptedException {
+        final List<Event> events = new ArrayList<>(reports.length);
+        if (filter == null) {
+            for (final byte[] report : reports) {
+                mapReport(report, null, timestamp, events);
+            }
+        } else {
+            final RawReportBatch batch = filterBatch.get();
+            batch.decode(reports, 0, reports.length);
+            final int[] selection = batch.getSelection();
+            for (int i = 0, selected = filter.select(batch); i < selected; i++) {
+                mapReport(reports[selection[i]], null, timestamp, events);
+            }
         }
-        final Event event = new Event(attributeMappingList.size());
-        event.setData(eventAttr);
-        event.setTimestamp(timestamp);
+        send(events, inputEventHandler);
+    }
+
+    /**
+     * Maps a report that has passed the filter, adding its events to those to be sent.
+     */
+    private void mapReport(final byte[] rawBytes, final JsonObject inputJson, final long timestamp,
+                           final List<Event> events) throws InterruptedException {
+        double reportSampleRate = 1.0;
+        if (sampleRate < 1.0 && rawBytes != null && !RawReport.isDropReport(rawBytes)) {
+            final long sampleHash = sampleHash(rawBytes);
+            if (sampleHash != 0) {
+                if ((sampleHash >>> 11) >= sampleThreshold) {
+                    return;
+                }
+                reportSampleRate = sampleRate;
+            }
+        }
+        if (loadShedder != null && rawBytes != null) {
+            final int reportClass = RawReport.isDropReport(rawBytes)
+                    ? LoadShedder.DROP_CLASS : LoadShedder.PACKET_CLASS;
+            if (!loadShedder.admit(reportClass, shedHash(rawBytes))) {
+                loadShedder.adjust(System.nanoTime());
+                logShedding();
+                return;
+            }
+            reportSampleRate *= loadShedder.getKeepFraction(reportClass);
+        }
+        final TelemetryReport telemetryReport = rawBytes != null ? new TelemetryReport(rawBytes) : null;
+
+        if (dedupFilter != null && telemetryReport != null
+                && isDuplicate(telemetryReport, System.currentTimeMillis())) {
+            log.debug("Suppressed duplicate report");
+            return;
+        }
+        final JsonObject trptJson = telemetryReport != null && jsonRequired ? telemetryReport.toJson() : inputJson;
+
+        if (flowCache != null) {
+            if (telemetryReport == null) {
+                throw new InterruptedException("Flow mode is only available for byte array input");
+            }
+            appendToRing(telemetryReport, timestamp);
+            processFlow(telemetryReport, reportSampleRate, events);
+            return;
+        }
+
+        final Event[] reportEvents;
+        if (flattenHops) {
+            if (telemetryReport == null) {
+                throw new InterruptedException("The flatten option is only available for byte array input");
+            }
+            reportEvents = mapHopEvents(rawBytes, telemetryReport, trptJson, reportSampleRate, timestamp);
+        } else {
+            final Object[] eventAttr = new Object[attributeMappingList.size()];
+            for (int i = 0; i < eventAttr.length; i++) {
+                final AttributeMapping mapping = attributeMappingList.get(i);
+                if (hopPaths[i] != null) {
+                    eventAttr[i] = extractHopField(telemetryReport, hopPaths[i], 0, mapping);
+                } else if (layoutFields[i] != null && rawBytes != null) {
+                    eventAttr[i] = extractLayoutField(rawBytes, layoutFields[i], mapping);
+                } else {
+                    eventAttr[i] = extractField(telemetryReport, trptJson, mapping, reportSampleRate);
+                }
+                log.debug("Extracted field " + eventAttr[i] + " with mapping " + mapping.getMapping());
+            }
+            reportEvents = new Event[]{new Event(timestamp, eventAttr)};
+        }
+        if (suppressor != null && reportEvents.length > 0) {
+            long digest = 0;
+            for (final Event event : reportEvents) {
+                digest = digest(digest, event.getData());
+            }
+            if (isUnchanged(telemetryReport, digest)) {
+                return;
+            }
+        }
+        appendToRing(telemetryReport, timestamp);
+        Collections.addAll(events, reportEvents);
+    }
+
+    /**
+     * Appends a report to the ring once it is known to be mapped, so that the ring holds the reports surviving the
+     * filter, sampling, shedding, dedup and suppress options.
+     */
+    private void appendToRing(final TelemetryReport telemetryReport, final long timestamp) {
+        if (ring != null && telemetryReport != null) {
+            ring.append(telemetryReport, timestamp);
+        }
+    }
+
+    /**
+     * Hands mapped events downstream, as a single batch when there are several.
+     */
+    private void send(final List<Event> events, final InputEventHandler inputEventHandler)
+            throws InterruptedException {
+        if (events.isEmpty()) {
+            return;
+        }
+        final long sendStart = loadShedder != null ? System.nanoTime() : 0;
         try {
-            inputEventHandler.sendEvent(event);
+            if (events.size() > 1) {
+                inputEventHandler.sendEvents(events.toArray(new Event[0]));
+            } else {
+                inputEventHandler.sendEvent(events.get(0));
+            }
         } catch (InterruptedException e) {
             throw new RuntimeException("Unexpected error processing event", e);
         } catch (Throwable e2) {
             throw new RuntimeException("Unexpected throwable processing event", e2);
         }
+        recordSendLatency(sendStart);
+    }
+
+    /**
+     * Maps an event per INT hop of a report, extracting the report's fields once.
+     */
+    private Event[] mapHopEvents(final byte[] rawBytes, final TelemetryReport telemetryReport,
+                                 final JsonObject trptJson, final double reportSampleRate, final long timestamp)
+            throws InterruptedException {
+        final int numHops = telemetryReport.intHdr != null ? telemetryReport.intHdr.mdStackHdr.getNumHops() : 0;
+        if (numHops == 0) {
+            return new Event[0];
+        }
+        final int numAttrs = attributeMappingList.size();
+        final Object[] reportAttr = new Object[numAttrs];
+        for (int i = 0; i < numAttrs; i++) {
+            final AttributeMapping mapping = attributeMappingList.get(i);
+            if (layoutFields[i] != null) {
+                reportAttr[i] = extractLayoutField(rawBytes, layoutFields[i], mapping);
+            } else if (hopPaths[i] == null && !HOP_INDEX_MAPPING.equals(mapping.getMapping())) {
+                reportAttr[i] = extractField(telemetryReport, trptJson, mapping, reportSampleRate);
+            } else if (hopPaths[i] != null && !hopPaths[i].isCurrentHop()) {
+                reportAttr[i] = extractHopField(telemetryReport, hopPaths[i], 0, mapping);
+            }
+        }
+        final Event[] hopEvents = new Event[numHops];
+        for (int hop = 0; hop < numHops; hop++) {
+            final Object[] eventAttr = reportAttr.clone();
+            for (int i = 0; i < numAttrs; i++) {
+                final AttributeMapping mapping = attributeMappingList.get(i);
+                if (hopPaths[i] != null && hopPaths[i].isCurrentHop()) {
+                    eventAttr[i] = extractHopField(telemetryReport, hopPaths[i], hop, mapping);
+                } else if (HOP_INDEX_MAPPING.equals(mapping.getMapping())) {
+                    eventAttr[i] = convertLong(hop, mapping);
+                }
+            }
+            hopEvents[hop] = new Event(timestamp, eventAttr);
+        }
+        return hopEvents;
+    }
+
+    private void recordSendLatency(final long sendStart) {
+        if (loadShedder != null) {
+            final long now = System.nanoTime();
+            loadShedder.recordLatency(now - sendStart, now);
+            logShedding();
+        }
+    }
+
+    private void logShedding() {
+        final boolean nowShedding = loadShedder.getPressure() > 0;
+        if (nowShedding == shedding) {
+            return;
+        }
+        shedding = nowShedding;
+        final StringBuilder counts = new StringBuilder();
+        for (int i = 0; i < LoadShedder.CLASS_NAMES.length; i++) {
+            counts.append(i == 0 ? "" : ", ").append(LoadShedder.CLASS_NAMES[i]).append(" reports shed ")
+                    .append(loadShedder.getShedCount(i)).append(" of ")
+                    .append(loadShedder.getShedCount(i) + loadShedder.getAdmittedCount(i));
+        }
+        if (nowShedding) {
+            log.warn("Downstream latency exceeded shed.latency, started shedding reports - " + counts);
+        } else {
+            log.info("Downstream latency recovered, stopped shedding reports - " + counts);
+        }
+    }
+
+    private boolean isDuplicate(final TelemetryReport telemetryReport, final long nowMillis) {
+        if (!ReportKeys.hasDuplicateKey(telemetryReport)) {
+            return false;
+        }
+        final long hash = ReportKeys.duplicateHash(telemetryReport);
+        synchronized (dedupFilter) {
+            return dedupFilter.put(hash, nowMillis);
+        }
+    }
+
+    private boolean isUnchanged(final TelemetryReport telemetryReport, final long digest)
+            throws InterruptedException {
+        if (telemetryReport == null) {
+            throw new InterruptedException("The suppress option is only available for byte array input");
+        }
+        if (!ReportKeys.hasFlowKey(telemetryReport)) {
+            return false;
+        }
+        final long flowHash = ReportKeys.flowHash(telemetryReport);
+        synchronized (suppressor) {
+            return !suppressor.keep(flowHash, digest, System.currentTimeMillis());
+        }
+    }
+
+    private long digest(final long seed, final Object[] eventAttr) {
+        long digest = seed;
+        for (int i = 0; i < eventAttr.length; i++) {
+            if (undigested[i]) {
+                continue;
+            }
+            final Object value = eventAttr[i];
+            if (exact[i] && value instanceof Integer) {
+                digest = Hashing.hash64(digest, (Integer) value);
+            } else if (suppressPrecision == 0) {
+                digest = Hashing.hash64(digest, Objects.hashCode(value));
+            } else if (value instanceof Long || value instanceof Integer) {
+                digest = Hashing.hash64(digest, roundToPrecision(((Number) value).longValue()));
+            } else if (value instanceof Double || value instanceof Float) {
+                // Keeps the sign, exponent and leading mantissa bits
+                digest = Hashing.hash64(digest, Double.doubleToLongBits(((Number) value).doubleValue())
+                        & (-1L << (52 - suppressPrecision)));
+            } else {
+                digest = Hashing.hash64(digest, Objects.hashCode(value));
+            }
+        }
+        return digest;
+    }
+
+    private long roundToPrecision(final long value) {
+        final long magnitude = Math.abs(value);
+        final int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(magnitude) - suppressPrecision);
+        return value < 0 ? -((magnitude >>> shift) << shift) : (magnitude >>> shift) << shift;
+    }
+
+    private void processFlow(final TelemetryReport telemetryReport, final double reportSampleRate,
+                             final List<Event> events) throws InterruptedException {
+        final List<FlowRecord> records = new ArrayList<>();
+        final long timestamp;
+        synchronized (flowCache) {
+            timestamp = timestampGenerator.currentTime();
+            flowCache.expire(timestamp, records::add);
+            flowCache.update(telemetryReport, reportSampleRate, timestamp, records::add);
+        }
+        addFlowEvents(records, timestamp, events);
+    }
+
+    private void expireFlows(final InputEventHandler inputEventHandler) throws InterruptedException {
+        final List<FlowRecord> records = new ArrayList<>();
+        final long timestamp;
+        synchronized (flowCache) {
+            timestamp = timestampGenerator.currentTime();
+            flowCache.expire(timestamp, records::add);
+        }
+        final List<Event> events = new ArrayList<>(records.size());
+        addFlowEvents(records, timestamp, events);
+        send(events, inputEventHandler);
     }
 
-    private Object extractField(final JsonObject jsonObject, final AttributeMapping attrMapping)
+    private void addFlowEvents(final List<FlowRecord> records, final long timestamp, final List<Event> events)
             throws InterruptedException {
+        for (final FlowRecord record : records) {
+            final JsonObject recordJson = record.toJson();
+            final Object[] eventAttr = new Object[attributeMappingList.size()];
+            int ctr = 0;
+            for (final AttributeMapping mapping : attributeMappingList) {
+                eventAttr[ctr++] = extractField(null, recordJson, mapping, record.sampleRate);
+            }
+            events.add(new Event(timestamp, eventAttr));
+        }
+    }
+
+    private long sampleHash(final byte[] rawBytes) {
+        if (SAMPLE_KEY_REPORT.equals(sampleKey)) {
+            // The version, sequence number and node ID
+            return Hashing.hash64(ByteUtils.getLongFromBytes(rawBytes, 0, 8));
+        }
+        return RawReport.flowHash(rawBytes);
+    }
+
+    private long shedHash(final byte[] rawBytes) {
+        final int dropOffset = RawReport.getDropHdrOffset(rawBytes);
+        if (dropOffset >= 0) {
+            return Hashing.hash64(ByteUtils.getLongFromBytes(rawBytes, dropOffset + 16, 8),
+                    ByteUtils.getLongFromBytes(rawBytes, dropOffset + 24, 8));
+        }
+        final long flowHash = RawReport.flowHash(rawBytes);
+        return flowHash != 0 ? flowHash : Hashing.hash64(ByteUtils.getLongFromBytes(rawBytes, 0, 8));
+    }
+
+    private Object extractHopField(final TelemetryReport telemetryReport, final HopPath hopPath,
+                                   final int currentHop, final AttributeMapping attrMapping)
+            throws InterruptedException {
+        if (telemetryReport == null) {
+            throw new InterruptedException("Hop fields are only available for byte array input");
+        }
+        final Long value = hopPath.getValue(telemetryReport, currentHop);
+        return value == null ? null : convertLong(value, attrMapping);
+    }
+
+    /**
+     * Reads a field from the raw report bytes through the compiled layout of its header.
+     */
+    private Object extractLayoutField(final byte[] rawBytes, final HeaderLayout.Field[] fields,
+                                      final AttributeMapping attrMapping) throws InterruptedException {
+        for (final HeaderLayout.Field field : fields) {
+            final int offset = field.locate(rawBytes);
+            if (offset >= 0) {
+                return field.getType() == HeaderLayout.Type.UNSIGNED
+                        ? convertLong(field.getLong(rawBytes, offset), attrMapping)
+                        : attributeConverter.getPropertyValue(field.getString(rawBytes, offset), attrMapping.getType());
+            }
+        }
+        throw new InterruptedException("JSON element not found - " + fields[0].getLayout().getName()
+                + " for mapping - " + attrMapping.getMapping());
+    }
+
+    private Object convertLong(final long value, final AttributeMapping attrMapping) {
+        switch (attrMapping.getType()) {
+            case LONG:
+                return value;
+            case INT:
+                return (int) value;
+            case DOUBLE:
+                return (double) value;
+            case FLOAT:
+                return (float) value;
+            default:
+                return attributeConverter.getPropertyValue(Long.toString(value), attrMapping.getType());
+        }
+    }
+
+    private Object extractField(final TelemetryReport telemetryReport, final JsonObject jsonObject,
+                                final AttributeMapping attrMapping, final double reportSampleRate)
+            throws InterruptedException {
+        if (SAMPLE_RATE_MAPPING.equals(attrMapping.getMapping())) {
+            return reportSampleRate;
+        }
+        if (TELEMETRY_REPORT_MAPPING.equals(attrMapping.getMapping())) {
+            if (telemetryReport == null) {
+                throw new InterruptedException("TelemetryReport object only available for byte array input");
+            }
+            return telemetryReport;
+        }
+        if (PATH_ID_MAPPING.equals(attrMapping.getMapping())) {
+            if (telemetryReport == null) {
+                throw new InterruptedException("The path ID is only available for byte array input");
+            }
+            if (telemetryReport.intHdr == null) {
+                return null;
+            }
+            final int pathId = PathInterner.getShared().intern(telemetryReport.intHdr.mdStackHdr);
+            return pathId == PathInterner.NO_PATH ? null : pathId;
+        }
         if (jsonObject == null) {
             throw new InterruptedException("JSON element is null");
         }
         log.debug("Extracting jsonObject - " + jsonObject);
         log.debug("Attribute mapping - " + attrMapping.getMapping());
-        if (attrMapping.getMapping().equals("jsonString")) {
+        if (attrMapping.getMapping().equals(JSON_STRING_MAPPING)) {
             return jsonObject;
         }
         final String[] tokens = attrMapping.getMapping().split("\\.");
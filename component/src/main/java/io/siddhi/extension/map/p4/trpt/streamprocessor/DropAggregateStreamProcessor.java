@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.SchedulingProcessor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.Scheduler;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.DropHeader;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.KeyedAccumulators;
+import io.siddhi.extension.map.p4.trpt.util.Parameters;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stream processor summing the drop counts of drop Telemetry Reports per drop key into switch time buckets.
+ */
+@Extension(
+        name = "dropAggregate",
+        namespace = "p4trpt",
+        description = "Aggregates drop Telemetry Reports per 'dropHdr.dropKey' into fixed buckets of the switch "
+                + "timestamp 'dropHdr.timestamp', emitting one event per drop key and bucket in place of the "
+                + "reports. Drop keys are held as two longs within a primitive open addressed hash table per open "
+                + "bucket. A bucket is emitted once the latest switch timestamp seen passes its end by the allowed "
+                + "lateness, or once no newer switch timestamp has been seen for the flush timeout. Reports for "
+                + "buckets that have already been emitted are counted as late and logged, but otherwise ignored as "
+                + "are packet reports. Input events are consumed and the emitted events carry only the returned "
+                + "attributes, those of the input stream being null.",
+        parameters = {
+                @Parameter(name = "telemetry.report",
+                        description = "The TelemetryReport object produced by the 'telemRpt' mapping of the "
+                                + "p4-trpt source mapper",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "bucket.size",
+                        description = "The bucket size in units of the switch timestamp",
+                        type = {DataType.INT, DataType.LONG}),
+                @Parameter(name = "allowed.lateness",
+                        description = "How far in units of the switch timestamp reports may arrive behind the "
+                                + "latest switch timestamp seen and still be counted",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "0"),
+                @Parameter(name = "flush.timeout",
+                        description = "The processing time without newer switch timestamps after which every open "
+                                + "bucket is emitted",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "10000")
+        },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"telemetry.report", "bucket.size"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "bucket.size", "allowed.lateness"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "bucket.size", "allowed.lateness",
+                        "flush.timeout"})
+        },
+        returnAttributes = {
+                @ReturnAttribute(name = "dropKey",
+                        description = "The drop key as a 32 character hex string",
+                        type = {DataType.STRING}),
+                @ReturnAttribute(name = "bucketStart",
+                        description = "The first switch timestamp of the bucket",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "reportCount",
+                        description = "The number of drop reports for the key within the bucket",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "totalDropCount",
+                        description = "The sum of 'dropHdr.dropCount' for the key within the bucket",
+                        type = {DataType.LONG})
+        },
+        examples = {
+                @Example(
+                        syntax = "from trptStream#p4trpt:dropAggregate(telemRpt, 10, 2)\n"
+                                + "select dropKey, bucketStart, totalDropCount\n"
+                                + "insert into dropTotalsStream;",
+                        description = "Emits the total drops per drop key for every 10 units of the switch "
+                                + "timestamp, counting reports arriving up to 2 units late"
+                )
+        }
+)
+public class DropAggregateStreamProcessor
+        extends StreamProcessor<DropAggregateStreamProcessor.DropAggregateState> implements SchedulingProcessor {
+
+    private static final Logger log = Logger.getLogger(DropAggregateStreamProcessor.class);
+    private static final String EXTENSION = "p4trpt:dropAggregate";
+    private static final long DEFAULT_FLUSH_TIMEOUT = 10000;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private ExpressionExecutor telemetryReportExecutor;
+    private long bucketSize;
+    private long allowedLateness;
+    private long flushTimeout;
+    private Scheduler scheduler;
+    private List<Attribute> returnAttributes;
+    private OutputEventFactory outputEventFactory;
+
+    @Override
+    protected StateFactory<DropAggregateState> init(MetaStreamEvent metaStreamEvent,
+                                                    AbstractDefinition inputDefinition,
+                                                    ExpressionExecutor[] attributeExpressionExecutors,
+                                                    ConfigReader configReader,
+                                                    StreamEventClonerHolder streamEventClonerHolder,
+                                                    boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                    SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 2 || attributeExpressionExecutors.length > 4) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects 2 to 4 parameters but found "
+                    + attributeExpressionExecutors.length);
+        }
+        telemetryReportExecutor = attributeExpressionExecutors[0];
+        bucketSize = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[1], "bucket.size");
+        if (bucketSize <= 0) {
+            throw new SiddhiAppValidationException(EXTENSION + " bucket.size must be positive");
+        }
+        allowedLateness = 0;
+        if (attributeExpressionExecutors.length > 2) {
+            allowedLateness = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[2],
+                    "allowed.lateness");
+            if (allowedLateness < 0) {
+                throw new SiddhiAppValidationException(EXTENSION + " allowed.lateness must not be negative");
+            }
+        }
+        flushTimeout = DEFAULT_FLUSH_TIMEOUT;
+        if (attributeExpressionExecutors.length > 3) {
+            flushTimeout = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[3], "flush.timeout");
+            if (flushTimeout <= 0) {
+                throw new SiddhiAppValidationException(EXTENSION + " flush.timeout must be positive");
+            }
+        }
+
+        returnAttributes = new ArrayList<>();
+        returnAttributes.add(new Attribute("dropKey", Attribute.Type.STRING));
+        returnAttributes.add(new Attribute("bucketStart", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("reportCount", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("totalDropCount", Attribute.Type.LONG));
+        outputEventFactory = new OutputEventFactory(metaStreamEvent);
+
+        return DropAggregateState::new;
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           DropAggregateState state) {
+        final ComplexEventChunk<StreamEvent> outputChunk = new ComplexEventChunk<>();
+        synchronized (state) {
+            final long currentTime = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator().currentTime();
+            while (streamEventChunk.hasNext()) {
+                final StreamEvent streamEvent = streamEventChunk.next();
+                streamEventChunk.remove();
+                if (streamEvent.getType() == ComplexEvent.Type.TIMER) {
+                    onTimer(state, streamEvent.getTimestamp(), outputChunk, complexEventPopulater);
+                    continue;
+                }
+                if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                    continue;
+                }
+                if (state.flushTime != -1 && currentTime >= state.flushTime) {
+                    // The timer was lost (e.g. on restore) so flush now
+                    emit(state, Long.MAX_VALUE, currentTime, outputChunk, complexEventPopulater);
+                }
+                final Object trptObj = telemetryReportExecutor.execute(streamEvent);
+                if (!(trptObj instanceof TelemetryReport) || ((TelemetryReport) trptObj).dropHdr == null) {
+                    continue;
+                }
+                final DropHeader dropHdr = ((TelemetryReport) trptObj).dropHdr;
+                final long switchTime = dropHdr.getTimestamp();
+                final long bucketStart = switchTime - Math.floorMod(switchTime, bucketSize);
+                if (bucketStart <= state.lastEmittedBucket) {
+                    state.lateReports++;
+                    continue;
+                }
+                KeyedAccumulators bucket = state.buckets.get(bucketStart);
+                if (bucket == null) {
+                    bucket = state.spareBuckets.isEmpty()
+                            ? new KeyedAccumulators(2, INITIAL_CAPACITY) : state.spareBuckets.remove(0);
+                    state.buckets.put(bucketStart, bucket);
+                }
+                state.key[0] = dropHdr.getDropKeyHigh();
+                state.key[1] = dropHdr.getDropKeyLow();
+                bucket.accumulate(bucket.findOrInsert(state.key), dropHdr.getDropCount());
+
+                if (switchTime > state.watermark) {
+                    state.watermark = switchTime;
+                    // The pending timer, if any, fires before the new flush time and is then moved to it
+                    state.flushTime = currentTime + flushTimeout;
+                    if (state.timerTime == -1) {
+                        state.timerTime = state.flushTime;
+                        scheduler.notifyAt(state.timerTime);
+                    }
+                    emit(state, state.watermark - allowedLateness, currentTime, outputChunk, complexEventPopulater);
+                }
+            }
+        }
+        if (outputChunk.getFirst() != null) {
+            nextProcessor.process(outputChunk);
+        }
+    }
+
+    private void onTimer(final DropAggregateState state, final long timestamp,
+                         final ComplexEventChunk<StreamEvent> outputChunk,
+                         final ComplexEventPopulater complexEventPopulater) {
+        if (state.timerTime == -1 || timestamp < state.timerTime) {
+            return;
+        }
+        state.timerTime = -1;
+        if (state.flushTime == -1) {
+            return;
+        }
+        if (timestamp >= state.flushTime) {
+            emit(state, Long.MAX_VALUE, timestamp, outputChunk, complexEventPopulater);
+        } else {
+            state.timerTime = state.flushTime;
+            scheduler.notifyAt(state.timerTime);
+        }
+    }
+
+    // Emits every bucket ending at or before the given switch time
+    private void emit(final DropAggregateState state, final long closeTime, final long timestamp,
+                      final ComplexEventChunk<StreamEvent> outputChunk,
+                      final ComplexEventPopulater complexEventPopulater) {
+        final Iterator<Map.Entry<Long, KeyedAccumulators>> iterator = state.buckets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Long, KeyedAccumulators> bucketEntry = iterator.next();
+            final long bucketStart = bucketEntry.getKey();
+            if (closeTime != Long.MAX_VALUE && bucketStart + bucketSize > closeTime) {
+                break;
+            }
+            final KeyedAccumulators bucket = bucketEntry.getValue();
+            for (int entry = 0; entry < bucket.size(); entry++) {
+                outputChunk.add(outputEventFactory.newEvent(timestamp, new Object[]{
+                        DropHeader.toDropKey(bucket.getKey(entry, 0), bucket.getKey(entry, 1)), bucketStart,
+                        bucket.getCount(entry), bucket.getSum(entry)}, complexEventPopulater));
+            }
+            bucket.clear();
+            state.spareBuckets.add(bucket);
+            state.lastEmittedBucket = bucketStart;
+            iterator.remove();
+        }
+        if (state.buckets.isEmpty()) {
+            state.flushTime = -1;
+        }
+        if (state.lateReports > state.loggedLateReports) {
+            log.warn(EXTENSION + " ignored " + (state.lateReports - state.loggedLateReports) + " drop reports "
+                    + "arriving after their buckets were emitted, being over " + allowedLateness
+                    + " allowed.lateness behind the latest switch timestamp");
+            state.loggedLateReports = state.lateReports;
+        }
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return returnAttributes;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+        // Nothing to stop
+    }
+
+    @Override
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * The per partition state holding the open buckets ordered by their start.
+     */
+    class DropAggregateState extends State {
+
+        private final long[] key = new long[2];
+        private TreeMap<Long, KeyedAccumulators> buckets = new TreeMap<>();
+        // Cleared buckets retained for reuse
+        private final List<KeyedAccumulators> spareBuckets = new ArrayList<>();
+        private long watermark = Long.MIN_VALUE;
+        private long lastEmittedBucket = Long.MIN_VALUE;
+        private long flushTime = -1;
+        // The time of the pending timer, at or before the flush time
+        private long timerTime = -1;
+        // Reports for buckets already emitted, and those of them logged
+        private long lateReports;
+        private long loggedLateReports;
+
+        @Override
+        public boolean canDestroy() {
+            return buckets.isEmpty();
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            final Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("buckets", buckets);
+            snapshot.put("watermark", watermark);
+            snapshot.put("lastEmittedBucket", lastEmittedBucket);
+            snapshot.put("flushTime", flushTime);
+            snapshot.put("lateReports", lateReports);
+            return snapshot;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void restore(Map<String, Object> snapshot) {
+            buckets = (TreeMap<Long, KeyedAccumulators>) snapshot.get("buckets");
+            watermark = (Long) snapshot.get("watermark");
+            lastEmittedBucket = (Long) snapshot.get("lastEmittedBucket");
+            flushTime = (Long) snapshot.get("flushTime");
+            lateReports = (Long) snapshot.get("lateReports");
+            loggedLateReports = lateReports;
+            // Timers are not restored so the flush happens on the next report
+            timerTime = -1;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.SchedulingProcessor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.Scheduler;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.FlowCache;
+import io.siddhi.extension.map.p4.trpt.util.FlowRecord;
+import io.siddhi.extension.map.p4.trpt.util.Parameters;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Stream processor aggregating packet Telemetry Reports into NetFlow style flow records.
+ */
+@Extension(
+        name = "flowCache",
+        namespace = "p4trpt",
+        description = "Aggregates packet Telemetry Reports into flows keyed by source and destination address and "
+                + "port, IP protocol and 'telemRptHdr.nodeId', emitting one flow record in place of the reports of "
+                + "each flow. A flow is exported once no report has been seen for the idle timeout or once it has "
+                + "been active for the active timeout, after which further reports start a new record. Timeouts are "
+                + "driven by a hierarchical timing wheel and when 'max.flows' are held the flow with the earliest "
+                + "timeout is exported early. Input events are consumed and flow records carry only their own "
+                + "attributes, those of the input stream being null. Drop reports and reports without a TCP or "
+                + "UDP header are ignored.",
+        parameters = {
+                @Parameter(name = "telemetry.report",
+                        description = "The TelemetryReport object produced by the 'telemRpt' mapping of the "
+                                + "p4-trpt source mapper",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "active.timeout",
+                        description = "The maximum duration of a flow record",
+                        type = {DataType.INT, DataType.LONG}),
+                @Parameter(name = "idle.timeout",
+                        description = "The duration without reports after which a flow is exported",
+                        type = {DataType.INT, DataType.LONG}),
+                @Parameter(name = "max.flows",
+                        description = "The maximum number of flows held at once",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "65536")
+        },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"telemetry.report", "active.timeout", "idle.timeout"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "active.timeout", "idle.timeout",
+                        "max.flows"})
+        },
+        returnAttributes = {
+                @ReturnAttribute(name = "srcAddr",
+                        description = "The source IP address",
+                        type = {DataType.STRING}),
+                @ReturnAttribute(name = "dstAddr",
+                        description = "The destination IP address",
+                        type = {DataType.STRING}),
+                @ReturnAttribute(name = "srcPort",
+                        description = "The source port",
+                        type = {DataType.INT}),
+                @ReturnAttribute(name = "dstPort",
+                        description = "The destination port",
+                        type = {DataType.INT}),
+                @ReturnAttribute(name = "nextProto",
+                        description = "The IP protocol",
+                        type = {DataType.INT}),
+                @ReturnAttribute(name = "nodeId",
+                        description = "The reporting node",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "packets",
+                        description = "The number of reports of the flow",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "bytes",
+                        description = "The sum of 'ipHdr.len' of the flow",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "firstSeen",
+                        description = "The timestamp of the first report of the flow",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "lastSeen",
+                        description = "The timestamp of the last report of the flow",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "minHopLatency",
+                        description = "The lowest hop latency reported for the flow or -1 when absent",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "maxHopLatency",
+                        description = "The highest hop latency reported for the flow or -1 when absent",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "exportReason",
+                        description = "Why the record was exported, either 'idle', 'active' or 'forced'",
+                        type = {DataType.STRING})
+        },
+        examples = {
+                @Example(
+                        syntax = "from trptStream#p4trpt:flowCache(telemRpt, 1 min, 15 sec)\n"
+                                + "select srcAddr, dstAddr, srcPort, dstPort, nextProto, nodeId, packets, bytes\n"
+                                + "insert into flowStream;",
+                        description = "Emits a flow record for each flow once idle for 15 seconds or at least "
+                                + "every minute while active"
+                )
+        }
+)
+public class FlowCacheStreamProcessor
+        extends StreamProcessor<FlowCacheStreamProcessor.FlowCacheState> implements SchedulingProcessor {
+
+    private static final String EXTENSION = "p4trpt:flowCache";
+    private static final int DEFAULT_MAX_FLOWS = 65536;
+
+    private ExpressionExecutor telemetryReportExecutor;
+    private long activeTimeout;
+    private long idleTimeout;
+    private int maxFlows;
+    private long checkInterval;
+    private Scheduler scheduler;
+    private List<Attribute> returnAttributes;
+    private OutputEventFactory outputEventFactory;
+
+    @Override
+    protected StateFactory<FlowCacheState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 3 || attributeExpressionExecutors.length > 4) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects 3 or 4 parameters but found "
+                    + attributeExpressionExecutors.length);
+        }
+        telemetryReportExecutor = attributeExpressionExecutors[0];
+        activeTimeout = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[1], "active.timeout");
+        idleTimeout = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[2], "idle.timeout");
+        if (activeTimeout <= 0 || idleTimeout <= 0) {
+            throw new SiddhiAppValidationException(EXTENSION + " timeouts must be positive");
+        }
+        maxFlows = DEFAULT_MAX_FLOWS;
+        if (attributeExpressionExecutors.length > 3) {
+            maxFlows = (int) Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[3], "max.flows");
+            if (maxFlows <= 0 || maxFlows > FlowCache.MAX_FLOWS) {
+                throw new SiddhiAppValidationException(EXTENSION + " max.flows must be positive");
+            }
+        }
+        checkInterval = Math.max(1, Math.min(activeTimeout, idleTimeout) / 16);
+
+        returnAttributes = new ArrayList<>();
+        returnAttributes.add(new Attribute(FlowRecord.SRC_ADDR_KEY, Attribute.Type.STRING));
+        returnAttributes.add(new Attribute(FlowRecord.DST_ADDR_KEY, Attribute.Type.STRING));
+        returnAttributes.add(new Attribute(FlowRecord.SRC_PORT_KEY, Attribute.Type.INT));
+        returnAttributes.add(new Attribute(FlowRecord.DST_PORT_KEY, Attribute.Type.INT));
+        returnAttributes.add(new Attribute(FlowRecord.NEXT_PROTO_KEY, Attribute.Type.INT));
+        returnAttributes.add(new Attribute(FlowRecord.NODE_ID_KEY, Attribute.Type.LONG));
+        returnAttributes.add(new Attribute(FlowRecord.PACKETS_KEY, Attribute.Type.LONG));
+        returnAttributes.add(new Attribute(FlowRecord.BYTES_KEY, Attribute.Type.LONG));
+        returnAttributes.add(new Attribute(FlowRecord.FIRST_SEEN_KEY, Attribute.Type.LONG));
+        returnAttributes.add(new Attribute(FlowRecord.LAST_SEEN_KEY, Attribute.Type.LONG));
+        returnAttributes.add(new Attribute(FlowRecord.MIN_HOP_LATENCY_KEY, Attribute.Type.LONG));
+        returnAttributes.add(new Attribute(FlowRecord.MAX_HOP_LATENCY_KEY, Attribute.Type.LONG));
+        returnAttributes.add(new Attribute(FlowRecord.EXPORT_REASON_KEY, Attribute.Type.STRING));
+        outputEventFactory = new OutputEventFactory(metaStreamEvent);
+
+        return FlowCacheState::new;
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           FlowCacheState state) {
+        final ComplexEventChunk<StreamEvent> outputChunk = new ComplexEventChunk<>();
+        synchronized (state) {
+            final long currentTime = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator().currentTime();
+            if (state.flowCache == null) {
+                state.flowCache = new FlowCache(activeTimeout, idleTimeout, maxFlows, currentTime);
+            }
+            final Consumer<FlowRecord> exporter = record -> export(record, currentTime, outputChunk,
+                    complexEventPopulater);
+            while (streamEventChunk.hasNext()) {
+                final StreamEvent streamEvent = streamEventChunk.next();
+                streamEventChunk.remove();
+                if (streamEvent.getType() == ComplexEvent.Type.TIMER) {
+                    if (state.nextCheckTime != -1 && streamEvent.getTimestamp() >= state.nextCheckTime) {
+                        state.nextCheckTime = -1;
+                    }
+                    continue;
+                }
+                if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                    continue;
+                }
+                final Object trptObj = telemetryReportExecutor.execute(streamEvent);
+                if (!(trptObj instanceof TelemetryReport)) {
+                    continue;
+                }
+                state.flowCache.update((TelemetryReport) trptObj, streamEvent.getTimestamp(), exporter);
+            }
+            state.flowCache.expire(currentTime, exporter);
+            // Also covers timers lost on restore as every chunk reschedules a missing or overdue check
+            if (state.flowCache.size() > 0
+                    && (state.nextCheckTime == -1 || currentTime >= state.nextCheckTime)) {
+                state.nextCheckTime = currentTime + checkInterval;
+                scheduler.notifyAt(state.nextCheckTime);
+            }
+        }
+        if (outputChunk.getFirst() != null) {
+            nextProcessor.process(outputChunk);
+        }
+    }
+
+    private void export(final FlowRecord record, final long timestamp,
+                        final ComplexEventChunk<StreamEvent> outputChunk,
+                        final ComplexEventPopulater complexEventPopulater) {
+        outputChunk.add(outputEventFactory.newEvent(timestamp, new Object[]{record.getSrcAddr(),
+                record.getDstAddr(), record.srcPort, record.dstPort, record.nextProto, record.nodeId, record.packets,
+                record.bytes, record.firstSeen, record.lastSeen, record.minHopLatency, record.maxHopLatency,
+                record.exportReason.getName()}, complexEventPopulater));
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return returnAttributes;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+        // Nothing to stop
+    }
+
+    @Override
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * The per partition state holding the flow cache.
+     */
+    class FlowCacheState extends State {
+
+        private FlowCache flowCache;
+        private long nextCheckTime = -1;
+
+        @Override
+        public boolean canDestroy() {
+            return flowCache == null || flowCache.size() == 0;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            final Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("flowCache", flowCache);
+            snapshot.put("nextCheckTime", nextCheckTime);
+            return snapshot;
+        }
+
+        @Override
+        public void restore(Map<String, Object> snapshot) {
+            flowCache = (FlowCache) snapshot.get("flowCache");
+            nextCheckTime = (Long) snapshot.get("nextCheckTime");
+        }
+    }
+}
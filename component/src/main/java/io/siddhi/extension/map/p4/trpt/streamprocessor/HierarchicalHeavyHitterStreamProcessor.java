@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.SchedulingProcessor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.Scheduler;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.IpHeader;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.HierarchicalHeavyHitters;
+import io.siddhi.extension.map.p4.trpt.util.Parameters;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stream processor reporting hierarchical heavy hitters over the IP prefix tree of Telemetry Report addresses.
+ */
+@Extension(
+        name = "hhh",
+        namespace = "p4trpt",
+        description = "Maintains hierarchical heavy hitters over the IPv4/IPv6 prefix tree of the packet Telemetry "
+                + "Report source or destination addresses in fixed memory. At the close of each interval one event "
+                + "is emitted for each of the most specific prefixes whose report count, less that of their "
+                + "reported descendants, meets the threshold. IPv4 levels are /8, /16, /24 and /32 and IPv6 levels "
+                + "are every 16 bits. Drop reports are ignored. Emitted events carry only the returned attributes, "
+                + "those of the input stream being null.",
+        parameters = {
+                @Parameter(name = "telemetry.report",
+                        description = "The TelemetryReport object produced by the 'telemRpt' mapping of the "
+                                + "p4-trpt source mapper",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "interval",
+                        description = "The reporting interval",
+                        type = {DataType.INT, DataType.LONG}),
+                @Parameter(name = "threshold",
+                        description = "The minimum residual number of reports for a prefix to be reported",
+                        type = {DataType.INT, DataType.LONG}),
+                @Parameter(name = "address",
+                        description = "The address to aggregate, either 'src' or 'dst'",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "src"),
+                @Parameter(name = "capacity",
+                        description = "The number of counters held for each prefix level",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "256")
+        },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"telemetry.report", "interval", "threshold"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "interval", "threshold", "address"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "interval", "threshold", "address",
+                        "capacity"})
+        },
+        returnAttributes = {
+                @ReturnAttribute(name = "prefix",
+                        description = "The heavy hitter prefix in CIDR notation",
+                        type = {DataType.STRING}),
+                @ReturnAttribute(name = "prefixLength",
+                        description = "The prefix length in bits",
+                        type = {DataType.INT}),
+                @ReturnAttribute(name = "prefixCount",
+                        description = "The estimated number of reports within the prefix",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "residualCount",
+                        description = "The estimated number of reports not attributed to reported descendants",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "totalCount",
+                        description = "The number of reports of the same IP version within the interval",
+                        type = {DataType.LONG})
+        },
+        examples = {
+                @Example(
+                        syntax = "from trptStream#p4trpt:hhh(telemRpt, 1 sec, 1000)\n"
+                                + "select prefix, prefixLength, residualCount\n"
+                                + "insert into subnetAttackStream;",
+                        description = "Every second, reports the most specific source prefixes that sent at least "
+                                + "1000 reports"
+                ),
+                @Example(
+                        syntax = "from trptStream#p4trpt:hhh(telemRpt, 5 sec, 10000, 'dst', 512)\n"
+                                + "select prefix, prefixCount\n"
+                                + "insert into targetedSubnetStream;",
+                        description = "Every five seconds, reports destination prefixes receiving at least 10000 "
+                                + "reports using 512 counters per prefix level"
+                )
+        }
+)
+public class HierarchicalHeavyHitterStreamProcessor
+        extends StreamProcessor<HierarchicalHeavyHitterStreamProcessor.HhhState> implements SchedulingProcessor {
+
+    private static final String EXTENSION = "p4trpt:hhh";
+    private static final int IPV4_STEP = 8;
+    private static final int IPV6_STEP = 16;
+
+    private ExpressionExecutor telemetryReportExecutor;
+    private long interval;
+    private long threshold;
+    private boolean useSrcAddr;
+    private int capacity;
+    private Scheduler scheduler;
+    private List<Attribute> returnAttributes;
+    private OutputEventFactory outputEventFactory;
+
+    @Override
+    protected StateFactory<HhhState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                          ExpressionExecutor[] attributeExpressionExecutors,
+                                          ConfigReader configReader,
+                                          StreamEventClonerHolder streamEventClonerHolder,
+                                          boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                          SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 3 || attributeExpressionExecutors.length > 5) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects 3 to 5 parameters but found "
+                    + attributeExpressionExecutors.length);
+        }
+        telemetryReportExecutor = attributeExpressionExecutors[0];
+        interval = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[1], "interval");
+        threshold = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[2], "threshold");
+        useSrcAddr = true;
+        capacity = 256;
+        if (attributeExpressionExecutors.length > 3) {
+            final String address = Parameters.getConstantString(EXTENSION, attributeExpressionExecutors[3],
+                    "address");
+            if ("dst".equalsIgnoreCase(address)) {
+                useSrcAddr = false;
+            } else if (!"src".equalsIgnoreCase(address)) {
+                throw new SiddhiAppValidationException(EXTENSION + " address must be 'src' or 'dst' but found "
+                        + address);
+            }
+        }
+        if (attributeExpressionExecutors.length > 4) {
+            capacity = (int) Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[4], "capacity");
+        }
+        if (interval <= 0 || threshold <= 0 || capacity <= 0) {
+            throw new SiddhiAppValidationException(EXTENSION + " interval, threshold and capacity must be positive");
+        }
+
+        returnAttributes = new ArrayList<>();
+        returnAttributes.add(new Attribute("prefix", Attribute.Type.STRING));
+        returnAttributes.add(new Attribute("prefixLength", Attribute.Type.INT));
+        returnAttributes.add(new Attribute("prefixCount", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("residualCount", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("totalCount", Attribute.Type.LONG));
+        outputEventFactory = new OutputEventFactory(metaStreamEvent);
+
+        return () -> new HhhState(capacity);
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           HhhState state) {
+        final ComplexEventChunk<StreamEvent> outputChunk = new ComplexEventChunk<>();
+        synchronized (state) {
+            while (streamEventChunk.hasNext()) {
+                final StreamEvent streamEvent = streamEventChunk.next();
+                streamEventChunk.remove();
+                if (streamEvent.getType() == ComplexEvent.Type.TIMER) {
+                    if (state.nextEmitTime != -1 && streamEvent.getTimestamp() >= state.nextEmitTime) {
+                        emit(state, streamEvent.getTimestamp(), outputChunk, complexEventPopulater);
+                    }
+                    continue;
+                }
+                if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                    continue;
+                }
+                final long currentTime = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator()
+                        .currentTime();
+                if (state.nextEmitTime != -1 && currentTime >= state.nextEmitTime) {
+                    // The timer was lost (e.g. on restore) so close the interval now
+                    emit(state, currentTime, outputChunk, complexEventPopulater);
+                }
+                final Object trptObj = telemetryReportExecutor.execute(streamEvent);
+                if (!(trptObj instanceof TelemetryReport) || ((TelemetryReport) trptObj).ipHdr == null) {
+                    continue;
+                }
+                final IpHeader ipHdr = ((TelemetryReport) trptObj).ipHdr;
+                final HierarchicalHeavyHitters hhh = ipHdr.getVer() == 4 ? state.ipv4 : state.ipv6;
+                if (useSrcAddr) {
+                    hhh.offer(ipHdr.getSrcAddrHigh(), ipHdr.getSrcAddrLow(), 1);
+                } else {
+                    hhh.offer(ipHdr.getDstAddrHigh(), ipHdr.getDstAddrLow(), 1);
+                }
+                if (state.nextEmitTime == -1) {
+                    state.nextEmitTime = currentTime + interval;
+                    scheduler.notifyAt(state.nextEmitTime);
+                }
+            }
+        }
+        if (outputChunk.getFirst() != null) {
+            nextProcessor.process(outputChunk);
+        }
+    }
+
+    private void emit(final HhhState state, final long timestamp, final ComplexEventChunk<StreamEvent> outputChunk,
+                      final ComplexEventPopulater complexEventPopulater) {
+        for (final HierarchicalHeavyHitters hhh : new HierarchicalHeavyHitters[]{state.ipv4, state.ipv6}) {
+            for (final HierarchicalHeavyHitters.Prefix prefix : hhh.query(threshold)) {
+                outputChunk.add(outputEventFactory.newEvent(timestamp, new Object[]{
+                        prefix.toCidr(), prefix.length, prefix.count, prefix.residualCount, hhh.getTotal()},
+                        complexEventPopulater));
+            }
+        }
+        state.ipv4.clear();
+        state.ipv6.clear();
+        state.nextEmitTime = -1;
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return returnAttributes;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+        // Nothing to stop
+    }
+
+    @Override
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * The per partition state holding one summary for each IP version.
+     */
+    static class HhhState extends State {
+
+        private HierarchicalHeavyHitters ipv4;
+        private HierarchicalHeavyHitters ipv6;
+        private long nextEmitTime = -1;
+
+        HhhState(final int capacity) {
+            ipv4 = new HierarchicalHeavyHitters(32, IPV4_STEP, capacity);
+            ipv6 = new HierarchicalHeavyHitters(128, IPV6_STEP, capacity);
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return nextEmitTime == -1;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            final Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("ipv4", ipv4);
+            snapshot.put("ipv6", ipv6);
+            snapshot.put("nextEmitTime", nextEmitTime);
+            return snapshot;
+        }
+
+        @Override
+        public void restore(Map<String, Object> snapshot) {
+            ipv4 = (HierarchicalHeavyHitters) snapshot.get("ipv4");
+            ipv6 = (HierarchicalHeavyHitters) snapshot.get("ipv6");
+            nextEmitTime = (Long) snapshot.get("nextEmitTime");
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.SchedulingProcessor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.Scheduler;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.HopField;
+import io.siddhi.extension.map.p4.trpt.IntMetadataStackHeader;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.KeyedLatencySketches;
+import io.siddhi.extension.map.p4.trpt.util.LatencySketch;
+import io.siddhi.extension.map.p4.trpt.util.Parameters;
+import io.siddhi.extension.map.p4.trpt.util.StripedLatencySketches;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stream processor estimating hop latency quantiles per INT node and egress port over tumbling intervals.
+ */
+@Extension(
+        name = "latencyQuantiles",
+        namespace = "p4trpt",
+        description = "Estimates the median, 99th and 99.9th percentile hop latency of each INT node and egress port "
+                + "over tumbling intervals from the per hop metadata of packet reports. Latencies are counted in "
+                + "logarithmic buckets in the style of DDSketch, so every estimate is within the relative accuracy "
+                + "of the true quantile at a fixed cost per sample, and sketches merge exactly. Each thread "
+                + "delivering reports records into its own sketches without locking, which are merged at the close "
+                + "of each interval when one event is emitted per node and egress port carrying only the "
+                + "returned attributes, those of the input stream being null. Hops are ignored unless the INT "
+                + "instructions include the node ID and hop latency, where the egress port is -1 when they omit it.",
+        parameters = {
+                @Parameter(name = "telemetry.report",
+                        description = "The TelemetryReport object produced by the 'telemRpt' mapping of the "
+                                + "p4-trpt source mapper",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "interval",
+                        description = "The tumbling interval",
+                        type = {DataType.INT, DataType.LONG}),
+                @Parameter(name = "relative.accuracy",
+                        description = "The maximum relative error of the estimated quantiles",
+                        type = {DataType.DOUBLE},
+                        optional = true,
+                        defaultValue = "0.01")
+        },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"telemetry.report", "interval"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "interval", "relative.accuracy"})
+        },
+        returnAttributes = {
+                @ReturnAttribute(name = "nodeId",
+                        description = "The INT node ID of the hop",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "egressPort",
+                        description = "The egress port of the hop or -1 when not reported",
+                        type = {DataType.INT}),
+                @ReturnAttribute(name = "hopCount",
+                        description = "The number of hop latencies within the interval",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "p50Latency",
+                        description = "The estimated median hop latency",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "p99Latency",
+                        description = "The estimated 99th percentile hop latency",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "p999Latency",
+                        description = "The estimated 99.9th percentile hop latency",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "maxLatency",
+                        description = "The highest hop latency",
+                        type = {DataType.LONG})
+        },
+        examples = {
+                @Example(
+                        syntax = "from trptStream#p4trpt:latencyQuantiles(telemRpt, 10 sec)\n"
+                                + "select nodeId, egressPort, p99Latency\n"
+                                + "having p99Latency > 100000\n"
+                                + "insert into congestedPortStream;",
+                        description = "Every ten seconds, reports the switch ports whose 99th percentile hop "
+                                + "latency exceeded 100 microseconds"
+                )
+        }
+)
+public class LatencyQuantilesStreamProcessor
+        extends StreamProcessor<LatencyQuantilesStreamProcessor.QuantileState> implements SchedulingProcessor {
+
+    private static final String EXTENSION = "p4trpt:latencyQuantiles";
+    private static final int INITIAL_CAPACITY = 256;
+    private static final long NO_PORT = 0xffffffffL;
+
+    private ExpressionExecutor telemetryReportExecutor;
+    private long interval;
+    private double relativeAccuracy;
+    private Scheduler scheduler;
+    private List<Attribute> returnAttributes;
+    private OutputEventFactory outputEventFactory;
+
+    @Override
+    protected StateFactory<QuantileState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                               ExpressionExecutor[] attributeExpressionExecutors,
+                                               ConfigReader configReader,
+                                               StreamEventClonerHolder streamEventClonerHolder,
+                                               boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                               SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 2 || attributeExpressionExecutors.length > 3) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects 2 or 3 parameters but found "
+                    + attributeExpressionExecutors.length);
+        }
+        telemetryReportExecutor = attributeExpressionExecutors[0];
+        interval = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[1], "interval");
+        if (interval <= 0) {
+            throw new SiddhiAppValidationException(EXTENSION + " interval must be positive");
+        }
+        relativeAccuracy = 0.01;
+        if (attributeExpressionExecutors.length > 2) {
+            relativeAccuracy = Parameters.getConstantDouble(EXTENSION, attributeExpressionExecutors[2],
+                    "relative.accuracy");
+            if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+                throw new SiddhiAppValidationException(EXTENSION + " relative.accuracy must be within (0, 1)");
+            }
+        }
+
+        returnAttributes = new ArrayList<>();
+        returnAttributes.add(new Attribute("nodeId", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("egressPort", Attribute.Type.INT));
+        returnAttributes.add(new Attribute("hopCount", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("p50Latency", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("p99Latency", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("p999Latency", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("maxLatency", Attribute.Type.LONG));
+        outputEventFactory = new OutputEventFactory(metaStreamEvent);
+
+        return QuantileState::new;
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           QuantileState state) {
+        final ComplexEventChunk<StreamEvent> outputChunk = new ComplexEventChunk<>();
+        while (streamEventChunk.hasNext()) {
+            final StreamEvent streamEvent = streamEventChunk.next();
+            streamEventChunk.remove();
+            if (streamEvent.getType() == ComplexEvent.Type.TIMER) {
+                emitIfDue(state, streamEvent.getTimestamp(), outputChunk, complexEventPopulater);
+                continue;
+            }
+            if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                continue;
+            }
+            final long currentTime = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator()
+                    .currentTime();
+            if (state.nextEmitTime != -1 && currentTime >= state.nextEmitTime) {
+                // The timer was lost (e.g. on restore) so close the interval now
+                emitIfDue(state, currentTime, outputChunk, complexEventPopulater);
+            }
+            final Object trptObj = telemetryReportExecutor.execute(streamEvent);
+            if (!(trptObj instanceof TelemetryReport) || !record((TelemetryReport) trptObj, state.recorded)) {
+                continue;
+            }
+            if (state.nextEmitTime == -1) {
+                synchronized (state) {
+                    if (state.nextEmitTime == -1) {
+                        state.nextEmitTime = currentTime + interval;
+                        scheduler.notifyAt(state.nextEmitTime);
+                    }
+                }
+            }
+        }
+        if (outputChunk.getFirst() != null) {
+            nextProcessor.process(outputChunk);
+        }
+    }
+
+    // Records the latency of every hop and returns false when the report carries none
+    private static boolean record(final TelemetryReport trpt, final StripedLatencySketches recorded) {
+        if (trpt.intHdr == null) {
+            return false;
+        }
+        final IntMetadataStackHeader stack = trpt.intHdr.mdStackHdr;
+        if (stack.getNumHops() == 0 || !stack.hasHopField(HopField.NODE_ID)
+                || !stack.hasHopField(HopField.HOP_LATENCY)) {
+            return false;
+        }
+        final boolean hasPort = stack.hasHopField(HopField.EGRESS_PORT);
+        for (int hop = 0; hop < stack.getNumHops(); hop++) {
+            final long key = (stack.getHopValue(HopField.NODE_ID, hop) << 32)
+                    | (hasPort ? stack.getHopValue(HopField.EGRESS_PORT, hop) : NO_PORT);
+            recorded.add(key, stack.getHopValue(HopField.HOP_LATENCY, hop));
+        }
+        return true;
+    }
+
+    private void emitIfDue(final QuantileState state, final long timestamp,
+                           final ComplexEventChunk<StreamEvent> outputChunk,
+                           final ComplexEventPopulater complexEventPopulater) {
+        synchronized (state) {
+            if (state.nextEmitTime == -1 || timestamp < state.nextEmitTime) {
+                return;
+            }
+            state.recorded.drainTo(state.merged);
+            final KeyedLatencySketches merged = state.merged;
+            for (int entry = 0; entry < merged.size(); entry++) {
+                final long key = merged.getKey(entry);
+                final LatencySketch sketch = merged.getSketch(entry);
+                outputChunk.add(outputEventFactory.newEvent(timestamp, new Object[]{key >>> 32, (int) key,
+                        sketch.getCount(), sketch.getQuantile(0.5), sketch.getQuantile(0.99),
+                        sketch.getQuantile(0.999), sketch.getMax()}, complexEventPopulater));
+            }
+            merged.clear();
+            state.nextEmitTime = -1;
+        }
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return returnAttributes;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+        // Nothing to stop
+    }
+
+    @Override
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * The per partition state holding the per thread sketches of the current interval and the sketches merged from
+     * them, which only hold values between a drain and the interval close or after a restore.
+     */
+    class QuantileState extends State {
+
+        private final StripedLatencySketches recorded = new StripedLatencySketches(relativeAccuracy);
+        private KeyedLatencySketches merged = new KeyedLatencySketches(relativeAccuracy, INITIAL_CAPACITY);
+        private volatile long nextEmitTime = -1;
+
+        @Override
+        public boolean canDestroy() {
+            return nextEmitTime == -1;
+        }
+
+        @Override
+        public synchronized Map<String, Object> snapshot() {
+            recorded.drainTo(merged);
+            final Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("merged", merged);
+            snapshot.put("nextEmitTime", nextEmitTime);
+            return snapshot;
+        }
+
+        @Override
+        public synchronized void restore(Map<String, Object> snapshot) {
+            merged = (KeyedLatencySketches) snapshot.get("merged");
+            nextEmitTime = (Long) snapshot.get("nextEmitTime");
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.HopField;
+import io.siddhi.extension.map.p4.trpt.IntMetadataStackHeader;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.BurstDetector;
+import io.siddhi.extension.map.p4.trpt.util.Parameters;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stream processor detecting microbursts from the queue occupancy reported by each INT hop.
+ */
+@Extension(
+        name = "microburst",
+        namespace = "p4trpt",
+        description = "Detects microbursts on the queues of INT nodes from the queue occupancy within the per hop "
+                + "metadata of packet reports. Each node and queue ID keeps an exponentially weighted moving average "
+                + "and variance of its occupancy, updated in constant time per hop, and a burst starts when the "
+                + "occupancy exceeds both the average plus the given number of standard deviations and the minimum "
+                + "occupancy, once the queue has been sampled 1/alpha times. An event carrying the input attributes "
+                + "of the report is emitted as a burst starts, after which the queue is considered to remain in the "
+                + "burst until its occupancy falls to the average plus half as many standard deviations, so an "
+                + "ongoing burst is reported once. Occupancy within a burst is kept out of the average, unless the "
+                + "burst outlasts 1/alpha samples when it is taken as the new level. Reports are processed inline "
+                + "and never retained. "
+                + "Hops are ignored unless the INT instructions include the node ID, queue ID and queue occupancy.",
+        parameters = {
+                @Parameter(name = "telemetry.report",
+                        description = "The TelemetryReport object produced by the 'telemRpt' mapping of the "
+                                + "p4-trpt source mapper",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "threshold.sigmas",
+                        description = "The number of standard deviations above the average occupancy at which a "
+                                + "burst starts",
+                        type = {DataType.INT, DataType.DOUBLE},
+                        optional = true,
+                        defaultValue = "4"),
+                @Parameter(name = "alpha",
+                        description = "The weight of each occupancy sample within the moving average, within (0, 1)",
+                        type = {DataType.DOUBLE},
+                        optional = true,
+                        defaultValue = "0.01"),
+                @Parameter(name = "min.occupancy",
+                        description = "The occupancy that must be exceeded for a burst to start, avoiding bursts "
+                                + "being reported on queues that are nearly always empty",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "0")
+        },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"telemetry.report"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "threshold.sigmas"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "threshold.sigmas", "alpha"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "threshold.sigmas", "alpha",
+                        "min.occupancy"})
+        },
+        returnAttributes = {
+                @ReturnAttribute(name = "nodeId",
+                        description = "The INT node ID of the hop",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "queueId",
+                        description = "The queue ID of the hop",
+                        type = {DataType.INT}),
+                @ReturnAttribute(name = "hopIndex",
+                        description = "The index of the hop within the report, 0 being the first hop",
+                        type = {DataType.INT}),
+                @ReturnAttribute(name = "queueOccupancy",
+                        description = "The queue occupancy that started the burst",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "baselineMean",
+                        description = "The moving average of the queue occupancy before the burst",
+                        type = {DataType.DOUBLE}),
+                @ReturnAttribute(name = "baselineStdDev",
+                        description = "The moving standard deviation of the queue occupancy before the burst",
+                        type = {DataType.DOUBLE})
+        },
+        examples = {
+                @Example(
+                        syntax = "from trptStream#p4trpt:microburst(telemRpt, 5, 0.01, 100)\n"
+                                + "select nodeId, queueId, queueOccupancy, baselineMean\n"
+                                + "insert into microburstStream;",
+                        description = "Reports each queue whose occupancy exceeds 100 and five standard deviations "
+                                + "above its moving average, once per burst"
+                )
+        }
+)
+public class MicroburstStreamProcessor extends StreamProcessor<MicroburstStreamProcessor.MicroburstState> {
+
+    private static final String EXTENSION = "p4trpt:microburst";
+    private static final int INITIAL_CAPACITY = 256;
+
+    private ExpressionExecutor telemetryReportExecutor;
+    private double thresholdSigmas;
+    private double alpha;
+    private long minOccupancy;
+    private List<Attribute> returnAttributes;
+
+    @Override
+    protected StateFactory<MicroburstState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                 ExpressionExecutor[] attributeExpressionExecutors,
+                                                 ConfigReader configReader,
+                                                 StreamEventClonerHolder streamEventClonerHolder,
+                                                 boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                 SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 1 || attributeExpressionExecutors.length > 4) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects 1 to 4 parameters but found "
+                    + attributeExpressionExecutors.length);
+        }
+        telemetryReportExecutor = attributeExpressionExecutors[0];
+        thresholdSigmas = 4;
+        if (attributeExpressionExecutors.length > 1) {
+            thresholdSigmas = Parameters.getConstantDouble(EXTENSION, attributeExpressionExecutors[1],
+                    "threshold.sigmas");
+            if (!(thresholdSigmas > 0)) {
+                throw new SiddhiAppValidationException(EXTENSION + " threshold.sigmas must be positive");
+            }
+        }
+        alpha = 0.01;
+        if (attributeExpressionExecutors.length > 2) {
+            alpha = Parameters.getConstantDouble(EXTENSION, attributeExpressionExecutors[2], "alpha");
+            if (!(alpha > 0 && alpha < 1)) {
+                throw new SiddhiAppValidationException(EXTENSION + " alpha must be within (0, 1)");
+            }
+        }
+        minOccupancy = 0;
+        if (attributeExpressionExecutors.length > 3) {
+            minOccupancy = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[3], "min.occupancy");
+            if (minOccupancy < 0) {
+                throw new SiddhiAppValidationException(EXTENSION + " min.occupancy must not be negative");
+            }
+        }
+
+        returnAttributes = new ArrayList<>();
+        returnAttributes.add(new Attribute("nodeId", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("queueId", Attribute.Type.INT));
+        returnAttributes.add(new Attribute("hopIndex", Attribute.Type.INT));
+        returnAttributes.add(new Attribute("queueOccupancy", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("baselineMean", Attribute.Type.DOUBLE));
+        returnAttributes.add(new Attribute("baselineStdDev", Attribute.Type.DOUBLE));
+
+        return MicroburstState::new;
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           MicroburstState state) {
+        final ComplexEventChunk<StreamEvent> outputChunk = new ComplexEventChunk<>();
+        synchronized (state) {
+            while (streamEventChunk.hasNext()) {
+                final StreamEvent streamEvent = streamEventChunk.next();
+                streamEventChunk.remove();
+                if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                    continue;
+                }
+                final Object trptObj = telemetryReportExecutor.execute(streamEvent);
+                if (!(trptObj instanceof TelemetryReport) || ((TelemetryReport) trptObj).intHdr == null) {
+                    continue;
+                }
+                final IntMetadataStackHeader stack = ((TelemetryReport) trptObj).intHdr.mdStackHdr;
+                if (!stack.hasHopField(HopField.NODE_ID) || !stack.hasHopField(HopField.QUEUE_ID)
+                        || !stack.hasHopField(HopField.QUEUE_OCCUPANCY)) {
+                    continue;
+                }
+                for (int hop = 0; hop < stack.getNumHops(); hop++) {
+                    final long nodeId = stack.getHopValue(HopField.NODE_ID, hop);
+                    final long queueId = stack.getHopValue(HopField.QUEUE_ID, hop);
+                    final long occupancy = stack.getHopValue(HopField.QUEUE_OCCUPANCY, hop);
+                    // Node IDs are 32 bits and queue IDs 8 bits
+                    if (!state.detector.offer((nodeId << 8) | queueId, occupancy)) {
+                        continue;
+                    }
+                    final StreamEvent outEvent = streamEventCloner.copyStreamEvent(streamEvent);
+                    complexEventPopulater.populateComplexEvent(outEvent, new Object[]{nodeId, (int) queueId, hop,
+                            occupancy, state.detector.getLastMean(), state.detector.getLastStdDev()});
+                    outputChunk.add(outEvent);
+                }
+            }
+        }
+        if (outputChunk.getFirst() != null) {
+            nextProcessor.process(outputChunk);
+        }
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return returnAttributes;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+        // Nothing to stop
+    }
+
+    /**
+     * The per partition state holding the occupancy baseline of every queue.
+     */
+    class MicroburstState extends State {
+
+        private BurstDetector detector = new BurstDetector(alpha, thresholdSigmas, minOccupancy, INITIAL_CAPACITY);
+
+        @Override
+        public boolean canDestroy() {
+            return detector.size() == 0;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            final Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("detector", detector);
+            return snapshot;
+        }
+
+        @Override
+        public void restore(Map<String, Object> snapshot) {
+            detector = (BurstDetector) snapshot.get("detector");
+        }
+    }
+}
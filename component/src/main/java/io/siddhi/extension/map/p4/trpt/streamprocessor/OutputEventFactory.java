@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventFactory;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+
+/**
+ * Creates the output events of stream processors that emit aggregates rather than the events they consume, so that
+ * no input event need be retained to serve as a template. The attributes of the input stream are null within these
+ * events and only the processor's return attributes are populated.
+ */
+class OutputEventFactory {
+
+    private final MetaStreamEvent metaStreamEvent;
+    // Created on first use as the event layout is only complete once the query has been parsed
+    private volatile StreamEventFactory streamEventFactory;
+
+    OutputEventFactory(final MetaStreamEvent metaStreamEvent) {
+        this.metaStreamEvent = metaStreamEvent;
+    }
+
+    /**
+     * Returns a new current event.
+     * @param timestamp - the event timestamp
+     * @param returnData - the values of the processor's return attributes
+     * @param complexEventPopulater - the processor's populater
+     * @return - the event
+     */
+    StreamEvent newEvent(final long timestamp, final Object[] returnData,
+                         final ComplexEventPopulater complexEventPopulater) {
+        StreamEventFactory factory = streamEventFactory;
+        if (factory == null) {
+            factory = new StreamEventFactory(metaStreamEvent);
+            streamEventFactory = factory;
+        }
+        final StreamEvent event = factory.newInstance();
+        event.setType(ComplexEvent.Type.CURRENT);
+        event.setTimestamp(timestamp);
+        complexEventPopulater.populateComplexEvent(event, returnData);
+        return event;
+    }
+}
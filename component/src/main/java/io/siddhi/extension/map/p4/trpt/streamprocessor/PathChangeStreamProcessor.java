@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.LongHashIndex;
+import io.siddhi.extension.map.p4.trpt.util.Parameters;
+import io.siddhi.extension.map.p4.trpt.util.PathChangeTracker;
+import io.siddhi.extension.map.p4.trpt.util.PathInterner;
+import io.siddhi.extension.map.p4.trpt.util.ReportKeys;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stream processor detecting flows whose INT path changes.
+ */
+@Extension(
+        name = "pathChange",
+        namespace = "p4trpt",
+        description = "Detects packet flows changing path, as with route flaps and ECMP rehashes, by comparing the "
+                + "INT path of each report with the last path of its flow keyed by source and destination address "
+                + "and port and IP protocol. Paths are interned as path IDs as by the 'pathId' mapping of the "
+                + "p4-trpt source mapper and each flow's last path ID is held in fixed memory, so every report takes "
+                + "constant time and no table join. As path IDs are local to the process, the last paths are not "
+                + "persisted along with the app's state, and after a restore each flow's next report sets its path. "
+                + "An event carrying the input attributes of the report is emitted only when a flow's path differs "
+                + "from its last one, while flows idle for longer than the idle timeout are forgotten and, once "
+                + "'max.flows' are held, flows are evicted to make room. Reports are processed inline and never "
+                + "retained. Drop reports and reports without a TCP or UDP header or INT node IDs are ignored.",
+        parameters = {
+                @Parameter(name = "telemetry.report",
+                        description = "The TelemetryReport object produced by the 'telemRpt' mapping of the "
+                                + "p4-trpt source mapper",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "idle.timeout",
+                        description = "The duration without reports after which a flow is forgotten",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "60000"),
+                @Parameter(name = "max.flows",
+                        description = "The maximum number of flows held at once",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "65536")
+        },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"telemetry.report"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "idle.timeout"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "idle.timeout", "max.flows"})
+        },
+        returnAttributes = {
+                @ReturnAttribute(name = "oldPathId",
+                        description = "The path ID of the flow's previous path",
+                        type = {DataType.INT}),
+                @ReturnAttribute(name = "newPathId",
+                        description = "The path ID of the flow's new path",
+                        type = {DataType.INT}),
+                @ReturnAttribute(name = "oldPath",
+                        description = "The node IDs of the previous path as a JSON array in hop order, or null "
+                                + "once the path is no longer registered by the interner",
+                        type = {DataType.STRING}),
+                @ReturnAttribute(name = "newPath",
+                        description = "The node IDs of the new path as a JSON array in hop order",
+                        type = {DataType.STRING}),
+                @ReturnAttribute(name = "oldPathLastSeen",
+                        description = "The time the previous path was last seen, the change having happened "
+                                + "between it and the event's timestamp",
+                        type = {DataType.LONG})
+        },
+        examples = {
+                @Example(
+                        syntax = "from trptStream#p4trpt:pathChange(telemRpt, 30 sec)\n"
+                                + "select p4trpt:pathHops(oldPathId) as oldPath, newPath, oldPathLastSeen\n"
+                                + "insert into pathChangeStream;",
+                        description = "Reports each flow taking a new path, forgetting flows idle for 30 seconds"
+                )
+        }
+)
+public class PathChangeStreamProcessor extends StreamProcessor<PathChangeStreamProcessor.PathChangeState> {
+
+    private static final String EXTENSION = "p4trpt:pathChange";
+
+    private ExpressionExecutor telemetryReportExecutor;
+    private long idleTimeout;
+    private int maxFlows;
+    private List<Attribute> returnAttributes;
+
+    @Override
+    protected StateFactory<PathChangeState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                 ExpressionExecutor[] attributeExpressionExecutors,
+                                                 ConfigReader configReader,
+                                                 StreamEventClonerHolder streamEventClonerHolder,
+                                                 boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                 SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 1 || attributeExpressionExecutors.length > 3) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects 1 to 3 parameters but found "
+                    + attributeExpressionExecutors.length);
+        }
+        telemetryReportExecutor = attributeExpressionExecutors[0];
+        idleTimeout = 60000;
+        if (attributeExpressionExecutors.length > 1) {
+            idleTimeout = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[1], "idle.timeout");
+        }
+        maxFlows = 65536;
+        if (attributeExpressionExecutors.length > 2) {
+            final long value = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[2], "max.flows");
+            if (value > LongHashIndex.MAX_CAPACITY) {
+                throw new SiddhiAppValidationException(EXTENSION + " max.flows is too large");
+            }
+            maxFlows = (int) value;
+        }
+        if (idleTimeout <= 0 || maxFlows <= 0) {
+            throw new SiddhiAppValidationException(EXTENSION + " idle.timeout and max.flows must be positive");
+        }
+
+        returnAttributes = new ArrayList<>();
+        returnAttributes.add(new Attribute("oldPathId", Attribute.Type.INT));
+        returnAttributes.add(new Attribute("newPathId", Attribute.Type.INT));
+        returnAttributes.add(new Attribute("oldPath", Attribute.Type.STRING));
+        returnAttributes.add(new Attribute("newPath", Attribute.Type.STRING));
+        returnAttributes.add(new Attribute("oldPathLastSeen", Attribute.Type.LONG));
+
+        return PathChangeState::new;
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           PathChangeState state) {
+        final ComplexEventChunk<StreamEvent> outputChunk = new ComplexEventChunk<>();
+        final PathInterner interner = PathInterner.getShared();
+        synchronized (state) {
+            final long currentTime = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator().currentTime();
+            while (streamEventChunk.hasNext()) {
+                final StreamEvent streamEvent = streamEventChunk.next();
+                streamEventChunk.remove();
+                if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                    continue;
+                }
+                final Object trptObj = telemetryReportExecutor.execute(streamEvent);
+                if (!(trptObj instanceof TelemetryReport)) {
+                    continue;
+                }
+                final TelemetryReport trpt = (TelemetryReport) trptObj;
+                if (trpt.intHdr == null || !ReportKeys.hasFlowKey(trpt)) {
+                    continue;
+                }
+                final int pathId = interner.intern(trpt.intHdr.mdStackHdr);
+                if (pathId == PathInterner.NO_PATH) {
+                    continue;
+                }
+                // The 5-tuple alone as the reporting node may change along with the path
+                final int oldPathId = state.tracker.update(ReportKeys.fiveTupleHash(trpt), pathId, currentTime);
+                if (oldPathId == PathChangeTracker.NO_CHANGE) {
+                    continue;
+                }
+                final StreamEvent outEvent = streamEventCloner.copyStreamEvent(streamEvent);
+                complexEventPopulater.populateComplexEvent(outEvent, new Object[]{oldPathId, pathId,
+                        interner.getHopsJson(oldPathId), interner.getHopsJson(pathId),
+                        state.tracker.getPreviousLastSeen()});
+                outputChunk.add(outEvent);
+            }
+        }
+        if (outputChunk.getFirst() != null) {
+            nextProcessor.process(outputChunk);
+        }
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return returnAttributes;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+        // Nothing to stop
+    }
+
+    /**
+     * The per partition state holding the last path of every flow, persisted as path IDs depend only on the path.
+     */
+    class PathChangeState extends State {
+
+        private PathChangeTracker tracker = new PathChangeTracker(maxFlows, idleTimeout);
+
+        @Override
+        public boolean canDestroy() {
+            return tracker.size() == 0;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            return new HashMap<>();
+        }
+
+        @Override
+        public void restore(Map<String, Object> snapshot) {
+            tracker = new PathChangeTracker(maxFlows, idleTimeout);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.SchedulingProcessor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.Scheduler;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.LongHashIndex;
+import io.siddhi.extension.map.p4.trpt.util.Parameters;
+import io.siddhi.extension.map.p4.trpt.util.TopologyGraph;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stream processor learning the forwarding topology from INT paths and emitting the edges changed each interval.
+ */
+@Extension(
+        name = "topology",
+        namespace = "p4trpt",
+        description = "Learns the forwarding topology between INT nodes from the paths of packet reports, where each "
+                + "pair of consecutive hops denotes a directed edge from the upstream to the downstream node. Every "
+                + "edge keeps the number of packets seen crossing it and the time it was last seen in primitive "
+                + "arrays, with each node holding an adjacency list of its outgoing edges. Each interval in which "
+                + "packets were seen, one event is emitted per edge crossed within it carrying only the returned "
+                + "attributes, those of the input stream being null, so unchanged edges are never re-emitted. Input "
+                + "events are consumed. When a 'snapshot.interval' is given every edge learned is emitted at each "
+                + "multiple of it instead, so that the whole topology can be rebuilt downstream. Once 'max.edges' "
+                + "are held new edges are not learned, and the packets crossing them are counted and logged once "
+                + "per interval. Reports without INT node IDs are ignored.",
+        parameters = {
+                @Parameter(name = "telemetry.report",
+                        description = "The TelemetryReport object produced by the 'telemRpt' mapping of the "
+                                + "p4-trpt source mapper",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "interval",
+                        description = "The interval between emissions of changed edges",
+                        type = {DataType.INT, DataType.LONG}),
+                @Parameter(name = "max.edges",
+                        description = "The maximum number of edges held",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "65536"),
+                @Parameter(name = "snapshot.interval",
+                        description = "The interval between emissions of every edge, whether changed or not, "
+                                + "where 0 only emits changed edges",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "0")
+        },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"telemetry.report", "interval"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "interval", "max.edges"}),
+                @ParameterOverload(parameterNames = {"telemetry.report", "interval", "max.edges",
+                        "snapshot.interval"})
+        },
+        returnAttributes = {
+                @ReturnAttribute(name = "fromNodeId",
+                        description = "The INT node ID of the upstream hop",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "toNodeId",
+                        description = "The INT node ID of the downstream hop",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "packets",
+                        description = "The number of packets seen crossing the edge since it was learned",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "intervalPackets",
+                        description = "The number of packets seen crossing the edge within the interval",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "lastSeen",
+                        description = "The time the edge was last seen",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "isNew",
+                        description = "True when the edge was first seen within the interval",
+                        type = {DataType.BOOL})
+        },
+        examples = {
+                @Example(
+                        syntax = "from trptStream#p4trpt:topology(telemRpt, 1 min)\n"
+                                + "select fromNodeId, toNodeId, intervalPackets\n"
+                                + "having isNew\n"
+                                + "insert into newLinkStream;",
+                        description = "Each minute, reports the links between INT nodes first taken within it"
+                ),
+                @Example(
+                        syntax = "from trptStream#p4trpt:topology(telemRpt, 10 sec, 65536, 5 min)\n"
+                                + "select fromNodeId, toNodeId, packets, lastSeen\n"
+                                + "insert into linkStream;",
+                        description = "Reports the links changed every ten seconds and every link learned every "
+                                + "five minutes"
+                )
+        }
+)
+public class TopologyStreamProcessor
+        extends StreamProcessor<TopologyStreamProcessor.TopologyState> implements SchedulingProcessor {
+
+    private static final Logger log = Logger.getLogger(TopologyStreamProcessor.class);
+    private static final String EXTENSION = "p4trpt:topology";
+
+    private ExpressionExecutor telemetryReportExecutor;
+    private long interval;
+    private long snapshotInterval;
+    private int maxEdges;
+    private Scheduler scheduler;
+    private List<Attribute> returnAttributes;
+    private OutputEventFactory outputEventFactory;
+
+    @Override
+    protected StateFactory<TopologyState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                               ExpressionExecutor[] attributeExpressionExecutors,
+                                               ConfigReader configReader,
+                                               StreamEventClonerHolder streamEventClonerHolder,
+                                               boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                               SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 2 || attributeExpressionExecutors.length > 4) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects 2 to 4 parameters but found "
+                    + attributeExpressionExecutors.length);
+        }
+        telemetryReportExecutor = attributeExpressionExecutors[0];
+        interval = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[1], "interval");
+        if (interval <= 0) {
+            throw new SiddhiAppValidationException(EXTENSION + " interval must be positive");
+        }
+        maxEdges = 65536;
+        if (attributeExpressionExecutors.length > 2) {
+            final long value = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[2], "max.edges");
+            if (value <= 0 || value > LongHashIndex.MAX_CAPACITY) {
+                throw new SiddhiAppValidationException(EXTENSION + " max.edges must be positive");
+            }
+            maxEdges = (int) value;
+        }
+        snapshotInterval = 0;
+        if (attributeExpressionExecutors.length > 3) {
+            snapshotInterval = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[3],
+                    "snapshot.interval");
+            if (snapshotInterval < 0) {
+                throw new SiddhiAppValidationException(EXTENSION + " snapshot.interval must not be negative");
+            }
+        }
+
+        returnAttributes = new ArrayList<>();
+        returnAttributes.add(new Attribute("fromNodeId", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("toNodeId", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("packets", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("intervalPackets", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("lastSeen", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("isNew", Attribute.Type.BOOL));
+        outputEventFactory = new OutputEventFactory(metaStreamEvent);
+
+        return TopologyState::new;
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           TopologyState state) {
+        final ComplexEventChunk<StreamEvent> outputChunk = new ComplexEventChunk<>();
+        synchronized (state) {
+            while (streamEventChunk.hasNext()) {
+                final StreamEvent streamEvent = streamEventChunk.next();
+                streamEventChunk.remove();
+                if (streamEvent.getType() == ComplexEvent.Type.TIMER) {
+                    emitIfDue(state, streamEvent.getTimestamp(), outputChunk, complexEventPopulater);
+                    continue;
+                }
+                if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                    continue;
+                }
+                final long currentTime = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator()
+                        .currentTime();
+                // Closes the interval now when the timer was lost (e.g. on restore)
+                emitIfDue(state, currentTime, outputChunk, complexEventPopulater);
+                final Object trptObj = telemetryReportExecutor.execute(streamEvent);
+                if (!(trptObj instanceof TelemetryReport) || ((TelemetryReport) trptObj).intHdr == null
+                        || state.graph.addPath(((TelemetryReport) trptObj).intHdr.mdStackHdr, currentTime) == 0) {
+                    continue;
+                }
+                if (state.nextEmitTime == -1) {
+                    state.nextEmitTime = currentTime + interval;
+                    scheduler.notifyAt(state.nextEmitTime);
+                }
+                if (snapshotInterval > 0 && state.nextSnapshotTime == -1) {
+                    state.nextSnapshotTime = currentTime + snapshotInterval;
+                    scheduler.notifyAt(state.nextSnapshotTime);
+                }
+            }
+        }
+        if (outputChunk.getFirst() != null) {
+            nextProcessor.process(outputChunk);
+        }
+    }
+
+    /**
+     * Emits every edge when a snapshot is due, or otherwise the changed edges when the interval has closed.
+     */
+    private void emitIfDue(final TopologyState state, final long timestamp,
+                           final ComplexEventChunk<StreamEvent> outputChunk,
+                           final ComplexEventPopulater complexEventPopulater) {
+        final TopologyGraph.EdgeConsumer consumer = (fromNodeId, toNodeId, packets, newPackets, lastSeen) ->
+                outputChunk.add(outputEventFactory.newEvent(timestamp, new Object[]{fromNodeId, toNodeId, packets,
+                        newPackets, lastSeen, packets == newPackets}, complexEventPopulater));
+        if (state.nextSnapshotTime != -1 && timestamp >= state.nextSnapshotTime) {
+            state.graph.drainAll(consumer);
+            state.nextSnapshotTime = timestamp + snapshotInterval;
+            scheduler.notifyAt(state.nextSnapshotTime);
+        } else if (state.nextEmitTime != -1 && timestamp >= state.nextEmitTime) {
+            state.graph.drainChanged(consumer);
+        } else {
+            return;
+        }
+        state.nextEmitTime = -1;
+        final long droppedEdges = state.graph.getDroppedEdges();
+        if (droppedEdges > state.loggedDroppedEdges) {
+            log.warn(EXTENSION + " did not learn the edges crossed by " + (droppedEdges - state.loggedDroppedEdges)
+                    + " packets as " + maxEdges + " max.edges are held");
+            state.loggedDroppedEdges = droppedEdges;
+        }
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return returnAttributes;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+        // Nothing to stop
+    }
+
+    @Override
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * The per partition state holding the learned topology.
+     */
+    class TopologyState extends State {
+
+        private TopologyGraph graph = new TopologyGraph(maxEdges);
+        private long nextEmitTime = -1;
+        private long nextSnapshotTime = -1;
+        private long loggedDroppedEdges;
+
+        @Override
+        public boolean canDestroy() {
+            return graph.getNumEdges() == 0;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            final Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("graph", graph);
+            snapshot.put("nextEmitTime", nextEmitTime);
+            snapshot.put("nextSnapshotTime", nextSnapshotTime);
+            return snapshot;
+        }
+
+        @Override
+        public void restore(Map<String, Object> snapshot) {
+            graph = (TopologyGraph) snapshot.get("graph");
+            nextEmitTime = (Long) snapshot.get("nextEmitTime");
+            nextSnapshotTime = (Long) snapshot.get("nextSnapshotTime");
+            loggedDroppedEdges = graph.getDroppedEdges();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.SchedulingProcessor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.Scheduler;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.extension.map.p4.trpt.ReportField;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import io.siddhi.extension.map.p4.trpt.util.KeyedAccumulators;
+import io.siddhi.extension.map.p4.trpt.util.Parameters;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stream processor aggregating Telemetry Reports per key over tumbling intervals without retaining every event.
+ */
+@Extension(
+        name = "tumblingAggregate",
+        namespace = "p4trpt",
+        description = "Exact per key aggregation of packet Telemetry Reports over tumbling intervals. Unlike "
+                + "'window.time' with 'group by', which holds every event until it expires, only the count and the "
+                + "sum, minimum and maximum of 'ipHdr.len' are kept per key within a primitive open addressed hash "
+                + "table, so memory scales with the number of active keys rather than the number of reports. At "
+                + "the close of each interval one event is emitted per key carrying the key field values decoded "
+                + "from the table, named by the last element of their mapping path such as 'dstPort', followed by "
+                + "the aggregates. No input events are retained, so the attributes of the input stream are null "
+                + "within the emitted events. Drop reports, which carry no IP length, and reports missing any of "
+                + "the key fields are ignored.",
+        parameters = {
+                @Parameter(name = "telemetry.report",
+                        description = "The TelemetryReport object produced by the 'telemRpt' mapping of the "
+                                + "p4-trpt source mapper",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "interval",
+                        description = "The tumbling interval",
+                        type = {DataType.INT, DataType.LONG}),
+                @Parameter(name = "key.field",
+                        description = "The mapping path of a numeric key field, one of 'ipHdr.srcAddr', "
+                                + "'ipHdr.dstAddr', 'ipHdr.nextProto', 'protoHdr.srcPort', 'protoHdr.dstPort', "
+                                + "'telemRptHdr.nodeId' or 'intHdr.mdStackHdr.origMac'",
+                        type = {DataType.STRING})
+        },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"telemetry.report", "interval", "key.field", "..."})
+        },
+        returnAttributes = {
+                @ReturnAttribute(name = "keyField",
+                        description = "The value of each key field named by the last element of its mapping path, "
+                                + "being a string for addresses and MACs, a long for node IDs and an int for "
+                                + "protocols and ports, where the input stream must not have attributes of the "
+                                + "same names",
+                        type = {DataType.STRING, DataType.LONG, DataType.INT}),
+                @ReturnAttribute(name = "reportCount",
+                        description = "The number of reports for the key within the interval",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "totalLen",
+                        description = "The sum of 'ipHdr.len' for the key within the interval",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "minLen",
+                        description = "The minimum 'ipHdr.len' for the key within the interval",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "maxLen",
+                        description = "The maximum 'ipHdr.len' for the key within the interval",
+                        type = {DataType.LONG})
+        },
+        examples = {
+                @Example(
+                        syntax = "from trptStream#p4trpt:tumblingAggregate(telemRpt, 1 sec, "
+                                + "'intHdr.mdStackHdr.origMac', 'ipHdr.dstAddr', 'protoHdr.dstPort')\n"
+                                + "select origMac, dstAddr, dstPort, reportCount\n"
+                                + "having reportCount >= 100\n"
+                                + "insert into attackStream;",
+                        description = "Every second, emits the origin MAC, destination address and port "
+                                + "combinations that generated at least 100 reports"
+                )
+        }
+)
+public class TumblingAggregateStreamProcessor
+        extends StreamProcessor<TumblingAggregateStreamProcessor.AggregateState> implements SchedulingProcessor {
+
+    private static final String EXTENSION = "p4trpt:tumblingAggregate";
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private ExpressionExecutor telemetryReportExecutor;
+    private long interval;
+    private ReportField[] keyFields;
+    private Scheduler scheduler;
+    private List<Attribute> returnAttributes;
+    private OutputEventFactory outputEventFactory;
+
+    @Override
+    protected StateFactory<AggregateState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 3) {
+            throw new SiddhiAppValidationException(EXTENSION + " expects at least 3 parameters but found "
+                    + attributeExpressionExecutors.length);
+        }
+        telemetryReportExecutor = attributeExpressionExecutors[0];
+        interval = Parameters.getConstantLong(EXTENSION, attributeExpressionExecutors[1], "interval");
+        if (interval <= 0) {
+            throw new SiddhiAppValidationException(EXTENSION + " interval must be positive");
+        }
+        keyFields = new ReportField[attributeExpressionExecutors.length - 2];
+        for (int i = 0; i < keyFields.length; i++) {
+            keyFields[i] = Parameters.getReportField(EXTENSION, attributeExpressionExecutors[i + 2], "key.field");
+            for (int j = 0; j < i; j++) {
+                if (keyFields[j].getName().equals(keyFields[i].getName())) {
+                    throw new SiddhiAppValidationException(EXTENSION + " key fields must have distinct names but "
+                            + keyFields[i].getName() + " is repeated");
+                }
+            }
+        }
+
+        returnAttributes = new ArrayList<>();
+        for (final ReportField keyField : keyFields) {
+            returnAttributes.add(new Attribute(keyField.getName(), Parameters.getAttributeType(keyField)));
+        }
+        returnAttributes.add(new Attribute("reportCount", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("totalLen", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("minLen", Attribute.Type.LONG));
+        returnAttributes.add(new Attribute("maxLen", Attribute.Type.LONG));
+        outputEventFactory = new OutputEventFactory(metaStreamEvent);
+
+        return AggregateState::new;
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           AggregateState state) {
+        final ComplexEventChunk<StreamEvent> outputChunk = new ComplexEventChunk<>();
+        synchronized (state) {
+            while (streamEventChunk.hasNext()) {
+                final StreamEvent streamEvent = streamEventChunk.next();
+                streamEventChunk.remove();
+                if (streamEvent.getType() == ComplexEvent.Type.TIMER) {
+                    if (state.nextEmitTime != -1 && streamEvent.getTimestamp() >= state.nextEmitTime) {
+                        emit(state, streamEvent.getTimestamp(), outputChunk, complexEventPopulater);
+                    }
+                    continue;
+                }
+                if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                    continue;
+                }
+                final long currentTime = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator()
+                        .currentTime();
+                if (state.nextEmitTime != -1 && currentTime >= state.nextEmitTime) {
+                    // The timer was lost (e.g. on restore) so close the interval now
+                    emit(state, currentTime, outputChunk, complexEventPopulater);
+                }
+                final Object trptObj = telemetryReportExecutor.execute(streamEvent);
+                if (!(trptObj instanceof TelemetryReport) || ((TelemetryReport) trptObj).ipHdr == null
+                        || !readKey((TelemetryReport) trptObj, state.key)) {
+                    continue;
+                }
+                final TelemetryReport trpt = (TelemetryReport) trptObj;
+                final int entry = state.accumulators.findOrInsert(state.key);
+                state.accumulators.accumulate(entry, trpt.ipHdr.getLen());
+                if (state.nextEmitTime == -1) {
+                    state.nextEmitTime = currentTime + interval;
+                    scheduler.notifyAt(state.nextEmitTime);
+                }
+            }
+        }
+        if (outputChunk.getFirst() != null) {
+            nextProcessor.process(outputChunk);
+        }
+    }
+
+    // Populates the key array and returns false when the report lacks a key field
+    private boolean readKey(final TelemetryReport trpt, final long[] key) {
+        for (int i = 0; i < keyFields.length; i++) {
+            final ReportField field = keyFields[i];
+            if (!field.isPresent(trpt)) {
+                return false;
+            }
+            key[i * 2] = field.getHigh(trpt);
+            key[i * 2 + 1] = field.getLow(trpt);
+        }
+        return true;
+    }
+
+    private void emit(final AggregateState state, final long timestamp,
+                      final ComplexEventChunk<StreamEvent> outputChunk,
+                      final ComplexEventPopulater complexEventPopulater) {
+        final KeyedAccumulators accumulators = state.accumulators;
+        for (int entry = 0; entry < accumulators.size(); entry++) {
+            final Object[] data = new Object[keyFields.length + 4];
+            for (int i = 0; i < keyFields.length; i++) {
+                data[i] = keyFields[i].decode(accumulators.getKey(entry, i * 2), accumulators.getKey(entry, i * 2 + 1));
+            }
+            data[keyFields.length] = accumulators.getCount(entry);
+            data[keyFields.length + 1] = accumulators.getSum(entry);
+            data[keyFields.length + 2] = accumulators.getMin(entry);
+            data[keyFields.length + 3] = accumulators.getMax(entry);
+            outputChunk.add(outputEventFactory.newEvent(timestamp, data, complexEventPopulater));
+        }
+        accumulators.clear();
+        state.nextEmitTime = -1;
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return returnAttributes;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+        // Nothing to stop
+    }
+
+    @Override
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * The per partition state holding the accumulators.
+     */
+    class AggregateState extends State {
+
+        private final long[] key = new long[keyFields.length * 2];
+        private KeyedAccumulators accumulators = new KeyedAccumulators(keyFields.length * 2, INITIAL_CAPACITY);
+        private long nextEmitTime = -1;
+
+        @Override
+        public boolean canDestroy() {
+            return accumulators.size() == 0;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            final Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("accumulators", accumulators);
+            snapshot.put("nextEmitTime", nextEmitTime);
+            return snapshot;
+        }
+
+        @Override
+        public void restore(Map<String, Object> snapshot) {
+            accumulators = (KeyedAccumulators) snapshot.get("accumulators");
+            nextEmitTime = (Long) snapshot.get("nextEmitTime");
+        }
+    }
+}
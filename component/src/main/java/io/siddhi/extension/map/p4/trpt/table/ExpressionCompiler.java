@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.table;
+
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.table.record.BaseExpressionVisitor;
+import io.siddhi.core.util.collection.operator.CompiledCondition;
+import io.siddhi.core.util.collection.operator.CompiledExpression;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.condition.Compare;
+import io.siddhi.query.api.expression.math.MathOperator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Compiles the conditions and set expressions of table operations into trees evaluated against a record's values
+ * and the operation's parameters. Conditions are limited to comparisons, 'and', 'or', 'not' and 'is null' over
+ * table attributes, stream attributes and constants, and numbers may be added and subtracted within conditions and
+ * set expressions. The comparisons of table attributes against values independent
+ * of the record that a condition requires are also collected as its bounds, so that a condition requiring every
+ * primary key attribute to equal such a value is resolved by a single index lookup, and so that stores can skip
+ * records outside the bounds, rather than evaluating the condition against every record. Attributes whose values
+ * have several textual forms, such as addresses, may be given a canonical form to which the values compared with
+ * them are converted, while the record holds its values in that form.
+ */
+class ExpressionCompiler extends BaseExpressionVisitor {
+
+    /**
+     * A compiled condition or expression.
+     */
+    abstract static class Node implements CompiledExpression {
+
+        /**
+         * The comparisons of table attributes against values independent of the record that the condition
+         * requires to hold, or null when there are none.
+         */
+        List<Bound> bounds;
+
+        abstract Object evaluate(Object[] record, Map<String, Object> params);
+
+        boolean isRecordIndependent() {
+            return false;
+        }
+
+        boolean isTrue(final Object[] record, final Map<String, Object> params) {
+            return Boolean.TRUE.equals(evaluate(record, params));
+        }
+    }
+
+    /**
+     * A comparison of a table attribute against a value independent of the record, with the attribute on the left.
+     */
+    static class Bound {
+
+        final int field;
+        final Compare.Operator operator;
+        final Node value;
+
+        private Bound(final int field, final Compare.Operator operator, final Node value) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A compiled condition with the values of each primary key attribute when it is resolved by key.
+     */
+    static class Condition implements CompiledCondition {
+
+        final Node node;
+        final Node[] keyNodes;
+
+        private Condition(final Node node, final Node[] keyNodes) {
+            this.node = node;
+            this.keyNodes = keyNodes;
+        }
+    }
+
+    private final String tableName;
+    private final List<String> attributeNames;
+    private final Deque<Node> stack = new ArrayDeque<>();
+    private final Map<Integer, UnaryOperator<Object>> canonicalForms = new HashMap<>();
+
+    ExpressionCompiler(final String tableName, final List<String> attributeNames) {
+        this.tableName = tableName;
+        this.attributeNames = attributeNames;
+    }
+
+    /**
+     * Converts the values compared with an attribute to its canonical form before comparing them.
+     * @param field - the index of the attribute
+     * @param canonicalForm - converts a value to the form held by records
+     * @return - this compiler
+     */
+    ExpressionCompiler withCanonicalForm(final int field, final UnaryOperator<Object> canonicalForm) {
+        canonicalForms.put(field, canonicalForm);
+        return this;
+    }
+
+    /**
+     * Returns the compiled condition.
+     * @param keyFields - the indexes of the primary key attributes
+     * @return - the condition
+     */
+    Condition getCondition(final int[] keyFields) {
+        final Node node = getExpression();
+        Node[] keyNodes = null;
+        if (node.bounds != null) {
+            final Map<Integer, Node> equalities = new HashMap<>();
+            for (final Bound bound : node.bounds) {
+                if (bound.operator == Compare.Operator.EQUAL) {
+                    equalities.put(bound.field, bound.value);
+                }
+            }
+            keyNodes = new Node[keyFields.length];
+            for (int i = 0; i < keyFields.length; i++) {
+                keyNodes[i] = equalities.get(keyFields[i]);
+                if (keyNodes[i] == null) {
+                    keyNodes = null;
+                    break;
+                }
+            }
+        }
+        return new Condition(node, keyNodes);
+    }
+
+    /**
+     * Returns the compiled expression.
+     * @return - the expression
+     */
+    Node getExpression() {
+        if (stack.size() != 1) {
+            throw new SiddhiAppCreationException("Unsupported expression on table " + tableName);
+        }
+        return stack.peek();
+    }
+
+    @Override
+    public void endVisitAnd() {
+        final Node right = stack.pop();
+        final Node left = stack.pop();
+        final Node and = new Node() {
+            @Override
+            Object evaluate(final Object[] record, final Map<String, Object> params) {
+                return left.isTrue(record, params) && right.isTrue(record, params);
+            }
+        };
+        // Further conditions alongside the bounds are checked against the records within them
+        if (left.bounds != null || right.bounds != null) {
+            and.bounds = new ArrayList<>();
+            if (left.bounds != null) {
+                and.bounds.addAll(left.bounds);
+            }
+            if (right.bounds != null) {
+                and.bounds.addAll(right.bounds);
+            }
+        }
+        stack.push(and);
+    }
+
+    @Override
+    public void endVisitOr() {
+        final Node right = stack.pop();
+        final Node left = stack.pop();
+        stack.push(new Node() {
+            @Override
+            Object evaluate(final Object[] record, final Map<String, Object> params) {
+                return left.isTrue(record, params) || right.isTrue(record, params);
+            }
+        });
+    }
+
+    @Override
+    public void endVisitNot() {
+        final Node operand = stack.pop();
+        stack.push(new Node() {
+            @Override
+            Object evaluate(final Object[] record, final Map<String, Object> params) {
+                return !operand.isTrue(record, params);
+            }
+        });
+    }
+
+    @Override
+    public void endVisitCompare(final Compare.Operator operator) {
+        // Values compared with an attribute are converted to its canonical form
+        final Node right = toCanonicalForm(stack.pop(), stack.peek());
+        final Node left = toCanonicalForm(stack.pop(), right);
+        final Node compare = new Node() {
+            @Override
+            Object evaluate(final Object[] record, final Map<String, Object> params) {
+                return compare(left.evaluate(record, params), operator, right.evaluate(record, params));
+            }
+        };
+        if (operator != Compare.Operator.NOT_EQUAL) {
+            if (left instanceof Field && right.isRecordIndependent()) {
+                compare.bounds = new ArrayList<>();
+                compare.bounds.add(new Bound(((Field) left).field, operator, right));
+            } else if (right instanceof Field && left.isRecordIndependent()) {
+                compare.bounds = new ArrayList<>();
+                compare.bounds.add(new Bound(((Field) right).field, reverse(operator), left));
+            }
+        }
+        stack.push(compare);
+    }
+
+    @Override
+    public void beginVisitIsNull(final String streamId) {
+        if (streamId != null) {
+            throw new SiddhiAppCreationException("Table " + tableName + " does not support 'is null' on streams");
+        }
+    }
+
+    @Override
+    public void endVisitIsNull(final String streamId) {
+        final Node operand = stack.pop();
+        stack.push(new Node() {
+            @Override
+            Object evaluate(final Object[] record, final Map<String, Object> params) {
+                return operand.evaluate(record, params) == null;
+            }
+        });
+    }
+
+    @Override
+    public void beginVisitConstant(final Object value, final Attribute.Type type) {
+        stack.push(new Node() {
+            @Override
+            Object evaluate(final Object[] record, final Map<String, Object> params) {
+                return value;
+            }
+
+            @Override
+            boolean isRecordIndependent() {
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public void beginVisitStreamVariable(final String id, final String streamId, final String attributeName,
+                                         final Attribute.Type type) {
+        stack.push(new Node() {
+            @Override
+            Object evaluate(final Object[] record, final Map<String, Object> params) {
+                return params.get(id);
+            }
+
+            @Override
+            boolean isRecordIndependent() {
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public void beginVisitStoreVariable(final String storeId, final String attributeName, final Attribute.Type type) {
+        final int field = attributeNames.indexOf(attributeName);
+        if (field < 0) {
+            throw new SiddhiAppCreationException("Table " + tableName + " has no attribute " + attributeName);
+        }
+        stack.push(new Field(field));
+    }
+
+    @Override
+    public void beginVisitIn(final String storeId) {
+        throw new SiddhiAppCreationException("Table " + tableName + " does not support 'in' conditions");
+    }
+
+    @Override
+    public void beginVisitMath(final MathOperator mathOperator) {
+        if (mathOperator != MathOperator.ADD && mathOperator != MathOperator.SUBTRACT) {
+            throw new SiddhiAppCreationException("Table " + tableName + " only supports '+' and '-' arithmetic "
+                    + "within conditions or set expressions");
+        }
+    }
+
+    @Override
+    public void endVisitMath(final MathOperator mathOperator) {
+        final Node right = stack.pop();
+        final Node left = stack.pop();
+        final boolean subtract = mathOperator == MathOperator.SUBTRACT;
+        stack.push(new Node() {
+            @Override
+            Object evaluate(final Object[] record, final Map<String, Object> params) {
+                return add(left.evaluate(record, params), subtract, right.evaluate(record, params));
+            }
+
+            @Override
+            boolean isRecordIndependent() {
+                return left.isRecordIndependent() && right.isRecordIndependent();
+            }
+        });
+    }
+
+    @Override
+    public void beginVisitAttributeFunction(final String namespace, final String functionName) {
+        throw new SiddhiAppCreationException("Table " + tableName + " does not support functions within "
+                + "conditions or set expressions");
+    }
+
+    /**
+     * Converts a value compared with an attribute to the attribute's canonical form.
+     */
+    private Node toCanonicalForm(final Node value, final Node other) {
+        final UnaryOperator<Object> canonicalForm = other instanceof Field && !(value instanceof Field)
+                ? canonicalForms.get(((Field) other).field) : null;
+        if (canonicalForm == null) {
+            return value;
+        }
+        return new Node() {
+            @Override
+            Object evaluate(final Object[] record, final Map<String, Object> params) {
+                return canonicalForm.apply(value.evaluate(record, params));
+            }
+
+            @Override
+            boolean isRecordIndependent() {
+                return value.isRecordIndependent();
+            }
+        };
+    }
+
+    /**
+     * Compares two values as Siddhi does, where numbers compare by value whatever their type and comparisons with
+     * null are false.
+     */
+    private static boolean compare(final Object left, final Compare.Operator operator, final Object right) {
+        if (left == null || right == null) {
+            return false;
+        }
+        final int cmp;
+        if (left instanceof Number && right instanceof Number) {
+            cmp = isIntegral(left) && isIntegral(right)
+                    ? Long.compare(((Number) left).longValue(), ((Number) right).longValue())
+                    : Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+        } else if (left instanceof String && right instanceof String) {
+            cmp = ((String) left).compareTo((String) right);
+        } else if (left instanceof Boolean && right instanceof Boolean) {
+            cmp = ((Boolean) left).compareTo((Boolean) right);
+        } else {
+            return operator == Compare.Operator.NOT_EQUAL;
+        }
+        switch (operator) {
+            case EQUAL:
+                return cmp == 0;
+            case NOT_EQUAL:
+                return cmp != 0;
+            case LESS_THAN:
+                return cmp < 0;
+            case LESS_THAN_EQUAL:
+                return cmp <= 0;
+            case GREATER_THAN:
+                return cmp > 0;
+            default:
+                return cmp >= 0;
+        }
+    }
+
+    /**
+     * Adds or subtracts two numbers, giving a long when both are integral and a double otherwise, which the table
+     * converts to the type of the attribute set. Arithmetic with null gives null as in Siddhi.
+     */
+    private Object add(final Object left, final boolean subtract, final Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        if (!(left instanceof Number) || !(right instanceof Number)) {
+            throw new SiddhiAppRuntimeException("Table " + tableName + " cannot add or subtract " + left + " and "
+                    + right + " as they are not both numbers");
+        }
+        if (isIntegral(left) && isIntegral(right)) {
+            final long r = ((Number) right).longValue();
+            return ((Number) left).longValue() + (subtract ? -r : r);
+        }
+        final double r = ((Number) right).doubleValue();
+        return ((Number) left).doubleValue() + (subtract ? -r : r);
+    }
+
+    private static Compare.Operator reverse(final Compare.Operator operator) {
+        switch (operator) {
+            case LESS_THAN:
+                return Compare.Operator.GREATER_THAN;
+            case LESS_THAN_EQUAL:
+                return Compare.Operator.GREATER_THAN_EQUAL;
+            case GREATER_THAN:
+                return Compare.Operator.LESS_THAN;
+            case GREATER_THAN_EQUAL:
+                return Compare.Operator.LESS_THAN_EQUAL;
+            default:
+                return operator;
+        }
+    }
+
+    private static boolean isIntegral(final Object value) {
+        return value instanceof Integer || value instanceof Long;
+    }
+
+    /**
+     * A table attribute of the record.
+     */
+    private static class Field extends Node {
+
+        private final int field;
+
+        Field(final int field) {
+            this.field = field;
+        }
+
+        @Override
+        Object evaluate(final Object[] record, final Map<String, Object> params) {
+            return record[field];
+        }
+    }
+}
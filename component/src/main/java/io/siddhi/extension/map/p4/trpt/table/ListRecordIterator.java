@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.table;
+
+import io.siddhi.core.table.record.RecordIterator;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Iterates over records copied out of a store, so that the store is not held while they are consumed.
+ */
+class ListRecordIterator implements RecordIterator<Object[]> {
+
+    private final Iterator<Object[]> iterator;
+
+    ListRecordIterator(final List<Object[]> records) {
+        this.iterator = records.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public Object[] next() {
+        return iterator.next();
+    }
+
+    @Override
+    public void close() {
+        // Nothing to close
+    }
+}
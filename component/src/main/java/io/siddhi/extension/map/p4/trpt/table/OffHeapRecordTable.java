@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.table;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.table.record.AbstractRecordTable;
+import io.siddhi.core.table.record.ExpressionBuilder;
+import io.siddhi.core.table.record.RecordIterator;
+import io.siddhi.core.util.SiddhiConstants;
+import io.siddhi.core.util.collection.operator.CompiledCondition;
+import io.siddhi.core.util.collection.operator.CompiledExpression;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.extension.map.p4.trpt.util.OffHeapRecordStore;
+import io.siddhi.query.api.annotation.Annotation;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.definition.TableDefinition;
+import io.siddhi.query.api.util.AnnotationHelper;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table store holding flow state off-heap within an OffHeapRecordStore.
+ */
+@Extension(
+        name = "p4-trpt-offheap",
+        namespace = "store",
+        description = "In-memory table holding its records off the Java heap as fixed width records within direct "
+                + "buffers, located by primary key through an off-heap open addressing index, so that tables of tens "
+                + "of millions of flows neither grow the heap nor lengthen garbage collection pauses. Records expire "
+                + "once older than the time to live since last written. Operations whose condition requires every "
+                + "primary key attribute to equal a stream attribute or constant are resolved by a single index "
+                + "lookup, while other conditions scan the table. Conditions and set expressions are limited to "
+                + "comparisons, 'and', 'or', 'not', 'is null', '+' and '-' over table attributes, stream attributes "
+                + "and constants, so that counters are updated in place with 'set T.packets = T.packets + 1'. A "
+                + "primary key is required and attributes of type object are not supported. Records added once the "
+                + "table is full are dropped. The table's contents are not persisted.",
+        parameters = {
+                @Parameter(name = "max.records",
+                        description = "The maximum number of records, all of which are allocated up front, of up "
+                                + "to 134217728",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "1000000"),
+                @Parameter(name = "ttl",
+                        description = "The milliseconds after being added or updated at which records expire, where "
+                                + "0 keeps records until deleted",
+                        type = {DataType.LONG},
+                        optional = true,
+                        defaultValue = "0"),
+                @Parameter(name = "string.width",
+                        description = "The maximum UTF-8 encoded length of string attributes, for which every "
+                                + "record reserves space",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "48")
+        },
+        examples = {
+                @Example(
+                        syntax = "@store(type='p4-trpt-offheap', max.records='10000000', ttl='300000')\n"
+                                + "@PrimaryKey('srcAddr', 'dstAddr', 'srcPort', 'dstPort', 'protocol')\n"
+                                + "define table FlowTable (srcAddr string, dstAddr string, srcPort int, "
+                                + "dstPort int, protocol int, packets long, lastLatency long);\n\n"
+                                + "from trptStream\n"
+                                + "select srcAddr, dstAddr, srcPort, dstPort, protocol, 1L as packets, "
+                                + "lastLatency\n"
+                                + "update or insert into FlowTable\n"
+                                + "set FlowTable.packets = FlowTable.packets + packets, "
+                                + "FlowTable.lastLatency = lastLatency\n"
+                                + "on FlowTable.srcAddr == srcAddr and FlowTable.dstAddr == dstAddr "
+                                + "and FlowTable.srcPort == srcPort and FlowTable.dstPort == dstPort "
+                                + "and FlowTable.protocol == protocol;",
+                        description = "Holds the report count and last latency of up to 10 million flows, each "
+                                + "expiring 5 minutes after its last report, where updates are resolved by primary key"
+                )
+        }
+)
+public class OffHeapRecordTable extends AbstractRecordTable {
+
+    private static final Logger log = Logger.getLogger(OffHeapRecordTable.class);
+
+    private static final String MAX_RECORDS = "max.records";
+    private static final String TTL = "ttl";
+    private static final String STRING_WIDTH = "string.width";
+    private static final int DEFAULT_MAX_RECORDS = 1000000;
+    private static final int DEFAULT_STRING_WIDTH = 48;
+
+    private String tableName;
+    private List<String> attributeNames;
+    private int[] keyFields;
+    private OffHeapRecordStore store;
+    private long dropped;
+
+    @Override
+    protected void init(final TableDefinition tableDefinition, final ConfigReader configReader) {
+        tableName = tableDefinition.getId();
+        final List<Attribute> attributes = tableDefinition.getAttributeList();
+        attributeNames = new ArrayList<>(attributes.size());
+        if (attributes.size() > OffHeapRecordStore.MAX_FIELDS) {
+            throw new SiddhiAppCreationException("Table " + tableName + " has more than "
+                    + OffHeapRecordStore.MAX_FIELDS + " attributes");
+        }
+        final OffHeapRecordStore.Type[] types = new OffHeapRecordStore.Type[attributes.size()];
+        for (int i = 0; i < types.length; i++) {
+            attributeNames.add(attributes.get(i).getName());
+            if (attributes.get(i).getType() == Attribute.Type.OBJECT) {
+                throw new SiddhiAppCreationException("Table " + tableName + " does not support attribute "
+                        + attributes.get(i).getName() + " of type object");
+            }
+            types[i] = OffHeapRecordStore.Type.valueOf(attributes.get(i).getType().name());
+        }
+
+        final Annotation primaryKey = AnnotationHelper.getAnnotation(SiddhiConstants.ANNOTATION_PRIMARY_KEY,
+                tableDefinition.getAnnotations());
+        if (primaryKey == null || primaryKey.getElements().isEmpty()) {
+            throw new SiddhiAppCreationException("Table " + tableName + " requires a primary key");
+        }
+        keyFields = new int[primaryKey.getElements().size()];
+        for (int i = 0; i < keyFields.length; i++) {
+            keyFields[i] = attributeNames.indexOf(primaryKey.getElements().get(i).getValue().trim());
+            if (keyFields[i] < 0) {
+                throw new SiddhiAppCreationException("Table " + tableName + " has no primary key attribute "
+                        + primaryKey.getElements().get(i).getValue());
+            }
+        }
+
+        final Annotation storeAnnotation = AnnotationHelper.getAnnotation(SiddhiConstants.ANNOTATION_STORE,
+                tableDefinition.getAnnotations());
+        final long maxRecords = getOption(storeAnnotation, MAX_RECORDS, DEFAULT_MAX_RECORDS);
+        final long ttl = getOption(storeAnnotation, TTL, 0);
+        final long stringWidth = getOption(storeAnnotation, STRING_WIDTH, DEFAULT_STRING_WIDTH);
+        try {
+            store = new OffHeapRecordStore(types, keyFields, (int) Math.min(stringWidth, Integer.MAX_VALUE),
+                    (int) Math.min(maxRecords, Integer.MAX_VALUE), ttl);
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppCreationException("Invalid " + MAX_RECORDS + ", " + TTL + " or " + STRING_WIDTH
+                    + " of table " + tableName + " - " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected void add(final List<Object[]> records) {
+        synchronized (store) {
+            final long now = System.currentTimeMillis();
+            for (final Object[] record : records) {
+                put(record, now);
+            }
+        }
+    }
+
+    @Override
+    protected RecordIterator<Object[]> find(final Map<String, Object> findConditionParameterMap,
+                                            final CompiledCondition compiledCondition) {
+        final List<Object[]> found = new ArrayList<>();
+        synchronized (store) {
+            for (final int record : match((ExpressionCompiler.Condition) compiledCondition,
+                    findConditionParameterMap, System.currentTimeMillis())) {
+                found.add(store.read(record));
+            }
+        }
+        return new ListRecordIterator(found);
+    }
+
+    @Override
+    protected boolean contains(final Map<String, Object> containsConditionParameterMap,
+                               final CompiledCondition compiledCondition) {
+        synchronized (store) {
+            return !match((ExpressionCompiler.Condition) compiledCondition, containsConditionParameterMap,
+                    System.currentTimeMillis()).isEmpty();
+        }
+    }
+
+    @Override
+    protected void delete(final List<Map<String, Object>> deleteConditionParameterMaps,
+                          final CompiledCondition compiledCondition) {
+        synchronized (store) {
+            final long now = System.currentTimeMillis();
+            for (final Map<String, Object> params : deleteConditionParameterMaps) {
+                for (final int record : match((ExpressionCompiler.Condition) compiledCondition, params, now)) {
+                    store.remove(record);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void update(final CompiledCondition updateCondition,
+                          final List<Map<String, Object>> updateConditionParameterMaps,
+                          final Map<String, CompiledExpression> updateSetExpressions,
+                          final List<Map<String, Object>> updateSetParameterMaps) {
+        updateOrAdd(updateCondition, updateConditionParameterMaps, updateSetExpressions, updateSetParameterMaps,
+                null);
+    }
+
+    @Override
+    protected void updateOrAdd(final CompiledCondition updateCondition,
+                               final List<Map<String, Object>> updateConditionParameterMaps,
+                               final Map<String, CompiledExpression> updateSetExpressions,
+                               final List<Map<String, Object>> updateSetParameterMaps,
+                               final List<Object[]> addingRecords) {
+        synchronized (store) {
+            final long now = System.currentTimeMillis();
+            for (int i = 0; i < updateConditionParameterMaps.size(); i++) {
+                final List<Integer> records = match((ExpressionCompiler.Condition) updateCondition,
+                        updateConditionParameterMaps.get(i), now);
+                if (records.isEmpty()) {
+                    if (addingRecords != null) {
+                        put(addingRecords.get(i), now);
+                    }
+                    continue;
+                }
+                // Set expressions are evaluated against the values prior to any update, and every updated record is
+                // checked before any is replaced so that an invalid value leaves the matched records intact
+                final List<Object[]> updated = new ArrayList<>(records.size());
+                for (final int record : records) {
+                    final Object[] values = store.read(record);
+                    final Object[] newValues = values.clone();
+                    for (final Map.Entry<String, CompiledExpression> set : updateSetExpressions.entrySet()) {
+                        newValues[attributeNames.indexOf(set.getKey())] = ((ExpressionCompiler.Node) set.getValue())
+                                .evaluate(values, updateSetParameterMaps.get(i));
+                    }
+                    updated.add(validate(newValues));
+                }
+                for (int j = 0; j < records.size(); j++) {
+                    store.replace(records.get(j), updated.get(j), now);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected CompiledCondition compileCondition(final ExpressionBuilder expressionBuilder) {
+        final ExpressionCompiler compiler = new ExpressionCompiler(tableName, attributeNames);
+        expressionBuilder.build(compiler);
+        return compiler.getCondition(keyFields);
+    }
+
+    @Override
+    protected CompiledExpression compileSetAttribute(final ExpressionBuilder expressionBuilder) {
+        final ExpressionCompiler compiler = new ExpressionCompiler(tableName, attributeNames);
+        expressionBuilder.build(compiler);
+        return compiler.getExpression();
+    }
+
+    @Override
+    protected void connect() {
+        // Nothing to connect to
+    }
+
+    @Override
+    protected void disconnect() {
+        // Nothing to disconnect from
+    }
+
+    @Override
+    protected void destroy() {
+        // The direct buffers are released once the store is garbage collected
+    }
+
+    private Object[] validate(final Object[] values) {
+        try {
+            return store.validate(values);
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppRuntimeException("Invalid record for table " + tableName + " - " + e.getMessage());
+        }
+    }
+
+    private void put(final Object[] values, final long now) {
+        final int record;
+        try {
+            record = store.put(values, now);
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppRuntimeException("Invalid record for table " + tableName + " - " + e.getMessage());
+        }
+        if (record == OffHeapRecordStore.NO_RECORD && dropped++ == 0) {
+            log.warn("Table " + tableName + " is full with " + store.getCapacity() + " records, dropping "
+                    + "records until others are deleted or expire");
+        }
+    }
+
+    /**
+     * Returns the records matching a condition, looking them up by primary key where the condition allows.
+     */
+    private List<Integer> match(final ExpressionCompiler.Condition condition, final Map<String, Object> params,
+                                final long now) {
+        final List<Integer> records = new ArrayList<>();
+        if (condition.keyNodes != null) {
+            final Object[] keyValues = new Object[condition.keyNodes.length];
+            for (int i = 0; i < keyValues.length; i++) {
+                keyValues[i] = condition.keyNodes[i].evaluate(null, params);
+            }
+            int record;
+            try {
+                record = store.get(keyValues, now);
+            } catch (IllegalArgumentException e) {
+                // A key value of another type matches no record
+                record = OffHeapRecordStore.NO_RECORD;
+            }
+            if (record != OffHeapRecordStore.NO_RECORD && condition.node.isTrue(store.read(record), params)) {
+                records.add(record);
+            }
+            return records;
+        }
+        for (int record = store.next(0, now); record != OffHeapRecordStore.NO_RECORD;
+             record = store.next(record + 1, now)) {
+            if (condition.node.isTrue(store.read(record), params)) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private long getOption(final Annotation storeAnnotation, final String name, final long defaultValue) {
+        final String value = storeAnnotation == null ? null : storeAnnotation.getElement(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new SiddhiAppCreationException("Invalid " + name + " of table " + tableName + " - " + value);
+        }
+    }
+}
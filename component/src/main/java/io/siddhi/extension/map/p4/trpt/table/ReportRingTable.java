@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.table;
+
+import com.google.common.net.InetAddresses;
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.table.record.AbstractRecordTable;
+import io.siddhi.core.table.record.ExpressionBuilder;
+import io.siddhi.core.table.record.RecordIterator;
+import io.siddhi.core.util.SiddhiConstants;
+import io.siddhi.core.util.collection.operator.CompiledCondition;
+import io.siddhi.core.util.collection.operator.CompiledExpression;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.extension.map.p4.trpt.ByteUtils;
+import io.siddhi.extension.map.p4.trpt.util.ReportRing;
+import io.siddhi.query.api.annotation.Annotation;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.definition.TableDefinition;
+import io.siddhi.query.api.expression.condition.Compare;
+import io.siddhi.query.api.util.AnnotationHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read only table over a ReportRing filled by the p4-trpt source mapper.
+ */
+@Extension(
+        name = "p4-trpt-ring",
+        namespace = "store",
+        description = "Read only table over the most recent reports appended column-wise to a ring by the p4-trpt "
+                + "source mapper's 'ring' option, for ad-hoc queries such as on-demand queries during incidents "
+                + "without re-consuming the reports. The table's attributes are chosen from 'timestamp' (long), "
+                + "'nodeId' (long), 'srcAddr' (string), 'dstAddr' (string), 'protocol' (int), 'srcPort' (int) and "
+                + "'dstPort' (int), where fields absent from a report are null. Comparisons of these attributes "
+                + "against stream attributes or constants required by a condition are evaluated over the ring's "
+                + "primitive columns and skip whole blocks of reports outside them, while the rest of the condition "
+                + "is evaluated against the remaining reports. Conditions are limited to comparisons, 'and', 'or', "
+                + "'not', 'is null', '+' and '-'. Until the mapper has created the ring the table is empty.",
+        parameters = {
+                @Parameter(name = "ring",
+                        description = "The name of the ring given to the p4-trpt source mapper",
+                        type = {DataType.STRING})
+        },
+        examples = {
+                @Example(
+                        syntax = "@store(type='p4-trpt-ring', ring='recent')\n"
+                                + "define table RecentReports (timestamp long, nodeId long, srcAddr string, "
+                                + "dstAddr string, dstPort int);",
+                        description = "Allows on-demand queries such as 'from RecentReports on nodeId == 3 and "
+                                + "dstPort == 53 and timestamp > 1650000000000 select *' over the reports held by "
+                                + "the ring of a source mapped with @map(type='p4-trpt', ring='recent')"
+                )
+        }
+)
+public class ReportRingTable extends AbstractRecordTable {
+
+    private static final String RING = "ring";
+    private static final String[] NAMES = {"timestamp", "nodeId", "srcAddr", "dstAddr", "protocol", "srcPort",
+            "dstPort"};
+    private static final Attribute.Type[] TYPES = {Attribute.Type.LONG, Attribute.Type.LONG, Attribute.Type.STRING,
+            Attribute.Type.STRING, Attribute.Type.INT, Attribute.Type.INT, Attribute.Type.INT};
+    // The ring column of each attribute, being the upper 64 bits for addresses
+    private static final ReportRing.Column[] COLUMNS = {ReportRing.Column.TIMESTAMP, ReportRing.Column.NODE_ID,
+            ReportRing.Column.SRC_ADDR_HIGH, ReportRing.Column.DST_ADDR_HIGH, ReportRing.Column.PROTOCOL,
+            ReportRing.Column.SRC_PORT, ReportRing.Column.DST_PORT};
+    private static final int SRC_ADDR = 2;
+    private static final int DST_ADDR = 3;
+
+    private String tableName;
+    private String ringName;
+    private List<String> attributeNames;
+    // The index within NAMES of each table attribute
+    private int[] attributeFields;
+
+    @Override
+    protected void init(final TableDefinition tableDefinition, final ConfigReader configReader) {
+        tableName = tableDefinition.getId();
+        final Annotation storeAnnotation = AnnotationHelper.getAnnotation(SiddhiConstants.ANNOTATION_STORE,
+                tableDefinition.getAnnotations());
+        ringName = storeAnnotation.getElement(RING);
+        if (ringName == null) {
+            throw new SiddhiAppCreationException("Table " + tableName + " requires the " + RING + " option");
+        }
+        final List<Attribute> attributes = tableDefinition.getAttributeList();
+        attributeNames = new ArrayList<>(attributes.size());
+        attributeFields = new int[attributes.size()];
+        for (int i = 0; i < attributeFields.length; i++) {
+            final Attribute attribute = attributes.get(i);
+            attributeNames.add(attribute.getName());
+            attributeFields[i] = -1;
+            for (int field = 0; field < NAMES.length; field++) {
+                if (NAMES[field].equals(attribute.getName()) && TYPES[field] == attribute.getType()) {
+                    attributeFields[i] = field;
+                }
+            }
+            if (attributeFields[i] < 0) {
+                throw new SiddhiAppCreationException("Table " + tableName + " attribute " + attribute.getName()
+                        + " is not one of timestamp long, nodeId long, srcAddr string, dstAddr string, "
+                        + "protocol int, srcPort int or dstPort int");
+            }
+        }
+    }
+
+    @Override
+    protected void add(final List<Object[]> records) {
+        throw readOnly();
+    }
+
+    @Override
+    protected RecordIterator<Object[]> find(final Map<String, Object> findConditionParameterMap,
+                                            final CompiledCondition compiledCondition) {
+        final ExpressionCompiler.Node node = ((ExpressionCompiler.Condition) compiledCondition).node;
+        final List<Object[]> found = new ArrayList<>();
+        scan(node, findConditionParameterMap, (rows, row) -> {
+            final Object[] record = read(rows, row);
+            if (node.isTrue(record, findConditionParameterMap)) {
+                found.add(record);
+            }
+            return true;
+        });
+        return new ListRecordIterator(found);
+    }
+
+    @Override
+    protected boolean contains(final Map<String, Object> containsConditionParameterMap,
+                               final CompiledCondition compiledCondition) {
+        final ExpressionCompiler.Node node = ((ExpressionCompiler.Condition) compiledCondition).node;
+        final boolean[] found = new boolean[1];
+        scan(node, containsConditionParameterMap, (rows, row) -> {
+            found[0] = node.isTrue(read(rows, row), containsConditionParameterMap);
+            return !found[0];
+        });
+        return found[0];
+    }
+
+    @Override
+    protected void delete(final List<Map<String, Object>> deleteConditionParameterMaps,
+                          final CompiledCondition compiledCondition) {
+        throw readOnly();
+    }
+
+    @Override
+    protected void update(final CompiledCondition updateCondition,
+                          final List<Map<String, Object>> updateConditionParameterMaps,
+                          final Map<String, CompiledExpression> updateSetExpressions,
+                          final List<Map<String, Object>> updateSetParameterMaps) {
+        throw readOnly();
+    }
+
+    @Override
+    protected void updateOrAdd(final CompiledCondition updateCondition,
+                               final List<Map<String, Object>> updateConditionParameterMaps,
+                               final Map<String, CompiledExpression> updateSetExpressions,
+                               final List<Map<String, Object>> updateSetParameterMaps,
+                               final List<Object[]> addingRecords) {
+        throw readOnly();
+    }
+
+    @Override
+    protected CompiledCondition compileCondition(final ExpressionBuilder expressionBuilder) {
+        final ExpressionCompiler compiler = new ExpressionCompiler(tableName, attributeNames);
+        for (int i = 0; i < attributeFields.length; i++) {
+            if (attributeFields[i] == SRC_ADDR || attributeFields[i] == DST_ADDR) {
+                compiler.withCanonicalForm(i, ReportRingTable::toHostAddress);
+            }
+        }
+        expressionBuilder.build(compiler);
+        return compiler.getCondition(new int[0]);
+    }
+
+    @Override
+    protected CompiledExpression compileSetAttribute(final ExpressionBuilder expressionBuilder) {
+        final ExpressionCompiler compiler = new ExpressionCompiler(tableName, attributeNames);
+        expressionBuilder.build(compiler);
+        return compiler.getExpression();
+    }
+
+    @Override
+    protected void connect() {
+        // Nothing to connect to
+    }
+
+    @Override
+    protected void disconnect() {
+        // Nothing to disconnect from
+    }
+
+    @Override
+    protected void destroy() {
+        // The ring belongs to the source mapper
+    }
+
+    private SiddhiAppRuntimeException readOnly() {
+        return new SiddhiAppRuntimeException("Table " + tableName + " is read only, being filled by the p4-trpt "
+                + "source mapper's " + RING + " option");
+    }
+
+    /**
+     * Scans the ring within the bounds of a condition.
+     */
+    private void scan(final ExpressionCompiler.Node node, final Map<String, Object> params,
+                      final ReportRing.RowConsumer consumer) {
+        final ReportRing ring = ReportRing.getShared(ringName);
+        if (ring == null) {
+            return;
+        }
+        final ReportRing.Query query = new ReportRing.Query();
+        if (node.bounds != null) {
+            for (final ExpressionCompiler.Bound bound : node.bounds) {
+                if (!narrow(query, attributeFields[bound.field], bound.operator, bound.value.evaluate(null, params))) {
+                    return;
+                }
+            }
+        }
+        ring.scan(query, consumer);
+    }
+
+    /**
+     * Narrows a query to the values of a field within a bound.
+     * @return - false when no value of the field is within the bound
+     */
+    private static boolean narrow(final ReportRing.Query query, final int field, final Compare.Operator operator,
+                                  final Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (field == SRC_ADDR || field == DST_ADDR) {
+            if (operator != Compare.Operator.EQUAL) {
+                return true;
+            }
+            if (!(value instanceof String) || !InetAddresses.isInetAddress((String) value)) {
+                return false;
+            }
+            final byte[] bytes = InetAddresses.forString((String) value).getAddress();
+            long high = 0;
+            long low = bytes.length == 4 ? 0xffffL : 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (i < bytes.length - 8) {
+                    high = (high << 8) | (bytes[i] & 0xff);
+                } else {
+                    low = (low << 8) | (bytes[i] & 0xff);
+                }
+            }
+            if (field == SRC_ADDR) {
+                query.whereSrcAddr(high, low);
+            } else {
+                query.whereDstAddr(high, low);
+            }
+            return true;
+        }
+        if (!(value instanceof Number)) {
+            return false;
+        }
+        final ReportRing.Column column = COLUMNS[field];
+        final double number = ((Number) value).doubleValue();
+        // Values within the bound are the integers within it
+        final boolean integral = value instanceof Integer || value instanceof Long;
+        final long floor = integral ? ((Number) value).longValue() : (long) Math.floor(number);
+        final long ceil = integral ? floor : (long) Math.ceil(number);
+        switch (operator) {
+            case EQUAL:
+                if (floor != ceil) {
+                    return false;
+                }
+                query.whereEquals(column, floor);
+                return true;
+            case LESS_THAN:
+                query.where(column, Long.MIN_VALUE, ceil - 1);
+                return ceil != Long.MIN_VALUE;
+            case LESS_THAN_EQUAL:
+                query.where(column, Long.MIN_VALUE, floor);
+                return true;
+            case GREATER_THAN:
+                query.where(column, floor + 1, Long.MAX_VALUE);
+                return floor != Long.MAX_VALUE;
+            default:
+                query.where(column, ceil, Long.MAX_VALUE);
+                return true;
+        }
+    }
+
+    /**
+     * Converts an address to the form read from the ring, so that addresses compare equal whatever their textual
+     * form, such as compressed or uncompressed IPv6 addresses or IPv4-mapped IPv6 addresses.
+     */
+    private static Object toHostAddress(final Object value) {
+        if (value instanceof String && InetAddresses.isInetAddress((String) value)) {
+            return InetAddresses.forString((String) value).getHostAddress();
+        }
+        return value;
+    }
+
+    private Object[] read(final ReportRing.Rows rows, final int row) {
+        final Object[] record = new Object[attributeFields.length];
+        for (int i = 0; i < record.length; i++) {
+            final int field = attributeFields[i];
+            final long value = rows.get(COLUMNS[field], row);
+            switch (TYPES[field]) {
+                case LONG:
+                    record[i] = value;
+                    break;
+                case INT:
+                    record[i] = value == ReportRing.ABSENT ? null : (int) value;
+                    break;
+                default:
+                    final long low = rows.get(field == SRC_ADDR ? ReportRing.Column.SRC_ADDR_LOW
+                            : ReportRing.Column.DST_ADDR_LOW, row);
+                    record[i] = value == 0 && low == 0 ? null
+                            : ByteUtils.getInetAddress(value, low).getHostAddress();
+                    break;
+            }
+        }
+        return record;
+    }
+}
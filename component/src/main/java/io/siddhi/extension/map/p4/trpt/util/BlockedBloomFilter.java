@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.io.Serializable;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Cache blocked Bloom filter (Putze, Sanders and Singler) over 64 bit key hashes.
+ * Each key sets all of its bits within a single 512 bit block so that a lookup touches one cache line, at the cost
+ * of a false positive rate slightly above that of a standard Bloom filter of the same size.
+ */
+public class BlockedBloomFilter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int WORDS_PER_BLOCK = 8;
+    private static final int BITS_PER_BLOCK = WORDS_PER_BLOCK * 64;
+    private static final int MAX_HASHES = 16;
+
+    private final long[] words;
+    private final int numBlocks;
+    private final int numHashes;
+
+    /**
+     * Constructor sizing the filter for a target false positive rate.
+     * @param expectedInsertions - the number of keys the filter is expected to hold
+     * @param fpp - the target false positive probability
+     */
+    public BlockedBloomFilter(final long expectedInsertions, final double fpp) {
+        this(numBlocks(expectedInsertions, fpp), numHashes(fpp));
+    }
+
+    /**
+     * Constructor.
+     * @param numBlocks - the number of 512 bit blocks
+     * @param numHashes - the number of bits set per key
+     */
+    public BlockedBloomFilter(final int numBlocks, final int numHashes) {
+        if (numBlocks < 1 || numHashes < 1 || numHashes > MAX_HASHES) {
+            throw new IllegalArgumentException("Invalid Bloom filter dimensions");
+        }
+        this.numBlocks = numBlocks;
+        this.numHashes = numHashes;
+        this.words = new long[numBlocks * WORDS_PER_BLOCK];
+    }
+
+    /**
+     * Adds the key.
+     * @param hash - the 64 bit hash of the key
+     * @return - true when the key was possibly present beforehand
+     */
+    public boolean put(final long hash) {
+        final int offset = blockOffset(hash, numBlocks);
+        long bits = Hashing.mix(hash);
+        final long step = Hashing.mix(bits) | 1;
+        boolean present = true;
+        for (int i = 0; i < numHashes; i++) {
+            final int bit = (int) (bits >>> (64 - 9));
+            final int word = offset + (bit >>> 6);
+            final long mask = 1L << bit;
+            if ((words[word] & mask) == 0) {
+                present = false;
+                words[word] |= mask;
+            }
+            bits += step;
+        }
+        return present;
+    }
+
+    /**
+     * Returns false when the key is definitely absent.
+     * @param hash - the 64 bit hash of the key
+     * @return - true when the key is possibly present
+     */
+    public boolean mightContain(final long hash) {
+        final int offset = blockOffset(hash, numBlocks);
+        long bits = Hashing.mix(hash);
+        final long step = Hashing.mix(bits) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            final int bit = (int) (bits >>> (64 - 9));
+            if ((words[offset + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+            bits += step;
+        }
+        return true;
+    }
+
+    /**
+     * Returns false when the key is definitely absent from a filter whose words are held within a buffer, as
+     * written by writeTo().
+     * @param words - the buffer, which may be off-heap
+     * @param numBlocks - the number of blocks
+     * @param numHashes - the number of bits set per key
+     * @param hash - the 64 bit hash of the key
+     * @return - true when the key is possibly present
+     */
+    public static boolean mightContain(final LongBuffer words, final int numBlocks, final int numHashes,
+                                       final long hash) {
+        final int offset = blockOffset(hash, numBlocks);
+        long bits = Hashing.mix(hash);
+        final long step = Hashing.mix(bits) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            final int bit = (int) (bits >>> (64 - 9));
+            if ((words.get(offset + (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+            bits += step;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the filter's words at the buffer's position.
+     * @param out - the buffer
+     */
+    public void writeTo(final LongBuffer out) {
+        out.put(words);
+    }
+
+    public int getNumBlocks() {
+        return numBlocks;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    /**
+     * Removes every key.
+     */
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    /**
+     * Returns the first word of the block holding the key's bits.
+     * @param hash - the 64 bit hash of the key
+     * @param numBlocks - the number of blocks
+     * @return - the word index
+     */
+    static int blockOffset(final long hash, final int numBlocks) {
+        // Multiply shift range reduction of the upper 32 bits avoids requiring a power of two number of blocks
+        return (int) (((hash >>> 32) * numBlocks) >>> 32) * WORDS_PER_BLOCK;
+    }
+
+    /**
+     * Returns the number of blocks for the expected insertions and target false positive rate.
+     * @param expectedInsertions - the number of keys
+     * @param fpp - the false positive probability
+     * @return - the number of blocks
+     */
+    public static int numBlocks(final long expectedInsertions, final double fpp) {
+        if (expectedInsertions < 1 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("expectedInsertions must be positive and fpp within (0, 1)");
+        }
+        final double bits = -expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2));
+        final long blocks = (long) Math.ceil(bits / BITS_PER_BLOCK);
+        if (blocks > Integer.MAX_VALUE / WORDS_PER_BLOCK) {
+            throw new IllegalArgumentException("Bloom filter too large");
+        }
+        return (int) Math.max(1, blocks);
+    }
+
+    /**
+     * Returns the number of bits set per key for the target false positive rate.
+     * @param fpp - the false positive probability
+     * @return - the number of bits
+     */
+    public static int numHashes(final double fpp) {
+        return (int) Math.max(1, Math.min(MAX_HASHES, Math.round(-Math.log(fpp) / Math.log(2))));
+    }
+}
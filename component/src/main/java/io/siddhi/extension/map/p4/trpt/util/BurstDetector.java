@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Detects the start of bursts within per key series of samples, such as the queue occupancy of each switch queue.
+ * Each key keeps an exponentially weighted moving average and variance in primitive arrays, updated in constant
+ * time per sample. Once a key has seen a warmup of samples, a burst starts when a sample exceeds both the average
+ * plus a number of standard deviations and a minimum value, and then lasts until a sample falls to the average plus
+ * half as many standard deviations, so that an ongoing burst is reported once. Samples within a burst are kept out
+ * of the average and variance so that bursts do not inflate the baseline, while a burst outlasting the warmup is taken
+ * as a lasting change in level and the baseline restarts from it.
+ */
+public class BurstDetector implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double alpha;
+    private final double sigmas;
+    private final long minValue;
+    private final long warmup;
+
+    private final LongHashIndex index;
+    private double[] means;
+    private double[] variances;
+    private long[] samples;
+    // The number of samples within the current burst, zero outside of bursts
+    private long[] burstLengths;
+
+    // The baseline of the key before the last sample offered
+    private double lastMean;
+    private double lastStdDev;
+
+    /**
+     * Constructor.
+     * @param alpha - the weight of each new sample within (0, 1)
+     * @param sigmas - the number of standard deviations above the average at which a burst starts
+     * @param minValue - the value a sample must exceed to start a burst
+     * @param initialCapacity - the number of keys to allocate space for
+     */
+    public BurstDetector(final double alpha, final double sigmas, final long minValue, final int initialCapacity) {
+        if (!(alpha > 0 && alpha < 1) || !(sigmas > 0)) {
+            throw new IllegalArgumentException("alpha must be within (0, 1) and sigmas positive");
+        }
+        this.alpha = alpha;
+        this.sigmas = sigmas;
+        this.minValue = minValue;
+        // The average has settled once the weight of the first sample has decayed
+        this.warmup = (long) Math.ceil(1 / alpha);
+        this.index = new LongHashIndex(1, Math.max(initialCapacity, 8), LongHashIndex.MAX_CAPACITY);
+        final int capacity = index.getCapacity();
+        this.means = new double[capacity];
+        this.variances = new double[capacity];
+        this.samples = new long[capacity];
+        this.burstLengths = new long[capacity];
+    }
+
+    /**
+     * Adds a sample to the series of a key.
+     * @param key - the key
+     * @param value - the sample
+     * @return - true when the sample starts a burst
+     */
+    public boolean offer(final long key, final long value) {
+        final int entry = findOrInsert(key);
+        final double mean = means[entry];
+        final double stdDev = Math.sqrt(variances[entry]);
+        lastMean = mean;
+        lastStdDev = stdDev;
+
+        if (burstLengths[entry] > 0) {
+            if (value > mean + sigmas / 2 * stdDev) {
+                if (++burstLengths[entry] > warmup) {
+                    // A change in level, so the baseline restarts its warmup
+                    burstLengths[entry] = 0;
+                    means[entry] = value;
+                    variances[entry] = 0;
+                    samples[entry] = 1;
+                }
+                return false;
+            }
+            burstLengths[entry] = 0;
+        } else if (samples[entry] >= warmup && value > minValue && value > mean + sigmas * stdDev) {
+            burstLengths[entry] = 1;
+            return true;
+        }
+        if (samples[entry] == 0) {
+            means[entry] = value;
+        } else {
+            // Incremental exponentially weighted variance (Finch, 2009)
+            final double diff = value - mean;
+            final double increment = alpha * diff;
+            means[entry] = mean + increment;
+            variances[entry] = (1 - alpha) * (variances[entry] + diff * increment);
+        }
+        samples[entry]++;
+        return false;
+    }
+
+    public double getLastMean() {
+        return lastMean;
+    }
+
+    public double getLastStdDev() {
+        return lastStdDev;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private int findOrInsert(final long key) {
+        int entry = index.find(key);
+        if (entry != LongHashIndex.NO_ENTRY) {
+            return entry;
+        }
+        entry = index.insert(key);
+        if (entry == means.length) {
+            grow();
+        }
+        means[entry] = 0;
+        variances[entry] = 0;
+        samples[entry] = 0;
+        burstLengths[entry] = 0;
+        return entry;
+    }
+
+    private void grow() {
+        final int capacity = index.getCapacity();
+        means = Arrays.copyOf(means, capacity);
+        variances = Arrays.copyOf(variances, capacity);
+        samples = Arrays.copyOf(samples, capacity);
+        burstLengths = Arrays.copyOf(burstLengths, capacity);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+/**
+ * Suppresses reports of flows whose content has not changed, holding a 64 bit digest per flow in fixed memory.
+ * A report is kept when its flow is unknown, when its digest differs from that of the flow's last kept report or when
+ * the flow's last kept report is older than the refresh interval, so that steady flows are still reported each
+ * interval. Flows are held by their 64 bit key hash within a LongHashIndex, with their digests and kept times in
+ * primitive arrays by entry. Each update also examines the next buckets under the index's sweeping hand, removing
+ * flows whose last kept report is older than the refresh interval as their next report is kept regardless, and once
+ * the maximum number of flows is held the next flow under the hand is evicted to make room, so every update takes
+ * constant time.
+ */
+public class ChangeSuppressor {
+
+    private static final int SWEEP_PER_UPDATE = 2;
+
+    private final long refreshInterval;
+    private final LongHashIndex flows;
+    private final long[] digests;
+    private final long[] keptTimes;
+    private long suppressed;
+
+    /**
+     * Constructor.
+     * @param maxFlows - the maximum number of flows held
+     * @param refreshInterval - the age of a flow's last kept report after which its next report is kept
+     */
+    public ChangeSuppressor(final int maxFlows, final long refreshInterval) {
+        if (maxFlows <= 0 || refreshInterval <= 0) {
+            throw new IllegalArgumentException("maxFlows and refreshInterval must be positive");
+        }
+        this.refreshInterval = refreshInterval;
+        this.flows = new LongHashIndex(1, maxFlows, maxFlows);
+        this.digests = new long[maxFlows];
+        this.keptTimes = new long[maxFlows];
+    }
+
+    /**
+     * Decides whether to keep a report.
+     * @param key - the hash of the report's flow key
+     * @param digest - the digest of the report's content
+     * @param now - the current time
+     * @return - true when the report is kept
+     */
+    public boolean keep(final long key, final long digest, final long now) {
+        sweep(now);
+        int entry = flows.find(key);
+        if (entry != LongHashIndex.NO_ENTRY) {
+            if (digests[entry] == digest && now - keptTimes[entry] < refreshInterval) {
+                suppressed++;
+                return false;
+            }
+        } else {
+            if (flows.isFull()) {
+                flows.remove(flows.nextAtHand());
+            }
+            entry = flows.insert(key);
+        }
+        digests[entry] = digest;
+        keptTimes[entry] = now;
+        return true;
+    }
+
+    public int size() {
+        return flows.size();
+    }
+
+    public long getSuppressed() {
+        return suppressed;
+    }
+
+    private void sweep(final long now) {
+        for (int i = 0; i < SWEEP_PER_UPDATE; i++) {
+            final int entry = flows.advanceHand();
+            if (entry != LongHashIndex.NO_ENTRY && now - keptTimes[entry] >= refreshInterval) {
+                flows.remove(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Linear sketch estimating the Shannon entropy (in nats) of a stream of 128 bit keys using maximally skewed stable
+ * random projections (Clifford and Cosma). As the sketch is linear, negative weights remove prior updates. Memory is
+ * one double per projection; the pseudo random variates are derived from a hash of the key so nothing is stored per
+ * key, and a small per thread cache avoids recomputing them for recurring keys.
+ */
+public class EntropySketch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int CACHE_SIZE = 256;
+    private static final double HALF_PI = Math.PI / 2;
+    private static final double UNIT = 0x1.0p-53;
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+
+    private static final ThreadLocal<VariateCache> CACHE = new ThreadLocal<>();
+
+    private final double[] projections;
+    private long total;
+
+    /**
+     * Constructor.
+     * @param numProjections - the number of projections; the standard error shrinks with its square root
+     */
+    public EntropySketch(final int numProjections) {
+        if (numProjections < 1) {
+            throw new IllegalArgumentException("numProjections must be positive");
+        }
+        this.projections = new double[numProjections];
+        this.total = 0;
+    }
+
+    /**
+     * Adds the weight to the key's frequency.
+     * @param high - upper 64 bits of the key
+     * @param low - lower 64 bits of the key
+     * @param weight - the frequency change (negative to remove)
+     */
+    public void update(final long high, final long low, final long weight) {
+        VariateCache cache = CACHE.get();
+        if (cache == null || cache.numProjections != projections.length) {
+            cache = new VariateCache(projections.length);
+            CACHE.set(cache);
+        }
+        final int offset = cache.lookup(high, low);
+        final double[] variates = cache.variates;
+        for (int i = 0; i < projections.length; i++) {
+            projections[i] += weight * variates[offset + i];
+        }
+        total += weight;
+    }
+
+    /**
+     * Returns the entropy estimate.
+     * @return - the entropy in nats (zero when the sketch is empty)
+     */
+    public double estimate() {
+        if (total <= 0) {
+            return 0;
+        }
+        // The variates X have E[exp(tX)] = t^t, so a projection over the frequencies n_i of total m, scaled by 1/m,
+        // is distributed as X + sum(p_i log p_i) with p_i = n_i / m, and E[exp(projection / m)] = exp(-H)
+        double sum = 0;
+        for (final double projection : projections) {
+            sum += Math.exp(projection / total);
+        }
+        return Math.max(0, -Math.log(sum / projections.length));
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Resets the sketch without releasing memory.
+     */
+    public void clear() {
+        Arrays.fill(projections, 0);
+        total = 0;
+    }
+
+    /**
+     * Returns a maximally skewed 1-stable variate of scale pi/2 for the key and projection index, F(x; 1, -1, pi/2, 0)
+     * as per Clifford and Cosma. Chambers, Mallows and Stuck give a standard variate from W uniform on (-pi/2, pi/2)
+     * and E exponential as X1 = 2/pi * ((pi/2 - W) tan W + log((pi/2) E cos W / (pi/2 - W))) for beta = -1, and for
+     * alpha = 1 a scale of s is s * X1 + 2/pi * beta * s * log(s). With s = pi/2 the 2/pi factor cancels and the
+     * shift of -log(pi/2) cancels the pi/2 within the log, leaving the expression below.
+     */
+    static double skewedStable(final long keyHash, final int projection) {
+        final long bits1 = Hashing.hash64(keyHash + projection * 2L);
+        final long bits2 = Hashing.hash64(keyHash + projection * 2L + 1);
+        final double u1 = ((bits1 >>> 11) + 0.5) * UNIT;
+        final double u2 = ((bits2 >>> 11) + 0.5) * UNIT;
+        final double w1 = Math.PI * (u1 - 0.5);
+        final double w2 = -Math.log(u2);
+        return Math.tan(w1) * (HALF_PI - w1) + Math.log(w2 * Math.cos(w1) / (HALF_PI - w1));
+    }
+
+    /**
+     * Direct mapped cache of the variates of recently seen keys.
+     */
+    private static class VariateCache {
+        private final int numProjections;
+        private final long[] keyHigh = new long[CACHE_SIZE];
+        private final long[] keyLow = new long[CACHE_SIZE];
+        private final boolean[] valid = new boolean[CACHE_SIZE];
+        private final double[] variates;
+
+        VariateCache(final int numProjections) {
+            this.numProjections = numProjections;
+            this.variates = new double[CACHE_SIZE * numProjections];
+        }
+
+        // Returns the offset of the key's variates, computing them when not cached
+        int lookup(final long high, final long low) {
+            final int entry = Hashing.hash(high, low) & (CACHE_SIZE - 1);
+            final int offset = entry * numProjections;
+            if (!valid[entry] || keyHigh[entry] != high || keyLow[entry] != low) {
+                final long keyHash = Hashing.hash64(high, low ^ SEED);
+                for (int i = 0; i < numProjections; i++) {
+                    variates[offset + i] = skewedStable(keyHash, i);
+                }
+                keyHigh[entry] = high;
+                keyLow[entry] = low;
+                valid[entry] = true;
+            }
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SubscriberLoader reading a file of one subscriber per line given as 'mac attributes', where MAC addresses are
+ * six hex octets separated by ':' or '-', the attributes are the remainder of the line and '#' starts a comment.
+ * The file is re-read when its modification time changes, checked at most once per second, with a file failing to
+ * load leaving the previous subscribers in place. It stands in for a subscriber database during testing and for
+ * small deployments.
+ */
+public class FileSubscriberLoader implements SubscriberLoader {
+
+    private static final long CHECK_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final Path path;
+    private Map<Long, String> subscribers;
+    private FileTime loadedModifiedTime;
+    private long lastCheckNanos;
+
+    /**
+     * Constructor.
+     * @param source - the path of the subscriber file
+     * @throws IOException - when the file cannot be read
+     * @throws IllegalArgumentException - when the file contains an invalid MAC address
+     */
+    public FileSubscriberLoader(final String source) throws IOException {
+        this.path = Paths.get(source);
+        reload();
+        this.lastCheckNanos = System.nanoTime();
+    }
+
+    @Override
+    public synchronized String load(final long mac) {
+        final long now = System.nanoTime();
+        if (now - lastCheckNanos > CHECK_INTERVAL_NANOS) {
+            lastCheckNanos = now;
+            try {
+                if (!Files.getLastModifiedTime(path).equals(loadedModifiedTime)) {
+                    reload();
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // The previous subscribers are kept until the file is next checked
+            }
+        }
+        return subscribers.get(mac);
+    }
+
+    /**
+     * Parses a MAC address such as 00:00:00:00:00:01.
+     * @param mac - the MAC address
+     * @return - the 48 bit MAC address
+     * @throws IllegalArgumentException - when the MAC address is invalid
+     */
+    public static long parseMac(final String mac) {
+        if (!mac.matches("\\p{XDigit}{2}([:-]\\p{XDigit}{2}){5}")) {
+            throw new IllegalArgumentException("Invalid MAC address " + mac);
+        }
+        return Long.parseLong(mac.replaceAll("[:-]", ""), 16);
+    }
+
+    private void reload() throws IOException {
+        final FileTime modifiedTime = Files.getLastModifiedTime(path);
+        final List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        final Map<Long, String> loaded = new HashMap<>(lines.size() * 2);
+        for (int i = 0; i < lines.size(); i++) {
+            final String line = lines.get(i).replaceAll("#.*", "").trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            final String[] tokens = line.split("\\s+", 2);
+            if (tokens.length != 2) {
+                throw new IllegalArgumentException("Subscriber on line " + (i + 1) + " has no attributes");
+            }
+            try {
+                loaded.put(parseMac(tokens[0]), tokens[1]);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid subscriber on line " + (i + 1) + " - "
+                        + e.getMessage());
+            }
+        }
+        subscribers = loaded;
+        loadedModifiedTime = modifiedTime;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import io.siddhi.extension.map.p4.trpt.HopField;
+import io.siddhi.extension.map.p4.trpt.IntMetadataStackHeader;
+import io.siddhi.extension.map.p4.trpt.ReportField;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * NetFlow style cache aggregating packet reports into flows keyed by 5-tuple and node ID.
+ * A flow is exported and removed once it has been idle for the idle timeout or has been active for the active
+ * timeout, where subsequent packets start a new flow record. Expiry is driven by a HierarchicalTimingWheel holding a
+ * single timer per flow that is not touched as packets arrive, and is instead rescheduled lazily when it fires early.
+ * Packets arriving for a flow past its timeouts export it immediately so records never exceed them regardless of the
+ * wheel resolution. When the cache is full the flow with the earliest timer is exported early to make room.
+ */
+public class FlowCache implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    private static final int KEY_WIDTH = 6;
+
+    public static final int MAX_FLOWS = LongHashIndex.MAX_CAPACITY / KEY_WIDTH;
+    private static final int NO_LATENCY = -1;
+
+    private final long activeTimeout;
+    private final long idleTimeout;
+    private final HierarchicalTimingWheel wheel;
+
+    // Keyed by (src high, src low, dst high, dst low, ports and protocol, node ID) with the counters of each entry
+    private final LongHashIndex index;
+    private long[] packets;
+    private long[] bytes;
+    private long[] firstSeen;
+    private long[] lastSeen;
+    private long[] minLatency;
+    private long[] maxLatency;
+    // The sum of the inverse sample rates of the packets of each entry, estimating the packets sent
+    private double[] estimatedPackets;
+
+    private final long[] probe = new long[KEY_WIDTH];
+
+    /**
+     * Constructor.
+     * @param activeTimeout - the maximum duration of a flow record in milliseconds
+     * @param idleTimeout - the duration without packets after which a flow is exported in milliseconds
+     * @param maxFlows - the maximum number of flows held at once
+     * @param startMillis - the current time
+     */
+    public FlowCache(final long activeTimeout, final long idleTimeout, final int maxFlows, final long startMillis) {
+        if (activeTimeout < 1 || idleTimeout < 1) {
+            throw new IllegalArgumentException("Timeouts must be positive");
+        }
+        if (maxFlows < 1) {
+            throw new IllegalArgumentException("maxFlows must be positive");
+        }
+        this.activeTimeout = activeTimeout;
+        this.idleTimeout = idleTimeout;
+        // Export within roughly 1/64th of the shortest timeout
+        this.wheel = new HierarchicalTimingWheel(Math.max(1, Math.min(activeTimeout, idleTimeout) / 64),
+                startMillis);
+        this.index = new LongHashIndex(KEY_WIDTH, Math.min(maxFlows, 1024), maxFlows);
+        allocate(index.getCapacity());
+    }
+
+    /**
+     * Adds a packet report to its flow.
+     * @param trpt - the report
+     * @param timestamp - the report time in milliseconds
+     * @param exporter - receives the flow replaced by the packet or evicted when the cache is full
+     * @return - false when the report does not describe a packet and was ignored
+     */
+    public boolean update(final TelemetryReport trpt, final long timestamp, final Consumer<FlowRecord> exporter) {
+        return update(trpt, 1.0, timestamp, exporter);
+    }
+
+    /**
+     * Adds a packet report kept at a sample rate to its flow.
+     * @param trpt - the report
+     * @param sampleRate - the fraction of such reports kept, within (0, 1]
+     * @param timestamp - the report time in milliseconds
+     * @param exporter - receives the flow replaced by the packet or evicted when the cache is full
+     * @return - false when the report does not describe a packet and was ignored
+     */
+    public boolean update(final TelemetryReport trpt, final double sampleRate, final long timestamp,
+                          final Consumer<FlowRecord> exporter) {
+        if (trpt.ipHdr == null || trpt.protoHdr == null) {
+            return false;
+        }
+        long minHopLatency = NO_LATENCY;
+        long maxHopLatency = NO_LATENCY;
+        if (trpt.intHdr != null && trpt.intHdr.mdStackHdr.hasHopField(HopField.HOP_LATENCY)) {
+            final IntMetadataStackHeader stack = trpt.intHdr.mdStackHdr;
+            for (int hop = 0; hop < stack.getNumHops(); hop++) {
+                final long latency = stack.getHopValue(HopField.HOP_LATENCY, hop);
+                if (minHopLatency == NO_LATENCY || latency < minHopLatency) {
+                    minHopLatency = latency;
+                }
+                maxHopLatency = Math.max(maxHopLatency, latency);
+            }
+        }
+        update(ReportField.SRC_ADDR.getHigh(trpt), ReportField.SRC_ADDR.getLow(trpt),
+                ReportField.DST_ADDR.getHigh(trpt), ReportField.DST_ADDR.getLow(trpt),
+                (int) trpt.protoHdr.getSrcPort(), (int) trpt.protoHdr.getDstPort(), trpt.ipHdr.getNextProto(),
+                trpt.trptHdr.getNodeId(), trpt.ipHdr.getLen(), sampleRate, minHopLatency, maxHopLatency, timestamp,
+                exporter);
+        return true;
+    }
+
+    /**
+     * Adds a packet to its flow.
+     * @param srcAddrHigh - the upper 64 bits of the source address
+     * @param srcAddrLow - the lower 64 bits of the source address
+     * @param dstAddrHigh - the upper 64 bits of the destination address
+     * @param dstAddrLow - the lower 64 bits of the destination address
+     * @param srcPort - the source port
+     * @param dstPort - the destination port
+     * @param nextProto - the IP protocol
+     * @param nodeId - the reporting node
+     * @param packetBytes - the packet length
+     * @param sampleRate - the fraction of such packets reported, within (0, 1]
+     * @param minHopLatency - the lowest hop latency of the packet or -1 when absent
+     * @param maxHopLatency - the highest hop latency of the packet or -1 when absent
+     * @param timestamp - the packet time in milliseconds
+     * @param exporter - receives the flow replaced by the packet or evicted when the cache is full
+     */
+    public void update(final long srcAddrHigh, final long srcAddrLow, final long dstAddrHigh, final long dstAddrLow,
+                       final int srcPort, final int dstPort, final int nextProto, final long nodeId,
+                       final long packetBytes, final double sampleRate, final long minHopLatency,
+                       final long maxHopLatency, final long timestamp, final Consumer<FlowRecord> exporter) {
+        probe[0] = srcAddrHigh;
+        probe[1] = srcAddrLow;
+        probe[2] = dstAddrHigh;
+        probe[3] = dstAddrLow;
+        probe[4] = ((long) (srcPort & 0xffff) << 24) | ((long) (dstPort & 0xffff) << 8) | (nextProto & 0xff);
+        probe[5] = nodeId;
+        int entry = index.find(probe);
+        if (entry >= 0 && (timestamp >= firstSeen[entry] + activeTimeout
+                || timestamp >= lastSeen[entry] + idleTimeout)) {
+            exporter.accept(export(entry, timestamp >= firstSeen[entry] + activeTimeout
+                    ? FlowRecord.ExportReason.ACTIVE : FlowRecord.ExportReason.IDLE));
+            remove(entry);
+            entry = -1;
+        }
+        if (entry < 0) {
+            entry = insert(probe, timestamp, exporter);
+        }
+        packets[entry]++;
+        bytes[entry] += packetBytes;
+        estimatedPackets[entry] += 1 / sampleRate;
+        if (timestamp > lastSeen[entry]) {
+            lastSeen[entry] = timestamp;
+        }
+        if (minHopLatency >= 0 && (minLatency[entry] == NO_LATENCY || minHopLatency < minLatency[entry])) {
+            minLatency[entry] = minHopLatency;
+        }
+        if (maxHopLatency > maxLatency[entry]) {
+            maxLatency[entry] = maxHopLatency;
+        }
+    }
+
+    /**
+     * Exports every flow that has reached its idle or active timeout.
+     * @param nowMillis - the current time
+     * @param exporter - receives the flows
+     */
+    public void expire(final long nowMillis, final Consumer<FlowRecord> exporter) {
+        wheel.advance(nowMillis, entry -> {
+            final long activeDeadline = firstSeen[entry] + activeTimeout;
+            final long deadline = Math.min(lastSeen[entry] + idleTimeout, activeDeadline);
+            if (deadline > nowMillis) {
+                wheel.schedule(entry, deadline);
+            } else {
+                exporter.accept(export(entry, activeDeadline <= nowMillis
+                        ? FlowRecord.ExportReason.ACTIVE : FlowRecord.ExportReason.IDLE));
+                remove(entry);
+            }
+        });
+    }
+
+    /**
+     * Exports and removes every flow.
+     * @param exporter - receives the flows
+     */
+    public void flush(final Consumer<FlowRecord> exporter) {
+        index.forEach(entry -> exporter.accept(export(entry, FlowRecord.ExportReason.FORCED)));
+        index.clear();
+        wheel.clear();
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private int insert(final long[] key, final long timestamp, final Consumer<FlowRecord> exporter) {
+        if (index.isFull()) {
+            final int victim = wheel.peekEarliest();
+            exporter.accept(export(victim, FlowRecord.ExportReason.FORCED));
+            remove(victim);
+        }
+        final int entry = index.insert(key);
+        if (entry == packets.length) {
+            grow();
+        }
+        packets[entry] = 0;
+        bytes[entry] = 0;
+        estimatedPackets[entry] = 0;
+        firstSeen[entry] = timestamp;
+        lastSeen[entry] = timestamp;
+        minLatency[entry] = NO_LATENCY;
+        maxLatency[entry] = NO_LATENCY;
+        wheel.schedule(entry, Math.min(timestamp + idleTimeout, timestamp + activeTimeout));
+        return entry;
+    }
+
+    private FlowRecord export(final int entry, final FlowRecord.ExportReason reason) {
+        final long ports = index.getKey(entry, 4);
+        return new FlowRecord(index.getKey(entry, 0), index.getKey(entry, 1), index.getKey(entry, 2),
+                index.getKey(entry, 3), (int) (ports >>> 24) & 0xffff, (int) (ports >>> 8) & 0xffff, (int) ports & 0xff,
+                index.getKey(entry, 5),
+                packets[entry], bytes[entry], firstSeen[entry], lastSeen[entry], minLatency[entry],
+                maxLatency[entry], packets[entry] / estimatedPackets[entry], reason);
+    }
+
+    private void remove(final int entry) {
+        wheel.cancel(entry);
+        index.remove(entry);
+    }
+
+    private void allocate(final int capacity) {
+        packets = new long[capacity];
+        bytes = new long[capacity];
+        firstSeen = new long[capacity];
+        lastSeen = new long[capacity];
+        minLatency = new long[capacity];
+        maxLatency = new long[capacity];
+        estimatedPackets = new double[capacity];
+    }
+
+    private void grow() {
+        final int capacity = index.getCapacity();
+        packets = Arrays.copyOf(packets, capacity);
+        bytes = Arrays.copyOf(bytes, capacity);
+        firstSeen = Arrays.copyOf(firstSeen, capacity);
+        lastSeen = Arrays.copyOf(lastSeen, capacity);
+        minLatency = Arrays.copyOf(minLatency, capacity);
+        maxLatency = Arrays.copyOf(maxLatency, capacity);
+        estimatedPackets = Arrays.copyOf(estimatedPackets, capacity);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import com.google.gson.JsonObject;
+import io.siddhi.extension.map.p4.trpt.ByteUtils;
+
+/**
+ * A flow record exported by the FlowCache.
+ */
+public class FlowRecord {
+
+    public static final String SRC_ADDR_KEY = "srcAddr";
+    public static final String DST_ADDR_KEY = "dstAddr";
+    public static final String SRC_PORT_KEY = "srcPort";
+    public static final String DST_PORT_KEY = "dstPort";
+    public static final String NEXT_PROTO_KEY = "nextProto";
+    public static final String NODE_ID_KEY = "nodeId";
+    public static final String PACKETS_KEY = "packets";
+    public static final String BYTES_KEY = "bytes";
+    public static final String FIRST_SEEN_KEY = "firstSeen";
+    public static final String LAST_SEEN_KEY = "lastSeen";
+    public static final String MIN_HOP_LATENCY_KEY = "minHopLatency";
+    public static final String MAX_HOP_LATENCY_KEY = "maxHopLatency";
+    public static final String EXPORT_REASON_KEY = "exportReason";
+
+    /**
+     * Why a flow record was exported.
+     */
+    public enum ExportReason {
+        IDLE, ACTIVE, FORCED;
+
+        public String getName() {
+            return name().toLowerCase();
+        }
+    }
+
+    public final long srcAddrHigh;
+    public final long srcAddrLow;
+    public final long dstAddrHigh;
+    public final long dstAddrLow;
+    public final int srcPort;
+    public final int dstPort;
+    public final int nextProto;
+    public final long nodeId;
+    public final long packets;
+    public final long bytes;
+    public final long firstSeen;
+    public final long lastSeen;
+    // -1 when no report of the flow carried hop latency
+    public final long minHopLatency;
+    public final long maxHopLatency;
+    // The fraction of the flow's packets reported, so that packets / sampleRate estimates the packets sent
+    public final double sampleRate;
+    public final ExportReason exportReason;
+
+    public FlowRecord(final long srcAddrHigh, final long srcAddrLow, final long dstAddrHigh, final long dstAddrLow,
+                      final int srcPort, final int dstPort, final int nextProto, final long nodeId,
+                      final long packets, final long bytes, final long firstSeen, final long lastSeen,
+                      final long minHopLatency, final long maxHopLatency, final double sampleRate,
+                      final ExportReason exportReason) {
+        this.srcAddrHigh = srcAddrHigh;
+        this.srcAddrLow = srcAddrLow;
+        this.dstAddrHigh = dstAddrHigh;
+        this.dstAddrLow = dstAddrLow;
+        this.srcPort = srcPort;
+        this.dstPort = dstPort;
+        this.nextProto = nextProto;
+        this.nodeId = nodeId;
+        this.packets = packets;
+        this.bytes = bytes;
+        this.firstSeen = firstSeen;
+        this.lastSeen = lastSeen;
+        this.minHopLatency = minHopLatency;
+        this.maxHopLatency = maxHopLatency;
+        this.sampleRate = sampleRate;
+        this.exportReason = exportReason;
+    }
+
+    public String getSrcAddr() {
+        return ByteUtils.getInetAddress(srcAddrHigh, srcAddrLow).getHostAddress();
+    }
+
+    public String getDstAddr() {
+        return ByteUtils.getInetAddress(dstAddrHigh, dstAddrLow).getHostAddress();
+    }
+
+    public JsonObject toJson() {
+        final JsonObject outJson = new JsonObject();
+        outJson.addProperty(SRC_ADDR_KEY, getSrcAddr());
+        outJson.addProperty(DST_ADDR_KEY, getDstAddr());
+        outJson.addProperty(SRC_PORT_KEY, srcPort);
+        outJson.addProperty(DST_PORT_KEY, dstPort);
+        outJson.addProperty(NEXT_PROTO_KEY, nextProto);
+        outJson.addProperty(NODE_ID_KEY, nodeId);
+        outJson.addProperty(PACKETS_KEY, packets);
+        outJson.addProperty(BYTES_KEY, bytes);
+        outJson.addProperty(FIRST_SEEN_KEY, firstSeen);
+        outJson.addProperty(LAST_SEEN_KEY, lastSeen);
+        outJson.addProperty(MIN_HOP_LATENCY_KEY, minHopLatency);
+        outJson.addProperty(MAX_HOP_LATENCY_KEY, maxHopLatency);
+        outJson.addProperty(EXPORT_REASON_KEY, exportReason.getName());
+        return outJson;
+    }
+}
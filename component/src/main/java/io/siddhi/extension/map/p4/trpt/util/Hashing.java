@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+/**
+ * Allocation free hash functions over primitive keys used by the fixed memory structures in this package.
+ */
+public class Hashing {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private Hashing() {
+    }
+
+    /**
+     * The 64 bit finalizer from MurmurHash3.
+     * @param value - the value to mix
+     * @return - the mixed value
+     */
+    public static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * Returns a 64 bit hash of a single long key.
+     * @param key - the key
+     * @return - the hash
+     */
+    public static long hash64(final long key) {
+        return mix(key * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Returns a 64 bit hash of a 128 bit key held as two longs.
+     * @param high - the upper 64 bits
+     * @param low - the lower 64 bits
+     * @return - the hash
+     */
+    public static long hash64(final long high, final long low) {
+        return mix(mix(high * GOLDEN_GAMMA) ^ low);
+    }
+
+    /**
+     * Returns a 32 bit hash of a single long key suitable for masking into a power of two table.
+     * @param key - the key
+     * @return - the hash
+     */
+    public static int hash(final long key) {
+        return (int) hash64(key);
+    }
+
+    /**
+     * Returns a 32 bit hash of a 128 bit key suitable for masking into a power of two table.
+     * @param high - the upper 64 bits
+     * @param low - the lower 64 bits
+     * @return - the hash
+     */
+    public static int hash(final long high, final long low) {
+        return (int) hash64(high, low);
+    }
+
+    /**
+     * Returns the smallest power of two that is greater than or equal to the value.
+     * @param value - the value (must be positive and no larger than 2^30)
+     * @return - the power of two
+     */
+    public static int nextPowerOfTwo(final int value) {
+        if (value <= 1) {
+            return 1;
+        }
+        return Integer.highestOneBit(value - 1) << 1;
+    }
+}
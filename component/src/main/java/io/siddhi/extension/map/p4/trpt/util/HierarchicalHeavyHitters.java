@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical heavy hitters over an IP prefix tree using one {@link SpaceSaving} summary per prefix level
+ * (Mitzenmacher, Steinke and Thaler). Addresses are numeric and held as two longs in network order where IPv4
+ * addresses occupy the lower 32 bits of the low value.
+ */
+public class HierarchicalHeavyHitters implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int addressBits;
+    private final int[] prefixLengths;
+    private final SpaceSaving[] levels;
+    private long total;
+
+    /**
+     * Constructor.
+     * @param addressBits - 32 for IPv4 or 128 for IPv6
+     * @param step - the number of bits between prefix levels (e.g. 8 yields /8, /16, /24 and /32 for IPv4)
+     * @param capacity - the number of counters per level
+     */
+    public HierarchicalHeavyHitters(final int addressBits, final int step, final int capacity) {
+        if (addressBits != 32 && addressBits != 128) {
+            throw new IllegalArgumentException("addressBits must be 32 or 128");
+        }
+        if (step < 1 || step > addressBits) {
+            throw new IllegalArgumentException("step must be between 1 and " + addressBits);
+        }
+        this.addressBits = addressBits;
+        final int numLevels = (addressBits + step - 1) / step;
+        this.prefixLengths = new int[numLevels];
+        this.levels = new SpaceSaving[numLevels];
+        for (int i = 0; i < numLevels; i++) {
+            prefixLengths[i] = Math.min(step * (i + 1), addressBits);
+            levels[i] = new SpaceSaving(capacity);
+        }
+    }
+
+    /**
+     * Adds weight to the address and each of its ancestor prefixes.
+     * @param high - upper 64 bits of the address (zero for IPv4)
+     * @param low - lower 64 bits of the address
+     * @param weight - the amount to add
+     */
+    public void offer(final long high, final long low, final long weight) {
+        for (int i = 0; i < levels.length; i++) {
+            final int bits = effectiveBits(prefixLengths[i]);
+            levels[i].offer(maskHigh(high, bits), maskLow(low, bits), weight);
+        }
+        total += weight;
+    }
+
+    /**
+     * Returns the hierarchical heavy hitters, most specific first. A prefix is reported when its count, less the
+     * counts of the closest reported descendants, meets the threshold.
+     * @param threshold - the minimum residual count
+     * @return - the reported prefixes
+     */
+    public List<Prefix> query(final long threshold) {
+        final List<Prefix> out = new ArrayList<>();
+        final List<Boolean> covered = new ArrayList<>();
+        for (int level = levels.length - 1; level >= 0; level--) {
+            final SpaceSaving summary = levels[level];
+            final int length = prefixLengths[level];
+            final int bits = effectiveBits(length);
+            for (int slot = 0; slot < summary.size(); slot++) {
+                final long count = summary.getCount(slot);
+                if (count < threshold) {
+                    continue;
+                }
+                final long high = summary.getKeyHigh(slot);
+                final long low = summary.getKeyLow(slot);
+                long residual = count;
+                for (int i = 0; i < out.size(); i++) {
+                    final Prefix desc = out.get(i);
+                    if (!covered.get(i) && maskHigh(desc.high, bits) == high && maskLow(desc.low, bits) == low) {
+                        residual -= desc.count;
+                    }
+                }
+                if (residual >= threshold) {
+                    for (int i = 0; i < out.size(); i++) {
+                        final Prefix desc = out.get(i);
+                        if (maskHigh(desc.high, bits) == high && maskLow(desc.low, bits) == low) {
+                            covered.set(i, true);
+                        }
+                    }
+                    out.add(new Prefix(addressBits, high, low, length, count, residual));
+                    covered.add(false);
+                }
+            }
+        }
+        return out;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Resets all levels for the next interval without releasing memory.
+     */
+    public void clear() {
+        for (final SpaceSaving level : levels) {
+            level.clear();
+        }
+        total = 0;
+    }
+
+    // Converts a prefix length into the number of leading bits to retain of the 128 bit key
+    private int effectiveBits(final int prefixLength) {
+        return 128 - addressBits + prefixLength;
+    }
+
+    static long maskHigh(final long high, final int bits) {
+        if (bits >= 64) {
+            return high;
+        }
+        if (bits == 0) {
+            return 0;
+        }
+        return high & (-1L << (64 - bits));
+    }
+
+    static long maskLow(final long low, final int bits) {
+        if (bits <= 64) {
+            return 0;
+        }
+        if (bits == 128) {
+            return low;
+        }
+        return low & (-1L << (128 - bits));
+    }
+
+    /**
+     * A reported prefix.
+     */
+    public static class Prefix implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        public final int addressBits;
+        public final long high;
+        public final long low;
+        public final int length;
+        public final long count;
+        public final long residualCount;
+
+        Prefix(final int addressBits, final long high, final long low, final int length, final long count,
+               final long residualCount) {
+            this.addressBits = addressBits;
+            this.high = high;
+            this.low = low;
+            this.length = length;
+            this.count = count;
+            this.residualCount = residualCount;
+        }
+
+        /**
+         * Returns the prefix in CIDR notation.
+         * @return - e.g. 10.1.0.0/16 or 2001:db8:0:0:0:0:0:0/32
+         */
+        public String toCidr() {
+            final byte[] addrBytes = new byte[addressBits / 8];
+            for (int i = 0; i < addrBytes.length; i++) {
+                final int shift = (addrBytes.length - 1 - i) * 8;
+                if (shift >= 64) {
+                    addrBytes[i] = (byte) (high >>> (shift - 64));
+                } else {
+                    addrBytes[i] = (byte) (low >>> shift);
+                }
+            }
+            try {
+                return InetAddress.getByAddress(addrBytes).getHostAddress() + "/" + length;
+            } catch (UnknownHostException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Hierarchical timing wheel of integer ids (Varghese and Lauck) with four levels of 64 slots each.
+ * Level 0 slots span a single tick and each higher level slot spans all of the slots of the level below, so
+ * scheduling and cancelling are constant time while timers due beyond the range of a level are cascaded down as
+ * the wheel turns. Slot lists are doubly linked through primitive arrays indexed by id.
+ * Deadlines beyond the range of the wheel fire at its range, so callers with longer timeouts must reschedule.
+ */
+public class HierarchicalTimingWheel implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+    private static final int NONE = -1;
+
+    private final long tickMillis;
+    private final int[] heads = new int[LEVELS * SLOTS];
+    private final int[] tails = new int[LEVELS * SLOTS];
+    private int[] next;
+    private int[] prev;
+    private int[] slotOf;
+    private long[] expires;
+
+    // The next tick to be processed
+    private long currentTick;
+    private int size;
+
+    /**
+     * Constructor.
+     * @param tickMillis - the resolution of the wheel in milliseconds
+     * @param startMillis - the current time
+     */
+    public HierarchicalTimingWheel(final long tickMillis, final long startMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        Arrays.fill(heads, NONE);
+        Arrays.fill(tails, NONE);
+        this.next = new int[0];
+        this.prev = new int[0];
+        this.slotOf = new int[0];
+        this.expires = new long[0];
+    }
+
+    /**
+     * Schedules the id, replacing any existing schedule. Deadlines that have passed fire on the next advance.
+     * @param id - the non-negative id
+     * @param deadlineMillis - the time at or after which the id fires
+     */
+    public void schedule(final int id, final long deadlineMillis) {
+        ensureCapacity(id);
+        if (slotOf[id] != NONE) {
+            unlink(id);
+        } else {
+            size++;
+        }
+        // Round up so that ids never fire before their deadline
+        final long tick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        expires[id] = Math.max(tick, currentTick);
+        link(id);
+    }
+
+    /**
+     * Cancels the id's schedule.
+     * @param id - the id
+     * @return - true when the id was scheduled
+     */
+    public boolean cancel(final int id) {
+        if (!isScheduled(id)) {
+            return false;
+        }
+        unlink(id);
+        size--;
+        return true;
+    }
+
+    public boolean isScheduled(final int id) {
+        return id < slotOf.length && slotOf[id] != NONE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Turns the wheel up to the current time, passing each id that became due to the consumer.
+     * Fired ids are no longer scheduled when passed so the consumer may reschedule them.
+     * @param nowMillis - the current time
+     * @param expired - receives the ids
+     */
+    public void advance(final long nowMillis, final IntConsumer expired) {
+        final long nowTick = nowMillis / tickMillis;
+        while (currentTick <= nowTick) {
+            if (size == 0) {
+                currentTick = nowTick + 1;
+                return;
+            }
+            final int index = (int) (currentTick & SLOT_MASK);
+            if (index == 0) {
+                cascade();
+            }
+            currentTick++;
+            int id = heads[index];
+            heads[index] = NONE;
+            tails[index] = NONE;
+            while (id != NONE) {
+                final int following = next[id];
+                slotOf[id] = NONE;
+                size--;
+                expired.accept(id);
+                id = following;
+            }
+        }
+    }
+
+    /**
+     * Returns the longest scheduled id within the earliest non empty slot, whose deadline is the earliest to the
+     * resolution of the slot (exact within the first level and approximate beyond it).
+     * @return - the id or -1 when the wheel is empty
+     */
+    public int peekEarliest() {
+        if (size == 0) {
+            return NONE;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            final int start = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+            for (int i = 0; i < SLOTS; i++) {
+                final int head = heads[level * SLOTS + ((start + i) & SLOT_MASK)];
+                if (head != NONE) {
+                    return head;
+                }
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Removes every scheduled id.
+     */
+    public void clear() {
+        Arrays.fill(heads, NONE);
+        Arrays.fill(tails, NONE);
+        Arrays.fill(slotOf, NONE);
+        size = 0;
+    }
+
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            final int index = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+            final int slot = level * SLOTS + index;
+            int id = heads[slot];
+            heads[slot] = NONE;
+            tails[slot] = NONE;
+            while (id != NONE) {
+                final int following = next[id];
+                link(id);
+                id = following;
+            }
+            // Higher levels only turn when this level wraps around
+            if (index != 0) {
+                return;
+            }
+        }
+    }
+
+    private void link(final int id) {
+        final long delta = Math.min(expires[id] - currentTick, MAX_TICKS);
+        final long tick = currentTick + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        final int slot = level * SLOTS + ((int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        // Append so that each slot lists ids in the order they were scheduled
+        final int tail = tails[slot];
+        next[id] = NONE;
+        prev[id] = tail;
+        if (tail == NONE) {
+            heads[slot] = id;
+        } else {
+            next[tail] = id;
+        }
+        tails[slot] = id;
+        slotOf[id] = slot;
+    }
+
+    private void unlink(final int id) {
+        final int slot = slotOf[id];
+        if (prev[id] == NONE) {
+            heads[slot] = next[id];
+        } else {
+            next[prev[id]] = next[id];
+        }
+        if (next[id] == NONE) {
+            tails[slot] = prev[id];
+        } else {
+            prev[next[id]] = prev[id];
+        }
+        slotOf[id] = NONE;
+    }
+
+    private void ensureCapacity(final int id) {
+        if (id < slotOf.length) {
+            return;
+        }
+        final int capacity = Math.max(Hashing.nextPowerOfTwo(id + 1), 16);
+        final int oldCapacity = slotOf.length;
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        expires = Arrays.copyOf(expires, capacity);
+        slotOf = Arrays.copyOf(slotOf, capacity);
+        Arrays.fill(slotOf, oldCapacity, capacity, NONE);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Open addressed hash table of count, sum, min and max accumulators keyed by a fixed number of longs.
+ * Keys are located through a LongHashIndex and the accumulators stored densely in insertion order within primitive
+ * arrays by entry, so memory scales with the number of active keys and clearing retains the allocated capacity.
+ */
+public class KeyedAccumulators implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final LongHashIndex index;
+    private long[] counts;
+    private long[] sums;
+    private long[] mins;
+    private long[] maxes;
+
+    /**
+     * Constructor.
+     * @param keyWidth - the number of longs within each key
+     * @param initialCapacity - the number of keys to allocate space for
+     */
+    public KeyedAccumulators(final int keyWidth, final int initialCapacity) {
+        if (keyWidth < 1) {
+            throw new IllegalArgumentException("keyWidth must be positive");
+        }
+        this.index = new LongHashIndex(keyWidth, Math.max(initialCapacity, 8), LongHashIndex.MAX_CAPACITY / keyWidth);
+        final int capacity = index.getCapacity();
+        this.counts = new long[capacity];
+        this.sums = new long[capacity];
+        this.mins = new long[capacity];
+        this.maxes = new long[capacity];
+    }
+
+    /**
+     * Returns the entry for the key, inserting an empty accumulator when absent.
+     * @param key - the key values (only the first keyWidth values are read so the caller may reuse the array)
+     * @return - the entry number
+     */
+    public int findOrInsert(final long[] key) {
+        int entry = index.find(key);
+        if (entry != LongHashIndex.NO_ENTRY) {
+            return entry;
+        }
+        entry = index.insert(key);
+        if (entry == counts.length) {
+            grow();
+        }
+        counts[entry] = 0;
+        sums[entry] = 0;
+        mins[entry] = Long.MAX_VALUE;
+        maxes[entry] = Long.MIN_VALUE;
+        return entry;
+    }
+
+    /**
+     * Adds a value to the entry's accumulators.
+     * @param entry - the entry number
+     * @param value - the value
+     */
+    public void accumulate(final int entry, final long value) {
+        counts[entry]++;
+        sums[entry] += value;
+        if (value < mins[entry]) {
+            mins[entry] = value;
+        }
+        if (value > maxes[entry]) {
+            maxes[entry] = value;
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public int getKeyWidth() {
+        return index.getKeyWidth();
+    }
+
+    public long getKey(final int entry, final int pos) {
+        return index.getKey(entry, pos);
+    }
+
+    public long getCount(final int entry) {
+        return counts[entry];
+    }
+
+    public long getSum(final int entry) {
+        return sums[entry];
+    }
+
+    public long getMin(final int entry) {
+        return mins[entry];
+    }
+
+    public long getMax(final int entry) {
+        return maxes[entry];
+    }
+
+    /**
+     * Removes all entries while retaining the allocated capacity.
+     */
+    public void clear() {
+        index.clear();
+    }
+
+    private void grow() {
+        final int capacity = index.getCapacity();
+        counts = Arrays.copyOf(counts, capacity);
+        sums = Arrays.copyOf(sums, capacity);
+        mins = Arrays.copyOf(mins, capacity);
+        maxes = Arrays.copyOf(maxes, capacity);
+    }
+}
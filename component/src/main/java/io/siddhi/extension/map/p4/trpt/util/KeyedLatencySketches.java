@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Open addressed hash table of LatencySketches keyed by a long.
+ * Keys are located through a LongHashIndex and the sketches stored densely in insertion order by entry, where
+ * clearing keeps the sketches of the first entries for reuse so that a steady set of keys allocates nothing per
+ * interval.
+ */
+public class KeyedLatencySketches implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double relativeAccuracy;
+    private final LongHashIndex index;
+    private LatencySketch[] sketches;
+
+    /**
+     * Constructor.
+     * @param relativeAccuracy - the relative accuracy of the sketches
+     * @param initialCapacity - the number of keys to allocate space for
+     */
+    public KeyedLatencySketches(final double relativeAccuracy, final int initialCapacity) {
+        this.relativeAccuracy = relativeAccuracy;
+        this.index = new LongHashIndex(1, Math.max(initialCapacity, 8), LongHashIndex.MAX_CAPACITY);
+        this.sketches = new LatencySketch[index.getCapacity()];
+    }
+
+    /**
+     * Adds a value to the sketch of a key.
+     * @param key - the key
+     * @param value - the value
+     */
+    public void add(final long key, final long value) {
+        // The entry is found first as inserting may replace the array
+        final int entry = findOrInsert(key);
+        sketches[entry].add(value);
+    }
+
+    /**
+     * Merges every sketch of another table into the sketch of the same key.
+     * @param other - a table of the same relative accuracy
+     */
+    public void merge(final KeyedLatencySketches other) {
+        for (int entry = 0; entry < other.size(); entry++) {
+            final int into = findOrInsert(other.getKey(entry));
+            sketches[into].merge(other.sketches[entry]);
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public long getKey(final int entry) {
+        return index.getKey(entry);
+    }
+
+    public LatencySketch getSketch(final int entry) {
+        return sketches[entry];
+    }
+
+    /**
+     * Removes all entries while retaining the allocated capacity.
+     */
+    public void clear() {
+        for (int entry = 0; entry < index.size(); entry++) {
+            sketches[entry].clear();
+        }
+        index.clear();
+    }
+
+    private int findOrInsert(final long key) {
+        int entry = index.find(key);
+        if (entry != LongHashIndex.NO_ENTRY) {
+            return entry;
+        }
+        entry = index.insert(key);
+        if (entry == sketches.length) {
+            sketches = Arrays.copyOf(sketches, index.getCapacity());
+        }
+        if (sketches[entry] == null) {
+            sketches[entry] = new LatencySketch(relativeAccuracy);
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sheds reports by priority class when the latency of handing events downstream exceeds a target.
+ * The latency is tracked as an exponentially weighted moving average and a shedding pressure is raised while it is
+ * above the target and lowered while it is below, being re-evaluated at a fixed interval. The pressure sheds the
+ * first class of the policy progressively before moving onto the next, where reports are kept by comparing a hash
+ * against the keep fraction of their class so that whole flows are shed together. Every shed report is counted.
+ */
+public class LoadShedder {
+
+    public static final int PACKET_CLASS = 0;
+    public static final int DROP_CLASS = 1;
+    public static final String[] CLASS_NAMES = {"packet", "drop"};
+
+    private static final long ADJUST_INTERVAL_NANOS = 100_000_000L;
+    private static final double EWMA_WEIGHT = 0.1;
+    private static final double PRESSURE_INCREASE = 0.25;
+    private static final double PRESSURE_DECREASE = 0.05;
+    private static final double HASH_SCALE = 1L << 53;
+    // Decorrelates the shedding decision from sampling decisions made with the same hash
+    private static final long SHED_SEED = 0x5ed5ed5ed5ed5edL;
+
+    private final long targetLatencyNanos;
+    // Position of each class within the policy or -1 when never shed
+    private final int[] policyIndex;
+    private final int policyLength;
+
+    private final AtomicLongArray shedCounts = new AtomicLongArray(CLASS_NAMES.length);
+    private final AtomicLongArray admittedCounts = new AtomicLongArray(CLASS_NAMES.length);
+    // Replaced rather than updated in place so that admit() reads a consistent set without locking
+    private volatile long[] keepThresholds;
+
+    private double latencyEwma;
+    private long samples;
+    private long nextAdjustNanos;
+    private volatile double pressure;
+
+    /**
+     * Constructor.
+     * @param targetLatencyNanos - the handoff latency above which reports are shed
+     * @param policy - the classes to shed in order
+     * @param nowNanos - the current value of System.nanoTime()
+     */
+    public LoadShedder(final long targetLatencyNanos, final int[] policy, final long nowNanos) {
+        if (targetLatencyNanos <= 0) {
+            throw new IllegalArgumentException("targetLatencyNanos must be positive");
+        }
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.policyIndex = new int[CLASS_NAMES.length];
+        Arrays.fill(policyIndex, -1);
+        for (int i = 0; i < policy.length; i++) {
+            if (policyIndex[policy[i]] != -1) {
+                throw new IllegalArgumentException("Duplicate class " + CLASS_NAMES[policy[i]]);
+            }
+            policyIndex[policy[i]] = i;
+        }
+        this.policyLength = policy.length;
+        this.nextAdjustNanos = nowNanos + ADJUST_INTERVAL_NANOS;
+        updateThresholds();
+    }
+
+    /**
+     * Returns the class for a name within a policy.
+     * @param name - the class name
+     * @return - the class
+     * @throws IllegalArgumentException - when the name is not a class
+     */
+    public static int classOf(final String name) {
+        for (int i = 0; i < CLASS_NAMES.length; i++) {
+            if (CLASS_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown report class - " + name);
+    }
+
+    /**
+     * Decides whether to keep a report, counting it as shed otherwise.
+     * @param reportClass - the report's class
+     * @param hash - a 64 bit hash of the report's flow or key
+     * @return - true to keep the report
+     */
+    public boolean admit(final int reportClass, final long hash) {
+        if ((Hashing.mix(hash ^ SHED_SEED) >>> 11) < keepThresholds[reportClass]) {
+            admittedCounts.incrementAndGet(reportClass);
+            return true;
+        }
+        shedCounts.incrementAndGet(reportClass);
+        return false;
+    }
+
+    /**
+     * Records the latency of handing an event downstream and re-evaluates the pressure when due.
+     * @param latencyNanos - the latency
+     * @param nowNanos - the current value of System.nanoTime()
+     */
+    public synchronized void recordLatency(final long latencyNanos, final long nowNanos) {
+        latencyEwma = samples == 0 ? latencyNanos : latencyEwma + EWMA_WEIGHT * (latencyNanos - latencyEwma);
+        samples++;
+        adjust(nowNanos);
+    }
+
+    /**
+     * Re-evaluates the pressure when due, treating an interval without handoffs as not overloaded.
+     * @param nowNanos - the current value of System.nanoTime()
+     */
+    public synchronized void adjust(final long nowNanos) {
+        if (nowNanos - nextAdjustNanos < 0) {
+            return;
+        }
+        double next = pressure;
+        if (samples > 0 && latencyEwma > targetLatencyNanos) {
+            next = Math.min(policyLength, next + PRESSURE_INCREASE);
+        } else {
+            next = Math.max(0, next - PRESSURE_DECREASE);
+        }
+        if (samples == 0) {
+            latencyEwma = 0;
+        }
+        samples = 0;
+        nextAdjustNanos = nowNanos + ADJUST_INTERVAL_NANOS;
+        if (next != pressure) {
+            pressure = next;
+            updateThresholds();
+        }
+    }
+
+    /**
+     * Returns the fraction of reports of the class currently kept.
+     * @param reportClass - the class
+     * @return - the fraction within [0, 1]
+     */
+    public double getKeepFraction(final int reportClass) {
+        if (policyIndex[reportClass] < 0) {
+            return 1.0;
+        }
+        return Math.max(0, Math.min(1, 1 - (pressure - policyIndex[reportClass])));
+    }
+
+    public double getPressure() {
+        return pressure;
+    }
+
+    public long getShedCount(final int reportClass) {
+        return shedCounts.get(reportClass);
+    }
+
+    public long getAdmittedCount(final int reportClass) {
+        return admittedCounts.get(reportClass);
+    }
+
+    private void updateThresholds() {
+        final long[] thresholds = new long[CLASS_NAMES.length];
+        for (int i = 0; i < thresholds.length; i++) {
+            final double keep = getKeepFraction(i);
+            thresholds[i] = keep >= 1 ? Long.MAX_VALUE : (long) (keep * HASH_SCALE);
+        }
+        keepThresholds = thresholds;
+    }
+}
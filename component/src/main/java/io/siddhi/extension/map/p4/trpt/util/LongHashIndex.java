@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Open addressed hash index from keys of a fixed number of longs to entry numbers, on which the keyed structures of
+ * this package hold their values in primitive arrays indexed by entry. Keys are held in a primitive array by entry
+ * and located through a linear probing index of entry + 1 per bucket (zero denoting a free bucket), where removal
+ * shifts the rest of the probe sequence back rather than leaving tombstones. Entries are numbered densely from zero
+ * in insertion order until one is removed, after which removed entries are reused first. The index doubles in
+ * capacity as it fills, up to its maximum capacity, so callers grow their value arrays to getCapacity() when given an
+ * entry beyond them. A hand passing over the buckets in turn, as with the clock algorithm, lets callers expire a few
+ * entries per update and evict the next entry under it when full, so that both take constant time.
+ */
+public class LongHashIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int NO_ENTRY = -1;
+    public static final int MAX_CAPACITY = 1 << 29;
+
+    private final int keyWidth;
+    private final int maxCapacity;
+    private int capacity;
+    private long[] keys;
+
+    // Stack of removed entries below highWater
+    private int[] freeEntries;
+    private int freeCount;
+    private int highWater;
+
+    // Linear probing index of entry + 1 (zero denotes a free bucket)
+    private int[] buckets;
+    private int mask;
+    private int size;
+    private int hand;
+
+    /**
+     * Constructor.
+     * @param keyWidth - the number of longs within each key
+     * @param initialCapacity - the number of entries to allocate space for
+     * @param maxCapacity - the maximum number of entries held, up to MAX_CAPACITY
+     */
+    public LongHashIndex(final int keyWidth, final int initialCapacity, final int maxCapacity) {
+        if (keyWidth < 1 || maxCapacity < 1 || maxCapacity > MAX_CAPACITY
+                || (long) maxCapacity * keyWidth > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Invalid key width " + keyWidth + " or capacity " + maxCapacity);
+        }
+        this.keyWidth = keyWidth;
+        this.maxCapacity = maxCapacity;
+        allocate(Math.max(1, Math.min(initialCapacity, maxCapacity)));
+    }
+
+    /**
+     * Returns the entry of a single long key.
+     * @param key - the key
+     * @return - the entry or NO_ENTRY when absent
+     */
+    public int find(final long key) {
+        int bucket = (int) Hashing.hash64(key) & mask;
+        while (true) {
+            final int entry = buckets[bucket] - 1;
+            if (entry < 0 || keys[entry] == key) {
+                return entry;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the entry of a key.
+     * @param key - the key values (only the first keyWidth values are read so the caller may reuse the array)
+     * @return - the entry or NO_ENTRY when absent
+     */
+    public int find(final long[] key) {
+        int bucket = hash(key, 0) & mask;
+        while (true) {
+            final int entry = buckets[bucket] - 1;
+            if (entry < 0 || keyEquals(entry, key)) {
+                return entry;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+    }
+
+    /**
+     * Inserts a single long key that is absent.
+     * @param key - the key
+     * @return - the entry
+     * @throws IllegalStateException - when the index is full
+     */
+    public int insert(final long key) {
+        final int entry = allocateEntry();
+        keys[entry] = key;
+        place(entry);
+        return entry;
+    }
+
+    /**
+     * Inserts a key that is absent.
+     * @param key - the key values (only the first keyWidth values are read)
+     * @return - the entry
+     * @throws IllegalStateException - when the index is full
+     */
+    public int insert(final long[] key) {
+        final int entry = allocateEntry();
+        System.arraycopy(key, 0, keys, entry * keyWidth, keyWidth);
+        place(entry);
+        return entry;
+    }
+
+    /**
+     * Removes an entry, which is reused by a later insert.
+     * @param entry - the entry
+     */
+    public void remove(final int entry) {
+        int hole = hash(keys, entry * keyWidth) & mask;
+        while (buckets[hole] != entry + 1) {
+            hole = (hole + 1) & mask;
+        }
+        // Backward shift deletion keeps probe sequences intact without tombstones
+        int bucket = hole;
+        while (true) {
+            bucket = (bucket + 1) & mask;
+            final int moved = buckets[bucket];
+            if (moved == 0) {
+                break;
+            }
+            final int home = hash(keys, (moved - 1) * keyWidth) & mask;
+            if (((bucket - home) & mask) >= ((bucket - hole) & mask)) {
+                buckets[hole] = moved;
+                hole = bucket;
+            }
+        }
+        buckets[hole] = 0;
+        freeEntries[freeCount++] = entry;
+        size--;
+    }
+
+    /**
+     * Moves the hand past the next bucket. An entry shifted back into a bucket the hand has just passed, by removing
+     * the entry returned, is passed again on the hand's next turn.
+     * @return - the entry held by the bucket or NO_ENTRY when it is free
+     */
+    public int advanceHand() {
+        final int entry = buckets[hand] - 1;
+        hand = (hand + 1) & mask;
+        return entry;
+    }
+
+    /**
+     * Moves the hand past the next entry, such as to evict it.
+     * @return - the entry or NO_ENTRY when the index is empty
+     */
+    public int nextAtHand() {
+        if (size == 0) {
+            return NO_ENTRY;
+        }
+        while (buckets[hand] == 0) {
+            hand = (hand + 1) & mask;
+        }
+        return advanceHand();
+    }
+
+    /**
+     * Passes every entry to an action, which must not insert or remove entries.
+     * @param action - the action
+     */
+    public void forEach(final IntConsumer action) {
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            if (buckets[bucket] != 0) {
+                action.accept(buckets[bucket] - 1);
+            }
+        }
+    }
+
+    /**
+     * Removes every entry while retaining the allocated capacity.
+     */
+    public void clear() {
+        Arrays.fill(buckets, 0);
+        freeCount = 0;
+        highWater = 0;
+        size = 0;
+        hand = 0;
+    }
+
+    public long getKey(final int entry) {
+        return keys[entry * keyWidth];
+    }
+
+    public long getKey(final int entry, final int pos) {
+        return keys[entry * keyWidth + pos];
+    }
+
+    public int getKeyWidth() {
+        return keyWidth;
+    }
+
+    /**
+     * Returns the number of entries space is allocated for, being one more than the highest entry.
+     * @return - the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == maxCapacity;
+    }
+
+    private int allocateEntry() {
+        if (size == maxCapacity) {
+            throw new IllegalStateException("The index holds its maximum of " + maxCapacity + " entries");
+        }
+        size++;
+        if (freeCount > 0) {
+            return freeEntries[--freeCount];
+        }
+        if (highWater == capacity) {
+            grow();
+        }
+        return highWater++;
+    }
+
+    private void place(final int entry) {
+        int bucket = hash(keys, entry * keyWidth) & mask;
+        while (buckets[bucket] != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        buckets[bucket] = entry + 1;
+    }
+
+    private boolean keyEquals(final int entry, final long[] key) {
+        final int offset = entry * keyWidth;
+        for (int i = 0; i < keyWidth; i++) {
+            if (keys[offset + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hash(final long[] key, final int offset) {
+        if (keyWidth == 1) {
+            return (int) Hashing.hash64(key[offset]);
+        }
+        long hash = 0;
+        for (int i = 0; i < keyWidth; i++) {
+            hash = Hashing.hash64(hash, key[offset + i]);
+        }
+        return (int) hash;
+    }
+
+    private void allocate(final int entries) {
+        capacity = entries;
+        keys = new long[entries * keyWidth];
+        freeEntries = new int[entries];
+        buckets = new int[Hashing.nextPowerOfTwo(entries * 2)];
+        mask = buckets.length - 1;
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        allocate((int) Math.min((long) capacity * 2, maxCapacity));
+        System.arraycopy(oldKeys, 0, keys, 0, oldKeys.length);
+        hand &= mask;
+        // Grow only happens with no removed entries so every entry below highWater is held
+        for (int entry = 0; entry < highWater; entry++) {
+            place(entry);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Exact set of IPv4 and IPv6 addresses held off-heap within a memory mapped index file.
+ * The index is compiled from a text watchlist of one address per line ('#' starting a comment) into a file beside
+ * it holding a header, a BlockedBloomFilter and the addresses as sorted 128 bit keys. Lookups consult the filter
+ * first, touching a single cache line for the common case of an address that is not listed, and confirm possible
+ * members by binary search. As the index records the size and modification time of the watchlist it was compiled
+ * from, a restart maps the existing index without reading the watchlist, with the operating system paging it in
+ * on demand. IPv4 addresses are held in their IPv4-mapped IPv6 form.
+ */
+public class MappedWatchlist {
+
+    public static final String INDEX_SUFFIX = ".idx";
+
+    private static final long MAGIC = 0x545250545741544cL;
+    private static final int VERSION = 1;
+    private static final int HEADER_LONGS = 6;
+    private static final double FPP = 0.01;
+    private static final long IPV4_MAPPED_PREFIX = 0xffff00000000L;
+    // Mapped buffers are indexed by int
+    private static final long MAX_INDEX_BYTES = Integer.MAX_VALUE;
+
+    private final LongBuffer filterWords;
+    private final LongBuffer keys;
+    private final int numBlocks;
+    private final int numHashes;
+    private final int size;
+
+    private MappedWatchlist(final MappedByteBuffer buffer) throws IOException {
+        final LongBuffer longs = buffer.asLongBuffer();
+        if (longs.limit() < HEADER_LONGS || longs.get(0) != MAGIC || (int) longs.get(1) != VERSION) {
+            throw new IOException("Invalid watchlist index");
+        }
+        size = (int) longs.get(4);
+        numBlocks = (int) (longs.get(5) >>> 32);
+        numHashes = (int) longs.get(5);
+        final int filterLongs = numBlocks * BlockedBloomFilter.WORDS_PER_BLOCK;
+        if (longs.limit() != HEADER_LONGS + filterLongs + size * 2L) {
+            throw new IOException("Truncated watchlist index");
+        }
+        longs.position(HEADER_LONGS).limit(HEADER_LONGS + filterLongs);
+        filterWords = longs.slice();
+        longs.limit(longs.capacity()).position(HEADER_LONGS + filterLongs);
+        keys = longs.slice();
+    }
+
+    /**
+     * Maps the index of a watchlist, compiling it first when it is missing or older than the watchlist.
+     * @param watchlist - the text watchlist
+     * @return - the watchlist
+     * @throws IOException - when the watchlist cannot be read or the index cannot be written
+     * @throws IllegalArgumentException - when the watchlist contains an invalid address
+     */
+    public static MappedWatchlist open(final Path watchlist) throws IOException {
+        final Path index = watchlist.resolveSibling(watchlist.getFileName() + INDEX_SUFFIX);
+        final long sourceSize = Files.size(watchlist);
+        final long sourceModified = Files.getLastModifiedTime(watchlist).toMillis();
+        if (!isCurrent(index, sourceSize, sourceModified)) {
+            compile(watchlist, index, sourceSize, sourceModified);
+        }
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            // The mapping remains valid once the channel is closed
+            return new MappedWatchlist(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Returns true when the address is listed.
+     * @param high - the upper 64 bits of the address
+     * @param low - the lower 64 bits of the address, IPv4 addresses being in their IPv4-mapped form
+     * @return - true when listed
+     */
+    public boolean contains(final long high, final long low) {
+        if (!BlockedBloomFilter.mightContain(filterWords, numBlocks, numHashes, Hashing.hash64(high, low))) {
+            return false;
+        }
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            int cmp = Long.compareUnsigned(keys.get(mid * 2), high);
+            if (cmp == 0) {
+                cmp = Long.compareUnsigned(keys.get(mid * 2 + 1), low);
+            }
+            if (cmp == 0) {
+                return true;
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static boolean isCurrent(final Path index, final long sourceSize, final long sourceModified)
+            throws IOException {
+        if (!Files.isRegularFile(index)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_LONGS * Long.BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                continue;
+            }
+            header.flip();
+            return header.remaining() == header.capacity() && header.getLong(0) == MAGIC
+                    && header.getLong(8) == VERSION && header.getLong(16) == sourceSize
+                    && header.getLong(24) == sourceModified;
+        }
+    }
+
+    private static void compile(final Path watchlist, final Path index, final long sourceSize,
+                                final long sourceModified) throws IOException {
+        long[] keyPairs = new long[1024];
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(watchlist, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                final int comment = line.indexOf('#');
+                final String addr = (comment < 0 ? line : line.substring(0, comment)).trim();
+                if (addr.isEmpty()) {
+                    continue;
+                }
+                if (count * 2 == keyPairs.length) {
+                    keyPairs = Arrays.copyOf(keyPairs, keyPairs.length * 2);
+                }
+                try {
+                    parseAddress(addr, keyPairs, count * 2);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid address on line " + lineNo + " - " + addr);
+                }
+                count++;
+            }
+        }
+        sortPairs(keyPairs, 0, count - 1);
+        count = dedupPairs(keyPairs, count);
+
+        final BlockedBloomFilter filter = new BlockedBloomFilter(Math.max(1, count), FPP);
+        for (int i = 0; i < count; i++) {
+            filter.put(Hashing.hash64(keyPairs[i * 2], keyPairs[i * 2 + 1]));
+        }
+        final long bytes = (HEADER_LONGS + (long) filter.getNumBlocks() * BlockedBloomFilter.WORDS_PER_BLOCK
+                + count * 2L) * Long.BYTES;
+        if (bytes > MAX_INDEX_BYTES) {
+            throw new IllegalArgumentException("Watchlist of " + count + " addresses is too large");
+        }
+
+        // Written alongside then moved into place so that readers never map a partial index
+        final Path tmp = Files.createTempFile(index.toAbsolutePath().getParent(), index.getFileName().toString(),
+                ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                final LongBuffer out = buffer.asLongBuffer();
+                out.put(MAGIC).put(VERSION).put(sourceSize).put(sourceModified).put(count)
+                        .put(((long) filter.getNumBlocks() << 32) | filter.getNumHashes());
+                filter.writeTo(out);
+                out.put(keyPairs, 0, count * 2);
+                buffer.force();
+            }
+            Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void parseAddress(final String addr, final long[] keyPairs, final int offset) {
+        // Only literals are accepted so that resolving never performs a name lookup
+        if (!addr.matches("[0-9a-fA-F:.]+")) {
+            throw new IllegalArgumentException(addr);
+        }
+        final byte[] bytes;
+        try {
+            bytes = InetAddress.getByName(addr).getAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(addr);
+        }
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (i < bytes.length - 8) {
+                high = (high << 8) | (bytes[i] & 0xff);
+            } else {
+                low = (low << 8) | (bytes[i] & 0xff);
+            }
+        }
+        keyPairs[offset] = high;
+        keyPairs[offset + 1] = bytes.length == 4 ? IPV4_MAPPED_PREFIX | low : low;
+    }
+
+    private static int comparePairs(final long[] pairs, final int a, final int b) {
+        final int cmp = Long.compareUnsigned(pairs[a * 2], pairs[b * 2]);
+        return cmp != 0 ? cmp : Long.compareUnsigned(pairs[a * 2 + 1], pairs[b * 2 + 1]);
+    }
+
+    private static void swapPairs(final long[] pairs, final int a, final int b) {
+        for (int i = 0; i < 2; i++) {
+            final long tmp = pairs[a * 2 + i];
+            pairs[a * 2 + i] = pairs[b * 2 + i];
+            pairs[b * 2 + i] = tmp;
+        }
+    }
+
+    /**
+     * Sorts key pairs in place without boxing, as watchlists hold millions of addresses. Three way partitioning
+     * keeps repeated addresses from degrading the sort.
+     */
+    private static void sortPairs(final long[] pairs, final int from, final int to) {
+        int lo = from;
+        int hi = to;
+        while (hi - lo > 16) {
+            final int mid = (lo + hi) >>> 1;
+            final long pivotHigh = pairs[mid * 2];
+            final long pivotLow = pairs[mid * 2 + 1];
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i <= gt) {
+                int cmp = Long.compareUnsigned(pairs[i * 2], pivotHigh);
+                if (cmp == 0) {
+                    cmp = Long.compareUnsigned(pairs[i * 2 + 1], pivotLow);
+                }
+                if (cmp < 0) {
+                    swapPairs(pairs, lt++, i++);
+                } else if (cmp > 0) {
+                    swapPairs(pairs, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            // Recursing into the smaller side bounds the stack depth
+            if (lt - lo < hi - gt) {
+                sortPairs(pairs, lo, lt - 1);
+                lo = gt + 1;
+            } else {
+                sortPairs(pairs, gt + 1, hi);
+                hi = lt - 1;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && comparePairs(pairs, j, j - 1) < 0; j--) {
+                swapPairs(pairs, j, j - 1);
+            }
+        }
+    }
+
+    private static int dedupPairs(final long[] pairs, final int count) {
+        int out = 0;
+        for (int i = 0; i < count; i++) {
+            if (out == 0 || comparePairs(pairs, i, out - 1) != 0) {
+                pairs[out * 2] = pairs[i * 2];
+                pairs[out * 2 + 1] = pairs[i * 2 + 1];
+                out++;
+            }
+        }
+        return out;
+    }
+}
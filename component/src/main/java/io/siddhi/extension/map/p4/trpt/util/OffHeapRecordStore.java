@@ -0,0 +1,495 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed width records held off-heap and located by primary key through an off-heap linear probing index, so that
+ * tens of millions of records add nothing to the heap for the garbage collector to trace. Records are laid out in
+ * direct buffers of a power of two records each as the 64 bit hash of their key, their expiry time, a bitmap of
+ * null fields and then the fields at fixed offsets, where strings take a 2 byte length and up to the string width of
+ * UTF-8 bytes. Free records are threaded into a list through their hash. Records expire once older than the time to
+ * live since last written, being treated as absent and removed when next encountered, while each insert also
+ * examines the next records under a sweeping hand so that expired records are reclaimed without scanning. Not thread
+ * safe.
+ */
+public class OffHeapRecordStore {
+
+    /**
+     * The field types, being those of the attributes mapped by the p4-trpt source mapper.
+     */
+    public enum Type {
+        INT(4), LONG(8), FLOAT(4), DOUBLE(8), BOOL(1), STRING(2);
+
+        private final int width;
+
+        Type(final int width) {
+            this.width = width;
+        }
+    }
+
+    public static final int NO_RECORD = -1;
+    public static final int MAX_FIELDS = 64;
+    // The index of up to twice as many int buckets must fit within a single direct buffer
+    public static final int MAX_CAPACITY = 1 << 27;
+
+    private static final int HASH_OFFSET = 0;
+    private static final int EXPIRY_OFFSET = 8;
+    private static final int NULLS_OFFSET = 16;
+    private static final int HEADER_BYTES = 24;
+    // Free records hold this as their expiry
+    private static final long FREE = 0;
+    private static final int SWEEP_PER_INSERT = 2;
+    private static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    private final Type[] types;
+    private final int[] offsets;
+    private final int[] keyFields;
+    private final int stringWidth;
+    private final int recordBytes;
+    private final int capacity;
+    private final long ttl;
+
+    private final ByteBuffer[] chunks;
+    private final int chunkShift;
+    private final int chunkMask;
+    // Record + 1 per bucket, zero denoting a free bucket
+    private final ByteBuffer index;
+    private final int indexMask;
+    private int freeHead = NO_RECORD;
+    private int allocated;
+    private int size;
+    private int hand;
+
+    /**
+     * Constructor.
+     * @param types - the type of each field
+     * @param keyFields - the indexes of the primary key fields
+     * @param stringWidth - the maximum number of UTF-8 bytes of string fields
+     * @param capacity - the maximum number of records
+     * @param ttl - the milliseconds after being written at which records expire, or 0 for never
+     */
+    public OffHeapRecordStore(final Type[] types, final int[] keyFields, final int stringWidth, final int capacity,
+                              final long ttl) {
+        if (types.length == 0 || types.length > MAX_FIELDS || keyFields.length == 0) {
+            throw new IllegalArgumentException("Records must have 1 to " + MAX_FIELDS + " fields and a key");
+        }
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be from 1 to " + MAX_CAPACITY + " records");
+        }
+        if (stringWidth <= 0 || stringWidth > Short.MAX_VALUE || ttl < 0) {
+            throw new IllegalArgumentException("Invalid string width or time to live");
+        }
+        this.types = types.clone();
+        this.keyFields = keyFields.clone();
+        this.stringWidth = stringWidth;
+        this.capacity = capacity;
+        this.ttl = ttl;
+        this.offsets = new int[types.length];
+        int offset = HEADER_BYTES;
+        for (int i = 0; i < types.length; i++) {
+            offsets[i] = offset;
+            offset += types[i] == Type.STRING ? Type.STRING.width + stringWidth : types[i].width;
+        }
+        // Aligned so that the headers of records are aligned
+        this.recordBytes = (offset + 7) & ~7;
+        if (recordBytes > MAX_CHUNK_BYTES) {
+            throw new IllegalArgumentException("Records of " + recordBytes + " bytes exceed the maximum of "
+                    + MAX_CHUNK_BYTES + " bytes");
+        }
+
+        final int recordsPerChunk = Math.min(Hashing.nextPowerOfTwo(capacity),
+                Integer.highestOneBit(MAX_CHUNK_BYTES / recordBytes));
+        this.chunkShift = Integer.numberOfTrailingZeros(recordsPerChunk);
+        this.chunkMask = recordsPerChunk - 1;
+        this.chunks = new ByteBuffer[(capacity + recordsPerChunk - 1) / recordsPerChunk];
+        for (int i = 0; i < chunks.length; i++) {
+            final int records = Math.min(recordsPerChunk, capacity - i * recordsPerChunk);
+            chunks[i] = ByteBuffer.allocateDirect(checkedBytes((long) records * recordBytes));
+        }
+        final int buckets = Hashing.nextPowerOfTwo(capacity * 2);
+        this.index = ByteBuffer.allocateDirect(checkedBytes((long) buckets * Integer.BYTES));
+        this.indexMask = buckets - 1;
+    }
+
+    /**
+     * Inserts a record or replaces the record of the same key.
+     * @param values - the field values, any of which may be null other than key fields
+     * @param now - the current time in milliseconds
+     * @return - the record or NO_RECORD when the store is full
+     * @throws IllegalArgumentException - when a value is of the wrong type, a string is too long or a key is null
+     */
+    public int put(final Object[] values, final long now) {
+        // Checked in full first so that a record is never left partly written
+        final Object[] converted = validate(values);
+        final long hash = hashKey(converted);
+        int record = find(converted, hash, now);
+        if (record == NO_RECORD) {
+            sweep(now);
+            record = allocate();
+            if (record == NO_RECORD) {
+                return NO_RECORD;
+            }
+            final ByteBuffer chunk = chunk(record);
+            final int base = base(record);
+            chunk.putLong(base + HASH_OFFSET, hash);
+            int bucket = (int) hash & indexMask;
+            while (index.getInt(bucket * Integer.BYTES) != 0) {
+                bucket = (bucket + 1) & indexMask;
+            }
+            index.putInt(bucket * Integer.BYTES, record + 1);
+            size++;
+        }
+        write(record, converted, now);
+        return record;
+    }
+
+    /**
+     * Replaces the values of a record, moving it to the index bucket of its new key when the key changes. As the
+     * values are checked before the record is touched, the record is left as it was when they are invalid.
+     * @param record - the record
+     * @param values - the new field values
+     * @param now - the current time in milliseconds
+     * @return - the record now holding the values
+     * @throws IllegalArgumentException - when a value is of the wrong type, a string is too long or a key is null
+     */
+    public int replace(final int record, final Object[] values, final long now) {
+        final Object[] converted = validate(values);
+        final long hash = hashKey(converted);
+        if (chunk(record).getLong(base(record) + HASH_OFFSET) == hash && keyEquals(record, converted)) {
+            write(record, converted, now);
+            return record;
+        }
+        // The freed record is reused should the new key be absent, so the put cannot find the store full
+        remove(record);
+        return put(converted, now);
+    }
+
+    /**
+     * Converts values to the types of their fields, as done by put() before anything is written.
+     * @param values - the field values
+     * @return - the converted values
+     * @throws IllegalArgumentException - when a value is of the wrong type, a string is too long or a key is null
+     */
+    public Object[] validate(final Object[] values) {
+        final Object[] converted = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            converted[i] = convert(i, values[i]);
+        }
+        for (final int field : keyFields) {
+            if (converted[field] == null) {
+                throw new IllegalArgumentException("Key field " + field + " is null");
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Returns the record of a key.
+     * @param keyValues - the values of the key fields in key order
+     * @param now - the current time in milliseconds
+     * @return - the record or NO_RECORD, including when a key value is null
+     * @throws IllegalArgumentException - when a key value is of the wrong type
+     */
+    public int get(final Object[] keyValues, final long now) {
+        final Object[] values = new Object[types.length];
+        for (int i = 0; i < keyFields.length; i++) {
+            if (keyValues[i] == null) {
+                return NO_RECORD;
+            }
+            values[keyFields[i]] = convert(keyFields[i], keyValues[i]);
+        }
+        return find(values, hashKey(values), now);
+    }
+
+    /**
+     * Reads the fields of a record.
+     * @param record - the record
+     * @return - the field values
+     */
+    public Object[] read(final int record) {
+        final ByteBuffer chunk = chunk(record);
+        final int base = base(record);
+        final long nulls = chunk.getLong(base + NULLS_OFFSET);
+        final Object[] values = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if ((nulls & (1L << i)) == 0) {
+                values[i] = readField(chunk, base + offsets[i], types[i]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Removes a record.
+     * @param record - the record
+     */
+    public void remove(final int record) {
+        final long hash = chunk(record).getLong(base(record) + HASH_OFFSET);
+        int hole = (int) hash & indexMask;
+        while (index.getInt(hole * Integer.BYTES) != record + 1) {
+            hole = (hole + 1) & indexMask;
+        }
+        // Backward shift deletion keeps probe sequences intact without tombstones
+        int bucket = hole;
+        while (true) {
+            bucket = (bucket + 1) & indexMask;
+            final int entry = index.getInt(bucket * Integer.BYTES);
+            if (entry == 0) {
+                break;
+            }
+            final int home = (int) chunk(entry - 1).getLong(base(entry - 1) + HASH_OFFSET) & indexMask;
+            if (((bucket - home) & indexMask) >= ((bucket - hole) & indexMask)) {
+                index.putInt(hole * Integer.BYTES, entry);
+                hole = bucket;
+            }
+        }
+        index.putInt(hole * Integer.BYTES, 0);
+        final ByteBuffer chunk = chunk(record);
+        chunk.putLong(base(record) + EXPIRY_OFFSET, FREE);
+        chunk.putLong(base(record) + HASH_OFFSET, freeHead);
+        freeHead = record;
+        size--;
+    }
+
+    /**
+     * Returns the first live record at or after a record, removing expired records passed over.
+     * @param from - the record to start from
+     * @param now - the current time in milliseconds
+     * @return - the record or NO_RECORD when there are no more
+     */
+    public int next(final int from, final long now) {
+        for (int record = Math.max(from, 0); record < allocated; record++) {
+            final long expiry = chunk(record).getLong(base(record) + EXPIRY_OFFSET);
+            if (expiry == FREE) {
+                continue;
+            }
+            if (expiry <= now) {
+                remove(record);
+                continue;
+            }
+            return record;
+        }
+        return NO_RECORD;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private int find(final Object[] values, final long hash, final long now) {
+        int bucket = (int) hash & indexMask;
+        while (true) {
+            final int entry = index.getInt(bucket * Integer.BYTES);
+            if (entry == 0) {
+                return NO_RECORD;
+            }
+            final int record = entry - 1;
+            if (chunk(record).getLong(base(record) + HASH_OFFSET) == hash && keyEquals(record, values)) {
+                if (chunk(record).getLong(base(record) + EXPIRY_OFFSET) <= now) {
+                    remove(record);
+                    return NO_RECORD;
+                }
+                return record;
+            }
+            bucket = (bucket + 1) & indexMask;
+        }
+    }
+
+    private static int checkedBytes(final long bytes) {
+        if (bytes <= 0 || bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Buffer of " + bytes + " bytes cannot be allocated");
+        }
+        return (int) bytes;
+    }
+
+    private int allocate() {
+        if (freeHead != NO_RECORD) {
+            final int record = freeHead;
+            freeHead = (int) chunk(record).getLong(base(record) + HASH_OFFSET);
+            return record;
+        }
+        return allocated < capacity ? allocated++ : NO_RECORD;
+    }
+
+    private void sweep(final long now) {
+        if (ttl == 0 || allocated == 0) {
+            return;
+        }
+        for (int i = 0; i < SWEEP_PER_INSERT; i++) {
+            hand = hand >= allocated ? 0 : hand;
+            final long expiry = chunk(hand).getLong(base(hand) + EXPIRY_OFFSET);
+            if (expiry != FREE && expiry <= now) {
+                remove(hand);
+            }
+            hand++;
+        }
+    }
+
+    private void write(final int record, final Object[] values, final long now) {
+        final ByteBuffer chunk = chunk(record);
+        final int base = base(record);
+        long nulls = 0;
+        for (int i = 0; i < types.length; i++) {
+            if (values[i] == null) {
+                nulls |= 1L << i;
+            } else {
+                writeField(chunk, base + offsets[i], types[i], values[i]);
+            }
+        }
+        chunk.putLong(base + NULLS_OFFSET, nulls);
+        chunk.putLong(base + EXPIRY_OFFSET, ttl == 0 ? Long.MAX_VALUE : now + ttl);
+    }
+
+    private boolean keyEquals(final int record, final Object[] values) {
+        final ByteBuffer chunk = chunk(record);
+        final int base = base(record);
+        for (final int field : keyFields) {
+            if (!values[field].equals(readField(chunk, base + offsets[field], types[field]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long hashKey(final Object[] values) {
+        long hash = 0;
+        for (final int field : keyFields) {
+            final Object value = values[field];
+            if (value == null) {
+                throw new IllegalArgumentException("Key field " + field + " is null");
+            }
+            final long bits;
+            switch (types[field]) {
+                case INT:
+                case LONG:
+                    bits = ((Number) value).longValue();
+                    break;
+                case FLOAT:
+                case DOUBLE:
+                    bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                    break;
+                case BOOL:
+                    bits = (Boolean) value ? 1 : 0;
+                    break;
+                default:
+                    bits = value.hashCode();
+                    break;
+            }
+            hash = Hashing.hash64(hash, bits);
+        }
+        return hash;
+    }
+
+    private Object readField(final ByteBuffer chunk, final int offset, final Type type) {
+        switch (type) {
+            case INT:
+                return chunk.getInt(offset);
+            case LONG:
+                return chunk.getLong(offset);
+            case FLOAT:
+                return chunk.getFloat(offset);
+            case DOUBLE:
+                return chunk.getDouble(offset);
+            case BOOL:
+                return chunk.get(offset) != 0;
+            default:
+                final byte[] bytes = new byte[chunk.getShort(offset)];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = chunk.get(offset + 2 + i);
+                }
+                return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Converts a value to the boxed type of its field, widening or narrowing numbers as Siddhi does.
+     */
+    private Object convert(final int field, final Object value) {
+        if (value == null) {
+            return null;
+        }
+        final Type type = types[field];
+        if (type == Type.STRING || type == Type.BOOL) {
+            if (!(value instanceof String && type == Type.STRING) && !(value instanceof Boolean && type == Type.BOOL)) {
+                throw new IllegalArgumentException("Expected a " + type + " value for field " + field + " but found "
+                        + value);
+            }
+            if (type == Type.STRING && ((String) value).length() > stringWidth / 3
+                    && ((String) value).getBytes(StandardCharsets.UTF_8).length > stringWidth) {
+                throw new IllegalArgumentException("String value for field " + field + " exceeds the string width of "
+                        + stringWidth + " bytes");
+            }
+            return value;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("Expected a " + type + " value for field " + field + " but found "
+                    + value);
+        }
+        final Number number = (Number) value;
+        switch (type) {
+            case INT:
+                return number.intValue();
+            case LONG:
+                return number.longValue();
+            case FLOAT:
+                return number.floatValue();
+            default:
+                return number.doubleValue();
+        }
+    }
+
+    private void writeField(final ByteBuffer chunk, final int offset, final Type type, final Object value) {
+        switch (type) {
+            case INT:
+                chunk.putInt(offset, (Integer) value);
+                break;
+            case LONG:
+                chunk.putLong(offset, (Long) value);
+                break;
+            case FLOAT:
+                chunk.putFloat(offset, (Float) value);
+                break;
+            case DOUBLE:
+                chunk.putDouble(offset, (Double) value);
+                break;
+            case BOOL:
+                chunk.put(offset, (byte) ((Boolean) value ? 1 : 0));
+                break;
+            default:
+                final byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                chunk.putShort(offset, (short) bytes.length);
+                for (int i = 0; i < bytes.length; i++) {
+                    chunk.put(offset + 2 + i, bytes[i]);
+                }
+                break;
+        }
+    }
+
+    private ByteBuffer chunk(final int record) {
+        return chunks[record >>> chunkShift];
+    }
+
+    private int base(final int record) {
+        return (record & chunkMask) * recordBytes;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.extension.map.p4.trpt.ReportField;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+/**
+ * Validates and extracts the constant parameters of the p4trpt extensions.
+ */
+public class Parameters {
+
+    private Parameters() {
+    }
+
+    /**
+     * Returns the value of a constant parameter.
+     * @param extension - the extension name used within error messages
+     * @param executor - the parameter's executor
+     * @param name - the parameter name used within error messages
+     * @return - the value
+     */
+    public static Object getConstant(final String extension, final ExpressionExecutor executor, final String name) {
+        if (!(executor instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppValidationException(extension + " " + name + " must be a constant");
+        }
+        return ((ConstantExpressionExecutor) executor).getValue();
+    }
+
+    /**
+     * Returns the value of a constant int or long parameter.
+     * @param extension - the extension name used within error messages
+     * @param executor - the parameter's executor
+     * @param name - the parameter name used within error messages
+     * @return - the value
+     */
+    public static long getConstantLong(final String extension, final ExpressionExecutor executor,
+                                       final String name) {
+        final Object value = getConstant(extension, executor, name);
+        if (!(value instanceof Integer || value instanceof Long)) {
+            throw new SiddhiAppValidationException(extension + " " + name + " must be an int or long");
+        }
+        return ((Number) value).longValue();
+    }
+
+    /**
+     * Returns the value of a constant numeric parameter.
+     * @param extension - the extension name used within error messages
+     * @param executor - the parameter's executor
+     * @param name - the parameter name used within error messages
+     * @return - the value
+     */
+    public static double getConstantDouble(final String extension, final ExpressionExecutor executor,
+                                           final String name) {
+        final Object value = getConstant(extension, executor, name);
+        if (!(value instanceof Number)) {
+            throw new SiddhiAppValidationException(extension + " " + name + " must be numeric");
+        }
+        return ((Number) value).doubleValue();
+    }
+
+    /**
+     * Returns the value of a constant string parameter.
+     * @param extension - the extension name used within error messages
+     * @param executor - the parameter's executor
+     * @param name - the parameter name used within error messages
+     * @return - the value
+     */
+    public static String getConstantString(final String extension, final ExpressionExecutor executor,
+                                           final String name) {
+        final Object value = getConstant(extension, executor, name);
+        if (!(value instanceof String)) {
+            throw new SiddhiAppValidationException(extension + " " + name + " must be a string");
+        }
+        return (String) value;
+    }
+
+    /**
+     * Returns the numeric report field denoted by a constant mapping path parameter.
+     * @param extension - the extension name used within error messages
+     * @param executor - the parameter's executor
+     * @param name - the parameter name used within error messages
+     * @return - the field
+     */
+    public static ReportField getReportField(final String extension, final ExpressionExecutor executor,
+                                             final String name) {
+        try {
+            return ReportField.fromPath(getConstantString(extension, executor, name));
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppValidationException(extension + " " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the attribute type of the values decoded from a report field.
+     * @param field - the field
+     * @return - the type
+     */
+    public static Attribute.Type getAttributeType(final ReportField field) {
+        if (field.getValueClass() == Long.class) {
+            return Attribute.Type.LONG;
+        }
+        return field.getValueClass() == Integer.class ? Attribute.Type.INT : Attribute.Type.STRING;
+    }
+}
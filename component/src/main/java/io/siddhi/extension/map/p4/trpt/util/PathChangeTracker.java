@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+/**
+ * Tracks the last path of each flow in fixed memory to detect flows changing path, as with route flaps and ECMP
+ * rehashes. Flows are held by their 64 bit key hash within a LongHashIndex, with each flow's last path ID and the time
+ * it was last seen held in primitive arrays by entry. Each update also examines the next buckets under the index's
+ * sweeping hand, removing flows idle for longer than the idle timeout, and once the maximum number of flows is held
+ * the next flow under the hand is evicted to make room, so every update takes constant time.
+ */
+public class PathChangeTracker {
+
+    public static final int NO_CHANGE = -1;
+
+    private static final int SWEEP_PER_UPDATE = 2;
+
+    private final long idleTimeout;
+    private final LongHashIndex flows;
+    private final int[] pathIds;
+    private final long[] lastSeen;
+
+    // The time the previous path of the last flow changing path was last seen
+    private long previousLastSeen;
+
+    /**
+     * Constructor.
+     * @param maxFlows - the maximum number of flows held
+     * @param idleTimeout - the duration without updates after which a flow is forgotten
+     */
+    public PathChangeTracker(final int maxFlows, final long idleTimeout) {
+        if (maxFlows <= 0 || idleTimeout <= 0) {
+            throw new IllegalArgumentException("maxFlows and idleTimeout must be positive");
+        }
+        this.idleTimeout = idleTimeout;
+        this.flows = new LongHashIndex(1, maxFlows, maxFlows);
+        this.pathIds = new int[maxFlows];
+        this.lastSeen = new long[maxFlows];
+    }
+
+    /**
+     * Records the path of a flow.
+     * @param key - the hash of the flow key
+     * @param pathId - the ID of the flow's path, other than NO_CHANGE
+     * @param now - the current time
+     * @return - the flow's previous path ID when it changed, otherwise NO_CHANGE including for new flows
+     */
+    public int update(final long key, final int pathId, final long now) {
+        sweep(now);
+        int entry = flows.find(key);
+        if (entry != LongHashIndex.NO_ENTRY) {
+            final int previous = pathIds[entry];
+            final boolean idle = now - lastSeen[entry] > idleTimeout;
+            previousLastSeen = lastSeen[entry];
+            pathIds[entry] = pathId;
+            lastSeen[entry] = now;
+            // Flows idle for longer than the timeout yet to be swept are treated as new
+            return previous == pathId || idle ? NO_CHANGE : previous;
+        }
+        if (flows.isFull()) {
+            flows.remove(flows.nextAtHand());
+        }
+        entry = flows.insert(key);
+        pathIds[entry] = pathId;
+        lastSeen[entry] = now;
+        return NO_CHANGE;
+    }
+
+    /**
+     * Returns the time the previous path was last seen of the last flow for which update() returned a change.
+     * @return - the time
+     */
+    public long getPreviousLastSeen() {
+        return previousLastSeen;
+    }
+
+    public int size() {
+        return flows.size();
+    }
+
+    private void sweep(final long now) {
+        for (int i = 0; i < SWEEP_PER_UPDATE; i++) {
+            final int entry = flows.advanceHand();
+            if (entry != LongHashIndex.NO_ENTRY && now - lastSeen[entry] > idleTimeout) {
+                flows.remove(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import io.siddhi.extension.map.p4.trpt.HopField;
+import io.siddhi.extension.map.p4.trpt.IntMetadataStackHeader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Interns the INT paths of packet reports, being their sequences of hop node IDs, as positive int path IDs.
+ * Each path is registered as its parent path's ID, the path one hop shorter, and the node ID of its last hop, with
+ * zero as the ID of the empty path, so interning a path of n hops takes n lookups. The registry is a table of slots
+ * split into groups of eight, where a path may only be held within the group its hash selects, so colliding paths
+ * are chained within the group and a lookup reads at most eight slots. A path's ID is its slot within the table along
+ * with a generation of the slot, which is bumped each time the slot is reused, so that the ID of a path evicted from
+ * the registry never resolves to the path later held in its slot. Once a group is full, a path not interned since
+ * the last eviction from the group is evicted, as with the second chance algorithm, and an evicted path resolves to
+ * null until it is interned again under a new ID. IDs are therefore local to the process.
+ * Lookups and resolutions read the table without locking, validating each slot against its ID, and only the
+ * registration of a path not yet held is locked, so the mappers and functions of a JVM may share one interner.
+ */
+public class PathInterner {
+
+    public static final int EMPTY_PATH = 0;
+    public static final int NO_PATH = -1;
+    public static final int DEFAULT_MAX_PATHS = 1 << 20;
+    public static final int MAX_PATHS = 1 << 24;
+
+    private static final PathInterner SHARED = new PathInterner(DEFAULT_MAX_PATHS);
+    private static final int GROUP_SIZE = 8;
+
+    private final int slotBits;
+    private final int slotMask;
+    private final int groupMask;
+    private final int maxGeneration;
+
+    // The ID held by each slot, zero while the slot is free or being replaced, and the path it holds as its parent
+    // path ID in the upper 32 bits and last node ID in the lower
+    private final AtomicIntegerArray ids;
+    private final AtomicLongArray paths;
+    // Set as paths are interned and cleared as eviction passes them, where lost updates only alter the victim
+    private final boolean[] referenced;
+    // The slot within each group where the next search for a victim starts
+    private final byte[] hands;
+    private volatile int size;
+
+    /**
+     * Constructor.
+     * @param maxPaths - the maximum number of paths registered, not counting the empty path, rounded up to a power
+     *                   of two of at least eight
+     */
+    public PathInterner(final int maxPaths) {
+        if (maxPaths < 1 || maxPaths > MAX_PATHS) {
+            throw new IllegalArgumentException("maxPaths must be within [1, 2^24]");
+        }
+        final int slots = Hashing.nextPowerOfTwo(Math.max(maxPaths, GROUP_SIZE));
+        this.slotBits = Integer.numberOfTrailingZeros(slots);
+        this.slotMask = slots - 1;
+        this.groupMask = slotMask & -GROUP_SIZE;
+        // Generations fill the bits above the slot, keeping IDs positive
+        this.maxGeneration = (1 << (31 - slotBits)) - 1;
+        this.ids = new AtomicIntegerArray(slots);
+        this.paths = new AtomicLongArray(slots);
+        this.referenced = new boolean[slots];
+        this.hands = new byte[slots / GROUP_SIZE];
+    }
+
+    /**
+     * Returns the interner shared by all p4-trpt mappers and functions within the JVM.
+     * @return - the interner
+     */
+    public static PathInterner getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Interns the path of an INT metadata stack.
+     * @param stack - the stack
+     * @return - the path ID or NO_PATH when the stack omits node IDs or its path could not be registered
+     */
+    public int intern(final IntMetadataStackHeader stack) {
+        if (!stack.hasHopField(HopField.NODE_ID)) {
+            return NO_PATH;
+        }
+        int path = EMPTY_PATH;
+        for (int hop = 0; hop < stack.getNumHops() && path != NO_PATH; hop++) {
+            path = register(path, stack.getHopValue(HopField.NODE_ID, hop));
+        }
+        return path;
+    }
+
+    /**
+     * Interns a path.
+     * @param nodeIds - the 32 bit node ID of each hop
+     * @return - the path ID or NO_PATH when the path could not be registered
+     */
+    public int intern(final long... nodeIds) {
+        int path = EMPTY_PATH;
+        for (int hop = 0; hop < nodeIds.length && path != NO_PATH; hop++) {
+            path = register(path, nodeIds[hop]);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the node IDs of the hops of a path.
+     * @param pathId - the path ID
+     * @return - the node IDs in hop order or null when the path is not registered
+     */
+    public List<Long> getHops(final int pathId) {
+        final List<Long> hops = new ArrayList<>();
+        // A path holds no more hops than the registry holds paths, so a walk going further is broken
+        for (int path = pathId; path != EMPTY_PATH; ) {
+            final long entry = read(path);
+            if (entry == -1 || hops.size() > slotMask) {
+                return null;
+            }
+            hops.add(entry & 0xffffffffL);
+            path = (int) (entry >>> 32);
+        }
+        Collections.reverse(hops);
+        return hops;
+    }
+
+    /**
+     * Returns the node IDs of the hops of a path as a JSON array.
+     * @param pathId - the path ID
+     * @return - the node IDs in hop order such as '[123,234]' or null when the path is not registered
+     */
+    public String getHopsJson(final int pathId) {
+        final List<Long> hops = getHops(pathId);
+        if (hops == null) {
+            return null;
+        }
+        final StringBuilder out = new StringBuilder("[");
+        for (int i = 0; i < hops.size(); i++) {
+            out.append(i == 0 ? "" : ",").append(hops.get(i));
+        }
+        return out.append(']').toString();
+    }
+
+    /**
+     * Returns the number of hops of a path.
+     * @param pathId - the path ID
+     * @return - the number of hops or -1 when the path is not registered
+     */
+    public int getLength(final int pathId) {
+        final List<Long> hops = getHops(pathId);
+        return hops == null ? -1 : hops.size();
+    }
+
+    /**
+     * Returns the number of paths registered, not counting the empty path.
+     * @return - the number of paths
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of paths registered.
+     * @return - the number of slots
+     */
+    public int getMaxPaths() {
+        return slotMask + 1;
+    }
+
+    private int register(final int parent, final long nodeId) {
+        final long path = ((long) parent << 32) | (nodeId & 0xffffffffL);
+        final int group = (int) Hashing.hash64(path) & groupMask;
+        int id = find(path, group);
+        if (id == NO_PATH) {
+            synchronized (this) {
+                // Registered by another thread since the lookup
+                id = find(path, group);
+                if (id == NO_PATH) {
+                    id = insert(path, group);
+                }
+            }
+        }
+        if (id != NO_PATH) {
+            referenced[id & slotMask] = true;
+        }
+        return id;
+    }
+
+    private int find(final long path, final int group) {
+        for (int slot = group; slot < group + GROUP_SIZE; slot++) {
+            final int id = ids.get(slot);
+            // The path is only replaced while the ID is zero and a new ID follows, so an unchanged ID vouches for it
+            if (id != 0 && paths.get(slot) == path && ids.get(slot) == id) {
+                return id;
+            }
+        }
+        return NO_PATH;
+    }
+
+    // Returns the path held under an ID or -1, which no path is as parent IDs are positive
+    private long read(final int pathId) {
+        if (pathId <= 0) {
+            return -1;
+        }
+        final int slot = pathId & slotMask;
+        if (ids.get(slot) != pathId) {
+            return -1;
+        }
+        final long path = paths.get(slot);
+        return ids.get(slot) == pathId ? path : -1;
+    }
+
+    private int insert(final long path, final int group) {
+        int slot = -1;
+        for (int candidate = group; candidate < group + GROUP_SIZE && slot < 0; candidate++) {
+            if (ids.get(candidate) == 0) {
+                slot = candidate;
+            }
+        }
+        int generation = 1;
+        if (slot < 0) {
+            slot = selectVictim(path, group);
+            if (slot < 0) {
+                return NO_PATH;
+            }
+            final int evicted = ids.get(slot);
+            generation = evicted >>> slotBits == maxGeneration ? 1 : (evicted >>> slotBits) + 1;
+            ids.set(slot, 0);
+            size--;
+        }
+        paths.set(slot, path);
+        final int id = (generation << slotBits) | slot;
+        ids.set(slot, id);
+        size++;
+        return id;
+    }
+
+    /**
+     * Returns the first slot of the group from its hand not referenced since last passed, clearing the references
+     * passed, so once every reference is cleared the slot at the hand is returned. The ancestors of the path are
+     * spared, as evicting them would leave the path unresolvable.
+     */
+    private int selectVictim(final long path, final int group) {
+        final int hand = hands[group / GROUP_SIZE];
+        for (int step = 0; step < 2 * GROUP_SIZE; step++) {
+            final int slot = group + ((hand + step) & (GROUP_SIZE - 1));
+            if (isAncestor(ids.get(slot), path)) {
+                continue;
+            }
+            if (!referenced[slot]) {
+                hands[group / GROUP_SIZE] = (byte) ((slot + 1) & (GROUP_SIZE - 1));
+                return slot;
+            }
+            referenced[slot] = false;
+        }
+        return -1;
+    }
+
+    private boolean isAncestor(final int id, final long path) {
+        int hops = 0;
+        for (int ancestor = (int) (path >>> 32); ancestor != EMPTY_PATH; ) {
+            if (ancestor == id) {
+                return true;
+            }
+            final long entry = read(ancestor);
+            if (entry == -1 || ++hops > slotMask) {
+                return false;
+            }
+            ancestor = (int) (entry >>> 32);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable longest prefix match table from IPv4 and IPv6 prefixes to labels.
+ * Each IP version has a multibit trie in the style of DIR-16-8-8 with a 16 bit first level followed by 8 bit
+ * levels, held within a single int array. Prefixes are leaf pushed so that every entry holds either the label of the
+ * longest prefix covering it or a child node, and a lookup takes one array read per level without backtracking,
+ * being at most 3 reads for IPv4 and 15 for IPv6.
+ * <p>
+ * Prefixes are given one per line as 'prefix label', where prefixes are IPv4 or IPv6 CIDRs and '#' starts a
+ * comment. The last of identical prefixes wins.
+ */
+public class PrefixTable {
+
+    public static final int NO_MATCH = -1;
+
+    private static final int FIRST_STRIDE = 16;
+    private static final int STRIDE = 8;
+    private static final long IPV4_MAPPED_PREFIX = 0xffff00000000L;
+
+    private final String[] labels;
+    private final int[] ipv4Nodes;
+    private final int[] ipv6Nodes;
+
+    /**
+     * Builds the table.
+     * @param lines - the prefix lines
+     * @throws IllegalArgumentException - when a prefix is invalid
+     */
+    public PrefixTable(final List<String> lines) {
+        final List<long[]> ipv4Prefixes = new ArrayList<>();
+        final List<long[]> ipv6Prefixes = new ArrayList<>();
+        final List<String> labelList = new ArrayList<>();
+        final Map<String, Integer> labelIndexes = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            final String line = lines.get(i).replaceAll("#.*", "").trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            final String[] tokens = line.split("\\s+");
+            if (tokens.length != 2) {
+                throw new IllegalArgumentException("Prefix on line " + (i + 1) + " must have 2 fields");
+            }
+            // Labels are commonly shared by many prefixes so they are held once
+            Integer label = labelIndexes.get(tokens[1]);
+            if (label == null) {
+                label = labelList.size();
+                labelList.add(tokens[1]);
+                labelIndexes.put(tokens[1], label);
+            }
+            try {
+                final long[] prefix = parsePrefix(tokens[0], label);
+                (prefix[0] == 4 ? ipv4Prefixes : ipv6Prefixes).add(prefix);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid prefix on line " + (i + 1) + " - " + e.getMessage());
+            }
+        }
+        this.labels = labelList.toArray(new String[0]);
+        this.ipv4Nodes = build(ipv4Prefixes);
+        this.ipv6Nodes = build(ipv6Prefixes);
+    }
+
+    /**
+     * Returns the label index of the longest prefix containing an address.
+     * @param high - the upper 64 bits of the address
+     * @param low - the lower 64 bits of the address, IPv4 addresses being in their IPv4-mapped form
+     * @return - the label index or NO_MATCH
+     */
+    public int lookup(final long high, final long low) {
+        if (high == 0 && (low >>> 32) == (IPV4_MAPPED_PREFIX >>> 32)) {
+            return lookup(ipv4Nodes, low << 32, 0);
+        }
+        return lookup(ipv6Nodes, high, low);
+    }
+
+    /**
+     * Returns the label of the longest prefix containing an address.
+     * @param high - the upper 64 bits of the address
+     * @param low - the lower 64 bits of the address, IPv4 addresses being in their IPv4-mapped form
+     * @return - the label or null
+     */
+    public String lookupLabel(final long high, final long low) {
+        final int label = lookup(high, low);
+        return label == NO_MATCH ? null : labels[label];
+    }
+
+    public String getLabel(final int label) {
+        return labels[label];
+    }
+
+    /**
+     * Returns the number of trie entries held, as a measure of memory use.
+     * @return - the count
+     */
+    public int getNumEntries() {
+        return ipv4Nodes.length + ipv6Nodes.length;
+    }
+
+    /**
+     * Walks the trie where entries below zero denote the complement of a child node offset and others denote the
+     * label index plus one.
+     * @param nodes - the trie
+     * @param high - the upper 64 bits of the left aligned address
+     * @param low - the lower 64 bits of the left aligned address
+     * @return - the label index or NO_MATCH
+     */
+    private static int lookup(final int[] nodes, final long high, final long low) {
+        int entry = nodes[(int) (high >>> (64 - FIRST_STRIDE))];
+        int consumed = FIRST_STRIDE;
+        while (entry < 0) {
+            entry = nodes[~entry + bits(high, low, consumed, STRIDE)];
+            consumed += STRIDE;
+        }
+        return entry - 1;
+    }
+
+    /**
+     * Builds a leaf pushed trie from prefixes held as version, high, low, length and label index.
+     */
+    private static int[] build(final List<long[]> prefixes) {
+        // Shorter prefixes are inserted first so that longer ones overwrite the entries they cover
+        prefixes.sort((a, b) -> Long.compare(a[3], b[3]));
+        int[] nodes = new int[1 << FIRST_STRIDE];
+        int size = nodes.length;
+        for (final long[] prefix : prefixes) {
+            final long high = prefix[1];
+            final long low = prefix[2];
+            final int length = (int) prefix[3];
+            final int entry = (int) prefix[4] + 1;
+            int node = 0;
+            int consumed = 0;
+            int stride = FIRST_STRIDE;
+            while (length > consumed + stride) {
+                final int index = node + bits(high, low, consumed, stride);
+                if (nodes[index] >= 0) {
+                    // The child inherits the label of the shorter prefix covering it
+                    if (size + (1 << STRIDE) > nodes.length) {
+                        nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                    }
+                    Arrays.fill(nodes, size, size + (1 << STRIDE), nodes[index]);
+                    nodes[index] = ~size;
+                    size += 1 << STRIDE;
+                }
+                node = ~nodes[index];
+                consumed += stride;
+                stride = STRIDE;
+            }
+            // The prefix ends within this node so covers a run of its entries
+            final int span = consumed + stride - length;
+            final int first = node + (bits(high, low, consumed, stride) & ~((1 << span) - 1));
+            Arrays.fill(nodes, first, first + (1 << span), entry);
+        }
+        return Arrays.copyOf(nodes, size);
+    }
+
+    private static int bits(final long high, final long low, final int start, final int count) {
+        if (start + count <= 64) {
+            return (int) ((high << start) >>> (64 - count));
+        }
+        if (start >= 64) {
+            return (int) ((low << (start - 64)) >>> (64 - count));
+        }
+        // Straddles both halves
+        final int highCount = 64 - start;
+        return (int) (((high << start) >>> (64 - highCount) << (count - highCount))
+                | (low >>> (64 - count + highCount)));
+    }
+
+    private static long[] parsePrefix(final String token, final int label) {
+        final int slash = token.indexOf('/');
+        final String addrStr = slash < 0 ? token : token.substring(0, slash);
+        // Only literals are accepted so that resolving never performs a name lookup
+        if (!addrStr.matches("[0-9a-fA-F:.]+")) {
+            throw new IllegalArgumentException("Invalid address " + addrStr);
+        }
+        final byte[] addr;
+        try {
+            addr = InetAddress.getByName(addrStr).getAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid address " + addrStr);
+        }
+        final int maxLen = addr.length * 8;
+        final int length = slash < 0 ? maxLen : Integer.parseInt(token.substring(slash + 1));
+        if (length < 0 || length > maxLen) {
+            throw new IllegalArgumentException("Invalid prefix length " + length);
+        }
+        // Addresses are left aligned within 128 bits
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < addr.length; i++) {
+            if (i < 8) {
+                high |= (addr[i] & 0xffL) << (56 - i * 8);
+            } else {
+                low |= (addr[i] & 0xffL) << (56 - (i - 8) * 8);
+            }
+        }
+        final long highMask = length >= 64 ? -1L : length == 0 ? 0 : -1L << (64 - length);
+        final long lowMask = length <= 64 ? 0 : -1L << (128 - length);
+        return new long[]{addr.length == 4 ? 4 : 6, high & highMask, low & lowMask, length, label};
+    }
+}
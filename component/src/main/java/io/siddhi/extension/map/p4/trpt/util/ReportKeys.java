@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import io.siddhi.extension.map.p4.trpt.ReportField;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+
+/**
+ * Allocation free 64 bit hashes identifying Telemetry Reports and the flows they describe.
+ */
+public class ReportKeys {
+
+    // Separates the key spaces of drop and packet reports
+    private static final long DROP_DOMAIN = 0x64726f70L;
+    private static final long PACKET_DOMAIN = 0x706b74L;
+
+    private ReportKeys() {
+    }
+
+    /**
+     * Returns true when the report carries the fields hashed by duplicateHash().
+     * @param trpt - the report
+     * @return - true for drop reports and TCP or UDP packet reports
+     */
+    public static boolean hasDuplicateKey(final TelemetryReport trpt) {
+        return trpt.dropHdr != null || hasFlowKey(trpt);
+    }
+
+    /**
+     * Returns the hash of the fields that are equal between copies of a report, being the drop key and node ID of
+     * drop reports or the flow key and sequence number of packet reports.
+     * @param trpt - a report for which hasDuplicateKey() is true
+     * @return - the hash
+     */
+    public static long duplicateHash(final TelemetryReport trpt) {
+        if (trpt.dropHdr != null) {
+            return Hashing.hash64(Hashing.hash64(DROP_DOMAIN, trpt.trptHdr.getNodeId()),
+                    Hashing.hash64(trpt.dropHdr.getDropKeyHigh(), trpt.dropHdr.getDropKeyLow()));
+        }
+        return Hashing.hash64(Hashing.hash64(PACKET_DOMAIN, trpt.trptHdr.getSequenceId()), flowHash(trpt));
+    }
+
+    /**
+     * Returns true when the report carries the fields hashed by flowHash().
+     * @param trpt - the report
+     * @return - true for TCP or UDP packet reports
+     */
+    public static boolean hasFlowKey(final TelemetryReport trpt) {
+        return trpt.ipHdr != null && trpt.protoHdr != null;
+    }
+
+    /**
+     * Returns the hash of the flow key being the 5-tuple and node ID as used by the FlowCache.
+     * @param trpt - a report for which hasFlowKey() is true
+     * @return - the hash
+     */
+    public static long flowHash(final TelemetryReport trpt) {
+        return Hashing.hash64(fiveTupleHash(trpt), trpt.trptHdr.getNodeId());
+    }
+
+    /**
+     * Returns the hash of the 5-tuple alone, identifying a flow whichever node reports it.
+     * @param trpt - a report for which hasFlowKey() is true
+     * @return - the hash
+     */
+    public static long fiveTupleHash(final TelemetryReport trpt) {
+        final long ports = (trpt.protoHdr.getSrcPort() << 24) | (trpt.protoHdr.getDstPort() << 8)
+                | (trpt.ipHdr.getNextProto() & 0xff);
+        long hash = Hashing.hash64(ReportField.SRC_ADDR.getHigh(trpt), ReportField.SRC_ADDR.getLow(trpt));
+        hash = Hashing.hash64(hash, ReportField.DST_ADDR.getHigh(trpt));
+        hash = Hashing.hash64(hash, ReportField.DST_ADDR.getLow(trpt));
+        return Hashing.hash64(hash, ports);
+    }
+}
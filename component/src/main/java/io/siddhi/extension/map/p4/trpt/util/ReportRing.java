@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import io.siddhi.extension.map.p4.trpt.ReportField;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded ring of the most recent Telemetry Reports held column-wise, with each field in its own primitive array so
+ * that filtered scans over tens of millions of reports read only the columns they filter on. Rows are grouped into
+ * blocks of BLOCK_ROWS, each keeping the minimum and maximum of every column, so that scans skip blocks that cannot
+ * match without reading their rows, which for time ranges and for node IDs seen in only part of the ring leaves
+ * few blocks to read. Within a block each filtered column narrows the selection of the one before in a tight loop.
+ * Fields absent from a report, such as the ports of a drop report, hold ABSENT so that they match no port or
+ * protocol filter, while absent addresses hold zero. Scans hold the ring's lock only while selecting and copying
+ * the matching rows of one block, and pass the copies on outside it, so that appends wait for at most a block.
+ * Rings are shared by name between the source mapper appending to them and the extensions and operators querying
+ * them, until the last source mapper sharing them releases them.
+ */
+public class ReportRing {
+
+    /**
+     * The columns, where addresses are held as their upper and lower 64 bits with IPv4 addresses in their
+     * IPv4-mapped form.
+     */
+    public enum Column {
+        TIMESTAMP, NODE_ID, SRC_ADDR_HIGH, SRC_ADDR_LOW, DST_ADDR_HIGH, DST_ADDR_LOW, PROTOCOL, SRC_PORT, DST_PORT
+    }
+
+    /**
+     * Receives the rows matching a scan.
+     */
+    public interface RowConsumer {
+
+        /**
+         * Receives a row.
+         * @param rows - the copies of the matching rows of a block, which are only valid until this returns
+         * @param row - the row, read through rows.get()
+         * @return - false to end the scan
+         */
+        boolean accept(Rows rows, int row);
+    }
+
+    /**
+     * The copies of the matching rows of a block, reused from block to block by a scan.
+     */
+    public static final class Rows {
+
+        private final int[] selection = new int[BLOCK_ROWS];
+        private final long[][] values = new long[NUM_COLUMNS][BLOCK_ROWS];
+        private int size;
+
+        private Rows() {
+        }
+
+        /**
+         * Returns the value of a column of a row.
+         * @param column - the column
+         * @param row - the row
+         * @return - the value
+         */
+        public long get(final Column column, final int row) {
+            return values[column.ordinal()][row];
+        }
+
+        private void copy(final long[][] columns, final int selected) {
+            for (int c = 0; c < NUM_COLUMNS; c++) {
+                final long[] from = columns[c];
+                final long[] to = values[c];
+                for (int i = 0; i < selected; i++) {
+                    to[i] = from[selection[i]];
+                }
+            }
+            size = selected;
+        }
+    }
+
+    /**
+     * Inclusive ranges of column values required by a scan, where unconstrained columns accept every value.
+     */
+    public static class Query {
+
+        private final long[] mins = new long[NUM_COLUMNS];
+        private final long[] maxs = new long[NUM_COLUMNS];
+        private final boolean[] constrained = new boolean[NUM_COLUMNS];
+
+        public Query() {
+            Arrays.fill(mins, Long.MIN_VALUE);
+            Arrays.fill(maxs, Long.MAX_VALUE);
+        }
+
+        /**
+         * Requires a column to lie within a range, narrowing any range already required.
+         * @param column - the column
+         * @param min - the minimum value
+         * @param max - the maximum value
+         * @return - this query
+         */
+        public Query where(final Column column, final long min, final long max) {
+            final int i = column.ordinal();
+            mins[i] = Math.max(mins[i], min);
+            maxs[i] = Math.min(maxs[i], max);
+            constrained[i] = true;
+            return this;
+        }
+
+        public Query whereEquals(final Column column, final long value) {
+            return where(column, value, value);
+        }
+
+        /**
+         * Requires the source address, given as by ReportField.SRC_ADDR.
+         * @param high - the upper 64 bits
+         * @param low - the lower 64 bits
+         * @return - this query
+         */
+        public Query whereSrcAddr(final long high, final long low) {
+            return whereEquals(Column.SRC_ADDR_HIGH, high).whereEquals(Column.SRC_ADDR_LOW, low);
+        }
+
+        /**
+         * Requires the destination address, given as by ReportField.DST_ADDR.
+         * @param high - the upper 64 bits
+         * @param low - the lower 64 bits
+         * @return - this query
+         */
+        public Query whereDstAddr(final long high, final long low) {
+            return whereEquals(Column.DST_ADDR_HIGH, high).whereEquals(Column.DST_ADDR_LOW, low);
+        }
+    }
+
+    public static final int BLOCK_ROWS = 4096;
+    public static final long ABSENT = -1;
+
+    private static final int NUM_COLUMNS = Column.values().length;
+    private static final ConcurrentMap<String, ReportRing> SHARED = new ConcurrentHashMap<>();
+
+    private final long[][] columns;
+    private final long[][] blockMins;
+    private final long[][] blockMaxs;
+    private final int capacity;
+    // The total rows ever appended
+    private long appended;
+    // The source mappers sharing the ring, guarded by SHARED
+    private int shares;
+
+    /**
+     * Constructor.
+     * @param capacity - the number of reports held, rounded up to a whole number of blocks, where up to a block
+     *                 fewer are held while the oldest block is being overwritten
+     */
+    public ReportRing(final int capacity) {
+        if (capacity <= 0 || capacity > Integer.MAX_VALUE - BLOCK_ROWS) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        this.capacity = roundCapacity(capacity);
+        final int numBlocks = this.capacity / BLOCK_ROWS;
+        this.columns = new long[NUM_COLUMNS][this.capacity];
+        this.blockMins = new long[NUM_COLUMNS][numBlocks];
+        this.blockMaxs = new long[NUM_COLUMNS][numBlocks];
+    }
+
+    /**
+     * Returns the ring shared under a name, creating it when there is none of the given capacity. Each call is to
+     * be matched by a call to release() once the ring is no longer appended to.
+     * @param name - the name
+     * @param capacity - the number of reports held
+     * @return - the ring
+     */
+    public static ReportRing share(final String name, final int capacity) {
+        return SHARED.compute(name, (key, ring) -> {
+            final ReportRing shared = ring != null && ring.capacity == roundCapacity(capacity) ? ring
+                    : new ReportRing(capacity);
+            shared.shares++;
+            return shared;
+        });
+    }
+
+    /**
+     * Releases a ring returned by share(), which is no longer shared once every call to share() has been released.
+     * @param name - the name
+     * @param ring - the ring
+     */
+    public static void release(final String name, final ReportRing ring) {
+        SHARED.computeIfPresent(name, (key, shared) -> shared == ring && --shared.shares == 0 ? null : shared);
+    }
+
+    /**
+     * Returns the ring shared under a name.
+     * @param name - the name
+     * @return - the ring or null when there is none
+     */
+    public static ReportRing getShared(final String name) {
+        return SHARED.get(name);
+    }
+
+    /**
+     * Appends a report, overwriting the oldest once full.
+     * @param trpt - the report
+     * @param timestamp - the time the report was received in milliseconds
+     */
+    public synchronized void append(final TelemetryReport trpt, final long timestamp) {
+        final int row = (int) (appended % capacity);
+        final int block = row / BLOCK_ROWS;
+        if (row % BLOCK_ROWS == 0) {
+            for (int c = 0; c < NUM_COLUMNS; c++) {
+                blockMins[c][block] = Long.MAX_VALUE;
+                blockMaxs[c][block] = Long.MIN_VALUE;
+            }
+        }
+        final boolean hasIp = ReportField.SRC_ADDR.isPresent(trpt);
+        final boolean hasPorts = ReportField.SRC_PORT.isPresent(trpt);
+        set(Column.TIMESTAMP, row, block, timestamp);
+        set(Column.NODE_ID, row, block, ReportField.NODE_ID.getLow(trpt));
+        set(Column.SRC_ADDR_HIGH, row, block, hasIp ? ReportField.SRC_ADDR.getHigh(trpt) : 0);
+        set(Column.SRC_ADDR_LOW, row, block, hasIp ? ReportField.SRC_ADDR.getLow(trpt) : 0);
+        set(Column.DST_ADDR_HIGH, row, block, hasIp ? ReportField.DST_ADDR.getHigh(trpt) : 0);
+        set(Column.DST_ADDR_LOW, row, block, hasIp ? ReportField.DST_ADDR.getLow(trpt) : 0);
+        set(Column.PROTOCOL, row, block, hasIp ? ReportField.NEXT_PROTO.getLow(trpt) : ABSENT);
+        set(Column.SRC_PORT, row, block, hasPorts ? ReportField.SRC_PORT.getLow(trpt) : ABSENT);
+        set(Column.DST_PORT, row, block, hasPorts ? ReportField.DST_PORT.getLow(trpt) : ABSENT);
+        appended++;
+    }
+
+    /**
+     * Passes the rows matching a query to a consumer from the oldest to the most recent. Blocks overwritten while
+     * the scan is under way are skipped and rows appended after it reaches their block are not passed.
+     * @param query - the query
+     * @param consumer - the consumer
+     * @return - the number of rows passed
+     */
+    public int scan(final Query query, final RowConsumer consumer) {
+        final int[] filtered = new int[NUM_COLUMNS];
+        int numFiltered = 0;
+        for (int c = 0; c < NUM_COLUMNS; c++) {
+            if (query.constrained[c]) {
+                if (query.mins[c] > query.maxs[c]) {
+                    return 0;
+                }
+                filtered[numFiltered++] = c;
+            }
+        }
+        final Rows rows = new Rows();
+        int passed = 0;
+        long start = 0;
+        while (true) {
+            synchronized (this) {
+                start = Math.max(start, getFirst());
+                if (start >= appended) {
+                    return passed;
+                }
+                final int block = (int) (start % capacity) / BLOCK_ROWS;
+                if (overlaps(query, filtered, numFiltered, block)) {
+                    final int blockRow = block * BLOCK_ROWS;
+                    rows.copy(columns, select(query, filtered, numFiltered, blockRow,
+                            blockRow + (int) Math.min(BLOCK_ROWS, appended - start), rows.selection));
+                } else {
+                    rows.size = 0;
+                }
+                start += BLOCK_ROWS;
+            }
+            for (int i = 0; i < rows.size; i++) {
+                passed++;
+                if (!consumer.accept(rows, i)) {
+                    return passed;
+                }
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return (int) (appended - getFirst());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the oldest row held. The remaining rows of the block being written are older than that, but as their
+     * block's summary has been reset they are no longer held.
+     */
+    private long getFirst() {
+        final long first = Math.max(0, appended - capacity);
+        return (first + BLOCK_ROWS - 1) / BLOCK_ROWS * BLOCK_ROWS;
+    }
+
+    private static int roundCapacity(final int capacity) {
+        return (capacity + BLOCK_ROWS - 1) / BLOCK_ROWS * BLOCK_ROWS;
+    }
+
+    private void set(final Column column, final int row, final int block, final long value) {
+        final int c = column.ordinal();
+        columns[c][row] = value;
+        if (value < blockMins[c][block]) {
+            blockMins[c][block] = value;
+        }
+        if (value > blockMaxs[c][block]) {
+            blockMaxs[c][block] = value;
+        }
+    }
+
+    private boolean overlaps(final Query query, final int[] filtered, final int numFiltered, final int block) {
+        for (int i = 0; i < numFiltered; i++) {
+            final int c = filtered[i];
+            if (blockMaxs[c][block] < query.mins[c] || blockMins[c][block] > query.maxs[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Selects the rows of a block within the query's ranges, one column at a time, into the selection.
+     */
+    private int select(final Query query, final int[] filtered, final int numFiltered, final int from,
+                       final int to, final int[] selection) {
+        int selected = 0;
+        if (numFiltered == 0) {
+            for (int row = from; row < to; row++) {
+                selection[selected++] = row;
+            }
+            return selected;
+        }
+        // The first column is read sequentially and the rest only at the rows still selected
+        long[] values = columns[filtered[0]];
+        long min = query.mins[filtered[0]];
+        long max = query.maxs[filtered[0]];
+        for (int row = from; row < to; row++) {
+            final long value = values[row];
+            selection[selected] = row;
+            selected += value >= min && value <= max ? 1 : 0;
+        }
+        for (int i = 1; i < numFiltered && selected > 0; i++) {
+            values = columns[filtered[i]];
+            min = query.mins[filtered[i]];
+            max = query.maxs[filtered[i]];
+            int kept = 0;
+            for (int j = 0; j < selected; j++) {
+                final int row = selection[j];
+                final long value = values[row];
+                selection[kept] = row;
+                kept += value >= min && value <= max ? 1 : 0;
+            }
+            selected = kept;
+        }
+        return selected;
+    }
+}
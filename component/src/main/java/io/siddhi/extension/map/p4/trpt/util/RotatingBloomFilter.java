@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.io.Serializable;
+
+/**
+ * Time bounded duplicate detection over a pair of BlockedBloomFilters that rotate every horizon.
+ * Keys are inserted into the current filter and looked up in both, so a key is reported as a duplicate when seen
+ * within at least one and at most two horizons, and memory remains fixed regardless of how long keys are tracked.
+ */
+public class RotatingBloomFilter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long horizon;
+    private BlockedBloomFilter current;
+    private BlockedBloomFilter previous;
+    private long rotateTime;
+
+    /**
+     * Constructor.
+     * @param horizon - the minimum duration in milliseconds for which keys are remembered
+     * @param expectedInsertions - the number of keys expected within a horizon
+     * @param fpp - the target false positive probability
+     * @param startMillis - the current time
+     */
+    public RotatingBloomFilter(final long horizon, final long expectedInsertions, final double fpp,
+                               final long startMillis) {
+        if (horizon < 1) {
+            throw new IllegalArgumentException("horizon must be positive");
+        }
+        this.horizon = horizon;
+        // Lookups consult both filters so each targets half of the false positive rate
+        this.current = new BlockedBloomFilter(expectedInsertions, fpp / 2);
+        this.previous = new BlockedBloomFilter(expectedInsertions, fpp / 2);
+        this.rotateTime = startMillis + horizon;
+    }
+
+    /**
+     * Records the key and returns whether it was possibly seen within the horizon.
+     * @param hash - the 64 bit hash of the key
+     * @param nowMillis - the current time
+     * @return - true when the key is a likely duplicate
+     */
+    public boolean put(final long hash, final long nowMillis) {
+        rotate(nowMillis);
+        if (previous.mightContain(hash)) {
+            current.put(hash);
+            return true;
+        }
+        return current.put(hash);
+    }
+
+    private void rotate(final long nowMillis) {
+        if (nowMillis < rotateTime) {
+            return;
+        }
+        final BlockedBloomFilter cleared = previous;
+        cleared.clear();
+        if (nowMillis >= rotateTime + horizon) {
+            // Idle for over two horizons so nothing is worth remembering
+            current.clear();
+            rotateTime = nowMillis + horizon;
+        } else {
+            rotateTime += horizon;
+        }
+        previous = current;
+        current = cleared;
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable classifier over ACL style rules matching the source and destination address prefixes, port ranges and
+ * protocol of a flow, where the first matching rule wins.
+ * Rules are compiled into bit vector form (Lakshman and Stiliadis): each field's value space is divided into the
+ * elementary intervals formed by the rule boundaries, each interval holding the bit vector of the rules it matches.
+ * Classifying locates the interval of each field, by binary search for addresses or by table for ports and
+ * protocols, then ANDs the five vectors until the first set bit, so the cost grows with the number of rules divided
+ * by 64 rather than with the number of rules. Identical vectors are shared between intervals.
+ * <p>
+ * Rules are given one per line as 'srcPrefix dstPrefix srcPorts dstPorts protocol label', where prefixes are
+ * IPv4 or IPv6 CIDRs, ports are single ports or 'low-high' ranges, protocols are numbers, 'tcp' or 'udp', any
+ * field may be '*' and '#' starts a comment. IPv4 addresses are matched in their IPv4-mapped IPv6 form.
+ */
+public class RuleClassifier {
+
+    public static final int NO_MATCH = -1;
+
+    private static final long IPV4_MAPPED_PREFIX = 0xffff00000000L;
+    private static final int NUM_PORTS = 1 << 16;
+    private static final int NUM_PROTOS = 1 << 8;
+    // Source and destination 128 bit ranges followed by port and protocol ranges
+    private static final int RANGE_LEN = 14;
+
+    private final String[] labels;
+    private final int words;
+    private final long[][] vectors;
+    // Elementary interval starts in ascending unsigned order with the vector index of each interval
+    private final long[] srcStartsHigh;
+    private final long[] srcStartsLow;
+    private final int[] srcVectors;
+    private final long[] dstStartsHigh;
+    private final long[] dstStartsLow;
+    private final int[] dstVectors;
+    private final int[] srcPortVectors;
+    private final int[] dstPortVectors;
+    private final int[] protoVectors;
+
+    /**
+     * Compiles the rules.
+     * @param lines - the rule lines
+     * @throws IllegalArgumentException - when a rule is invalid
+     */
+    public RuleClassifier(final List<String> lines) {
+        final List<String> ruleLabels = new ArrayList<>();
+        final List<long[]> ranges = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            final String line = lines.get(i).replaceAll("#.*", "").trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            final String[] tokens = line.split("\\s+");
+            if (tokens.length != 6) {
+                throw new IllegalArgumentException("Rule on line " + (i + 1) + " must have 6 fields");
+            }
+            try {
+                final long[] range = new long[RANGE_LEN];
+                parsePrefix(tokens[0], range, 0);
+                parsePrefix(tokens[1], range, 4);
+                parseRange(tokens[2], NUM_PORTS - 1, range, 8);
+                parseRange(tokens[3], NUM_PORTS - 1, range, 10);
+                parseRange(protoNumber(tokens[4]), NUM_PROTOS - 1, range, 12);
+                ranges.add(range);
+                ruleLabels.add(tokens[5]);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid rule on line " + (i + 1) + " - " + e.getMessage());
+            }
+        }
+        this.labels = ruleLabels.toArray(new String[0]);
+        this.words = Math.max(1, (labels.length + 63) >>> 6);
+
+        final VectorPool pool = new VectorPool(words);
+        final Dimension src = buildDimension(ranges, 0, pool);
+        srcStartsHigh = src.startsHigh;
+        srcStartsLow = src.startsLow;
+        srcVectors = src.vectors;
+        final Dimension dst = buildDimension(ranges, 4, pool);
+        dstStartsHigh = dst.startsHigh;
+        dstStartsLow = dst.startsLow;
+        dstVectors = dst.vectors;
+        srcPortVectors = toTable(buildDimension(ranges, 8, pool), NUM_PORTS);
+        dstPortVectors = toTable(buildDimension(ranges, 10, pool), NUM_PORTS);
+        protoVectors = toTable(buildDimension(ranges, 12, pool), NUM_PROTOS);
+        vectors = pool.toArray();
+    }
+
+    /**
+     * Returns the first rule matching the flow.
+     * @param srcHigh - the upper 64 bits of the source address
+     * @param srcLow - the lower 64 bits of the source address (IPv4-mapped for IPv4)
+     * @param dstHigh - the upper 64 bits of the destination address
+     * @param dstLow - the lower 64 bits of the destination address (IPv4-mapped for IPv4)
+     * @param srcPort - the source port or 0 when absent
+     * @param dstPort - the destination port or 0 when absent
+     * @param proto - the IP protocol
+     * @return - the rule index or NO_MATCH
+     */
+    public int classify(final long srcHigh, final long srcLow, final long dstHigh, final long dstLow,
+                        final int srcPort, final int dstPort, final int proto) {
+        final long[] src = vectors[srcVectors[find(srcStartsHigh, srcStartsLow, srcHigh, srcLow)]];
+        final long[] dst = vectors[dstVectors[find(dstStartsHigh, dstStartsLow, dstHigh, dstLow)]];
+        final long[] sPort = vectors[srcPortVectors[srcPort & (NUM_PORTS - 1)]];
+        final long[] dPort = vectors[dstPortVectors[dstPort & (NUM_PORTS - 1)]];
+        final long[] protocol = vectors[protoVectors[proto & (NUM_PROTOS - 1)]];
+        for (int i = 0; i < words; i++) {
+            final long match = src[i] & dst[i] & sPort[i] & dPort[i] & protocol[i];
+            if (match != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(match);
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * Returns the label of a rule.
+     * @param rule - the rule index
+     * @return - the label
+     */
+    public String getLabel(final int rule) {
+        return labels[rule];
+    }
+
+    public int getNumRules() {
+        return labels.length;
+    }
+
+    /**
+     * Returns the number of distinct rule vectors held.
+     * @return - the count
+     */
+    public int getNumVectors() {
+        return vectors.length;
+    }
+
+    /**
+     * Returns the index of the last interval starting at or before the key.
+     */
+    private static int find(final long[] startsHigh, final long[] startsLow, final long high, final long low) {
+        int lo = 0;
+        int hi = startsHigh.length - 1;
+        while (lo < hi) {
+            final int mid = (lo + hi + 1) >>> 1;
+            int cmp = Long.compareUnsigned(startsHigh[mid], high);
+            if (cmp == 0) {
+                cmp = Long.compareUnsigned(startsLow[mid], low);
+            }
+            if (cmp <= 0) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Sweeps the rule boundaries of one field in ascending order, tracking the rules covering each interval.
+     * @param ranges - per rule inclusive ranges as low high, low low, high high, high low
+     * @param offset - the offset of the field within each range array
+     * @param pool - the pool of distinct vectors
+     * @return - the elementary intervals
+     */
+    private static Dimension buildDimension(final List<long[]> ranges, final int offset, final VectorPool pool) {
+        final boolean wide = offset < 8;
+        // Each rule starts covering at its low value and stops after its high value unless that is the maximum
+        final List<long[]> events = new ArrayList<>();
+        for (int rule = 0; rule < ranges.size(); rule++) {
+            final long[] range = ranges.get(rule);
+            final long lowHigh = wide ? range[offset] : 0;
+            final long lowLow = wide ? range[offset + 1] : range[offset];
+            final long highHigh = wide ? range[offset + 2] : 0;
+            final long highLow = wide ? range[offset + 3] : range[offset + 1];
+            events.add(new long[]{lowHigh, lowLow, rule});
+            if (highHigh != -1L || highLow != -1L) {
+                final long endLow = highLow + 1;
+                final long endHigh = endLow == 0 ? highHigh + 1 : highHigh;
+                events.add(new long[]{endHigh, endLow, ~rule});
+            }
+        }
+        events.add(new long[]{0, 0, Long.MIN_VALUE});
+        events.sort((a, b) -> {
+            final int cmp = Long.compareUnsigned(a[0], b[0]);
+            return cmp != 0 ? cmp : Long.compareUnsigned(a[1], b[1]);
+        });
+
+        final long[] covering = new long[pool.words];
+        final List<long[]> starts = new ArrayList<>();
+        final List<Integer> vectorIndexes = new ArrayList<>();
+        int i = 0;
+        while (i < events.size()) {
+            final long high = events.get(i)[0];
+            final long low = events.get(i)[1];
+            for (; i < events.size() && events.get(i)[0] == high && events.get(i)[1] == low; i++) {
+                final long rule = events.get(i)[2];
+                if (rule == Long.MIN_VALUE) {
+                    continue;
+                } else if (rule >= 0) {
+                    covering[(int) rule >>> 6] |= 1L << rule;
+                } else {
+                    covering[(int) ~rule >>> 6] &= ~(1L << ~rule);
+                }
+            }
+            starts.add(new long[]{high, low});
+            vectorIndexes.add(pool.intern(covering));
+        }
+        final Dimension dimension = new Dimension(starts.size());
+        for (int j = 0; j < starts.size(); j++) {
+            dimension.startsHigh[j] = starts.get(j)[0];
+            dimension.startsLow[j] = starts.get(j)[1];
+            dimension.vectors[j] = vectorIndexes.get(j);
+        }
+        return dimension;
+    }
+
+    private static int[] toTable(final Dimension dimension, final int size) {
+        final int[] table = new int[size];
+        for (int j = 0; j < dimension.vectors.length; j++) {
+            final int end = j + 1 < dimension.vectors.length ? (int) dimension.startsLow[j + 1] : size;
+            Arrays.fill(table, (int) dimension.startsLow[j], end, dimension.vectors[j]);
+        }
+        return table;
+    }
+
+    private static void parsePrefix(final String token, final long[] range, final int offset) {
+        if ("*".equals(token)) {
+            range[offset] = 0;
+            range[offset + 1] = 0;
+            range[offset + 2] = -1L;
+            range[offset + 3] = -1L;
+            return;
+        }
+        final int slash = token.indexOf('/');
+        final String addrStr = slash < 0 ? token : token.substring(0, slash);
+        // Only literals are accepted so that resolving never performs a name lookup
+        if (!addrStr.matches("[0-9a-fA-F:.]+")) {
+            throw new IllegalArgumentException("Invalid address " + addrStr);
+        }
+        final byte[] addr;
+        try {
+            addr = InetAddress.getByName(addrStr).getAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid address " + addrStr);
+        }
+        final int maxLen = addr.length * 8;
+        final int prefixLen = slash < 0 ? maxLen : Integer.parseInt(token.substring(slash + 1));
+        if (prefixLen < 0 || prefixLen > maxLen) {
+            throw new IllegalArgumentException("Invalid prefix length " + prefixLen);
+        }
+        long high = 0;
+        long low = 0;
+        if (addr.length == 4) {
+            low = IPV4_MAPPED_PREFIX | (getLong(addr, 0, 4) & 0xffffffffL);
+        } else {
+            high = getLong(addr, 0, 8);
+            low = getLong(addr, 8, 8);
+        }
+        // Host bits within the 128 bit form
+        final int hostBits = maxLen - prefixLen;
+        final long highMask = hostBits >= 128 ? -1L : hostBits > 64 ? (1L << (hostBits - 64)) - 1 : 0;
+        final long lowMask = hostBits >= 64 ? -1L : (1L << hostBits) - 1;
+        range[offset] = high & ~highMask;
+        range[offset + 1] = low & ~lowMask;
+        range[offset + 2] = high | highMask;
+        range[offset + 3] = low | lowMask;
+    }
+
+    private static void parseRange(final String token, final int max, final long[] range, final int offset) {
+        final long low;
+        final long high;
+        if ("*".equals(token)) {
+            low = 0;
+            high = max;
+        } else {
+            final int dash = token.indexOf('-');
+            low = Long.parseLong(dash < 0 ? token : token.substring(0, dash));
+            high = dash < 0 ? low : Long.parseLong(token.substring(dash + 1));
+        }
+        if (low < 0 || high > max || low > high) {
+            throw new IllegalArgumentException("Invalid range " + token);
+        }
+        range[offset] = low;
+        range[offset + 1] = high;
+    }
+
+    private static String protoNumber(final String token) {
+        switch (token.toLowerCase()) {
+            case "tcp":
+                return "6";
+            case "udp":
+                return "17";
+            default:
+                return token;
+        }
+    }
+
+    private static long getLong(final byte[] bytes, final int start, final int count) {
+        long out = 0;
+        for (int i = start; i < start + count; i++) {
+            out = (out << 8) | (bytes[i] & 0xff);
+        }
+        return out;
+    }
+
+    /**
+     * Elementary intervals of one field.
+     */
+    private static final class Dimension {
+
+        private final long[] startsHigh;
+        private final long[] startsLow;
+        private final int[] vectors;
+
+        private Dimension(final int size) {
+            startsHigh = new long[size];
+            startsLow = new long[size];
+            vectors = new int[size];
+        }
+    }
+
+    /**
+     * Deduplicates rule vectors shared between intervals and fields.
+     */
+    private static final class VectorPool {
+
+        private final int words;
+        private final Map<VectorKey, Integer> indexes = new HashMap<>();
+        private final List<long[]> vectors = new ArrayList<>();
+
+        private VectorPool(final int words) {
+            this.words = words;
+        }
+
+        private int intern(final long[] vector) {
+            final VectorKey key = new VectorKey(vector.clone());
+            final Integer index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+            vectors.add(key.vector);
+            indexes.put(key, vectors.size() - 1);
+            return vectors.size() - 1;
+        }
+
+        private long[][] toArray() {
+            return vectors.toArray(new long[0][]);
+        }
+    }
+
+    /**
+     * Value based map key over a vector.
+     */
+    private static final class VectorKey {
+
+        private final long[] vector;
+        private final int hash;
+
+        private VectorKey(final long[] vector) {
+            this.vector = vector;
+            this.hash = Arrays.hashCode(vector);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof VectorKey && Arrays.equals(vector, ((VectorKey) o).vector);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.io.Serializable;
+
+/**
+ * Space-Saving heavy hitter summary (Metwally et al.) over 128 bit keys held as two longs.
+ * All state lives in primitive arrays sized at construction so memory is fixed regardless of the key cardinality.
+ * Counters are kept in a min-heap for O(log k) replacement and located through a LongHashIndex, whose entries are
+ * the counter slots. An evicted key's entry is the one reused by the key replacing it, so slots never move.
+ */
+public class SpaceSaving implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+    private final LongHashIndex index;
+    // Reused to pass keys to the index
+    private final long[] key = new long[2];
+    private final long[] counts;
+    private final long[] errors;
+
+    // Slot ids ordered as a min-heap on count and the reverse mapping of slot id to heap position
+    private final int[] heap;
+    private final int[] heapPos;
+
+    /**
+     * Constructor.
+     * @param capacity - the maximum number of counters to monitor
+     */
+    public SpaceSaving(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.index = new LongHashIndex(2, capacity, capacity);
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.heapPos = new int[capacity];
+    }
+
+    /**
+     * Adds weight to a key, evicting the smallest counter when the key is not monitored and the summary is full.
+     * @param high - upper 64 bits of the key
+     * @param low - lower 64 bits of the key
+     * @param weight - the amount to add
+     */
+    public void offer(final long high, final long low, final long weight) {
+        int slot = find(high, low);
+        if (slot >= 0) {
+            counts[slot] += weight;
+            siftDown(heapPos[slot]);
+            return;
+        }
+        if (!index.isFull()) {
+            // Slots are taken in order as nothing is removed until the summary is full
+            slot = index.insert(key);
+            counts[slot] = weight;
+            errors[slot] = 0;
+            heap[slot] = slot;
+            heapPos[slot] = slot;
+            siftUp(slot);
+        } else {
+            // The removed slot is the next one inserted
+            index.remove(heap[0]);
+            slot = index.insert(key);
+            errors[slot] = counts[slot];
+            counts[slot] += weight;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Returns the (over) estimated count for a key.
+     * @param high - upper 64 bits of the key
+     * @param low - lower 64 bits of the key
+     * @return - the count or the minimum counter value when the key is not monitored
+     */
+    public long estimate(final long high, final long low) {
+        final int slot = find(high, low);
+        if (slot >= 0) {
+            return counts[slot];
+        }
+        if (!index.isFull()) {
+            return 0;
+        }
+        return counts[heap[0]];
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getKeyHigh(final int slot) {
+        return index.getKey(slot, 0);
+    }
+
+    public long getKeyLow(final int slot) {
+        return index.getKey(slot, 1);
+    }
+
+    public long getCount(final int slot) {
+        return counts[slot];
+    }
+
+    public long getError(final int slot) {
+        return errors[slot];
+    }
+
+    /**
+     * Removes all counters without releasing memory.
+     */
+    public void clear() {
+        index.clear();
+    }
+
+    private int find(final long high, final long low) {
+        key[0] = high;
+        key[1] = low;
+        return index.find(key);
+    }
+
+    private void siftUp(final int startPos) {
+        int pos = startPos;
+        final int slot = heap[pos];
+        while (pos > 0) {
+            final int parent = (pos - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            heap[pos] = heap[parent];
+            heapPos[heap[pos]] = pos;
+            pos = parent;
+        }
+        heap[pos] = slot;
+        heapPos[slot] = pos;
+    }
+
+    private void siftDown(final int startPos) {
+        int pos = startPos;
+        final int slot = heap[pos];
+        while (true) {
+            int child = (pos << 1) + 1;
+            if (child >= index.size()) {
+                break;
+            }
+            if (child + 1 < index.size() && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[slot] <= counts[heap[child]]) {
+                break;
+            }
+            heap[pos] = heap[child];
+            heapPos[heap[pos]] = pos;
+            pos = child;
+        }
+        heap[pos] = slot;
+        heapPos[slot] = pos;
+    }
+}
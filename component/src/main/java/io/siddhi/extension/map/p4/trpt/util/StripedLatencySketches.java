@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * KeyedLatencySketches recorded without locks by giving each recording thread its own stripe of sketches, which
+ * are merged when drained at the close of an interval.
+ * Each stripe double buffers its sketches. Draining swaps in the spare buffer then waits for any write that may have
+ * started against the previous buffer to finish, which the stripe's single writer signals by counting writes before
+ * and after each one, so that recording costs two uncontended atomic increments and never blocks.
+ */
+public class StripedLatencySketches {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final double relativeAccuracy;
+    private final List<Stripe> stripes = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Stripe> localStripe = ThreadLocal.withInitial(this::newStripe);
+
+    /**
+     * Constructor.
+     * @param relativeAccuracy - the relative accuracy of the sketches
+     */
+    public StripedLatencySketches(final double relativeAccuracy) {
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    /**
+     * Adds a value to the calling thread's sketch of a key.
+     * @param key - the key
+     * @param value - the value
+     */
+    public void add(final long key, final long value) {
+        final Stripe stripe = localStripe.get();
+        stripe.writesStarted.incrementAndGet();
+        try {
+            stripe.active.add(key, value);
+        } finally {
+            stripe.writesFinished.lazySet(stripe.writesFinished.get() + 1);
+        }
+    }
+
+    /**
+     * Merges the values recorded by every thread since the last drain into a table and resets the stripes.
+     * @param into - the table to merge into
+     */
+    public synchronized void drainTo(final KeyedLatencySketches into) {
+        for (final Stripe stripe : stripes) {
+            final KeyedLatencySketches drained = stripe.active;
+            stripe.active = stripe.spare;
+            final long started = stripe.writesStarted.get();
+            while (stripe.writesFinished.get() < started) {
+                Thread.yield();
+            }
+            into.merge(drained);
+            drained.clear();
+            stripe.spare = drained;
+        }
+    }
+
+    private Stripe newStripe() {
+        final Stripe stripe = new Stripe();
+        stripes.add(stripe);
+        return stripe;
+    }
+
+    /**
+     * The sketches of a single recording thread.
+     */
+    private class Stripe {
+
+        private final AtomicLong writesStarted = new AtomicLong();
+        private final AtomicLong writesFinished = new AtomicLong();
+        private volatile KeyedLatencySketches active = new KeyedLatencySketches(relativeAccuracy, INITIAL_CAPACITY);
+        // Only accessed by the draining thread
+        private KeyedLatencySketches spare = new KeyedLatencySketches(relativeAccuracy, INITIAL_CAPACITY);
+    }
+}
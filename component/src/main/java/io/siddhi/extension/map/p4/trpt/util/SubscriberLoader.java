@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+/**
+ * Source of the subscriber attributes of customer premises equipment, used by the p4trpt:subscriber function.
+ * Implementations are named by class and must have a public constructor taking the source as a single String,
+ * such as a file path or a connection URL. Loads are made from the Siddhi app's scheduler when refreshing, so
+ * implementations must be thread safe.
+ */
+public interface SubscriberLoader {
+
+    /**
+     * Returns the attributes of the subscriber owning a MAC address.
+     * @param mac - the 48 bit MAC address
+     * @return - the attributes or null when the MAC address is unknown
+     */
+    String load(long mac);
+}
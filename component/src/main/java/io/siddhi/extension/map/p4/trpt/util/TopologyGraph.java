@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import io.siddhi.extension.map.p4.trpt.HopField;
+import io.siddhi.extension.map.p4.trpt.IntMetadataStackHeader;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Forwarding topology learned incrementally from the INT paths of packet reports, where each pair of consecutive
+ * hops denotes a directed edge between their nodes. Edges are held in primitive arrays along with the time each was
+ * last seen and the number of packets crossing it, located through a LongHashIndex on the 64 bit key of their node
+ * IDs, and each node links its outgoing edges into an adjacency list threaded through an int array. Recording a path of
+ * n hops takes n - 1 probes without allocating. Edges updated since the last drain are listed so that only they are
+ * visited when draining changes, while draining every edge walks the edge arrays in the order edges were learned.
+ * Once the maximum number of edges is held, new edges are not recorded but counted as dropped.
+ */
+public class TopologyGraph implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int NO_EDGE = -1;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Receives the edges drained from the graph.
+     */
+    public interface EdgeConsumer {
+        /**
+         * Accepts an edge.
+         * @param fromNodeId - the node ID of the upstream hop
+         * @param toNodeId - the node ID of the downstream hop
+         * @param packets - the number of packets seen crossing the edge
+         * @param newPackets - the number of those packets seen since the edge was last drained
+         * @param lastSeen - the time the edge was last seen
+         */
+        void accept(long fromNodeId, long toNodeId, long packets, long newPackets, long lastSeen);
+    }
+
+    // Nodes, each heading the list of its outgoing edges
+    private final LongHashIndex nodes;
+    private int[] firstEdges;
+
+    // Edges by their from and to node IDs
+    private final LongHashIndex edges;
+    private int[] nextEdges;
+    private long[] packets;
+    private long[] drainedPackets;
+    private long[] lastSeen;
+
+    // Edges updated since the last drain
+    private int[] changed;
+    private boolean[] isChanged;
+    private int numChanged;
+
+    // Packets crossing edges not recorded as the graph was full
+    private long droppedEdges;
+
+    /**
+     * Constructor.
+     * @param maxEdges - the maximum number of edges held
+     */
+    public TopologyGraph(final int maxEdges) {
+        if (maxEdges <= 0) {
+            throw new IllegalArgumentException("maxEdges must be positive");
+        }
+        // Each edge adds at most two nodes
+        nodes = new LongHashIndex(1, INITIAL_CAPACITY, (int) Math.min(2L * maxEdges, LongHashIndex.MAX_CAPACITY));
+        firstEdges = new int[nodes.getCapacity()];
+        edges = new LongHashIndex(1, INITIAL_CAPACITY, maxEdges);
+        final int capacity = edges.getCapacity();
+        nextEdges = new int[capacity];
+        packets = new long[capacity];
+        drainedPackets = new long[capacity];
+        lastSeen = new long[capacity];
+        changed = new int[capacity];
+        isChanged = new boolean[capacity];
+    }
+
+    /**
+     * Records the edges between the consecutive hops of an INT metadata stack.
+     * @param stack - the stack
+     * @param now - the current time
+     * @return - the number of edges recorded, being zero when the stack omits node IDs
+     */
+    public int addPath(final IntMetadataStackHeader stack, final long now) {
+        if (!stack.hasHopField(HopField.NODE_ID)) {
+            return 0;
+        }
+        int recorded = 0;
+        for (int hop = 1; hop < stack.getNumHops(); hop++) {
+            if (addEdge(stack.getHopValue(HopField.NODE_ID, hop - 1), stack.getHopValue(HopField.NODE_ID, hop),
+                    now) != NO_EDGE) {
+                recorded++;
+            }
+        }
+        return recorded;
+    }
+
+    /**
+     * Records a packet crossing an edge.
+     * @param fromNodeId - the 32 bit node ID of the upstream hop
+     * @param toNodeId - the 32 bit node ID of the downstream hop
+     * @param now - the current time
+     * @return - the edge or NO_EDGE when the nodes are the same or the graph is full
+     */
+    public int addEdge(final long fromNodeId, final long toNodeId, final long now) {
+        if (fromNodeId == toNodeId) {
+            return NO_EDGE;
+        }
+        final long key = (fromNodeId << 32) | (toNodeId & 0xffffffffL);
+        final int edge = findOrInsertEdge(key);
+        if (edge == NO_EDGE) {
+            return NO_EDGE;
+        }
+        packets[edge]++;
+        lastSeen[edge] = now;
+        if (!isChanged[edge]) {
+            isChanged[edge] = true;
+            changed[numChanged++] = edge;
+        }
+        return edge;
+    }
+
+    /**
+     * Passes each edge updated since the last drain to the consumer.
+     * @param consumer - the consumer
+     * @return - the number of edges drained
+     */
+    public int drainChanged(final EdgeConsumer consumer) {
+        final int drained = numChanged;
+        for (int i = 0; i < numChanged; i++) {
+            final int edge = changed[i];
+            final long key = edges.getKey(edge);
+            consumer.accept(key >>> 32, key & 0xffffffffL, packets[edge],
+                    packets[edge] - drainedPackets[edge], lastSeen[edge]);
+            drainedPackets[edge] = packets[edge];
+            isChanged[edge] = false;
+        }
+        numChanged = 0;
+        return drained;
+    }
+
+    /**
+     * Passes every edge to the consumer in the order they were learned, including those unchanged since the last
+     * drain.
+     * @param consumer - the consumer
+     * @return - the number of edges drained
+     */
+    public int drainAll(final EdgeConsumer consumer) {
+        final int numEdges = edges.size();
+        for (int edge = 0; edge < numEdges; edge++) {
+            final long key = edges.getKey(edge);
+            consumer.accept(key >>> 32, key & 0xffffffffL, packets[edge],
+                    packets[edge] - drainedPackets[edge], lastSeen[edge]);
+            drainedPackets[edge] = packets[edge];
+            isChanged[edge] = false;
+        }
+        numChanged = 0;
+        return numEdges;
+    }
+
+    /**
+     * Returns the node IDs of the downstream neighbours of a node.
+     * @param nodeId - the node ID
+     * @return - the neighbours, being empty for unknown nodes
+     */
+    public long[] getNeighbours(final long nodeId) {
+        final int node = nodes.find(nodeId);
+        if (node < 0) {
+            return new long[0];
+        }
+        int count = 0;
+        for (int edge = firstEdges[node]; edge != NO_EDGE; edge = nextEdges[edge]) {
+            count++;
+        }
+        final long[] neighbours = new long[count];
+        int i = 0;
+        for (int edge = firstEdges[node]; edge != NO_EDGE; edge = nextEdges[edge]) {
+            neighbours[i++] = edges.getKey(edge) & 0xffffffffL;
+        }
+        return neighbours;
+    }
+
+    public int getNumNodes() {
+        return nodes.size();
+    }
+
+    public int getNumEdges() {
+        return edges.size();
+    }
+
+    public int getNumChanged() {
+        return numChanged;
+    }
+
+    /**
+     * Returns the number of packets seen crossing edges that were not recorded as the graph was full.
+     * @return - the count
+     */
+    public long getDroppedEdges() {
+        return droppedEdges;
+    }
+
+    private int findOrInsertEdge(final long key) {
+        int edge = edges.find(key);
+        if (edge != LongHashIndex.NO_ENTRY) {
+            return edge;
+        }
+        if (edges.isFull()) {
+            droppedEdges++;
+            return NO_EDGE;
+        }
+        edge = edges.insert(key);
+        if (edge == packets.length) {
+            growEdges();
+        }
+        packets[edge] = 0;
+        drainedPackets[edge] = 0;
+        final int from = findOrInsertNode(key >>> 32);
+        nextEdges[edge] = firstEdges[from];
+        firstEdges[from] = edge;
+        // Nodes only reached as a downstream hop are known too
+        findOrInsertNode(key & 0xffffffffL);
+        return edge;
+    }
+
+    private int findOrInsertNode(final long nodeId) {
+        int node = nodes.find(nodeId);
+        if (node != LongHashIndex.NO_ENTRY) {
+            return node;
+        }
+        node = nodes.insert(nodeId);
+        if (node == firstEdges.length) {
+            firstEdges = Arrays.copyOf(firstEdges, nodes.getCapacity());
+        }
+        firstEdges[node] = NO_EDGE;
+        return node;
+    }
+
+    private void growEdges() {
+        final int capacity = edges.getCapacity();
+        nextEdges = Arrays.copyOf(nextEdges, capacity);
+        packets = Arrays.copyOf(packets, capacity);
+        drainedPackets = Arrays.copyOf(drainedPackets, capacity);
+        lastSeen = Arrays.copyOf(lastSeen, capacity);
+        changed = Arrays.copyOf(changed, capacity);
+        isChanged = Arrays.copyOf(isChanged, capacity);
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.LongFunction;
+
+/**
+ * Size bounded loading cache keyed by longs using the W-TinyLFU policy (Einziger, Friedman and Manes).
+ * New entries enter a small LRU window and, when evicted from it, are only admitted into the main segmented LRU
+ * when a 4 bit count-min sketch estimates them to be more frequent than the main region's eviction victim, so
+ * bursts of one-off keys cannot flush frequently used entries. Entries are reloaded in the background once older
+ * than the refresh interval while their current value continues to be served, and are reloaded synchronously once
+ * older than the expiry interval. Null values returned by the loader are cached as well so that unknown keys do not
+ * reach the loader on every lookup. Entries are held in primitive arrays and located through a LongHashIndex.
+ * The cache is locked only to look up and update entries, with keys loaded outside the lock, so that a slow load
+ * holds up only the lookups of its own key, which wait for it rather than loading the key again.
+ * @param <V> - the value type
+ */
+public class WTinyLfuCache<V> {
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+    private static final int SKETCH_DEPTH = 4;
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final LongFunction<V> loader;
+    private final Executor refreshExecutor;
+    private final long refreshAfterNanos;
+    private final long expireAfterNanos;
+    private final int maxSize;
+    private final int maxWindow;
+    private final int maxProtected;
+    private final int sentinels;
+
+    // Entries, with room for one beyond maxSize while admission is decided, and the three LRU lists linked through
+    // sentinel entries at sentinels + WINDOW etc
+    private final LongHashIndex index;
+    private final Object[] values;
+    private final long[] loadTimes;
+    private final boolean[] refreshing;
+    private final byte[] queues;
+    private final int[] prev;
+    private final int[] next;
+    private final int[] queueSizes = new int[3];
+
+    // Count-min sketch of 16 4 bit counters per long, halved every sampleSize increments to age old frequencies
+    private final long[] sketch;
+    private final int sketchMask;
+    private final int sampleSize;
+    private int sampleCount;
+
+    // The loads under way outside the lock
+    private final Map<Long, CompletableFuture<V>> loading = new HashMap<>();
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor.
+     * @param maxSize - the maximum number of entries
+     * @param refreshAfterMillis - the age after which entries are reloaded in the background
+     * @param expireAfterMillis - the age after which entries are reloaded before being returned
+     * @param loader - loads the value of a key, returning null when it has none
+     * @param refreshExecutor - runs background reloads
+     */
+    public WTinyLfuCache(final int maxSize, final long refreshAfterMillis, final long expireAfterMillis,
+                         final LongFunction<V> loader, final Executor refreshExecutor) {
+        if (maxSize < 2 || refreshAfterMillis <= 0 || expireAfterMillis < refreshAfterMillis) {
+            throw new IllegalArgumentException("maxSize must be at least 2 and expireAfter at least refreshAfter");
+        }
+        this.loader = loader;
+        this.refreshExecutor = refreshExecutor;
+        this.refreshAfterNanos = refreshAfterMillis * 1_000_000L;
+        this.expireAfterNanos = expireAfterMillis * 1_000_000L;
+        this.maxSize = maxSize;
+        this.maxWindow = Math.max(1, maxSize / 100);
+        this.maxProtected = (maxSize - maxWindow) * 4 / 5;
+
+        this.sentinels = maxSize + 1;
+        this.index = new LongHashIndex(1, sentinels, sentinels);
+        this.values = new Object[sentinels];
+        this.loadTimes = new long[sentinels];
+        this.refreshing = new boolean[sentinels];
+        this.queues = new byte[sentinels];
+        this.prev = new int[sentinels + 3];
+        this.next = new int[sentinels + 3];
+        for (int queue = WINDOW; queue <= PROTECTED; queue++) {
+            prev[sentinels + queue] = sentinels + queue;
+            next[sentinels + queue] = sentinels + queue;
+        }
+        this.sketch = new long[Hashing.nextPowerOfTwo(Math.max(16, maxSize / 4))];
+        this.sketchMask = sketch.length - 1;
+        this.sampleSize = 10 * maxSize;
+    }
+
+    /**
+     * Returns the value of the key, loading it on a miss.
+     * @param key - the key
+     * @param nowNanos - the current value of System.nanoTime()
+     * @return - the value or null when the loader has none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key, final long nowNanos) {
+        final long hash = Hashing.hash64(key);
+        CompletableFuture<V> load;
+        final boolean loads;
+        synchronized (this) {
+            increment(hash);
+            final int entry = index.find(key);
+            if (entry < 0) {
+                misses++;
+            } else {
+                hits++;
+                onHit(entry);
+                final long age = nowNanos - loadTimes[entry];
+                if (age <= expireAfterNanos) {
+                    if (age > refreshAfterNanos && !refreshing[entry]) {
+                        refreshing[entry] = true;
+                        refreshExecutor.execute(() -> refresh(key));
+                    }
+                    return (V) values[entry];
+                }
+            }
+            // Missing and expired keys are loaded by the first lookup while the rest wait for it
+            load = loading.get(key);
+            loads = load == null;
+            if (loads) {
+                load = new CompletableFuture<>();
+                loading.put(key, load);
+            }
+        }
+        if (!loads) {
+            return await(load);
+        }
+        final V value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                loading.remove(key);
+            }
+            load.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            loading.remove(key);
+            final int entry = index.find(key);
+            if (entry < 0) {
+                insert(key, value, nowNanos);
+            } else {
+                values[entry] = value;
+                loadTimes[entry] = nowNanos;
+            }
+        }
+        load.complete(value);
+        return value;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static <V> V await(final CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void refresh(final long key) {
+        V value = null;
+        boolean loaded = false;
+        try {
+            value = loader.apply(key);
+            loaded = true;
+        } finally {
+            synchronized (this) {
+                final int entry = index.find(key);
+                if (entry >= 0) {
+                    refreshing[entry] = false;
+                    if (loaded) {
+                        values[entry] = value;
+                        loadTimes[entry] = System.nanoTime();
+                    }
+                }
+            }
+        }
+    }
+
+    private void onHit(final int entry) {
+        switch (queues[entry]) {
+            case WINDOW:
+                moveToTail(entry, WINDOW);
+                break;
+            case PROBATION:
+                unlink(entry);
+                link(entry, PROTECTED);
+                if (queueSizes[PROTECTED] > maxProtected) {
+                    final int demoted = next[sentinels + PROTECTED];
+                    unlink(demoted);
+                    link(demoted, PROBATION);
+                }
+                break;
+            default:
+                moveToTail(entry, PROTECTED);
+                break;
+        }
+    }
+
+    private void insert(final long key, final V value, final long nowNanos) {
+        final int entry = index.insert(key);
+        values[entry] = value;
+        loadTimes[entry] = nowNanos;
+        refreshing[entry] = false;
+        link(entry, WINDOW);
+
+        if (queueSizes[WINDOW] > maxWindow) {
+            // The window's LRU entry competes with the main region's victim for a place
+            final int candidate = next[sentinels + WINDOW];
+            unlink(candidate);
+            link(candidate, PROBATION);
+            if (index.size() > maxSize) {
+                final int victim = next[sentinels + PROBATION];
+                final int victimOrCandidate = victim == candidate ? candidate
+                        : frequency(Hashing.hash64(index.getKey(candidate)))
+                        > frequency(Hashing.hash64(index.getKey(victim)))
+                        ? victim : candidate;
+                evict(victimOrCandidate);
+            }
+        }
+    }
+
+    private void evict(final int entry) {
+        unlink(entry);
+        index.remove(entry);
+        values[entry] = null;
+    }
+
+    private void link(final int entry, final byte queue) {
+        final int sentinel = sentinels + queue;
+        final int tail = prev[sentinel];
+        next[tail] = entry;
+        prev[entry] = tail;
+        next[entry] = sentinel;
+        prev[sentinel] = entry;
+        queues[entry] = queue;
+        queueSizes[queue]++;
+    }
+
+    private void unlink(final int entry) {
+        next[prev[entry]] = next[entry];
+        prev[next[entry]] = prev[entry];
+        queueSizes[queues[entry]]--;
+    }
+
+    private void moveToTail(final int entry, final byte queue) {
+        unlink(entry);
+        link(entry, queue);
+    }
+
+    private void increment(final long hash) {
+        boolean added = false;
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            final long h = Hashing.mix(hash + i * 0x9e3779b97f4a7c15L);
+            final int slot = (int) (h >>> 32) & sketchMask;
+            final int shift = ((int) h & 15) << 2;
+            if (((sketch[slot] >>> shift) & 15) != 15) {
+                sketch[slot] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++sampleCount >= sampleSize) {
+            for (int i = 0; i < sketch.length; i++) {
+                sketch[i] = (sketch[i] >>> 1) & RESET_MASK;
+            }
+            sampleCount /= 2;
+        }
+    }
+
+    private int frequency(final long hash) {
+        int min = 15;
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            final long h = Hashing.mix(hash + i * 0x9e3779b97f4a7c15L);
+            min = Math.min(min, (int) (sketch[(int) (h >>> 32) & sketchMask] >>> (((int) h & 15) << 2)) & 15);
+        }
+        return min;
+    }
+}
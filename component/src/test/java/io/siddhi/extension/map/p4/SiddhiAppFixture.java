@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.query.output.callback.QueryCallback;
+import io.siddhi.core.util.transport.InMemoryBroker;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Runs a Siddhi app fed by an inMemory source for tests, collecting the current events of one of its queries.
+ * Events are awaited on the collector's monitor as the query emits them, so tests wait only as long as the events
+ * take to arrive rather than polling.
+ */
+public class SiddhiAppFixture {
+
+    private static final Logger log = Logger.getLogger(SiddhiAppFixture.class);
+
+    public static final long TIMEOUT_MILLIS = 5000;
+
+    private final String topic = UUID.randomUUID().toString();
+    private final List<Object[]> events = new ArrayList<>();
+    private SiddhiManager siddhiManager;
+    private SiddhiAppRuntime siddhiAppRuntime;
+
+    /**
+     * Creates and starts an app, collecting the events of a query.
+     * @param queryName - the name of the query whose events are collected, or null to collect none
+     * @param script - the app as a format string, given the inMemory topic as its first argument
+     * @param args - the remaining format arguments
+     * @return - the started app
+     */
+    public SiddhiAppRuntime start(final String queryName, final String script, final Object... args) {
+        return start(queryName, null, script, args);
+    }
+
+    /**
+     * Creates and starts an app, collecting the events of a query and running a hook after each callback.
+     * @param queryName - the name of the query whose events are collected, or null to collect none
+     * @param onReceive - run on the emitting thread after the events of each callback are collected, or null
+     * @param script - the app as a format string, given the inMemory topic as its first argument
+     * @param args - the remaining format arguments
+     * @return - the started app
+     */
+    public SiddhiAppRuntime start(final String queryName, final Runnable onReceive, final String script,
+                                  final Object... args) {
+        final Object[] formatArgs = new Object[args.length + 1];
+        formatArgs[0] = topic;
+        System.arraycopy(args, 0, formatArgs, 1, args.length);
+        final String siddhiScriptStr = String.format(script, formatArgs);
+        log.info("Siddhi script \n" + siddhiScriptStr);
+        siddhiManager = new SiddhiManager();
+        siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiScriptStr);
+        if (queryName != null) {
+            siddhiAppRuntime.addCallback(queryName, new QueryCallback() {
+                @Override
+                public void receive(long timeStamp, Event[] inEvents, Event[] removeEvents) {
+                    if (inEvents != null) {
+                        synchronized (events) {
+                            for (final Event event : inEvents) {
+                                events.add(event.getData());
+                            }
+                            events.notifyAll();
+                        }
+                    }
+                    if (onReceive != null) {
+                        onReceive.run();
+                    }
+                }
+            });
+        }
+        siddhiAppRuntime.start();
+        return siddhiAppRuntime;
+    }
+
+    /**
+     * Publishes a message to the app's inMemory topic, which the source maps on the calling thread.
+     * @param message - the message
+     */
+    public void publish(final Object message) {
+        InMemoryBroker.publish(topic, message);
+    }
+
+    /**
+     * Waits for at least a number of events to have been collected.
+     * @param count - the number of events
+     * @return - the events collected, which are fewer than the count only once TIMEOUT_MILLIS has passed
+     * @throws InterruptedException - when interrupted while waiting
+     */
+    public List<Object[]> awaitEvents(final int count) throws InterruptedException {
+        return awaitEvents(count, TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Waits for at least a number of events to have been collected, returning early as soon as they are. Awaiting
+     * one more event than expected over a short timeout asserts that no further events are emitted.
+     * @param count - the number of events
+     * @param timeoutMillis - the longest time to wait
+     * @return - the events collected
+     * @throws InterruptedException - when interrupted while waiting
+     */
+    public List<Object[]> awaitEvents(final int count, final long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (events) {
+            for (long remaining = timeoutMillis; events.size() < count && remaining > 0;
+                 remaining = deadline - System.currentTimeMillis()) {
+                events.wait(remaining);
+            }
+            return new ArrayList<>(events);
+        }
+    }
+
+    /**
+     * Returns the events collected so far.
+     * @return - a copy of the events in the order received
+     */
+    public List<Object[]> getEvents() {
+        synchronized (events) {
+            return new ArrayList<>(events);
+        }
+    }
+
+    /**
+     * Discards the events collected so far.
+     */
+    public void clearEvents() {
+        synchronized (events) {
+            events.clear();
+        }
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public SiddhiAppRuntime getSiddhiAppRuntime() {
+        return siddhiAppRuntime;
+    }
+
+    /**
+     * Shuts down the app and its manager when started.
+     */
+    public void shutdown() {
+        if (siddhiAppRuntime != null) {
+            siddhiAppRuntime.shutdown();
+            siddhiAppRuntime = null;
+        }
+        if (siddhiManager != null) {
+            siddhiManager.shutdown();
+            siddhiManager = null;
+        }
+    }
+}
@@ -15,6 +15,11 @@
 
 package io.siddhi.extension.map.p4;
 
+import io.siddhi.extension.map.p4.trpt.HopField;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+
+import java.nio.ByteBuffer;
+
 /**
  * Describes the bytes held within the body of a Telemetry Report UDP Packet.
  */
@@ -123,4 +128,35 @@ public class TestTelemetryReports {
             (byte) 0x72, (byte) 0x69, (byte) 0x74, (byte) 0x79
     };
 
+    /**
+     * Returns a copy of a packet report whose INT metadata stack holds the given hop metadata in place of its own.
+     * @param report - the packet report
+     * @param instructions - the INT instruction bitmap selecting the metadata of every hop
+     * @param hops - the 4 byte words of each hop's metadata in instruction order, hops[0] being the first hop
+     * @return - the report bytes
+     */
+    public static byte[] withHopMetadata(final byte[] report, final int instructions, final int[]... hops) {
+        final int intOffset = RawReport.getIntHdrOffset(report);
+        final int stackWords = RawReport.getIntStackWords(report, intOffset);
+        final int stackOffset = intOffset + RawReport.INT_FIXED_HDR_LEN;
+        final int stackEnd = stackOffset + stackWords * 4;
+        final int hopWords = HopField.getHopWords(instructions);
+        final ByteBuffer bytes = ByteBuffer.allocate(report.length - stackWords * 4 + hops.length * hopWords * 4);
+        bytes.put(report, 0, stackOffset);
+        // The shim length, the per hop metadata length and the instructions
+        bytes.put(intOffset + 1, (byte) (report[intOffset + 1] - stackWords + hops.length * hopWords));
+        bytes.put(intOffset + 6, (byte) ((report[intOffset + 6] & 0xe0) | hopWords));
+        bytes.putShort(intOffset + 8, (short) instructions);
+        // Each hop pushes its metadata onto the top of the stack
+        for (int hop = hops.length - 1; hop >= 0; hop--) {
+            if (hops[hop].length != hopWords) {
+                throw new IllegalArgumentException("Expected " + hopWords + " words for hop " + hop);
+            }
+            for (final int word : hops[hop]) {
+                bytes.putInt(word);
+            }
+        }
+        bytes.put(report, stackEnd, report.length - stackEnd);
+        return bytes.array();
+    }
 }
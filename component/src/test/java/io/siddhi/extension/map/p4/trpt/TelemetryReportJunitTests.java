@@ -19,11 +19,13 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import io.siddhi.extension.map.p4.TestTelemetryReports;
+import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Testcase of P4TrptSourceMapper.
@@ -74,6 +76,10 @@ public class TelemetryReportJunitTests {
         Assert.assertEquals(0, dropHdr.get("dropCount").getAsLong());
         final String parsedDropKey = dropHdr.get("dropKey").getAsString();
         Assert.assertTrue(parsedDropKey.equals("6b00dbfc6026a3521bbe0f5d00170000"));
+        Assert.assertEquals(0x6b00dbfc6026a352L, trpt.dropHdr.getDropKeyHigh());
+        Assert.assertEquals(0x1bbe0f5d00170000L, trpt.dropHdr.getDropKeyLow());
+        Assert.assertEquals(parsedDropKey,
+                DropHeader.toDropKey(trpt.dropHdr.getDropKeyHigh(), trpt.dropHdr.getDropKeyLow()));
         Assert.assertEquals(1624470281L, dropHdr.get("timestamp").getAsLong());
     }
 
@@ -116,6 +122,10 @@ public class TelemetryReportJunitTests {
         Assert.assertEquals(17, trpt.ipHdr.getNextProto()); // UDP
         Assert.assertEquals("192.168.1.2", trpt.ipHdr.getSrcAddr().getHostAddress()); // IP
         Assert.assertEquals("192.168.1.10", trpt.ipHdr.getDstAddr().getHostAddress()); // IP
+        Assert.assertEquals(0, trpt.ipHdr.getSrcAddrHigh());
+        Assert.assertEquals(0xc0a80102L, trpt.ipHdr.getSrcAddrLow());
+        Assert.assertEquals(0, trpt.ipHdr.getDstAddrHigh());
+        Assert.assertEquals(0xc0a8010aL, trpt.ipHdr.getDstAddrLow());
 
         // UDP INT Header values
         Assert.assertEquals(0, trpt.udpIntHdr.getUdpIntSrcPort());
@@ -141,6 +151,7 @@ public class TelemetryReportJunitTests {
 
         // INT Metadata Stack values
         Assert.assertEquals("00:00:00:00:01:01", trpt.intHdr.mdStackHdr.getOrigMac());
+        Assert.assertEquals(0x0101L, trpt.intHdr.mdStackHdr.getOrigMacLong());
         Assert.assertEquals(2, trpt.intHdr.mdStackHdr.getHops().size());
         Assert.assertTrue(trpt.intHdr.mdStackHdr.getHops().contains((long) 123));
         Assert.assertTrue(trpt.intHdr.mdStackHdr.getHops().contains((long) 234));
@@ -648,6 +659,343 @@ public class TelemetryReportJunitTests {
         validateBytes(trpt);
     }
 
+    @Test
+    public void rawReportMatchesParsedReports() {
+        Assert.assertEquals(RawReport.TRPT_HDR_LEN, RawReport.getDropHdrOffset(TestTelemetryReports.DROP_RPT));
+        Assert.assertEquals(-1, RawReport.getProtoHdrOffset(TestTelemetryReports.DROP_RPT));
+        Assert.assertEquals(0, RawReport.flowHash(TestTelemetryReports.DROP_RPT));
+        final byte[][] packetReports = {TestTelemetryReports.UDP4_2HOPS, TestTelemetryReports.TCP4_2HOPS,
+                TestTelemetryReports.UDP6_2HOPS, TestTelemetryReports.TCP6_2HOPS};
+        for (final byte[] bytes : packetReports) {
+            final TelemetryReport trpt = new TelemetryReport(bytes);
+            Assert.assertEquals(-1, RawReport.getDropHdrOffset(bytes));
+            Assert.assertEquals(trpt.trptHdr.getNodeId(), RawReport.getNodeId(bytes));
+            Assert.assertEquals(trpt.ipHdr.getVer(), RawReport.getIpVersion(bytes));
+            final int ipOffset = RawReport.getIpHdrOffset(bytes);
+            Assert.assertEquals(trpt.ipHdr.getNextProto(), RawReport.getNextProto(bytes, ipOffset));
+            final int protoOffset = RawReport.getProtoHdrOffset(bytes);
+            Assert.assertEquals(trpt.protoHdr.getSrcPort(), ByteUtils.getLongFromBytes(bytes, protoOffset, 2));
+            Assert.assertEquals(trpt.protoHdr.getDstPort(), ByteUtils.getLongFromBytes(bytes, protoOffset + 2, 2));
+            Assert.assertEquals(trpt.ipHdr.getSrcAddr(),
+                    ByteUtils.getInetAddress(bytes, trpt.ipHdr.getVer(), RawReport.getSrcAddrOffset(bytes, ipOffset)));
+            Assert.assertEquals(trpt.ipHdr.getDstAddr(),
+                    ByteUtils.getInetAddress(bytes, trpt.ipHdr.getVer(), RawReport.getDstAddrOffset(bytes, ipOffset)));
+
+            // The flow hash ignores the reporting node
+            final byte[] otherNodeBytes = bytes.clone();
+            otherNodeBytes[7]++;
+            Assert.assertEquals(trpt.trptHdr.getNodeId() + 1, RawReport.getNodeId(otherNodeBytes));
+            Assert.assertEquals(RawReport.flowHash(bytes), RawReport.flowHash(otherNodeBytes));
+            Assert.assertTrue(RawReport.flowHash(bytes) != 0);
+        }
+        Assert.assertTrue(RawReport.flowHash(TestTelemetryReports.UDP4_2HOPS)
+                != RawReport.flowHash(TestTelemetryReports.UDP6_2HOPS));
+    }
+
+    /**
+     * Tests that raw fields read the same values as the parsed report and that filters evaluate against them.
+     */
+    @Test
+    public void rawFieldsAndFiltersMatchParsedReports() {
+        final byte[][] reports = {TestTelemetryReports.DROP_RPT, TestTelemetryReports.UDP4_2HOPS,
+                TestTelemetryReports.TCP4_2HOPS, TestTelemetryReports.UDP6_2HOPS, TestTelemetryReports.TCP6_2HOPS};
+        for (final byte[] bytes : reports) {
+            final TelemetryReport trpt = new TelemetryReport(bytes);
+            for (final ReportField field : ReportField.values()) {
+                final RawField rawField = RawField.fromPath(field.getPath());
+                final int offset = rawField.getHeaderOffset(bytes);
+                Assert.assertEquals(field.isPresent(trpt), offset >= 0);
+                if (offset >= 0) {
+                    Assert.assertEquals(field.getHigh(trpt), rawField.getHigh(bytes, offset));
+                    Assert.assertEquals(field.getLow(trpt), rawField.getLow(bytes, offset));
+                    // Decoded keys take the values of the report JSON
+                    final Object decoded = field.decode(field.getHigh(trpt), field.getLow(trpt));
+                    Assert.assertEquals(field.getValueClass(), decoded.getClass());
+                    JsonObject header = trpt.toJson();
+                    final String[] tokens = field.getPath().split("\\.");
+                    for (int i = 0; i < tokens.length - 1; i++) {
+                        header = header.getAsJsonObject(tokens[i]);
+                    }
+                    Assert.assertEquals(header.get(field.getName()).getAsString(), decoded.toString());
+                }
+            }
+            Assert.assertEquals(trpt.trptHdr.getInType(), RawField.IN_TYPE.getLow(bytes, 0));
+            Assert.assertEquals(trpt.trptHdr.getSequenceId(), RawField.SEQ_NO.getLow(bytes, 0));
+            Assert.assertEquals(trpt.trptHdr.getHardwareId(), RawField.HARDWARE_ID.getLow(bytes, 0));
+            Assert.assertEquals(trpt.trptHdr.getDomainId(), RawField.TRPT_DOMAIN_ID.getLow(bytes, 0));
+            if (trpt.dropHdr != null) {
+                final int offset = RawField.DROP_COUNT.getHeaderOffset(bytes);
+                Assert.assertEquals(trpt.dropHdr.getDropCount(), RawField.DROP_COUNT.getLow(bytes, offset));
+            } else {
+                final int offset = RawField.IP_LEN.getHeaderOffset(bytes);
+                Assert.assertEquals(trpt.ipHdr.getLen(), RawField.IP_LEN.getLow(bytes, offset));
+                Assert.assertEquals(trpt.ipHdr.getVer(), RawField.IP_VERSION.getLow(bytes, offset));
+                final int intOffset = RawField.REMAINING_HOP_COUNT.getHeaderOffset(bytes);
+                Assert.assertEquals(trpt.intHdr.mdHdr.getRemainingHopCount(),
+                        RawField.REMAINING_HOP_COUNT.getLow(bytes, intOffset));
+                Assert.assertEquals(trpt.intHdr.mdHdr.getDomainId(),
+                        RawField.INT_DOMAIN_ID.getLow(bytes, intOffset));
+            }
+
+            final boolean isDrop = trpt.dropHdr != null;
+            Assert.assertEquals(isDrop, ReportFilter.compile("inType == 2").test(bytes));
+            Assert.assertEquals(!isDrop, ReportFilter.compile("not (inType == 2)").test(bytes));
+            // Absent fields never compare as true
+            Assert.assertFalse(isDrop && ReportFilter.compile("dstPort != 0").test(bytes));
+            if (!isDrop) {
+                Assert.assertTrue(ReportFilter.compile("protoHdr.dstPort == " + trpt.protoHdr.getDstPort()
+                        + " && srcPort >= " + trpt.protoHdr.getSrcPort()).test(bytes));
+                Assert.assertFalse(ReportFilter.compile("dstPort < " + trpt.protoHdr.getDstPort()
+                        + " || nextProto == 0x01").test(bytes));
+                Assert.assertTrue(ReportFilter.compile("ipHdr.srcAddr == "
+                        + trpt.ipHdr.getSrcAddr().getHostAddress()).test(bytes));
+                Assert.assertTrue(ReportFilter.compile("dstAddr != "
+                        + trpt.ipHdr.getSrcAddr().getHostAddress()).test(bytes));
+            }
+        }
+    }
+
+    /**
+     * Tests that filters evaluated over a batch's columns select the reports matching them one at a time.
+     */
+    @Test
+    public void batchFiltersMatchReportFilters() {
+        final byte[][] fixtures = {TestTelemetryReports.DROP_RPT, TestTelemetryReports.UDP4_2HOPS,
+                TestTelemetryReports.TCP4_2HOPS, TestTelemetryReports.UDP6_2HOPS, TestTelemetryReports.TCP6_2HOPS};
+        final byte[][] reports = new byte[1000][];
+        for (int i = 0; i < reports.length; i++) {
+            reports[i] = fixtures[(i * 7) % fixtures.length];
+        }
+        final String udp6Addr = new TelemetryReport(TestTelemetryReports.UDP6_2HOPS).ipHdr.getSrcAddr()
+                .getHostAddress();
+        final String[] expressions = {"inType == 2", "not (inType == 2)", "dstPort != 0", "dstPort >= 1 and "
+                + "srcPort < 65535", "inType == 2 or srcAddr == " + udp6Addr, "not (dstPort > 0 or ipHdr.version == 6)",
+                "nextProto == 17 and not srcAddr == " + udp6Addr + " or dropCount > 0"};
+        for (final String expression : expressions) {
+            final ReportFilter filter = ReportFilter.compile(expression);
+            final RawReportBatch batch = new RawReportBatch(filter.getFields(), 16);
+            batch.decode(reports, 0, reports.length);
+            final int selected = filter.select(batch);
+            int expected = 0;
+            for (int row = 0; row < reports.length; row++) {
+                if (filter.test(reports[row])) {
+                    Assert.assertEquals(expression, row, batch.getSelection()[expected++]);
+                }
+            }
+            Assert.assertEquals(expression, expected, selected);
+        }
+
+        final RawReportBatch batch = new RawReportBatch(new RawField[]{RawField.IN_TYPE, RawField.DST_PORT}, 4);
+        batch.decode(reports, 0, 10);
+        Assert.assertEquals(8, batch.select(RawField.DST_PORT, RawReportBatch.GT, 0, 0));
+        final long dstPort = new TelemetryReport(TestTelemetryReports.UDP4_2HOPS).protoHdr.getDstPort();
+        for (int i = 0; i < batch.getSelected(); i++) {
+            Assert.assertEquals(dstPort, batch.getLow(RawField.DST_PORT, batch.getSelection()[i]));
+        }
+        Assert.assertEquals(0, batch.select(RawField.IN_TYPE, RawReportBatch.EQ, 0, 2));
+    }
+
+    /**
+     * Tests that reports truncated within their IP header have no IP header, including IPv6 reports long enough for
+     * an IPv4 header.
+     */
+    @Test
+    public void truncatedIpHeadersAbsent() {
+        final int ipOffset = RawReport.TRPT_HDR_LEN + RawReport.INT_ETH_HDR_LEN;
+        final RawReportBatch batch = new RawReportBatch(new RawField[]{RawField.SRC_ADDR, RawField.DST_ADDR,
+                RawField.NEXT_PROTO}, 4);
+        for (final byte[] bytes : new byte[][]{TestTelemetryReports.UDP6_2HOPS, TestTelemetryReports.TCP6_2HOPS}) {
+            for (final int length : new int[]{ipOffset + 20, ipOffset + 39}) {
+                final byte[] truncated = Arrays.copyOf(bytes, length);
+                Assert.assertEquals(-1, RawReport.getIpHdrOffset(truncated));
+                Assert.assertEquals(-1, RawReport.getIpVersion(truncated));
+                Assert.assertEquals(-1, RawField.SRC_ADDR.getHeaderOffset(truncated));
+                Assert.assertEquals(-1, RawField.DST_ADDR.getHeaderOffset(truncated));
+                batch.decode(new byte[][]{truncated}, 0, 1);
+                Assert.assertEquals(0, batch.select(RawField.DST_ADDR, RawReportBatch.NE, 0, 0));
+            }
+            Assert.assertEquals(ipOffset, RawReport.getIpHdrOffset(Arrays.copyOf(bytes, ipOffset + 40)));
+        }
+        final byte[] udp4 = Arrays.copyOf(TestTelemetryReports.UDP4_2HOPS, ipOffset + 20);
+        Assert.assertEquals(ipOffset, RawReport.getIpHdrOffset(udp4));
+        Assert.assertEquals(4, RawReport.getIpVersion(udp4));
+        Assert.assertEquals(-1, RawReport.getIpHdrOffset(Arrays.copyOf(udp4, ipOffset + 19)));
+        Assert.assertEquals(-1, RawReport.getIpHdrOffset(Arrays.copyOf(udp4, ipOffset - 1)));
+    }
+
+    /**
+     * Tests that invalid filter expressions are rejected when compiled.
+     */
+    @Test
+    public void invalidFiltersRejected() {
+        final String[] invalid = {"", "version == 1", "dstPort = 53", "dstPort == ", "(dstPort == 53",
+                "dstPort == 53 and", "dstPort == port", "srcAddr == host.example.com", "foo == 1"};
+        for (final String expression : invalid) {
+            try {
+                ReportFilter.compile(expression);
+                Assert.fail("Compiled " + expression);
+            } catch (IllegalArgumentException e) {
+                Assert.assertNotNull(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Tests that per hop metadata is decoded as per the instruction bitmap.
+     */
+    @Test
+    public void hopMetadataDecodedByInstructions() throws DecoderException {
+        // Node ID, hop latency, queue ID and occupancy then ingress timestamp, being 5 words per hop
+        final int instructions = 0xb800;
+        Assert.assertEquals(5, HopField.getHopWords(instructions));
+        final byte[] stack = Hex.decodeHex(("0000007b" + "00000fa0" + "03000200" + "0000000000000001"
+                + "000000ea" + "000001f4" + "01000010" + "0000000000000002" + "0000000001010000").toCharArray());
+        final IntMetadataStackHeader stackHdr = new IntMetadataStackHeader(10, 5, instructions, stack);
+        Assert.assertEquals(2, stackHdr.getNumHops());
+        Assert.assertEquals("00:00:00:00:01:01", stackHdr.getOrigMac());
+        // The top of the stack is the most recent hop
+        Assert.assertEquals(234, stackHdr.getHopValue(HopField.NODE_ID, 0));
+        Assert.assertEquals(500, stackHdr.getHopValue(HopField.HOP_LATENCY, 0));
+        Assert.assertEquals(1, stackHdr.getHopValue(HopField.QUEUE_ID, 0));
+        Assert.assertEquals(16, stackHdr.getHopValue(HopField.QUEUE_OCCUPANCY, 0));
+        Assert.assertEquals(2, stackHdr.getHopValue(HopField.INGRESS_TIMESTAMP, 0));
+        Assert.assertEquals(123, stackHdr.getHopValue(HopField.NODE_ID, 1));
+        Assert.assertEquals(4000, stackHdr.getHopValue(HopField.HOP_LATENCY, 1));
+        Assert.assertEquals(3, stackHdr.getHopValue(HopField.QUEUE_ID, 1));
+        Assert.assertEquals(512, stackHdr.getHopValue(HopField.QUEUE_OCCUPANCY, 1));
+        Assert.assertFalse(stackHdr.hasHopField(HopField.EGRESS_TIMESTAMP));
+        Assert.assertFalse(stackHdr.hasHopField(HopField.INGRESS_PORT));
+        Assert.assertEquals(Arrays.asList(234L, 123L), stackHdr.getHops());
+
+        final TelemetryReport trpt = new TelemetryReport(TestTelemetryReports.UDP4_2HOPS);
+        Assert.assertEquals(HopField.NODE_ID_INSTRUCTIONS, trpt.intHdr.mdHdr.getInstructionBitmap());
+        Assert.assertEquals(2, trpt.intHdr.mdStackHdr.getNumHops());
+        Assert.assertEquals(Long.valueOf(123), HopPath.parse("intHdr.mdStackHdr.hops[0].nodeId").getValue(trpt));
+        Assert.assertEquals(Long.valueOf(234), HopPath.parse("intHdr.mdStackHdr.hops[1].nodeId").getValue(trpt));
+        Assert.assertNull(HopPath.parse("intHdr.mdStackHdr.hops[2].nodeId").getValue(trpt));
+        Assert.assertNull(HopPath.parse("intHdr.mdStackHdr.hops[0].hopLatency").getValue(trpt));
+        Assert.assertNull(HopPath.parse("intHdr.mdStackHdr.origMac"));
+
+        // Paths of the current hop as used when flattening reports into an event per hop
+        final HopPath currentNodeId = HopPath.parse("intHdr.mdStackHdr.hops[i].nodeId");
+        Assert.assertTrue(currentNodeId.isCurrentHop());
+        Assert.assertEquals(Long.valueOf(123), currentNodeId.getValue(trpt, 0));
+        Assert.assertEquals(Long.valueOf(234), currentNodeId.getValue(trpt, 1));
+        Assert.assertNull(currentNodeId.getValue(new TelemetryReport(TestTelemetryReports.DROP_RPT), 0));
+        try {
+            HopPath.parse("intHdr.mdStackHdr.hops[0].latency");
+            Assert.fail("Parsed an unknown hop field");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e.getMessage());
+        }
+    }
+
+    /**
+     * Tests that every field of the compiled header layouts reads the value of the report JSON.
+     */
+    @Test
+    public void headerLayoutsMatchJson() {
+        final byte[][] fixtures = {TestTelemetryReports.DROP_RPT, TestTelemetryReports.UDP4_2HOPS,
+                TestTelemetryReports.TCP4_2HOPS, TestTelemetryReports.UDP6_2HOPS, TestTelemetryReports.TCP6_2HOPS};
+        for (final byte[] fixture : fixtures) {
+            final JsonObject trptJson = new TelemetryReport(fixture).toJson();
+            for (final String path : HeaderLayouts.getPaths()) {
+                final String[] tokens = path.split("\\.");
+                JsonObject header = trptJson;
+                for (int i = 0; header != null && i < tokens.length - 1; i++) {
+                    header = header.getAsJsonObject(tokens[i]);
+                }
+                HeaderLayout.Field located = null;
+                int offset = -1;
+                for (final HeaderLayout.Field field : HeaderLayouts.resolve(path)) {
+                    if (field.locate(fixture) >= 0) {
+                        Assert.assertNull(path, located);
+                        located = field;
+                        offset = field.locate(fixture);
+                    }
+                }
+                Assert.assertEquals(path, header == null, located == null);
+                if (located != null) {
+                    final String expected = header.get(tokens[tokens.length - 1]).getAsString();
+                    final String actual = located.getType() == HeaderLayout.Type.UNSIGNED
+                            ? Long.toString(located.getLong(fixture, offset)) : located.getString(fixture, offset);
+                    Assert.assertEquals(path, expected, actual);
+                }
+            }
+        }
+        Assert.assertNull(HeaderLayouts.resolve("telemRptHdr.repMdBits"));
+        Assert.assertNull(HeaderLayouts.resolve("intHdr.mdStackHdr.origMac"));
+        Assert.assertEquals(2, HeaderLayouts.resolve("ipHdr.srcAddr").length);
+
+        // Fields not on byte boundaries and vendor specific layouts
+        final HeaderLayout layout = HeaderLayout.builder("vendorHdr", bytes -> 1)
+                .field("flag", 3, 1)
+                .field("span", 4, 60)
+                .field("id", 8, 16, HeaderLayout.Type.HEX)
+                .build();
+        final byte[] bytes = {0, 0x1f, (byte) 0xab, (byte) 0xcd, 0, 0, 0, 0, 0x01};
+        Assert.assertEquals(9, layout.getLength() + 1);
+        Assert.assertEquals(1, layout.getField("flag").getLong(bytes, 1));
+        Assert.assertEquals(0xfabcd0000000001L, layout.getField("span").getLong(bytes, 1));
+        Assert.assertEquals("abcd", layout.getField("id").getString(bytes, 1));
+        Assert.assertEquals(-1, layout.locate(Arrays.copyOf(bytes, 8)));
+        try {
+            HeaderLayout.builder("vendorHdr", bytes1 -> 0).field("addr", 4, 32, HeaderLayout.Type.ADDRESS);
+            Assert.fail("Built an address not on a byte boundary");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e.getMessage());
+        }
+    }
+
+    /**
+     * Tests that the header layouts and the raw fields read through them take fields of bytes 128 and above as
+     * unsigned, setting every bit of each field in turn.
+     */
+    @Test
+    public void headerLayoutsReadHighBytesUnsigned() {
+        final byte[][] fixtures = {TestTelemetryReports.DROP_RPT, TestTelemetryReports.UDP4_2HOPS,
+                TestTelemetryReports.TCP4_2HOPS, TestTelemetryReports.UDP6_2HOPS, TestTelemetryReports.TCP6_2HOPS};
+        int checked = 0;
+        for (final byte[] fixture : fixtures) {
+            for (final HeaderLayout layout : HeaderLayouts.getLayouts()) {
+                final int offset = layout.locate(fixture);
+                if (offset < 0) {
+                    continue;
+                }
+                for (final HeaderLayout.Field field : layout.getFields()) {
+                    final byte[] bytes = fixture.clone();
+                    for (int bit = field.getBitOffset(); bit < field.getBitOffset() + field.getBitWidth(); bit++) {
+                        bytes[offset + bit / 8] |= 0x80 >>> (bit % 8);
+                    }
+                    // Setting the fields locating headers such as inType may move or remove the header
+                    if (layout.locate(bytes) != offset) {
+                        continue;
+                    }
+                    RawField rawField = null;
+                    for (final RawField candidate : RawField.values()) {
+                        if (candidate.getPath().equals(field.getPath())) {
+                            rawField = candidate;
+                        }
+                    }
+                    if (field.getType() == HeaderLayout.Type.UNSIGNED) {
+                        final long ones = field.getBitWidth() == 64 ? -1L : (1L << field.getBitWidth()) - 1;
+                        Assert.assertEquals(field.getPath(), ones, field.getLong(bytes, offset));
+                        if (rawField != null) {
+                            Assert.assertEquals(field.getPath(), ones, rawField.getLow(bytes, offset));
+                        }
+                    } else if (rawField != null) {
+                        final boolean isIpv4 = field.getBitWidth() == 32;
+                        Assert.assertEquals(field.getPath(), isIpv4 ? 0 : -1L, rawField.getHigh(bytes, offset));
+                        Assert.assertEquals(field.getPath(), isIpv4 ? 0xffffffffffffL : -1L,
+                                rawField.getLow(bytes, offset));
+                    }
+                    checked++;
+                }
+            }
+        }
+        Assert.assertTrue(checked > 0);
+    }
+
     private void validateBytes(final TelemetryReport trpt) {
         final byte[] trptBytes = trpt.getBytes();
         final TelemetryReport newTrpt = new TelemetryReport(trptBytes);
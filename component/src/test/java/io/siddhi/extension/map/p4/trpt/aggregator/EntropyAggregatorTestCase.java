@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.aggregator;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Tests for p4trpt:entropy over packet reports mapped by the p4-trpt mapper from an inMemory source.
+ */
+public class EntropyAggregatorTestCase {
+
+    private static final int BATCH_SIZE = 64 * 20;
+
+    private SiddhiAppFixture fixture;
+
+    @BeforeMethod
+    public void setUp() {
+        fixture = new SiddhiAppFixture();
+        fixture.start("entropyQuery",
+            "@App:name('EntropyAggregator')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(telemRpt='telemRpt')))\n" +
+            "define stream trptStream (telemRpt object);\n" +
+            "@info(name='entropyQuery')\n" +
+            "from trptStream#window.lengthBatch(%d)\n" +
+            "select p4trpt:entropy(telemRpt, 'protoHdr.dstPort', 512) as portEntropy,\n" +
+            "    p4trpt:entropy(telemRpt, 'ipHdr.srcAddr') as srcEntropy\n" +
+            "insert into entropyStream;\n",
+                BATCH_SIZE);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that the entropy of uniformly spread destination ports is estimated for each batch while a single
+     * source address has none.
+     */
+    @Test
+    public void testUniformPorts() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            publish(i % 64);
+        }
+        // Reports are mapped and batched on the publishing thread
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 1);
+        Assert.assertEquals((Double) events.get(0)[0], Math.log(64), 0.3);
+        Assert.assertEquals((Double) events.get(0)[1], 0.0, 0.001);
+    }
+
+    /**
+     * Tests that reports without the field are ignored and that each batch starts from an empty sketch.
+     */
+    @Test
+    public void testSingleValueBatches() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            publish(i % 64);
+        }
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (i % 2 == 0) {
+                fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+            } else {
+                publish(53);
+            }
+        }
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 2);
+        Assert.assertEquals((Double) events.get(1)[0], 0.0, 0.001);
+        Assert.assertEquals((Double) events.get(1)[1], 0.0, 0.001);
+    }
+
+    private void publish(final int dstPort) {
+        final byte[] bytes = TestTelemetryReports.UDP4_2HOPS.clone();
+        ByteBuffer.wrap(bytes).putShort(RawReport.getProtoHdrOffset(bytes) + 2, (short) dstPort);
+        fixture.publish(bytes);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.function;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for p4trpt:classify over reports mapped by the p4-trpt mapper from an inMemory source.
+ */
+public class ClassifyFunctionTestCase {
+
+    private static final List<String> RULES = Arrays.asList(
+            "# Tenants",
+            "192.168.1.0/24 * * 1000-2000 udp low-ports",
+            "* 0:0:0:0:0:1:1:0/112 * * * tenant-v6",
+            "192.168.1.2/32 192.168.1.10/32 6680 5792 udp tenant-a");
+
+    private SiddhiAppFixture fixture;
+    private Path rulesFile;
+
+    private void start(final long reloadInterval) throws IOException {
+        rulesFile = Files.createTempFile("classify", ".rules");
+        Files.write(rulesFile, RULES, StandardCharsets.UTF_8);
+        fixture = new SiddhiAppFixture();
+        fixture.start("classifyQuery",
+            "@App:name('ClassifyFunction')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(telemRpt='telemRpt')))\n" +
+            "define stream trptStream (telemRpt object);\n" +
+            "@info(name='classifyQuery')\n" +
+            "from trptStream\n" +
+            "select p4trpt:classify(telemRpt, '%s', %d) as tenant\n" +
+            "insert into tenantStream;\n",
+                rulesFile.toString().replace("\\", "/"), reloadInterval);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        fixture.shutdown();
+        Files.deleteIfExists(rulesFile);
+    }
+
+    /**
+     * Tests that each report is labelled by the first matching rule, drop reports having no label.
+     */
+    @Test
+    public void testFirstMatchingRule() throws IOException {
+        start(0);
+        publish(TestTelemetryReports.UDP4_2HOPS);
+        publish(TestTelemetryReports.TCP6_2HOPS);
+        publish(TestTelemetryReports.DROP_RPT);
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 3);
+        Assert.assertEquals(events.get(0), new Object[]{"tenant-a"});
+        Assert.assertEquals(events.get(1), new Object[]{"tenant-v6"});
+        Assert.assertEquals(events.get(2), new Object[]{null});
+    }
+
+    /**
+     * Tests that changes to the rule file take effect once reloaded while a file failing to compile is ignored.
+     */
+    @Test
+    public void testReload() throws IOException, InterruptedException {
+        start(50);
+        publish(TestTelemetryReports.UDP4_2HOPS);
+        writeRules(Arrays.asList("192.168.1.2/33 * * * udp broken"), 10000);
+        Thread.sleep(200);
+        publish(TestTelemetryReports.UDP4_2HOPS);
+        writeRules(Arrays.asList("* * * 5792 udp port-5792"), 20000);
+        // Reloads run on the app's scheduler, so reports are classified until the new rules are seen
+        List<Object[]> events = fixture.getEvents();
+        for (int i = 0; i < 50 && !"port-5792".equals(events.get(events.size() - 1)[0]); i++) {
+            Thread.sleep(100);
+            publish(TestTelemetryReports.UDP4_2HOPS);
+            events = fixture.getEvents();
+        }
+        Assert.assertEquals(events.get(0), new Object[]{"tenant-a"});
+        Assert.assertEquals(events.get(1), new Object[]{"tenant-a"});
+        Assert.assertEquals(events.get(events.size() - 1), new Object[]{"port-5792"});
+    }
+
+    // Rewrites the rules with a modification time moved on so that the change is seen whatever the file system
+    private void writeRules(final List<String> lines, final long modifiedOffset) throws IOException {
+        Files.write(rulesFile, lines, StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(rulesFile, FileTime.fromMillis(System.currentTimeMillis() + modifiedOffset));
+    }
+
+    private void publish(final byte[] report) {
+        fixture.publish(report.clone());
+    }
+}
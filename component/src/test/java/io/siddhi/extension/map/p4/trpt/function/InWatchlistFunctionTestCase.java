@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.function;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.util.MappedWatchlist;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for p4trpt:inWatchlist over reports mapped by the p4-trpt mapper from an inMemory source.
+ */
+public class InWatchlistFunctionTestCase {
+
+    private SiddhiAppFixture fixture;
+    private Path watchlistDir;
+    private Path watchlistFile;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        watchlistDir = Files.createTempDirectory("watchlist");
+        watchlistFile = watchlistDir.resolve("bad-ips.txt");
+        Files.write(watchlistFile, Arrays.asList("# Bad addresses", "192.168.1.2", "0:0:0:0:0:1:1:1d"),
+                StandardCharsets.UTF_8);
+        final String path = watchlistFile.toString().replace("\\", "/");
+        fixture = new SiddhiAppFixture();
+        fixture.start("watchlistQuery",
+            "@App:name('InWatchlistFunction')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(telemRpt='telemRpt')))\n" +
+            "define stream trptStream (telemRpt object);\n" +
+            "@info(name='watchlistQuery')\n" +
+            "from trptStream\n" +
+            "select p4trpt:inWatchlist(telemRpt, 'ipHdr.srcAddr', '%s') as srcListed,\n" +
+            "    p4trpt:inWatchlist(telemRpt, 'ipHdr.dstAddr', '%s', 0) as dstListed\n" +
+            "insert into watchlistStream;\n",
+                path, path);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        fixture.shutdown();
+        Files.deleteIfExists(Paths.get(watchlistFile + MappedWatchlist.INDEX_SUFFIX));
+        Files.deleteIfExists(watchlistFile);
+        Files.deleteIfExists(watchlistDir);
+    }
+
+    /**
+     * Tests that listed IPv4 and IPv6 addresses are found through the index compiled beside the watchlist, drop
+     * reports never being listed.
+     */
+    @Test
+    public void testListedAddresses() {
+        Assert.assertTrue(Files.exists(Paths.get(watchlistFile + MappedWatchlist.INDEX_SUFFIX)));
+        fixture.publish(TestTelemetryReports.UDP4_2HOPS.clone());
+        fixture.publish(TestTelemetryReports.UDP6_2HOPS.clone());
+        fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 3);
+        Assert.assertEquals(events.get(0), new Object[]{true, false});
+        Assert.assertEquals(events.get(1), new Object[]{false, true});
+        Assert.assertEquals(events.get(2), new Object[]{false, false});
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.function;
+
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for p4trpt:lpm over reports mapped by the p4-trpt mapper from an inMemory source.
+ */
+public class LpmFunctionTestCase {
+
+    private static final List<String> PREFIXES = Arrays.asList(
+            "# Subscriber groups",
+            "192.168.0.0/16 region-a",
+            "192.168.1.0/24 cmts-1",
+            "192.168.1.2/32 host-2",
+            "0:0:0:0:0:1:1:0/112 v6-lab");
+
+    private SiddhiAppFixture fixture;
+    private Path prefixFile;
+
+    private void start(final String field) throws IOException {
+        prefixFile = Files.createTempFile("lpm", ".prefixes");
+        Files.write(prefixFile, PREFIXES, StandardCharsets.UTF_8);
+        final String path = prefixFile.toString().replace("\\", "/");
+        fixture = new SiddhiAppFixture();
+        fixture.start("lpmQuery",
+            "@App:name('LpmFunction')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(telemRpt='telemRpt')))\n" +
+            "define stream trptStream (telemRpt object);\n" +
+            "@info(name='lpmQuery')\n" +
+            "from trptStream\n" +
+            "select p4trpt:lpm(telemRpt, '%s', '%s', 0) as srcGroup,\n" +
+            "    p4trpt:lpm(telemRpt, 'ipHdr.dstAddr', '%s') as dstGroup\n" +
+            "insert into groupedStream;\n",
+                field, path, path);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        fixture.shutdown();
+        Files.deleteIfExists(prefixFile);
+    }
+
+    /**
+     * Tests that IPv4 and IPv6 addresses are labelled by their longest matching prefix, drop reports having no
+     * label.
+     */
+    @Test
+    public void testLongestPrefix() throws IOException {
+        start("ipHdr.srcAddr");
+        fixture.publish(TestTelemetryReports.UDP4_2HOPS.clone());
+        fixture.publish(TestTelemetryReports.UDP6_2HOPS.clone());
+        fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 3);
+        Assert.assertEquals(events.get(0), new Object[]{"host-2", "cmts-1"});
+        Assert.assertEquals(events.get(1), new Object[]{"v6-lab", "v6-lab"});
+        Assert.assertEquals(events.get(2), new Object[]{null, null});
+    }
+
+    /**
+     * Tests that fields other than addresses are rejected.
+     */
+    @Test(expectedExceptions = {SiddhiAppCreationException.class, SiddhiAppValidationException.class})
+    public void testNonAddressField() throws IOException {
+        start("protoHdr.dstPort");
+    }
+}
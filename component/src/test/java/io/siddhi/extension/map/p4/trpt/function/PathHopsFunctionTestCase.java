@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.function;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.util.PathInterner;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+/**
+ * Tests for the 'pathId' mapping of the p4-trpt mapper and p4trpt:pathHops over reports from an inMemory source.
+ */
+public class PathHopsFunctionTestCase {
+
+    private SiddhiAppFixture fixture;
+
+    @BeforeMethod
+    public void setUp() {
+        fixture = new SiddhiAppFixture();
+        fixture.start("pathQuery",
+            "@App:name('PathHopsFunction')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(pathId='pathId')))\n" +
+            "define stream trptStream (pathId int);\n" +
+            "@info(name='pathQuery')\n" +
+            "from trptStream\n" +
+            "select pathId, p4trpt:pathHops(pathId) as hops\n" +
+            "insert into pathStream;\n");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that reports taking the same path map to the same path ID, which depends only on the node IDs, and that
+     * each path ID resolves back to its hops in order.
+     */
+    @Test
+    public void testPathIdResolvesToHops() {
+        fixture.publish(TestTelemetryReports.UDP4_2HOPS.clone());
+        fixture.publish(TestTelemetryReports.TCP6_2HOPS.clone());
+        fixture.publish(TestTelemetryReports.withHopMetadata(TestTelemetryReports.UDP4_2HOPS,
+                0x8000, new int[]{7}, new int[]{8}, new int[]{9}));
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 3);
+        final int pathId = PathInterner.getShared().intern(123, 234);
+        Assert.assertEquals(events.get(0), new Object[]{pathId, "[123,234]"});
+        Assert.assertEquals(events.get(1), new Object[]{pathId, "[123,234]"});
+        Assert.assertEquals(events.get(2)[1], "[7,8,9]");
+        Assert.assertNotEquals(events.get(2)[0], pathId);
+    }
+
+    /**
+     * Tests that reports without INT node IDs map to a null path ID, which resolves to null hops.
+     */
+    @Test
+    public void testNoPath() {
+        fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        fixture.publish(TestTelemetryReports.withHopMetadata(TestTelemetryReports.UDP4_2HOPS,
+                0x2000, new int[]{7}, new int[]{8}));
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 2);
+        Assert.assertEquals(events.get(0), new Object[]{null, null});
+        Assert.assertEquals(events.get(1), new Object[]{null, null});
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.function;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+import io.siddhi.extension.map.p4.trpt.util.SubscriberLoader;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for p4trpt:subscriber over reports mapped by the p4-trpt mapper from an inMemory source.
+ */
+public class SubscriberFunctionTestCase {
+
+    private SiddhiAppFixture fixture;
+    private Path subscriberFile;
+
+    private void start(final String subscriberArgs) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("subscriberQuery",
+            "@App:name('SubscriberFunction')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(telemRpt='telemRpt')))\n" +
+            "define stream trptStream (telemRpt object);\n" +
+            "@info(name='subscriberQuery')\n" +
+            "from trptStream\n" +
+            "select p4trpt:subscriber(telemRpt, %s) as subscriber\n" +
+            "insert into enrichedStream;\n",
+                subscriberArgs);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        fixture.shutdown();
+        if (subscriberFile != null) {
+            Files.deleteIfExists(subscriberFile);
+            subscriberFile = null;
+        }
+    }
+
+    /**
+     * Tests that reports are enriched with the attributes of the subscriber owning the originating MAC address
+     * as read by the default file loader, unknown MAC addresses and drop reports having none.
+     */
+    @Test
+    public void testFileLoader() throws IOException {
+        subscriberFile = Files.createTempFile("subscribers", ".txt");
+        Files.write(subscriberFile, Arrays.asList("# CPE subscribers", "00:00:00:00:01:01 account=1234 tier=gold"),
+                StandardCharsets.UTF_8);
+        start("'" + subscriberFile.toString().replace("\\", "/") + "'");
+        publish(TestTelemetryReports.UDP4_2HOPS);
+        publish(withOrigMacLow(TestTelemetryReports.UDP4_2HOPS, 2));
+        publish(TestTelemetryReports.DROP_RPT);
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 3);
+        Assert.assertEquals(events.get(0), new Object[]{"account=1234 tier=gold"});
+        Assert.assertEquals(events.get(1), new Object[]{null});
+        Assert.assertEquals(events.get(2), new Object[]{null});
+    }
+
+    /**
+     * Tests that a custom loader is used and that cached attributes, including those of unknown MAC addresses,
+     * are returned without reaching the loader again.
+     */
+    @Test
+    public void testCustomLoaderCached() {
+        CountingLoader.LOADS.set(0);
+        start("'tier=silver', 1000, 60000, 600000, '" + CountingLoader.class.getName() + "'");
+        for (int i = 0; i < 5; i++) {
+            publish(TestTelemetryReports.UDP4_2HOPS);
+            publish(withOrigMacLow(TestTelemetryReports.UDP4_2HOPS, 2));
+        }
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 10);
+        Assert.assertEquals(events.get(8), new Object[]{"tier=silver 00:00:00:00:01:01"});
+        Assert.assertEquals(events.get(9), new Object[]{null});
+        Assert.assertEquals(CountingLoader.LOADS.get(), 2);
+    }
+
+    // Returns a copy of a packet report with the low byte of its originating MAC address replaced
+    private static byte[] withOrigMacLow(final byte[] report, final int lowByte) {
+        final byte[] bytes = report.clone();
+        final int intOffset = RawReport.getIntHdrOffset(bytes);
+        final int macOffset = intOffset + RawReport.INT_FIXED_HDR_LEN
+                + RawReport.getIntStackWords(bytes, intOffset) * 4;
+        bytes[macOffset + 5] = (byte) lowByte;
+        return bytes;
+    }
+
+    private void publish(final byte[] report) {
+        fixture.publish(report.clone());
+    }
+
+    /**
+     * Loader knowing only the MAC address 00:00:00:00:01:01, counting its loads.
+     */
+    public static class CountingLoader implements SubscriberLoader {
+
+        static final AtomicInteger LOADS = new AtomicInteger();
+
+        private final String attributes;
+
+        public CountingLoader(final String source) {
+            this.attributes = source;
+        }
+
+        @Override
+        public String load(final long mac) {
+            LOADS.incrementAndGet();
+            return mac == 0x101L ? attributes + " 00:00:00:00:01:01" : null;
+        }
+    }
+}
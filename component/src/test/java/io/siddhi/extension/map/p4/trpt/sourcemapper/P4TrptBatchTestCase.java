@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.sourcemapper;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for batches of reports given to the p4-trpt mapper as an array of byte arrays from an inMemory source.
+ */
+public class P4TrptBatchTestCase {
+
+    private static final byte[][] BATCH = {TestTelemetryReports.DROP_RPT, TestTelemetryReports.UDP4_2HOPS,
+            TestTelemetryReports.TCP4_2HOPS, TestTelemetryReports.DROP_RPT};
+
+    private SiddhiAppFixture fixture;
+    // The number of events received by the end of each callback
+    private List<Integer> callbackEnds;
+
+    private void start(final String mapOptions) {
+        fixture = new SiddhiAppFixture();
+        callbackEnds = new ArrayList<>();
+        fixture.start("batchQuery", () -> callbackEnds.add(fixture.getEvents().size()),
+            "@App:name('P4TrptBatch')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', %s\n" +
+            "    @attributes(inType='telemRptHdr.inType', dstPort='protoHdr.dstPort')))\n" +
+            "define stream trptStream (inType long, dstPort long);\n" +
+            "@info(name='batchQuery')\n" +
+            "from trptStream\n" +
+            "select inType, dstPort\n" +
+            "insert into mappedStream;\n",
+                mapOptions);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that every report of a batch is mapped and that the events are sent downstream together.
+     */
+    @Test
+    public void testBatchSentTogether() {
+        start("");
+        fixture.publish(BATCH);
+        Assert.assertEquals(callbackEnds, Collections.singletonList(BATCH.length));
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.get(0)[0], 2L);
+        Assert.assertNull(events.get(0)[1]);
+        Assert.assertEquals(events.get(1)[1], dstPort(TestTelemetryReports.UDP4_2HOPS));
+        Assert.assertEquals(events.get(2)[1], dstPort(TestTelemetryReports.TCP4_2HOPS));
+    }
+
+    /**
+     * Tests that the reports of a batch surviving the filter are sent downstream together, and that a batch
+     * without survivors sends nothing.
+     */
+    @Test
+    public void testFilteredBatchSentTogether() {
+        start("filter='inType != 2',");
+        fixture.publish(BATCH);
+        Assert.assertEquals(callbackEnds, Collections.singletonList(2));
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.get(0)[1], dstPort(TestTelemetryReports.UDP4_2HOPS));
+        Assert.assertEquals(events.get(1)[1], dstPort(TestTelemetryReports.TCP4_2HOPS));
+
+        fixture.publish(new byte[][]{TestTelemetryReports.DROP_RPT});
+        Assert.assertEquals(callbackEnds.size(), 1);
+    }
+
+    private static long dstPort(final byte[] bytes) {
+        return new TelemetryReport(bytes).protoHdr.getDstPort();
+    }
+}
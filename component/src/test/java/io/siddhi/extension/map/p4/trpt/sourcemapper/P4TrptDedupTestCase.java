@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.sourcemapper;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Tests for the p4-trpt mapper's 'dedup' option dropping copies of reports from an inMemory source.
+ */
+public class P4TrptDedupTestCase {
+
+    private SiddhiAppFixture fixture;
+
+    private void start(final String mapOptions) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("dedupQuery",
+            "@App:name('P4TrptDedup')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', %s\n" +
+            "    @attributes(inType='telemRptHdr.inType', seqNo='telemRptHdr.seqNo', dstPort='protoHdr.dstPort')))\n" +
+            "define stream trptStream (inType long, seqNo long, dstPort long);\n" +
+            "@info(name='dedupQuery')\n" +
+            "from trptStream\n" +
+            "select inType, seqNo, dstPort\n" +
+            "insert into uniqueStream;\n",
+                mapOptions);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that copies of packet and drop reports are dropped while reports of another flow or sequence number
+     * are mapped.
+     */
+    @Test
+    public void testCopiesDropped() {
+        start("dedup='true',");
+        final byte[] nextSeqNo = TestTelemetryReports.UDP4_2HOPS.clone();
+        nextSeqNo[2]++;
+        final byte[] otherFlow = TestTelemetryReports.UDP4_2HOPS.clone();
+        ByteBuffer.wrap(otherFlow).putShort(RawReport.getProtoHdrOffset(otherFlow) + 2, (short) 53);
+        publish(TestTelemetryReports.UDP4_2HOPS);
+        publish(TestTelemetryReports.UDP4_2HOPS);
+        publish(otherFlow);
+        publish(nextSeqNo);
+        publish(TestTelemetryReports.DROP_RPT);
+        publish(TestTelemetryReports.DROP_RPT);
+        publish(TestTelemetryReports.UDP4_2HOPS);
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 4);
+        Assert.assertEquals(events.get(0), new Object[]{4L, 1089L, 5792L});
+        Assert.assertEquals(events.get(1), new Object[]{4L, 1089L, 53L});
+        Assert.assertEquals(events.get(2), new Object[]{4L, 1093L, 5792L});
+        Assert.assertEquals(events.get(3)[0], 2L);
+    }
+
+    /**
+     * Tests that reports are mapped again once forgotten after twice the dedup horizon.
+     */
+    @Test
+    public void testHorizon() throws InterruptedException {
+        start("dedup='true', dedup.horizon='50',");
+        publish(TestTelemetryReports.UDP4_2HOPS);
+        publish(TestTelemetryReports.UDP4_2HOPS);
+        Assert.assertEquals(fixture.getEvents().size(), 1);
+        Thread.sleep(150);
+        publish(TestTelemetryReports.UDP4_2HOPS);
+        Assert.assertEquals(fixture.getEvents().size(), 2);
+    }
+
+    /**
+     * Tests that copies are mapped when not deduplicating.
+     */
+    @Test
+    public void testDisabledByDefault() {
+        start("");
+        publish(TestTelemetryReports.UDP4_2HOPS);
+        publish(TestTelemetryReports.UDP4_2HOPS);
+        Assert.assertEquals(fixture.getEvents().size(), 2);
+    }
+
+    private void publish(final byte[] report) {
+        fixture.publish(report.clone());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.sourcemapper;
+
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+/**
+ * Tests for the p4-trpt mapper's 'filter' option over single reports from an inMemory source.
+ */
+public class P4TrptFilterTestCase {
+
+    private static final byte[][] REPORTS = {TestTelemetryReports.DROP_RPT, TestTelemetryReports.UDP4_2HOPS,
+            TestTelemetryReports.TCP4_2HOPS, TestTelemetryReports.UDP6_2HOPS, TestTelemetryReports.TCP6_2HOPS};
+
+    private SiddhiAppFixture fixture;
+
+    private void start(final String filter) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("filterQuery",
+            "@App:name('P4TrptFilter')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', filter='%s',\n" +
+            "    @attributes(inType='telemRptHdr.inType', nextProto='ipHdr.nextProto')))\n" +
+            "define stream trptStream (inType long, nextProto long);\n" +
+            "@info(name='filterQuery')\n" +
+            "from trptStream\n" +
+            "select inType, nextProto\n" +
+            "insert into filteredStream;\n",
+                filter);
+        for (final byte[] report : REPORTS) {
+            fixture.publish(report.clone());
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests filtering by report type with a field addressed by its name alone.
+     */
+    @Test
+    public void testDropReports() {
+        start("inType == 2");
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 1);
+        Assert.assertEquals(events.get(0), new Object[]{2L, null});
+    }
+
+    /**
+     * Tests combining comparisons against integers and IPv4 addresses.
+     */
+    @Test
+    public void testProtocolAndAddress() {
+        start("protoHdr.dstPort == 5792 and srcAddr == 192.168.1.2");
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 2);
+        Assert.assertEquals(events.get(0), new Object[]{4L, 17L});
+        Assert.assertEquals(events.get(1), new Object[]{4L, 17L});
+    }
+
+    /**
+     * Tests comparisons against IPv6 addresses combined with or and parentheses.
+     */
+    @Test
+    public void testIpv6Address() {
+        start("(dstAddr == 0:0:0:0:0:1:1:1d and nextProto == 17) or inType == 2");
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 2);
+        Assert.assertEquals(events.get(0)[0], 2L);
+        Assert.assertEquals(events.get(1), new Object[]{5L, 17L});
+    }
+
+    /**
+     * Tests that comparisons against fields absent from a report are false, so negate to true.
+     */
+    @Test
+    public void testAbsentFields() {
+        start("not (dstPort == 5792)");
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 1);
+        Assert.assertEquals(events.get(0)[0], 2L);
+    }
+
+    /**
+     * Tests that an unknown field is rejected.
+     */
+    @Test(expectedExceptions = {SiddhiAppCreationException.class, SiddhiAppValidationException.class})
+    public void testUnknownField() {
+        start("ttl == 64");
+    }
+}
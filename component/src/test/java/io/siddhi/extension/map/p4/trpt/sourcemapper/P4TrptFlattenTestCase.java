@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.sourcemapper;
+
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for the p4-trpt mapper's flatten='hops' option mapping each INT hop of a report to an event.
+ */
+public class P4TrptFlattenTestCase {
+
+    private SiddhiAppFixture fixture;
+    // The number of events received by the end of each callback
+    private List<Integer> callbackEnds;
+
+    private void start(final String mapOptions) {
+        fixture = new SiddhiAppFixture();
+        callbackEnds = new ArrayList<>();
+        fixture.start("flattenQuery", () -> callbackEnds.add(fixture.getEvents().size()),
+            "@App:name('P4TrptFlatten')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', %s\n" +
+            "    @attributes(srcAddr='ipHdr.srcAddr', hopIndex='hopIndex',\n" +
+            "        nodeId='intHdr.mdStackHdr.hops[i].nodeId',\n" +
+            "        hopLatency='intHdr.mdStackHdr.hops[i].hopLatency')))\n" +
+            "define stream hopStream (srcAddr string, hopIndex int, nodeId long, hopLatency long);\n" +
+            "@info(name='flattenQuery')\n" +
+            "from hopStream\n" +
+            "select *\n" +
+            "insert into flatStream;\n",
+                mapOptions);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that each hop of a report is mapped to an event with its index and metadata, the events of a report
+     * being sent as one batch, while drop reports are not mapped.
+     */
+    @Test
+    public void testEventPerHop() {
+        start("flatten='hops',");
+        fixture.publish(TestTelemetryReports.withHopMetadata(TestTelemetryReports.UDP4_2HOPS,
+                0x8000 | 0x2000, new int[]{123, 500}, new int[]{234, 900}, new int[]{345, 100}));
+        fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        fixture.publish(TestTelemetryReports.UDP6_2HOPS.clone());
+        Assert.assertEquals(callbackEnds, Arrays.asList(3, 5));
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.get(0), new Object[]{"192.168.1.2", 0, 123L, 500L});
+        Assert.assertEquals(events.get(1), new Object[]{"192.168.1.2", 1, 234L, 900L});
+        Assert.assertEquals(events.get(2), new Object[]{"192.168.1.2", 2, 345L, 100L});
+        Assert.assertEquals(events.get(3), new Object[]{"0:0:0:0:0:1:1:2", 0, 123L, null});
+        Assert.assertEquals(events.get(4), new Object[]{"0:0:0:0:0:1:1:2", 1, 234L, null});
+    }
+
+    /**
+     * Tests that the current hop mappings are rejected without flatten='hops'.
+     */
+    @Test(expectedExceptions = {SiddhiAppCreationException.class, SiddhiAppValidationException.class})
+    public void testCurrentHopRequiresFlatten() {
+        start("");
+    }
+}
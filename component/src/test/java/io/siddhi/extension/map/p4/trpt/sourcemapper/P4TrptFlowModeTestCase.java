@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.sourcemapper;
+
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+import io.siddhi.extension.map.p4.trpt.util.FlowCache;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for the p4-trpt mapper's 'flow' mode mapping flow records exported from the reports of an inMemory source.
+ */
+public class P4TrptFlowModeTestCase {
+
+    private SiddhiAppFixture fixture;
+
+    private void start(final String mapOptions, final String attributes) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("flowQuery",
+            "@App:name('P4TrptFlowMode')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', mode='flow', %s\n" +
+            "    @attributes(%s)))\n" +
+            "define stream flowStream (srcAddr string, dstPort int, nextProto int, packets long, bytes long,\n" +
+            "    exportReason string);\n" +
+            "@info(name='flowQuery')\n" +
+            "from flowStream\n" +
+            "select *\n" +
+            "insert into exportedStream;\n",
+                mapOptions, attributes);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that one event per flow is mapped once the flow is idle, even when no further reports arrive.
+     */
+    @Test
+    public void testIdleFlowsMapped() throws InterruptedException {
+        start("flow.active.timeout='60000', flow.idle.timeout='100',",
+                "srcAddr='srcAddr', dstPort='dstPort', nextProto='nextProto', packets='packets', bytes='bytes', "
+                        + "exportReason='exportReason'");
+        for (int i = 0; i < 3; i++) {
+            fixture.publish(TestTelemetryReports.UDP4_2HOPS.clone());
+        }
+        fixture.publish(TestTelemetryReports.TCP4_2HOPS.clone());
+        final byte[] otherFlow = TestTelemetryReports.UDP4_2HOPS.clone();
+        ByteBuffer.wrap(otherFlow).putShort(RawReport.getProtoHdrOffset(otherFlow) + 2, (short) 443);
+        fixture.publish(otherFlow);
+        Assert.assertEquals(fixture.getEvents().size(), 0);
+        final List<Object[]> events = fixture.awaitEvents(2);
+        Assert.assertEquals(events.size(), 2);
+        events.sort((a, b) -> ((Integer) a[1]).compareTo((Integer) b[1]));
+        Assert.assertEquals(events.get(0), new Object[]{"192.168.1.2", 443, 17, 1L, 94L, "idle"},
+                Arrays.toString(events.get(0)));
+        Assert.assertEquals(events.get(1), new Object[]{"192.168.1.2", 5792, 17, 4L, 388L, "idle"},
+                Arrays.toString(events.get(1)));
+    }
+
+    /**
+     * Tests that the options mapping individual reports are rejected in flow mode.
+     */
+    @Test(expectedExceptions = {SiddhiAppCreationException.class, SiddhiAppValidationException.class})
+    public void testFlattenRejected() {
+        start("flatten='hops',", "srcAddr='srcAddr', dstPort='dstPort', nextProto='nextProto', packets='packets', "
+                + "bytes='bytes', exportReason='exportReason'");
+    }
+
+    /**
+     * Tests that a flow.max.flows beyond the flow cache's maximum is rejected.
+     */
+    @Test(expectedExceptions = {SiddhiAppCreationException.class, SiddhiAppValidationException.class})
+    public void testMaxFlowsOverLimitRejected() {
+        start("flow.max.flows='" + (FlowCache.MAX_FLOWS + 1) + "',", "srcAddr='srcAddr', dstPort='dstPort', "
+                + "nextProto='nextProto', packets='packets', bytes='bytes', exportReason='exportReason'");
+    }
+}
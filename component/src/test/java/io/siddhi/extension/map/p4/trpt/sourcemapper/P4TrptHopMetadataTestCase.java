@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.sourcemapper;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+/**
+ * Tests for the p4-trpt mapper's 'intHdr.mdStackHdr.hops[i].field' mappings of INT hop metadata.
+ */
+public class P4TrptHopMetadataTestCase {
+
+    // Node ID, ingress and egress ports, hop latency, queue ID and occupancy
+    private static final int INSTRUCTIONS = 0x8000 | 0x4000 | 0x2000 | 0x1000;
+
+    private SiddhiAppFixture fixture;
+
+    @BeforeMethod
+    public void setUp() {
+        fixture = new SiddhiAppFixture();
+        fixture.start("hopQuery",
+            "@App:name('P4TrptHopMetadata')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt',\n" +
+            "    @attributes(firstNode='intHdr.mdStackHdr.hops[0].nodeId',\n" +
+            "        firstIngressPort='intHdr.mdStackHdr.hops[0].ingressPort',\n" +
+            "        firstHopLatency='intHdr.mdStackHdr.hops[0].hopLatency',\n" +
+            "        firstQueueId='intHdr.mdStackHdr.hops[0].queueId',\n" +
+            "        lastQueue='intHdr.mdStackHdr.hops[1].queueOccupancy',\n" +
+            "        thirdNode='intHdr.mdStackHdr.hops[2].nodeId',\n" +
+            "        firstEgressTime='intHdr.mdStackHdr.hops[0].egressTimestamp')))\n" +
+            "define stream trptStream (firstNode long, firstIngressPort int, firstHopLatency long,\n" +
+            "    firstQueueId int, lastQueue long, thirdNode long, firstEgressTime long);\n" +
+            "@info(name='hopQuery')\n" +
+            "from trptStream\n" +
+            "select *\n" +
+            "insert into hopStream;\n");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that the metadata of each hop is mapped as selected by the instructions, where hops beyond the stack
+     * and fields not selected are null.
+     */
+    @Test
+    public void testHopFields() {
+        fixture.publish(TestTelemetryReports.withHopMetadata(TestTelemetryReports.UDP4_2HOPS,
+                INSTRUCTIONS, new int[]{123, (1 << 16) | 2, 500, (7 << 24) | 40},
+                new int[]{234, (3 << 16) | 4, 900, (1 << 24) | 4000}));
+        fixture.publish(TestTelemetryReports.withHopMetadata(TestTelemetryReports.TCP6_2HOPS,
+                INSTRUCTIONS, new int[]{11, (5 << 16) | 6, 70, (2 << 24) | 8},
+                new int[]{22, (7 << 16) | 8, 90, (3 << 24) | 16}, new int[]{33, 0, 10, 0}));
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 2);
+        Assert.assertEquals(events.get(0), new Object[]{123L, 1, 500L, 7, 4000L, null, null});
+        Assert.assertEquals(events.get(1), new Object[]{11L, 5, 70L, 2, 16L, 33L, null});
+    }
+
+    /**
+     * Tests that only node IDs are mapped from reports whose instructions select nothing else, and that drop
+     * reports have no hop metadata.
+     */
+    @Test
+    public void testNodeIdsOnly() {
+        fixture.publish(TestTelemetryReports.UDP4_2HOPS.clone());
+        fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 2);
+        Assert.assertEquals(events.get(0), new Object[]{123L, null, null, null, null, null, null});
+        Assert.assertEquals(events.get(1), new Object[]{null, null, null, null, null, null, null});
+    }
+}
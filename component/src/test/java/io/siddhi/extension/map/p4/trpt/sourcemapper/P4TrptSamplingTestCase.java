@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.sourcemapper;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the p4-trpt mapper's 'sample.rate' and 'sample.key' options over reports from an inMemory source.
+ */
+public class P4TrptSamplingTestCase {
+
+    private static final int NUM_FLOWS = 200;
+    private static final int REPORTS_PER_FLOW = 3;
+
+    private SiddhiAppFixture fixture;
+
+    private void start(final String mapOptions) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("sampleQuery",
+            "@App:name('P4TrptSampling')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', %s\n" +
+            "    @attributes(inType='telemRptHdr.inType', srcPort='protoHdr.srcPort', sampleRate='sampleRate')))\n" +
+            "define stream trptStream (inType long, srcPort long, sampleRate double);\n" +
+            "@info(name='sampleQuery')\n" +
+            "from trptStream\n" +
+            "select inType, srcPort, sampleRate\n" +
+            "insert into sampledStream;\n",
+                mapOptions);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that flows are kept or dropped as a whole with the rate mapped for each kept report while drop reports
+     * are never sampled.
+     */
+    @Test
+    public void testFlowSampling() {
+        start("sample.rate='0.5',");
+        publishFlows();
+        fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        final List<Object[]> events = fixture.getEvents();
+        final Map<Long, Integer> flowReports = new HashMap<>();
+        for (final Object[] data : events.subList(0, events.size() - 1)) {
+            Assert.assertEquals(data[2], 0.5);
+            flowReports.merge((Long) data[1], 1, Integer::sum);
+        }
+        for (final int count : flowReports.values()) {
+            Assert.assertEquals(count, REPORTS_PER_FLOW);
+        }
+        Assert.assertTrue(flowReports.size() > NUM_FLOWS / 4 && flowReports.size() < NUM_FLOWS * 3 / 4,
+                "Sampled flows - " + flowReports.size());
+        Assert.assertEquals(events.get(events.size() - 1), new Object[]{2L, null, 1.0});
+    }
+
+    /**
+     * Tests that sampling by report keeps a share of the reports of each flow.
+     */
+    @Test
+    public void testReportSampling() {
+        start("sample.rate='0.5', sample.key='report',");
+        publishFlows();
+        final List<Object[]> events = fixture.getEvents();
+        final Map<Long, Integer> flowReports = new HashMap<>();
+        for (final Object[] data : events) {
+            flowReports.merge((Long) data[1], 1, Integer::sum);
+        }
+        final int total = NUM_FLOWS * REPORTS_PER_FLOW;
+        Assert.assertTrue(events.size() > total / 4 && events.size() < total * 3 / 4,
+                "Sampled reports - " + events.size());
+        Assert.assertTrue(flowReports.containsValue(1) || flowReports.containsValue(2));
+    }
+
+    /**
+     * Tests that every report is mapped with a rate of 1.0 when not sampling.
+     */
+    @Test
+    public void testNoSampling() {
+        start("");
+        publishFlows();
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), NUM_FLOWS * REPORTS_PER_FLOW);
+        Assert.assertEquals(events.get(0)[2], 1.0);
+    }
+
+    // Publishes the reports of each flow, distinguished by source port, with a distinct sequence number each
+    private void publishFlows() {
+        int seqNo = 0;
+        for (int report = 0; report < REPORTS_PER_FLOW; report++) {
+            for (int flow = 0; flow < NUM_FLOWS; flow++) {
+                final byte[] bytes = TestTelemetryReports.UDP4_2HOPS.clone();
+                ByteBuffer.wrap(bytes).putShort(RawReport.getProtoHdrOffset(bytes), (short) (1024 + flow));
+                seqNo++;
+                bytes[1] = (byte) ((bytes[1] & 0xc0) | ((seqNo >>> 10) & 0x3f));
+                bytes[2] = (byte) (seqNo >>> 2);
+                bytes[3] = (byte) ((bytes[3] & 0x3f) | ((seqNo & 0x3) << 6));
+                fixture.publish(bytes);
+            }
+        }
+    }
+}
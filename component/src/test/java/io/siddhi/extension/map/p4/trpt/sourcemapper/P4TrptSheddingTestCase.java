@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.sourcemapper;
+
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Tests for the p4-trpt mapper's 'shed.latency' and 'shed.policy' options over reports from an inMemory source.
+ */
+public class P4TrptSheddingTestCase {
+
+    private static final int NUM_FLOWS = 400;
+    private static final long CALLBACK_MILLIS = 5;
+
+    private SiddhiAppFixture fixture;
+
+    private void start(final String mapOptions) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("shedQuery", P4TrptSheddingTestCase::consumeSlowly,
+            "@App:name('P4TrptShedding')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', %s\n" +
+            "    @attributes(inType='telemRptHdr.inType', sampleRate='sampleRate')))\n" +
+            "define stream trptStream (inType long, sampleRate double);\n" +
+            "@info(name='shedQuery')\n" +
+            "from trptStream\n" +
+            "select inType, sampleRate\n" +
+            "insert into keptStream;\n",
+                mapOptions);
+    }
+
+    // A slow consumer blocking the publishing thread
+    private static void consumeSlowly() {
+        try {
+            Thread.sleep(CALLBACK_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that packet reports are shed while the consumer is slower than the shed latency, with the kept
+     * fraction mapped as the sample rate, while drop reports outside the policy are never shed.
+     */
+    @Test
+    public void testPacketsShed() {
+        start("shed.latency='1',");
+        for (int flow = 0; flow < NUM_FLOWS; flow++) {
+            final byte[] bytes = TestTelemetryReports.UDP4_2HOPS.clone();
+            ByteBuffer.wrap(bytes).putShort(RawReport.getProtoHdrOffset(bytes), (short) (1024 + flow));
+            fixture.publish(bytes);
+            if (flow % 10 == 0) {
+                fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+            }
+        }
+        final List<Object[]> events = fixture.getEvents();
+        int packets = 0;
+        int drops = 0;
+        double minPacketRate = 1.0;
+        for (final Object[] data : events) {
+            if ((Long) data[0] == 2L) {
+                drops++;
+                Assert.assertEquals(data[1], 1.0);
+            } else {
+                packets++;
+                minPacketRate = Math.min(minPacketRate, (Double) data[1]);
+            }
+        }
+        Assert.assertEquals(drops, NUM_FLOWS / 10);
+        Assert.assertTrue(packets > 0 && packets < NUM_FLOWS, "Kept packet reports - " + packets);
+        Assert.assertTrue(minPacketRate < 1.0, "Lowest sample rate - " + minPacketRate);
+    }
+
+    /**
+     * Tests that no reports are shed when the consumer keeps within the shed latency.
+     */
+    @Test
+    public void testNothingShedWithinLatency() {
+        start("shed.latency='60000', shed.policy='packet,drop',");
+        for (int i = 0; i < 50; i++) {
+            fixture.publish(TestTelemetryReports.UDP4_2HOPS.clone());
+            fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        }
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 100);
+        for (final Object[] data : events) {
+            Assert.assertEquals(data[1], 1.0);
+        }
+    }
+
+    /**
+     * Tests that an unknown class within the policy is rejected.
+     */
+    @Test(expectedExceptions = {SiddhiAppCreationException.class, SiddhiAppValidationException.class})
+    public void testUnknownPolicyClass() {
+        start("shed.latency='1', shed.policy='packet,flow',");
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.sourcemapper;
+
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+import io.siddhi.extension.map.p4.trpt.util.LongHashIndex;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Tests for the suppress options of the p4-trpt mapper over reports from an inMemory source.
+ */
+public class P4TrptSuppressTestCase {
+
+    // Node ID and hop latency
+    private static final int LATENCY_INSTRUCTIONS = 0x8000 | 0x2000;
+
+    private SiddhiAppFixture fixture;
+
+    private void start(final String mapOptions) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("suppressQuery",
+            "@App:name('P4TrptSuppress')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', %s\n" +
+            "    @attributes(dstPort='protoHdr.dstPort', firstHopLatency='intHdr.mdStackHdr.hops[0].hopLatency',\n" +
+            "        hops='pathId', telemRpt='telemRpt')))\n" +
+            "define stream trptStream (dstPort long, firstHopLatency long, hops int, telemRpt object);\n" +
+            "@info(name='suppressQuery')\n" +
+            "from trptStream\n" +
+            "select dstPort, firstHopLatency, p4trpt:pathHops(hops) as path\n" +
+            "insert into changedStream;\n",
+                mapOptions);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that a flow's reports are mapped only when their path or first hop latency moves to another band of the
+     * precision, each flow being tracked apart and drop reports never being suppressed.
+     */
+    @Test
+    public void testChangesMapped() {
+        start("suppress='changes', suppress.precision='2',");
+        publish(5792, 5000, 123, 234);
+        publish(5792, 5000, 123, 234);
+        // Within the band of 4096 to 6143
+        publish(5792, 6000, 123, 234);
+        Assert.assertEquals(fixture.getEvents().size(), 1);
+        publish(5792, 7000, 123, 234);
+        Assert.assertEquals(fixture.getEvents().size(), 2);
+        publish(5792, 7000, 123, 345);
+        publish(5792, 7000, 123, 345);
+        Assert.assertEquals(fixture.getEvents().size(), 3);
+        publish(5793, 5000, 123, 234);
+        fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 6);
+        Assert.assertEquals(events.get(0), new Object[]{5792L, 5000L, "[123,234]"});
+        Assert.assertEquals(events.get(1), new Object[]{5792L, 7000L, "[123,234]"});
+        Assert.assertEquals(events.get(2), new Object[]{5792L, 7000L, "[123,345]"});
+        Assert.assertEquals(events.get(3), new Object[]{5793L, 5000L, "[123,234]"});
+        Assert.assertEquals(events.get(4), new Object[]{null, null, null});
+        Assert.assertEquals(events.get(5), new Object[]{null, null, null});
+    }
+
+    /**
+     * Tests that without a precision any change of value is mapped.
+     */
+    @Test
+    public void testExactValues() {
+        start("suppress='changes',");
+        publish(5792, 5000, 123, 234);
+        publish(5792, 5001, 123, 234);
+        publish(5792, 5001, 123, 234);
+        Assert.assertEquals(fixture.getEvents().size(), 2);
+    }
+
+    /**
+     * Tests that an unchanged flow is mapped again once its last mapped report is older than the refresh interval.
+     */
+    @Test
+    public void testRefresh() throws InterruptedException {
+        start("suppress='changes', suppress.refresh='200',");
+        publish(5792, 5000, 123, 234);
+        publish(5792, 5000, 123, 234);
+        Assert.assertEquals(fixture.getEvents().size(), 1);
+        Thread.sleep(300);
+        publish(5792, 5000, 123, 234);
+        publish(5792, 5000, 123, 234);
+        Assert.assertEquals(fixture.getEvents().size(), 2);
+    }
+
+    /**
+     * Tests that an unknown suppress value fails the creation of the Siddhi app.
+     */
+    @Test(expectedExceptions = {SiddhiAppCreationException.class, SiddhiAppValidationException.class})
+    public void testUnknownSuppress() {
+        start("suppress='everything',");
+    }
+
+    /**
+     * Tests that a suppress.max.flows beyond the index's maximum capacity is rejected.
+     */
+    @Test(expectedExceptions = {SiddhiAppCreationException.class, SiddhiAppValidationException.class})
+    public void testMaxFlowsOverLimitRejected() {
+        start("suppress='changes', suppress.max.flows='" + (LongHashIndex.MAX_CAPACITY + 1) + "',");
+    }
+
+    // Publishes a report to the destination port with the first hop latency taking the path of the node IDs
+    private void publish(final int dstPort, final int firstHopLatency, final int... nodeIds) {
+        final int[][] hops = new int[nodeIds.length][];
+        for (int hop = 0; hop < nodeIds.length; hop++) {
+            hops[hop] = new int[]{nodeIds[hop], hop == 0 ? firstHopLatency : 10};
+        }
+        final byte[] bytes = TestTelemetryReports.withHopMetadata(TestTelemetryReports.UDP4_2HOPS,
+                LATENCY_INSTRUCTIONS, hops);
+        ByteBuffer.wrap(bytes).putShort(RawReport.getProtoHdrOffset(bytes) + 2, (short) dstPort);
+        fixture.publish(bytes);
+    }
+}
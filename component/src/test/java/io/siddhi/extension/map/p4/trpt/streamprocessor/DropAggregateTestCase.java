@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.DropHeader;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for p4trpt:dropAggregate over drop reports mapped by the p4-trpt mapper from an inMemory source.
+ */
+public class DropAggregateTestCase {
+
+    private SiddhiAppFixture fixture;
+
+    private void start(final long flushTimeout) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("dropQuery",
+            "@App:name('DropAggregate')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(telemRpt='telemRpt')))\n" +
+            "define stream trptStream (telemRpt object);\n" +
+            "@info(name='dropQuery')\n" +
+            "from trptStream#p4trpt:dropAggregate(telemRpt, 10, 2, %d)\n" +
+            "select dropKey, bucketStart, reportCount, totalDropCount\n" +
+            "insert into dropTotalsStream;\n",
+                flushTimeout);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that reports are summed into the bucket their switch timestamp falls in, and that a bucket is emitted
+     * only once the latest switch timestamp passes its end by the allowed lateness.
+     */
+    @Test
+    public void testBucketBoundaries() {
+        start(60000);
+        publish(0, 1, 1);
+        publish(9, 1, 2);
+        publish(10, 1, 4);
+        publish(11, 2, 8);
+        // Bucket [0, 10) stays open until the switch time reaches 10 + 2
+        Assert.assertEquals(fixture.getEvents().size(), 0);
+        publish(12, 1, 16);
+        final List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 1);
+        assertEvent(events.get(0), 1, 0, 2, 3);
+    }
+
+    /**
+     * Tests that reports within the allowed lateness are counted in their bucket while those for buckets already
+     * emitted are ignored.
+     */
+    @Test
+    public void testLateness() {
+        start(60000);
+        publish(5, 1, 1);
+        publish(20, 1, 2);
+        List<Object[]> events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 1);
+        assertEvent(events.get(0), 1, 0, 1, 1);
+        // Late for the emitted bucket [0, 10) but within the lateness of bucket [10, 20)
+        publish(9, 1, 100);
+        publish(18, 1, 4);
+        publish(32, 1, 8);
+        events = fixture.getEvents();
+        Assert.assertEquals(events.size(), 3);
+        assertEvent(events.get(1), 1, 10, 1, 4);
+        assertEvent(events.get(2), 1, 20, 1, 2);
+    }
+
+    /**
+     * Tests that open buckets are emitted once no newer switch timestamp has been seen for the flush timeout.
+     */
+    @Test
+    public void testFlushTimeout() throws InterruptedException {
+        start(100);
+        publish(3, 1, 1);
+        publish(4, 2, 2);
+        // Older reports do not move the flush time
+        publish(2, 2, 4);
+        final List<Object[]> events = fixture.awaitEvents(2);
+        Assert.assertEquals(events.size(), 2);
+        events.sort((a, b) -> ((String) a[0]).compareTo((String) b[0]));
+        assertEvent(events.get(0), 1, 0, 1, 1);
+        assertEvent(events.get(1), 2, 0, 2, 6);
+    }
+
+    private static void assertEvent(final Object[] data, final int key, final long bucketStart,
+                                    final long reportCount, final long totalDropCount) {
+        Assert.assertEquals(data, new Object[]{DropHeader.toDropKey(0, key), bucketStart, reportCount,
+                totalDropCount}, Arrays.toString(data));
+    }
+
+    private void publish(final long timestamp, final int key, final long dropCount) {
+        final byte[] bytes = TestTelemetryReports.DROP_RPT.clone();
+        final ByteBuffer dropHdr = ByteBuffer.wrap(bytes);
+        dropHdr.putInt(RawReport.TRPT_HDR_LEN, (int) timestamp);
+        dropHdr.putInt(RawReport.TRPT_HDR_LEN + 4, (int) dropCount);
+        dropHdr.putLong(RawReport.TRPT_HDR_LEN + 16, 0);
+        dropHdr.putLong(RawReport.TRPT_HDR_LEN + 24, key);
+        fixture.publish(bytes);
+    }
+}
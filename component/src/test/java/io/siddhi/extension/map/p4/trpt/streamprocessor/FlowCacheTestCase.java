@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for p4trpt:flowCache over reports mapped by the p4-trpt mapper from an inMemory source.
+ */
+public class FlowCacheTestCase {
+
+    private SiddhiAppFixture fixture;
+
+    private void start(final long activeTimeout, final long idleTimeout) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("flowQuery",
+            "@App:name('FlowCache')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(telemRpt='telemRpt')))\n" +
+            "define stream trptStream (telemRpt object);\n" +
+            "@info(name='flowQuery')\n" +
+            "from trptStream#p4trpt:flowCache(telemRpt, %d, %d)\n" +
+            "select srcAddr, dstAddr, srcPort, dstPort, nextProto, nodeId, packets, bytes, minHopLatency,\n" +
+            "    exportReason\n" +
+            "insert into flowStream;\n",
+                activeTimeout, idleTimeout);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that the reports of each flow, keyed by the inner IP header's protocol, are consumed and exported as one
+     * record once the flow is idle, drop reports being ignored.
+     */
+    @Test
+    public void testIdleFlows() throws InterruptedException {
+        start(60000, 100);
+        publish(TestTelemetryReports.UDP4_2HOPS, 80, 3);
+        publish(TestTelemetryReports.TCP4_2HOPS, 80, 1);
+        publish(TestTelemetryReports.UDP4_2HOPS, 443, 1);
+        publish(TestTelemetryReports.DROP_RPT, -1, 2);
+        Assert.assertEquals(fixture.getEvents().size(), 0);
+        final List<Object[]> events = fixture.awaitEvents(2);
+        Assert.assertEquals(events.size(), 2);
+        events.sort((a, b) -> ((Integer) a[3]).compareTo((Integer) b[3]));
+        Assert.assertEquals(events.get(0), new Object[]{"192.168.1.2", "192.168.1.10", 6680, 80, 17, 234L,
+                4L, 388L, -1L, "idle"}, Arrays.toString(events.get(0)));
+        Assert.assertEquals(events.get(1), new Object[]{"192.168.1.2", "192.168.1.10", 6680, 443, 17, 234L,
+                1L, 94L, -1L, "idle"}, Arrays.toString(events.get(1)));
+    }
+
+    /**
+     * Tests that a flow still receiving reports is exported once active for the active timeout.
+     */
+    @Test
+    public void testActiveFlows() throws InterruptedException {
+        start(200, 60000);
+        publish(TestTelemetryReports.UDP4_2HOPS, 80, 2);
+        // The active timeout passes well before the idle timeout
+        final List<Object[]> events = fixture.awaitEvents(1);
+        Assert.assertEquals(events.size(), 1);
+        Assert.assertEquals(events.get(0)[9], "active");
+        Assert.assertEquals(events.get(0)[6], 2L, Arrays.toString(events.get(0)));
+    }
+
+    // Publishes copies of a report with the given destination port, or as is when negative
+    private void publish(final byte[] report, final int dstPort, final int count) {
+        for (int i = 0; i < count; i++) {
+            final byte[] bytes = report.clone();
+            if (dstPort >= 0) {
+                ByteBuffer.wrap(bytes).putShort(RawReport.getProtoHdrOffset(bytes) + 2, (short) dstPort);
+            }
+            fixture.publish(bytes);
+        }
+    }
+}
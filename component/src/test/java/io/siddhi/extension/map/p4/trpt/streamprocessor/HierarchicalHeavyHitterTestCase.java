@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for p4trpt:hhh over packet reports mapped by the p4-trpt mapper from an inMemory source.
+ */
+public class HierarchicalHeavyHitterTestCase {
+
+    private SiddhiAppFixture fixture;
+
+    private void start(final String hhhArgs) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("hhhQuery",
+            "@App:name('HierarchicalHeavyHitter')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(telemRpt='telemRpt')))\n" +
+            "define stream trptStream (telemRpt object);\n" +
+            "@info(name='hhhQuery')\n" +
+            "from trptStream#p4trpt:hhh(telemRpt, %s)\n" +
+            "select prefix, prefixLength, prefixCount, residualCount, totalCount\n" +
+            "insert into heavyHitterStream;\n",
+                hhhArgs);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that source prefixes over the threshold are reported once the interval ends, each IP version being
+     * counted separately and drop reports being ignored.
+     */
+    @Test
+    public void testSourcePrefixes() throws InterruptedException {
+        start("100, 5");
+        publish(TestTelemetryReports.UDP4_2HOPS, 6);
+        publish(TestTelemetryReports.TCP4_2HOPS, 4);
+        publish(TestTelemetryReports.UDP6_2HOPS, 3);
+        publish(TestTelemetryReports.DROP_RPT, 10);
+        fixture.awaitEvents(1);
+        // No other prefix is reported over the following intervals
+        final List<Object[]> events = fixture.awaitEvents(2, 300);
+        Assert.assertEquals(events.size(), 1);
+        Assert.assertEquals(events.get(0), new Object[]{"192.168.1.2/32", 32, 10L, 10L, 10L},
+                Arrays.toString(events.get(0)));
+    }
+
+    /**
+     * Tests that destination prefixes are reported for each IP version when requested.
+     */
+    @Test
+    public void testDestinationPrefixes() throws InterruptedException {
+        start("100, 3, 'dst'");
+        publish(TestTelemetryReports.UDP4_2HOPS, 3);
+        publish(TestTelemetryReports.TCP6_2HOPS, 3);
+        final List<Object[]> events = fixture.awaitEvents(2);
+        Assert.assertEquals(events.size(), 2);
+        Assert.assertEquals(events.get(0), new Object[]{"192.168.1.10/32", 32, 3L, 3L, 3L},
+                Arrays.toString(events.get(0)));
+        Assert.assertEquals(events.get(1), new Object[]{"0:0:0:0:0:1:1:1d/128", 128, 3L, 3L, 3L},
+                Arrays.toString(events.get(1)));
+    }
+
+    private void publish(final byte[] report, final int count) {
+        for (int i = 0; i < count; i++) {
+            fixture.publish(report.clone());
+        }
+    }
+}
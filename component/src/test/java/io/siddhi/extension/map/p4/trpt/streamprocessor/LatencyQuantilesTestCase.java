@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tests for p4trpt:latencyQuantiles over reports mapped by the p4-trpt mapper from an inMemory source.
+ */
+public class LatencyQuantilesTestCase {
+
+    // Node ID, ingress and egress ports and hop latency
+    private static final int PORT_INSTRUCTIONS = 0x8000 | 0x4000 | 0x2000;
+    // Node ID and hop latency
+    private static final int NO_PORT_INSTRUCTIONS = 0x8000 | 0x2000;
+
+    private SiddhiAppFixture fixture;
+
+    @BeforeMethod
+    public void setUp() {
+        fixture = new SiddhiAppFixture();
+        fixture.start("quantileQuery",
+            "@App:name('LatencyQuantiles')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(telemRpt='telemRpt')))\n" +
+            "define stream trptStream (telemRpt object);\n" +
+            "@info(name='quantileQuery')\n" +
+            "from trptStream#p4trpt:latencyQuantiles(telemRpt, 200)\n" +
+            "select nodeId, egressPort, hopCount, p50Latency, p99Latency, maxLatency\n" +
+            "insert into quantileStream;\n");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that the latency quantiles of each node and egress port are emitted at the close of the interval,
+     * where hops without an egress port are keyed by -1 and reports without hop latencies are ignored.
+     */
+    @Test
+    public void testQuantilesPerPort() throws InterruptedException {
+        for (int latency = 1; latency <= 100; latency++) {
+            fixture.publish(TestTelemetryReports.withHopMetadata(TestTelemetryReports.UDP4_2HOPS,
+                    PORT_INSTRUCTIONS, new int[]{1, (1 << 16) | 2, latency}, new int[]{2, (1 << 16) | 3, 1000}));
+        }
+        for (int i = 0; i < 10; i++) {
+            fixture.publish(TestTelemetryReports.withHopMetadata(TestTelemetryReports.UDP6_2HOPS,
+                    NO_PORT_INSTRUCTIONS, new int[]{1, 5000}));
+        }
+        fixture.publish(TestTelemetryReports.UDP4_2HOPS.clone());
+        fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        final List<Object[]> events = fixture.awaitEvents(3);
+        Assert.assertEquals(events.size(), 3);
+        events.sort(Comparator.<Object[]>comparingLong(data -> (Long) data[0])
+                .thenComparingInt(data -> (Integer) data[1]));
+        assertQuantiles(events.get(0), 1, -1, 10, 5000, 5000, 5000);
+        assertQuantiles(events.get(1), 1, 2, 100, 50, 99, 100);
+        assertQuantiles(events.get(2), 2, 3, 100, 1000, 1000, 1000);
+    }
+
+    private static void assertQuantiles(final Object[] data, final long nodeId, final int egressPort,
+                                        final long hopCount, final long p50, final long p99, final long max) {
+        final String message = Arrays.toString(data);
+        Assert.assertEquals(data[0], nodeId, message);
+        Assert.assertEquals(data[1], egressPort, message);
+        Assert.assertEquals(data[2], hopCount, message);
+        // Within the default relative accuracy of 1%, rounded to whole latencies
+        Assert.assertEquals((Long) data[3], p50, p50 * 0.01 + 1, message);
+        Assert.assertEquals((Long) data[4], p99, p99 * 0.01 + 1, message);
+        Assert.assertEquals(data[5], max, message);
+    }
+}
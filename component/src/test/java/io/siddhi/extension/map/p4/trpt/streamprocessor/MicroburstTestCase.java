@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+/**
+ * Tests for p4trpt:microburst over reports mapped by the p4-trpt mapper from an inMemory source.
+ */
+public class MicroburstTestCase {
+
+    // Node ID, queue ID and queue occupancy
+    private static final int QUEUE_INSTRUCTIONS = 0x8000 | 0x1000;
+
+    private SiddhiAppFixture fixture;
+
+    private void start(final String parameters) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("burstQuery",
+            "@App:name('Microburst')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(telemRpt='telemRpt')))\n" +
+            "define stream trptStream (telemRpt object);\n" +
+            "@info(name='burstQuery')\n" +
+            "from trptStream#p4trpt:microburst(telemRpt%s)\n" +
+            "select nodeId, queueId, hopIndex, queueOccupancy, baselineMean, baselineStdDev\n" +
+            "insert into burstStream;\n",
+                parameters);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that a burst is reported once as it starts and again only after the occupancy has fallen back, while
+     * spikes below the minimum occupancy and steady queues are not reported.
+     */
+    @Test
+    public void testBurstReportedOnce() {
+        start(", 4, 0.1, 50");
+        // Warms up the baseline of queue 3 of node 1 at the first hop and queue 0 of node 2 at the second
+        for (int i = 0; i < 20; i++) {
+            publish(i % 2 == 0 ? 10 : 12);
+        }
+        Assert.assertEquals(fixture.getEvents().size(), 0);
+        publish(40);
+        Assert.assertEquals(fixture.getEvents().size(), 0);
+        publish(100);
+        Assert.assertEquals(fixture.getEvents().size(), 1);
+        assertBurst(fixture.getEvents().get(0), 100);
+        publish(110);
+        Assert.assertEquals(fixture.getEvents().size(), 1);
+        publish(10);
+        publish(100);
+        Assert.assertEquals(fixture.getEvents().size(), 2);
+        assertBurst(fixture.getEvents().get(1), 100);
+    }
+
+    /**
+     * Tests that reports without queue occupancies are ignored.
+     */
+    @Test
+    public void testReportsWithoutQueuesIgnored() {
+        start(", 4, 0.1");
+        for (int i = 0; i < 20; i++) {
+            fixture.publish(TestTelemetryReports.UDP4_2HOPS.clone());
+            fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        }
+        Assert.assertEquals(fixture.getEvents().size(), 0);
+    }
+
+    /**
+     * Tests that an alpha outside of (0, 1) fails the creation of the Siddhi app.
+     */
+    @Test(expectedExceptions = {SiddhiAppCreationException.class, SiddhiAppValidationException.class})
+    public void testInvalidAlpha() {
+        start(", 4, 1.5");
+    }
+
+    private void publish(final int occupancy) {
+        fixture.publish(TestTelemetryReports.withHopMetadata(TestTelemetryReports.UDP4_2HOPS,
+                QUEUE_INSTRUCTIONS, new int[]{1, (3 << 24) | occupancy}, new int[]{2, 5}));
+    }
+
+    private static void assertBurst(final Object[] data, final long occupancy) {
+        final String message = Arrays.toString(data);
+        Assert.assertEquals(data[0], 1L, message);
+        Assert.assertEquals(data[1], 3, message);
+        Assert.assertEquals(data[2], 0, message);
+        Assert.assertEquals(data[3], occupancy, message);
+        // The baseline settles just above the warmup occupancies after taking in the spike of 40
+        Assert.assertTrue((Double) data[4] > 11 && (Double) data[4] < 15, message);
+        Assert.assertTrue((Double) data[5] > 0 && occupancy > (Double) data[4] + 4 * (Double) data[5], message);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+import io.siddhi.extension.map.p4.trpt.util.PathInterner;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Tests for p4trpt:pathChange over reports mapped by the p4-trpt mapper from an inMemory source.
+ */
+public class PathChangeTestCase {
+
+    // Node ID alone
+    private static final int NODE_INSTRUCTIONS = 0x8000;
+
+    private SiddhiAppFixture fixture;
+
+    private void start(final long idleTimeout) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("pathChangeQuery",
+            "@App:name('PathChange')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(telemRpt='telemRpt')))\n" +
+            "define stream trptStream (telemRpt object);\n" +
+            "@info(name='pathChangeQuery')\n" +
+            "from trptStream#p4trpt:pathChange(telemRpt, %d)\n" +
+            "select oldPathId, newPathId, oldPath, newPath, oldPathLastSeen\n" +
+            "insert into pathChangeStream;\n",
+                idleTimeout);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that a flow is reported only as its path changes, new flows and drop reports not being reported.
+     */
+    @Test
+    public void testPathChangePerFlow() {
+        start(60000);
+        final long before = System.currentTimeMillis();
+        publish(5792, 123, 234);
+        publish(5792, 123, 234);
+        Assert.assertEquals(fixture.getEvents().size(), 0);
+        publish(5792, 123, 345);
+        Assert.assertEquals(fixture.getEvents().size(), 1);
+        assertChange(fixture.getEvents().get(0), "[123,234]", "[123,345]", before);
+        publish(5792, 123, 345);
+        publish(5793, 9);
+        fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        Assert.assertEquals(fixture.getEvents().size(), 1);
+        publish(5792, 123, 234);
+        Assert.assertEquals(fixture.getEvents().size(), 2);
+        assertChange(fixture.getEvents().get(1), "[123,345]", "[123,234]", before);
+    }
+
+    /**
+     * Tests that a flow idle for longer than the idle timeout is treated as new when it returns on another path.
+     */
+    @Test
+    public void testIdleFlowForgotten() throws InterruptedException {
+        start(200);
+        publish(5792, 123, 234);
+        Thread.sleep(400);
+        publish(5792, 123, 345);
+        Assert.assertEquals(fixture.getEvents().size(), 0);
+        publish(5792, 123, 234);
+        Assert.assertEquals(fixture.getEvents().size(), 1);
+    }
+
+    // Publishes a report of the flow to a destination port taking the path of the node IDs
+    private void publish(final int dstPort, final int... nodeIds) {
+        final int[][] hops = new int[nodeIds.length][];
+        for (int hop = 0; hop < nodeIds.length; hop++) {
+            hops[hop] = new int[]{nodeIds[hop]};
+        }
+        final byte[] bytes = TestTelemetryReports.withHopMetadata(TestTelemetryReports.UDP4_2HOPS,
+                NODE_INSTRUCTIONS, hops);
+        ByteBuffer.wrap(bytes).putShort(RawReport.getProtoHdrOffset(bytes) + 2, (short) dstPort);
+        fixture.publish(bytes);
+    }
+
+    private static void assertChange(final Object[] data, final String oldPath, final String newPath,
+                                     final long before) {
+        final String message = Arrays.toString(data);
+        Assert.assertEquals(data[0], PathInterner.getShared().intern(parse(oldPath)), message);
+        Assert.assertEquals(data[1], PathInterner.getShared().intern(parse(newPath)), message);
+        Assert.assertEquals(data[2], oldPath, message);
+        Assert.assertEquals(data[3], newPath, message);
+        Assert.assertTrue((Long) data[4] >= before && (Long) data[4] <= System.currentTimeMillis(), message);
+    }
+
+    private static long[] parse(final String path) {
+        return Arrays.stream(path.substring(1, path.length() - 1).split(",")).mapToLong(Long::parseLong).toArray();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tests for p4trpt:topology over reports mapped by the p4-trpt mapper from an inMemory source.
+ */
+public class TopologyTestCase {
+
+    // Node ID alone
+    private static final int NODE_INSTRUCTIONS = 0x8000;
+
+    private SiddhiAppFixture fixture;
+
+    private void start(final String parameters) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("topologyQuery",
+            "@App:name('Topology')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(telemRpt='telemRpt')))\n" +
+            "define stream trptStream (telemRpt object);\n" +
+            "@info(name='topologyQuery')\n" +
+            "from trptStream#p4trpt:topology(telemRpt, %s)\n" +
+            "select fromNodeId, toNodeId, packets, intervalPackets, isNew\n" +
+            "insert into topologyStream;\n",
+                parameters);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that the edges crossed within each interval are emitted at its close, unchanged edges not being
+     * re-emitted and reports without INT node IDs being ignored.
+     */
+    @Test
+    public void testChangedEdges() throws InterruptedException {
+        start("200");
+        for (int i = 0; i < 3; i++) {
+            publish(1, 2, 3);
+        }
+        publish(1, 2, 4);
+        fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        List<Object[]> events = sortEdges(fixture.awaitEvents(3));
+        Assert.assertEquals(events.size(), 3);
+        assertEdge(events.get(0), 1, 2, 4, 4, true);
+        assertEdge(events.get(1), 2, 3, 3, 3, true);
+        assertEdge(events.get(2), 2, 4, 1, 1, true);
+        fixture.clearEvents();
+        publish(1, 2, 3);
+        publish(1, 2, 3);
+        fixture.awaitEvents(2);
+        // No other edge is emitted over the following intervals
+        events = sortEdges(fixture.awaitEvents(3, 300));
+        Assert.assertEquals(events.size(), 2);
+        assertEdge(events.get(0), 1, 2, 6, 2, false);
+        assertEdge(events.get(1), 2, 3, 5, 2, false);
+    }
+
+    /**
+     * Tests that every edge learned is emitted at each snapshot interval, including edges not crossed within it.
+     */
+    @Test
+    public void testSnapshot() throws InterruptedException {
+        start("100, 65536, 400");
+        publish(1, 2);
+        final List<Object[]> events = fixture.awaitEvents(2);
+        Assert.assertEquals(events.size(), 2);
+        assertEdge(events.get(0), 1, 2, 1, 1, true);
+        assertEdge(events.get(1), 1, 2, 1, 0, false);
+    }
+
+    private static List<Object[]> sortEdges(final List<Object[]> events) {
+        events.sort(Comparator.<Object[]>comparingLong(data -> (Long) data[0])
+                .thenComparingLong(data -> (Long) data[1]));
+        return events;
+    }
+
+    private void publish(final int... nodeIds) {
+        final int[][] hops = new int[nodeIds.length][];
+        for (int hop = 0; hop < nodeIds.length; hop++) {
+            hops[hop] = new int[]{nodeIds[hop]};
+        }
+        fixture.publish(TestTelemetryReports.withHopMetadata(TestTelemetryReports.UDP4_2HOPS,
+                NODE_INSTRUCTIONS, hops));
+    }
+
+    private static void assertEdge(final Object[] data, final long fromNodeId, final long toNodeId,
+                                   final long packets, final long intervalPackets, final boolean isNew) {
+        Assert.assertEquals(data, new Object[]{fromNodeId, toNodeId, packets, intervalPackets, isNew},
+                Arrays.toString(data));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.streamprocessor;
+
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for p4trpt:tumblingAggregate over reports mapped by the p4-trpt mapper from an inMemory source.
+ */
+public class TumblingAggregateTestCase {
+
+    private SiddhiAppFixture fixture;
+
+    private void start(final String keyFields, final String keyAttributes) {
+        fixture = new SiddhiAppFixture();
+        fixture.start("aggregateQuery",
+            "@App:name('TumblingAggregate')\n" +
+            "@source(type='inMemory', topic='%s', @map(type='p4-trpt', @attributes(telemRpt='telemRpt')))\n" +
+            "define stream trptStream (telemRpt object);\n" +
+            "@info(name='aggregateQuery')\n" +
+            "from trptStream#p4trpt:tumblingAggregate(telemRpt, 100, %s)\n" +
+            "select %s, reportCount, totalLen, minLen, maxLen\n" +
+            "insert into aggregateStream;\n",
+                keyFields, keyAttributes);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that one event per key is emitted at the close of the interval with the IP length aggregates, reports
+     * without the key fields being ignored.
+     */
+    @Test
+    public void testKeyAggregates() throws InterruptedException {
+        start("'ipHdr.dstAddr', 'protoHdr.dstPort'", "dstAddr, dstPort");
+        publish(TestTelemetryReports.UDP4_2HOPS, 80);
+        publish(TestTelemetryReports.TCP4_2HOPS, 80);
+        publish(TestTelemetryReports.UDP4_2HOPS, 443);
+        publish(TestTelemetryReports.UDP4_2HOPS, 80);
+        fixture.publish(TestTelemetryReports.DROP_RPT.clone());
+        final List<Object[]> events = fixture.awaitEvents(2);
+        Assert.assertEquals(events.size(), 2);
+        events.sort((a, b) -> ((Integer) a[1]).compareTo((Integer) b[1]));
+        Assert.assertEquals(events.get(0), new Object[]{"192.168.1.10", 80, 3L, 294L, 94L, 106L},
+                Arrays.toString(events.get(0)));
+        Assert.assertEquals(events.get(1), new Object[]{"192.168.1.10", 443, 1L, 94L, 94L, 94L},
+                Arrays.toString(events.get(1)));
+    }
+
+    /**
+     * Tests that each interval starts with empty aggregates.
+     */
+    @Test
+    public void testIntervalsTumble() throws InterruptedException {
+        start("'ipHdr.dstAddr', 'protoHdr.dstPort'", "dstAddr, dstPort");
+        publish(TestTelemetryReports.UDP4_2HOPS, 80);
+        fixture.awaitEvents(1);
+        publish(TestTelemetryReports.TCP4_2HOPS, 80);
+        final List<Object[]> events = fixture.awaitEvents(2);
+        Assert.assertEquals(events.size(), 2);
+        Assert.assertEquals(events.get(0), new Object[]{"192.168.1.10", 80, 1L, 94L, 94L, 94L},
+                Arrays.toString(events.get(0)));
+        Assert.assertEquals(events.get(1), new Object[]{"192.168.1.10", 80, 1L, 106L, 106L, 106L},
+                Arrays.toString(events.get(1)));
+    }
+
+    /**
+     * Tests that drop reports, which carry no IP length, are not aggregated under keys they do carry.
+     */
+    @Test
+    public void testDropReportsIgnored() throws InterruptedException {
+        start("'telemRptHdr.nodeId'", "nodeId");
+        publish(TestTelemetryReports.UDP4_2HOPS, 80);
+        // A drop report from the same node
+        final byte[] drop = TestTelemetryReports.DROP_RPT.clone();
+        ByteBuffer.wrap(drop).putInt(4, 234);
+        fixture.publish(drop);
+        fixture.awaitEvents(1);
+        // The drop report is not aggregated in a later interval either
+        final List<Object[]> events = fixture.awaitEvents(2, 300);
+        Assert.assertEquals(events.size(), 1);
+        Assert.assertEquals(events.get(0), new Object[]{234L, 1L, 94L, 94L, 94L}, Arrays.toString(events.get(0)));
+    }
+
+    private void publish(final byte[] report, final int dstPort) {
+        final byte[] bytes = report.clone();
+        ByteBuffer.wrap(bytes).putShort(RawReport.getProtoHdrOffset(bytes) + 2, (short) dstPort);
+        fixture.publish(bytes);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.table;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the p4-trpt-offheap store updated by queries and read by on-demand queries.
+ */
+public class OffHeapRecordTableTestCase {
+
+    private static final Logger log = Logger.getLogger(OffHeapRecordTableTestCase.class);
+    private static final String TABLE_DEFINITION =
+            "@store(type='p4-trpt-offheap', max.records='1024')\n" +
+            "@PrimaryKey('flowId')\n" +
+            "define table FlowTable (flowId long, packets long);\n";
+
+    private SiddhiManager siddhiManager;
+    private SiddhiAppRuntime siddhiAppRuntime;
+
+    @BeforeMethod
+    public void setUp() {
+        log.info("In setUp()");
+        final String siddhiScriptStr = "@App:name('OffHeapRecordTable')\n" +
+            "define stream flowStream (flowId long, packets long);\n" +
+            "define stream refundStream (flowId long, packets long);\n" +
+            TABLE_DEFINITION +
+            "from flowStream\n" +
+            "select flowId, packets\n" +
+            "update or insert into FlowTable\n" +
+            "set FlowTable.packets = FlowTable.packets + packets\n" +
+            "on FlowTable.flowId == flowId;\n" +
+            "from refundStream\n" +
+            "update FlowTable\n" +
+            "set FlowTable.packets = FlowTable.packets - packets\n" +
+            "on FlowTable.flowId == flowId;\n";
+        log.info("Off-heap table Siddhi script \n" + siddhiScriptStr);
+        siddhiManager = new SiddhiManager();
+        siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiScriptStr);
+        siddhiAppRuntime.start();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        log.info("In tearDown()");
+        siddhiAppRuntime.shutdown();
+        siddhiManager.shutdown();
+    }
+
+    /**
+     * Tests that set expressions add to and subtract from the values held by the matched records.
+     */
+    @Test
+    public void testCountersUpdatedInPlace() throws InterruptedException {
+        final InputHandler flows = siddhiAppRuntime.getInputHandler("flowStream");
+        flows.send(new Object[]{1L, 3L});
+        flows.send(new Object[]{1L, 4L});
+        flows.send(new Object[]{2L, 5L});
+        siddhiAppRuntime.getInputHandler("refundStream").send(new Object[]{1L, 2L});
+
+        Assert.assertEquals(packets(1), 5L);
+        Assert.assertEquals(packets(2), 5L);
+    }
+
+    /**
+     * Tests that arithmetic over values independent of the record still resolves a condition by primary key.
+     */
+    @Test
+    public void testArithmeticInConditions() throws InterruptedException {
+        siddhiAppRuntime.getInputHandler("flowStream").send(new Object[]{2L, 7L});
+
+        final Event[] events = siddhiAppRuntime.query("from FlowTable on flowId == 3 - 1 select packets");
+        Assert.assertNotNull(events);
+        Assert.assertEquals(events.length, 1);
+        Assert.assertEquals(events[0].getData(0), 7L);
+    }
+
+    /**
+     * Tests that arithmetic other than addition and subtraction is rejected when the app is created.
+     */
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testMultiplicationRejected() {
+        siddhiManager.createSiddhiAppRuntime("@App:name('OffHeapRecordTableMultiply')\n" +
+            "define stream flowStream (flowId long, packets long);\n" +
+            TABLE_DEFINITION +
+            "from flowStream\n" +
+            "update FlowTable\n" +
+            "set FlowTable.packets = FlowTable.packets * packets\n" +
+            "on FlowTable.flowId == flowId;\n");
+    }
+
+    private long packets(final long flowId) {
+        final Event[] events = siddhiAppRuntime.query("from FlowTable on flowId == " + flowId + "L select packets");
+        Assert.assertNotNull(events);
+        Assert.assertEquals(events.length, 1);
+        return (Long) events[0].getData(0);
+    }
+}
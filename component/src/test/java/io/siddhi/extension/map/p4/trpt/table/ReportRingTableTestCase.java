@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.siddhi.extension.map.p4.trpt.table;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.event.Event;
+import io.siddhi.extension.map.p4.SiddhiAppFixture;
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+
+/**
+ * Tests for the p4-trpt-ring store over the ring filled by the p4-trpt mapper from an inMemory source.
+ */
+public class ReportRingTableTestCase {
+
+    private SiddhiAppFixture fixture;
+    private SiddhiAppRuntime siddhiAppRuntime;
+
+    private void start(final String mapOptions) {
+        fixture = new SiddhiAppFixture();
+        siddhiAppRuntime = fixture.start(null,
+            "@App:name('ReportRingTable')\n" +
+            "@source(type='inMemory', topic='%1$s',\n" +
+                "\t@map(type='p4-trpt', ring='%2$s', ring.size='4096', %3$s\n" +
+                    "\t\t@attributes(dstPort='protoHdr.dstPort')))\n" +
+            "define stream trptStream (dstPort long);\n" +
+            "@store(type='p4-trpt-ring', ring='%2$s')\n" +
+            "define table RecentReports (nodeId long, dstAddr string, dstPort int);\n",
+                UUID.randomUUID().toString(), mapOptions);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.shutdown();
+    }
+
+    /**
+     * Tests that IPv6 addresses given in their compressed or uncompressed form both find the reports to that
+     * address, whose addresses are read in their uncompressed form.
+     */
+    @Test
+    public void testIpv6AddressEquality() {
+        start("");
+        publish(TestTelemetryReports.UDP6_2HOPS, "2001:db8::1", 53);
+        publish(TestTelemetryReports.UDP6_2HOPS, "2001:db8::2", 53);
+        publish(TestTelemetryReports.UDP6_2HOPS, "2001:db8::1", 443);
+
+        for (final String addr : new String[]{"2001:db8::1", "2001:DB8:0:0:0:0:0:1", "2001:db8:0::0:1"}) {
+            final Event[] events = siddhiAppRuntime.query(
+                    "from RecentReports on dstAddr == '" + addr + "' select dstAddr, dstPort");
+            Assert.assertNotNull(events, addr);
+            Assert.assertEquals(events.length, 2, addr);
+            for (final Event event : events) {
+                Assert.assertEquals(event.getData(0), "2001:db8:0:0:0:0:0:1");
+            }
+        }
+
+        final Event[] events = siddhiAppRuntime.query(
+                "from RecentReports on dstAddr == '2001:db8::1' and dstPort == 443 select dstAddr, dstPort");
+        Assert.assertNotNull(events);
+        Assert.assertEquals(events.length, 1);
+        Assert.assertEquals(events[0].getData(1), 443);
+
+        final Event[] missing = siddhiAppRuntime.query(
+                "from RecentReports on dstAddr == '2001:db8::3' select dstAddr, dstPort");
+        Assert.assertTrue(missing == null || missing.length == 0);
+    }
+
+    /**
+     * Tests that IPv4 addresses find the reports to that address.
+     */
+    @Test
+    public void testIpv4AddressEquality() {
+        start("");
+        publish(TestTelemetryReports.UDP4_2HOPS, "10.10.1.10", 53);
+        publish(TestTelemetryReports.UDP4_2HOPS, "10.10.1.11", 53);
+
+        final Event[] events = siddhiAppRuntime.query(
+                "from RecentReports on dstAddr == '10.10.1.10' select dstAddr, dstPort");
+        Assert.assertNotNull(events);
+        Assert.assertEquals(events.length, 1);
+        Assert.assertEquals(events[0].getData(0), "10.10.1.10");
+    }
+
+    /**
+     * Tests that reports suppressed as unchanged are not appended to the ring.
+     */
+    @Test
+    public void testSuppressedReportsNotAppended() {
+        start("suppress='changes',");
+        for (int i = 0; i < 3; i++) {
+            publish(TestTelemetryReports.UDP4_2HOPS, "10.10.1.10", 5792);
+        }
+        final Event[] events = siddhiAppRuntime.query(
+                "from RecentReports on dstAddr == '10.10.1.10' select dstAddr, dstPort");
+        Assert.assertNotNull(events);
+        Assert.assertEquals(events.length, 1);
+    }
+
+    private void publish(final byte[] bytes, final String dstAddr, final long dstPort) {
+        final TelemetryReport trpt = new TelemetryReport(bytes);
+        trpt.ipHdr.setDstAddr(dstAddr);
+        trpt.protoHdr.setDstPort(dstPort);
+        fixture.publish(trpt.getBytes());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the BlockedBloomFilter and RotatingBloomFilter.
+ */
+public class BloomFilterTests {
+
+    @Test
+    public void falsePositiveRateNearTarget() {
+        final int insertions = 100000;
+        final BlockedBloomFilter filter = new BlockedBloomFilter(insertions, 0.01);
+        for (long i = 0; i < insertions; i++) {
+            filter.put(Hashing.hash64(i));
+        }
+        for (long i = 0; i < insertions; i++) {
+            Assert.assertTrue(filter.mightContain(Hashing.hash64(i)));
+        }
+        int falsePositives = 0;
+        for (long i = insertions; i < insertions * 11L; i++) {
+            if (filter.mightContain(Hashing.hash64(i))) {
+                falsePositives++;
+            }
+        }
+        final double rate = falsePositives / (insertions * 10.0);
+        Assert.assertTrue(rate < 0.02, "false positive rate " + rate);
+    }
+
+    @Test
+    public void rotatingFilterForgetsAfterTwoHorizons() {
+        final RotatingBloomFilter filter = new RotatingBloomFilter(1000, 1000, 0.001, 0);
+        Assert.assertFalse(filter.put(1, 0));
+        Assert.assertTrue(filter.put(1, 500));
+        Assert.assertFalse(filter.put(2, 1500));
+        // Seen within the previous horizon
+        Assert.assertTrue(filter.put(1, 1900));
+        Assert.assertTrue(filter.put(2, 2500));
+        // The last sighting of 1 was in the horizon that has been rotated out
+        Assert.assertFalse(filter.put(1, 3100));
+        // Idle for multiple horizons
+        Assert.assertFalse(filter.put(2, 10000));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+/**
+ * Tests for the BurstDetector.
+ */
+public class BurstDetectorTests {
+
+    @Test
+    public void burstReportedOnceUntilItEnds() {
+        final Random random = new Random(3);
+        final BurstDetector detector = new BurstDetector(0.05, 4, 0, 8);
+        for (int i = 0; i < 200; i++) {
+            Assert.assertFalse(detector.offer(1, 100 + random.nextInt(10)), "sample " + i);
+        }
+        Assert.assertTrue(detector.offer(1, 400));
+        Assert.assertTrue(detector.getLastMean() > 100 && detector.getLastMean() < 110);
+        Assert.assertTrue(detector.getLastStdDev() > 1 && detector.getLastStdDev() < 5);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertFalse(detector.offer(1, 400));
+        }
+        // Back to the baseline ends the burst so the next spike is reported
+        Assert.assertFalse(detector.offer(1, 100));
+        Assert.assertTrue(detector.offer(1, 400));
+        Assert.assertTrue(detector.getLastMean() > 100 && detector.getLastMean() < 110);
+    }
+
+    @Test
+    public void lastingBurstBecomesBaseline() {
+        final BurstDetector detector = new BurstDetector(0.1, 4, 0, 8);
+        for (int i = 0; i < 50; i++) {
+            detector.offer(1, 100 + (i % 2));
+        }
+        Assert.assertTrue(detector.offer(1, 1000));
+        for (int i = 0; i < 50; i++) {
+            Assert.assertFalse(detector.offer(1, 1000 + (i % 2)));
+        }
+        Assert.assertTrue(detector.getLastMean() > 990);
+        Assert.assertTrue(detector.offer(1, 5000));
+    }
+
+    @Test
+    public void noBurstDuringWarmupOrBelowMinimum() {
+        final BurstDetector detector = new BurstDetector(0.1, 3, 50, 8);
+        for (int i = 0; i < 9; i++) {
+            Assert.assertFalse(detector.offer(7, i % 2 == 0 ? 0 : 1000));
+        }
+        for (int i = 0; i < 100; i++) {
+            detector.offer(7, 0);
+        }
+        // A spike from an empty queue that stays under the minimum
+        Assert.assertFalse(detector.offer(7, 40));
+        Assert.assertTrue(detector.offer(7, 60));
+    }
+
+    @Test
+    public void keysAreIndependent() {
+        final BurstDetector detector = new BurstDetector(0.1, 3, 0, 2);
+        for (int i = 0; i < 100; i++) {
+            for (long key = 0; key < 50; key++) {
+                Assert.assertFalse(detector.offer(key, key * 10 + (i % 3)));
+            }
+        }
+        Assert.assertEquals(detector.size(), 50);
+        Assert.assertTrue(detector.offer(20, 230));
+        Assert.assertFalse(detector.offer(30, 301));
+        Assert.assertTrue(detector.getLastMean() > 299 && detector.getLastMean() < 303);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the ChangeSuppressor.
+ */
+public class ChangeSuppressorTests {
+
+    @Test
+    public void keepsChangesAndRefreshes() {
+        final ChangeSuppressor suppressor = new ChangeSuppressor(16, 1000);
+        Assert.assertTrue(suppressor.keep(1, 42, 0));
+        Assert.assertFalse(suppressor.keep(1, 42, 10));
+        Assert.assertTrue(suppressor.keep(2, 42, 10));
+        Assert.assertTrue(suppressor.keep(1, 43, 20));
+        Assert.assertFalse(suppressor.keep(1, 43, 1019));
+        // Unchanged reports are kept once the last kept report is older than the refresh interval
+        Assert.assertTrue(suppressor.keep(1, 43, 1020));
+        Assert.assertFalse(suppressor.keep(1, 43, 1030));
+        Assert.assertEquals(suppressor.getSuppressed(), 3);
+    }
+
+    @Test
+    public void steadyFlowsMostlySuppressed() {
+        final ChangeSuppressor suppressor = new ChangeSuppressor(1000, 1000);
+        int kept = 0;
+        for (long now = 0; now < 10000; now++) {
+            for (long flow = 0; flow < 100; flow++) {
+                if (suppressor.keep(flow, flow * 7, now)) {
+                    kept++;
+                }
+            }
+        }
+        // Each flow is kept once per refresh interval
+        Assert.assertEquals(kept, 100 * 10);
+    }
+
+    @Test
+    public void boundedByMaxFlows() {
+        final ChangeSuppressor suppressor = new ChangeSuppressor(100, Long.MAX_VALUE / 2);
+        for (long flow = 0; flow < 10000; flow++) {
+            Assert.assertTrue(suppressor.keep(flow, 1, flow));
+            Assert.assertTrue(suppressor.size() <= 100);
+        }
+        int suppressed = 0;
+        for (long flow = 9950; flow < 10000; flow++) {
+            if (!suppressor.keep(flow, 1, 10000)) {
+                suppressed++;
+            }
+        }
+        Assert.assertTrue(suppressed > 25, "suppressed " + suppressed);
+    }
+}
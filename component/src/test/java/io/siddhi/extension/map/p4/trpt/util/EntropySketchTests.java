@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the EntropySketch.
+ */
+public class EntropySketchTests {
+
+    @Test
+    public void singleValueHasNoEntropy() {
+        final EntropySketch sketch = new EntropySketch(64);
+        for (int i = 0; i < 1000; i++) {
+            sketch.update(0, 53, 1);
+        }
+        Assert.assertEquals(sketch.estimate(), 0.0, 0.001);
+    }
+
+    @Test
+    public void variatesHaveScalePiOverTwo() {
+        // E[exp(tX)] = t^t only for the scale pi/2 and shift 0, where a scale of pi/2 or 2/pi too many would give
+        // a mean of exp(X) of about 2.03 or 0.75 and a shift of log(pi/2) a mean of about 1.57 or 0.64
+        final int samples = 200000;
+        double sum = 0;
+        double halfSum = 0;
+        for (int i = 0; i < samples; i++) {
+            final double variate = EntropySketch.skewedStable(Hashing.hash64(i), i & 15);
+            sum += Math.exp(variate);
+            halfSum += Math.exp(variate / 2);
+        }
+        Assert.assertEquals(sum / samples, 1.0, 0.02);
+        Assert.assertEquals(halfSum / samples, Math.sqrt(0.5), 0.01);
+    }
+
+    @Test
+    public void uniformValues() {
+        double sum = 0;
+        for (int trial = 0; trial < 8; trial++) {
+            final EntropySketch sketch = new EntropySketch(512);
+            for (int i = 0; i < 64 * 50; i++) {
+                sketch.update(trial, i % 64, 1);
+            }
+            Assert.assertEquals(sketch.getTotal(), 64 * 50L);
+            Assert.assertEquals(sketch.estimate(), Math.log(64), 0.3);
+            sum += sketch.estimate();
+        }
+        // The mean of independent sketches is within a tenth of a nat, well short of a scale error's bias
+        Assert.assertEquals(sum / 8, Math.log(64), 0.1);
+    }
+
+    @Test
+    public void removalRestoresEstimate() {
+        final EntropySketch sketch = new EntropySketch(64);
+        for (int i = 0; i < 100; i++) {
+            sketch.update(0, 80, 1);
+        }
+        final double before = sketch.estimate();
+        for (int i = 0; i < 1000; i++) {
+            sketch.update(0, 1024 + i, 1);
+        }
+        Assert.assertTrue(sketch.estimate() > before + 1);
+        for (int i = 0; i < 1000; i++) {
+            sketch.update(0, 1024 + i, -1);
+        }
+        Assert.assertEquals(sketch.estimate(), before, 0.001);
+        sketch.clear();
+        Assert.assertEquals(sketch.getTotal(), 0);
+        Assert.assertEquals(sketch.estimate(), 0.0, 0.0);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the HierarchicalTimingWheel and FlowCache.
+ */
+public class FlowCacheTests {
+
+    private static final long IPV4_MAPPED = 0xffff00000000L;
+
+    @Test
+    public void wheelFiresAtDeadlinesAcrossLevels() {
+        final HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(1, 0);
+        final Random random = new Random(7);
+        final long[] deadlines = new long[2000];
+        for (int id = 0; id < deadlines.length; id++) {
+            deadlines[id] = 1 + random.nextInt(1 << 20);
+            wheel.schedule(id, deadlines[id]);
+        }
+        Assert.assertTrue(wheel.cancel(5));
+        final long[] fired = new long[deadlines.length];
+        for (long now = 0; now <= 1 << 20; now += 1 + random.nextInt(300)) {
+            final long at = now;
+            wheel.advance(now, id -> fired[id] = at);
+        }
+        wheel.advance(1 << 20, id -> fired[id] = 1 << 20);
+        Assert.assertEquals(wheel.size(), 0);
+        for (int id = 0; id < deadlines.length; id++) {
+            if (id == 5) {
+                Assert.assertEquals(fired[id], 0);
+                continue;
+            }
+            Assert.assertTrue(fired[id] >= deadlines[id], "id " + id + " fired early");
+            Assert.assertTrue(fired[id] < deadlines[id] + 300, "id " + id + " fired late");
+        }
+    }
+
+    @Test
+    public void wheelReschedulesWithoutGrowing() {
+        final HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(1, 0);
+        wheel.schedule(3, 100);
+        wheel.schedule(3, 10000);
+        wheel.schedule(4, 50);
+        wheel.schedule(3, 20);
+        Assert.assertEquals(wheel.size(), 2);
+        final List<Integer> fired = new ArrayList<>();
+        wheel.advance(30, fired::add);
+        Assert.assertEquals(fired, Collections.singletonList(3));
+        Assert.assertEquals(wheel.size(), 1);
+        Assert.assertEquals(wheel.peekEarliest(), 4);
+        wheel.advance(100, fired::add);
+        Assert.assertEquals(fired.size(), 2);
+        Assert.assertEquals(wheel.size(), 0);
+        Assert.assertEquals(wheel.peekEarliest(), -1);
+        Assert.assertFalse(wheel.cancel(3));
+    }
+
+    @Test
+    public void aggregatesPacketsIntoFlows() {
+        final FlowCache cache = new FlowCache(60000, 1000, 100, 0);
+        final List<FlowRecord> records = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            cache.update(0, IPV4_MAPPED | 0xc0a80101L, 0, IPV4_MAPPED | 0xc0a80102L, 1234, 80, 6, 1,
+                    100 + i, 1.0, i, i + 5, 100 * i, records::add);
+            cache.update(0, IPV4_MAPPED | 0xc0a80101L, 0, IPV4_MAPPED | 0xc0a80102L, 1234, 80, 6, 2,
+                    100, 1.0, -1, -1, 100 * i, records::add);
+        }
+        Assert.assertEquals(cache.size(), 2);
+        cache.expire(1800, records::add);
+        Assert.assertTrue(records.isEmpty());
+        cache.expire(2000, records::add);
+        Assert.assertEquals(records.size(), 2);
+        Assert.assertEquals(cache.size(), 0);
+        for (final FlowRecord record : records) {
+            Assert.assertEquals(record.getSrcAddr(), "192.168.1.1");
+            Assert.assertEquals(record.getDstAddr(), "192.168.1.2");
+            Assert.assertEquals(record.srcPort, 1234);
+            Assert.assertEquals(record.dstPort, 80);
+            Assert.assertEquals(record.nextProto, 6);
+            Assert.assertEquals(record.packets, 10);
+            Assert.assertEquals(record.firstSeen, 0);
+            Assert.assertEquals(record.lastSeen, 900);
+            Assert.assertEquals(record.exportReason, FlowRecord.ExportReason.IDLE);
+            if (record.nodeId == 1) {
+                Assert.assertEquals(record.bytes, 1045);
+                Assert.assertEquals(record.minHopLatency, 0);
+                Assert.assertEquals(record.maxHopLatency, 14);
+            } else {
+                Assert.assertEquals(record.bytes, 1000);
+                Assert.assertEquals(record.minHopLatency, -1);
+                Assert.assertEquals(record.maxHopLatency, -1);
+            }
+        }
+    }
+
+    @Test
+    public void flowSampleRateWeighsEachPacket() {
+        final FlowCache cache = new FlowCache(60000, 1000, 100, 0);
+        final List<FlowRecord> records = new ArrayList<>();
+        cache.update(0, 1, 0, 2, 1, 2, 17, 1, 64, 0.5, -1, -1, 0, records::add);
+        cache.update(0, 1, 0, 2, 1, 2, 17, 1, 64, 0.5, -1, -1, 1, records::add);
+        cache.update(0, 1, 0, 2, 1, 2, 17, 1, 64, 1.0, -1, -1, 2, records::add);
+        cache.flush(records::add);
+        Assert.assertEquals(records.size(), 1);
+        // 3 packets reported of an estimated 2 + 2 + 1 sent
+        Assert.assertEquals(records.get(0).packets, 3);
+        Assert.assertEquals(records.get(0).sampleRate, 0.6, 1e-9);
+    }
+
+    @Test
+    public void exportsLongFlowsOnActiveTimeout() {
+        final FlowCache cache = new FlowCache(5000, 1000, 100, 0);
+        final List<FlowRecord> records = new ArrayList<>();
+        for (long now = 0; now < 12000; now += 100) {
+            cache.update(0, 1, 0, 2, 1, 2, 17, 1, 64, 1.0, -1, -1, now, records::add);
+            cache.expire(now, records::add);
+        }
+        Assert.assertEquals(records.size(), 2);
+        Assert.assertEquals(records.get(0).exportReason, FlowRecord.ExportReason.ACTIVE);
+        Assert.assertEquals(records.get(0).firstSeen, 0);
+        Assert.assertEquals(records.get(0).packets, 50);
+        Assert.assertEquals(records.get(1).firstSeen, 5000);
+        Assert.assertEquals(records.get(1).getDstAddr(), "0:0:0:0:0:0:0:2");
+    }
+
+    @Test
+    public void evictsWhenFullAndReusesEntries() {
+        final FlowCache cache = new FlowCache(60000, 1000, 64, 0);
+        final List<FlowRecord> records = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            cache.update(0, i, 0, 0, 0, 0, 17, 1, 1, 1.0, -1, -1, i, records::add);
+        }
+        Assert.assertEquals(cache.size(), 64);
+        Assert.assertEquals(records.size(), 1000 - 64);
+        for (int i = 0; i < records.size(); i++) {
+            Assert.assertEquals(records.get(i).exportReason, FlowRecord.ExportReason.FORCED);
+        }
+        cache.update(0, 999, 0, 0, 0, 0, 17, 1, 1, 1.0, -1, -1, 1000, records::add);
+        records.clear();
+        cache.flush(records::add);
+        Assert.assertEquals(records.size(), 64);
+        long packets = 0;
+        for (final FlowRecord record : records) {
+            Assert.assertTrue(record.srcAddrLow >= 1000 - 64);
+            packets += record.packets;
+        }
+        Assert.assertEquals(packets, 65);
+        Assert.assertEquals(cache.size(), 0);
+    }
+}
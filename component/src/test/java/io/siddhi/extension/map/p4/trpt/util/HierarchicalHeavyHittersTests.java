@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+/**
+ * Tests for the SpaceSaving and HierarchicalHeavyHitters summaries.
+ */
+public class HierarchicalHeavyHittersTests {
+
+    @Test
+    public void spaceSavingTracksHeavyKeys() {
+        final SpaceSaving summary = new SpaceSaving(8);
+        for (int i = 0; i < 1000; i++) {
+            summary.offer(0, 42, 1);
+            summary.offer(0, 1000 + i, 1);
+        }
+        Assert.assertEquals(summary.size(), 8);
+        Assert.assertTrue(summary.estimate(0, 42) >= 1000);
+        summary.clear();
+        Assert.assertEquals(summary.size(), 0);
+        Assert.assertEquals(summary.estimate(0, 42), 0);
+    }
+
+    @Test
+    public void spaceSavingBoundsEvictedCounts() {
+        final SpaceSaving summary = new SpaceSaving(16);
+        final long[] truth = new long[200];
+        for (int i = 0; i < 20000; i++) {
+            // Skewed so that a few keys stay monitored while the tail keeps replacing the smallest counter
+            final int key = (int) ((i * 2654435761L) % 200) % ((i & 3) == 0 ? 200 : 8);
+            truth[key]++;
+            summary.offer(key >>> 4, key, 1);
+        }
+        Assert.assertEquals(summary.size(), 16);
+        long total = 0;
+        for (int slot = 0; slot < summary.size(); slot++) {
+            final int key = (int) summary.getKeyLow(slot);
+            Assert.assertEquals(summary.getKeyHigh(slot), key >>> 4);
+            Assert.assertEquals(summary.estimate(key >>> 4, key), summary.getCount(slot));
+            Assert.assertTrue(summary.getCount(slot) - summary.getError(slot) <= truth[key]);
+            Assert.assertTrue(summary.getCount(slot) >= truth[key]);
+            total += summary.getCount(slot);
+        }
+        Assert.assertEquals(total, 20000);
+    }
+
+    @Test
+    public void spreadOutSourcesReportSubnet() {
+        final HierarchicalHeavyHitters hhh = new HierarchicalHeavyHitters(32, 8, 64);
+        // 10.1.x.y - 1000 reports spread over 50 sources in 5 /24 subnets, none of which is heavy on its own
+        for (int i = 0; i < 1000; i++) {
+            hhh.offer(0, ipv4(10, 1, i % 5, i % 50), 1);
+        }
+        // 192.168.1.2 - a single heavy source
+        for (int i = 0; i < 600; i++) {
+            hhh.offer(0, ipv4(192, 168, 1, 2), 1);
+        }
+        final List<HierarchicalHeavyHitters.Prefix> prefixes = hhh.query(500);
+        Assert.assertEquals(hhh.getTotal(), 1600);
+        Assert.assertEquals(prefixes.size(), 2);
+        Assert.assertEquals(prefixes.get(0).toCidr(), "192.168.1.2/32");
+        Assert.assertEquals(prefixes.get(0).residualCount, 600);
+        Assert.assertEquals(prefixes.get(1).toCidr(), "10.1.0.0/16");
+        Assert.assertEquals(prefixes.get(1).residualCount, 1000);
+    }
+
+    @Test
+    public void ipv6PrefixFormatting() {
+        final HierarchicalHeavyHitters hhh = new HierarchicalHeavyHitters(128, 16, 16);
+        for (int i = 0; i < 100; i++) {
+            hhh.offer(0x20010db800000000L | i, i, 1);
+        }
+        final List<HierarchicalHeavyHitters.Prefix> prefixes = hhh.query(100);
+        Assert.assertEquals(prefixes.size(), 1);
+        Assert.assertEquals(prefixes.get(0).toCidr(), "2001:db8:0:0:0:0:0:0/48");
+    }
+
+    private static long ipv4(final int a, final int b, final int c, final int d) {
+        return ((long) a << 24) | ((long) b << 16) | ((long) c << 8) | d;
+    }
+}
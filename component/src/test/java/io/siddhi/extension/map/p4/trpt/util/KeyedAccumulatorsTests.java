@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the KeyedAccumulators hash table.
+ */
+public class KeyedAccumulatorsTests {
+
+    @Test
+    public void accumulatesPerKeyAcrossGrowth() {
+        final KeyedAccumulators accumulators = new KeyedAccumulators(2, 8);
+        final long[] key = new long[2];
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 5000; i++) {
+                key[0] = i % 7;
+                key[1] = i;
+                accumulators.accumulate(accumulators.findOrInsert(key), i + round);
+            }
+        }
+        Assert.assertEquals(accumulators.size(), 5000);
+        for (int entry = 0; entry < accumulators.size(); entry++) {
+            final long i = accumulators.getKey(entry, 1);
+            Assert.assertEquals(accumulators.getKey(entry, 0), i % 7);
+            Assert.assertEquals(accumulators.getCount(entry), 3);
+            Assert.assertEquals(accumulators.getSum(entry), 3 * i + 3);
+            Assert.assertEquals(accumulators.getMin(entry), i);
+            Assert.assertEquals(accumulators.getMax(entry), i + 2);
+        }
+    }
+
+    @Test
+    public void clearRetainsNothing() {
+        final KeyedAccumulators accumulators = new KeyedAccumulators(1, 8);
+        final long[] key = {42};
+        accumulators.accumulate(accumulators.findOrInsert(key), 10);
+        accumulators.clear();
+        Assert.assertEquals(accumulators.size(), 0);
+        final int entry = accumulators.findOrInsert(key);
+        Assert.assertEquals(accumulators.getCount(entry), 0);
+        accumulators.accumulate(entry, 5);
+        Assert.assertEquals(accumulators.getSum(entry), 5);
+        Assert.assertEquals(accumulators.getMin(entry), 5);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests for the LatencySketch, KeyedLatencySketches and StripedLatencySketches.
+ */
+public class LatencySketchTests {
+
+    private static final double ACCURACY = 0.01;
+
+    @Test
+    public void quantilesWithinRelativeAccuracy() {
+        final Random random = new Random(11);
+        final LatencySketch sketch = new LatencySketch(ACCURACY);
+        final long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            // Log normal latencies around 10 microseconds with a heavy tail
+            values[i] = (long) Math.exp(Math.log(10000) + random.nextGaussian() * 1.5);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (final double quantile : new double[]{0, 0.5, 0.9, 0.99, 0.999, 1}) {
+            final long exact = values[(int) (quantile * (values.length - 1))];
+            final long estimate = sketch.getQuantile(quantile);
+            Assert.assertTrue(Math.abs(estimate - exact) <= exact * ACCURACY + 1,
+                    "quantile " + quantile + " exact " + exact + " estimate " + estimate);
+        }
+        Assert.assertEquals(sketch.getCount(), values.length);
+        Assert.assertEquals(sketch.getMin(), values[0]);
+        Assert.assertEquals(sketch.getMax(), values[values.length - 1]);
+    }
+
+    @Test
+    public void mergesExactly() {
+        final Random random = new Random(5);
+        final LatencySketch whole = new LatencySketch(ACCURACY);
+        final LatencySketch low = new LatencySketch(ACCURACY);
+        final LatencySketch high = new LatencySketch(ACCURACY);
+        for (int i = 0; i < 10000; i++) {
+            final long small = random.nextInt(1000);
+            final long large = 1_000_000 + random.nextInt(1_000_000_000);
+            whole.add(small);
+            whole.add(large);
+            low.add(small);
+            high.add(large);
+        }
+        low.merge(high);
+        for (final double quantile : new double[]{0.1, 0.5, 0.75, 0.99}) {
+            Assert.assertEquals(low.getQuantile(quantile), whole.getQuantile(quantile));
+        }
+        Assert.assertEquals(low.getCount(), whole.getCount());
+
+        final KeyedLatencySketches keyed = new KeyedLatencySketches(ACCURACY, 2);
+        for (int key = 0; key < 100; key++) {
+            keyed.add(key, key * 10);
+            keyed.add(key, key * 10 + 5);
+        }
+        Assert.assertEquals(keyed.size(), 100);
+        Assert.assertEquals(keyed.getKey(42), 42);
+        Assert.assertEquals(keyed.getSketch(42).getCount(), 2);
+        Assert.assertEquals(keyed.getSketch(42).getMax(), 425);
+        keyed.clear();
+        Assert.assertEquals(keyed.size(), 0);
+    }
+
+    @Test
+    public void drainsEveryValueRecordedConcurrently() throws InterruptedException {
+        final StripedLatencySketches striped = new StripedLatencySketches(ACCURACY);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final long[] recorded = new long[4];
+        final Thread[] writers = new Thread[recorded.length];
+        for (int t = 0; t < writers.length; t++) {
+            final int thread = t;
+            writers[t] = new Thread(() -> {
+                while (!stop.get()) {
+                    striped.add(recorded[thread] % 16, 100 + thread);
+                    recorded[thread]++;
+                }
+            });
+            writers[t].start();
+        }
+        final KeyedLatencySketches merged = new KeyedLatencySketches(ACCURACY, 16);
+        long drained = 0;
+        for (int i = 0; i < 50; i++) {
+            Thread.sleep(2);
+            striped.drainTo(merged);
+            for (int entry = 0; entry < merged.size(); entry++) {
+                drained += merged.getSketch(entry).getCount();
+                Assert.assertTrue(merged.getSketch(entry).getMax() <= 100 + writers.length);
+            }
+            merged.clear();
+        }
+        stop.set(true);
+        long total = 0;
+        for (int t = 0; t < writers.length; t++) {
+            writers[t].join();
+            total += recorded[t];
+        }
+        striped.drainTo(merged);
+        for (int entry = 0; entry < merged.size(); entry++) {
+            drained += merged.getSketch(entry).getCount();
+        }
+        Assert.assertEquals(drained, total);
+    }
+}
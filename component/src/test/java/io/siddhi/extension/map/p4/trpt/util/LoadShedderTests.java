@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the LoadShedder.
+ */
+public class LoadShedderTests {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    public void shedsPacketsBeforeDropsAndRecovers() {
+        final LoadShedder shedder = new LoadShedder(MILLIS,
+                new int[]{LoadShedder.PACKET_CLASS, LoadShedder.DROP_CLASS}, 0);
+        long now = 0;
+        // Overloaded until packets are fully shed
+        while (shedder.getKeepFraction(LoadShedder.PACKET_CLASS) > 0) {
+            now += 100 * MILLIS;
+            shedder.recordLatency(10 * MILLIS, now);
+            Assert.assertEquals(shedder.getKeepFraction(LoadShedder.DROP_CLASS), 1.0);
+        }
+        for (long i = 0; i < 1000; i++) {
+            Assert.assertFalse(shedder.admit(LoadShedder.PACKET_CLASS, Hashing.hash64(i)));
+            Assert.assertTrue(shedder.admit(LoadShedder.DROP_CLASS, Hashing.hash64(i)));
+        }
+        Assert.assertEquals(shedder.getShedCount(LoadShedder.PACKET_CLASS), 1000);
+        Assert.assertEquals(shedder.getAdmittedCount(LoadShedder.DROP_CLASS), 1000);
+
+        // Intervals without any handoffs count as recovered
+        while (shedder.getPressure() > 0) {
+            now += 100 * MILLIS;
+            shedder.adjust(now);
+        }
+        Assert.assertEquals(shedder.getKeepFraction(LoadShedder.PACKET_CLASS), 1.0);
+        Assert.assertTrue(shedder.admit(LoadShedder.PACKET_CLASS, 1));
+    }
+
+    @Test
+    public void partialSheddingIsConsistentPerFlow() {
+        final LoadShedder shedder = new LoadShedder(MILLIS, new int[]{LoadShedder.PACKET_CLASS}, 0);
+        shedder.recordLatency(10 * MILLIS, 100 * MILLIS);
+        shedder.recordLatency(10 * MILLIS, 200 * MILLIS);
+        Assert.assertEquals(shedder.getKeepFraction(LoadShedder.PACKET_CLASS), 0.5);
+        // Unlisted classes are never shed
+        Assert.assertEquals(shedder.getKeepFraction(LoadShedder.DROP_CLASS), 1.0);
+        int kept = 0;
+        for (long flow = 0; flow < 10000; flow++) {
+            final boolean admitted = shedder.admit(LoadShedder.PACKET_CLASS, Hashing.hash64(flow));
+            Assert.assertEquals(shedder.admit(LoadShedder.PACKET_CLASS, Hashing.hash64(flow)), admitted);
+            kept += admitted ? 1 : 0;
+        }
+        Assert.assertTrue(kept > 4500 && kept < 5500, "kept " + kept);
+        Assert.assertEquals(shedder.getShedCount(LoadShedder.PACKET_CLASS)
+                + shedder.getAdmittedCount(LoadShedder.PACKET_CLASS), 20000);
+    }
+}
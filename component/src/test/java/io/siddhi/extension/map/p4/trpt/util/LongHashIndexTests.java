@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for the LongHashIndex.
+ */
+public class LongHashIndexTests {
+
+    @Test
+    public void entriesAreDenseUntilRemoved() {
+        final LongHashIndex index = new LongHashIndex(1, 2, 1000);
+        for (long key = 0; key < 100; key++) {
+            Assert.assertEquals(index.find(key * 31), LongHashIndex.NO_ENTRY);
+            Assert.assertEquals(index.insert(key * 31), (int) key);
+        }
+        Assert.assertTrue(index.getCapacity() >= 100);
+        for (long key = 0; key < 100; key++) {
+            Assert.assertEquals(index.find(key * 31), (int) key);
+            Assert.assertEquals(index.getKey((int) key), key * 31);
+        }
+        index.remove(40);
+        Assert.assertEquals(index.find(40 * 31), LongHashIndex.NO_ENTRY);
+        // Removed entries are reused first
+        Assert.assertEquals(index.insert(-5), 40);
+        Assert.assertEquals(index.size(), 100);
+    }
+
+    @Test
+    public void removalKeepsProbeSequences() {
+        final Random random = new Random(5);
+        final LongHashIndex index = new LongHashIndex(1, 64, 64);
+        final Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            final long key = random.nextInt(200);
+            final Integer entry = expected.get(key);
+            Assert.assertEquals(index.find(key), entry == null ? LongHashIndex.NO_ENTRY : entry.intValue());
+            if (entry != null) {
+                index.remove(entry);
+                expected.remove(key);
+            } else if (!index.isFull()) {
+                expected.put(key, index.insert(key));
+            }
+        }
+        Assert.assertEquals(index.size(), expected.size());
+    }
+
+    @Test
+    public void wideKeys() {
+        final LongHashIndex index = new LongHashIndex(3, 4, 100);
+        final long[] key = new long[3];
+        for (int i = 0; i < 50; i++) {
+            key[0] = i;
+            key[1] = i % 7;
+            key[2] = -i;
+            Assert.assertEquals(index.insert(key), i);
+        }
+        for (int i = 0; i < 50; i++) {
+            key[0] = i;
+            key[1] = i % 7;
+            key[2] = -i;
+            Assert.assertEquals(index.find(key), i);
+            Assert.assertEquals(index.getKey(i, 2), -i);
+            key[2] = i + 1;
+            Assert.assertEquals(index.find(key), LongHashIndex.NO_ENTRY);
+        }
+    }
+
+    @Test
+    public void handPassesEveryEntry() {
+        final LongHashIndex index = new LongHashIndex(1, 16, 16);
+        for (long key = 0; key < 16; key++) {
+            index.insert(key);
+        }
+        final boolean[] passed = new boolean[16];
+        for (int i = 0; i < 16; i++) {
+            final int entry = index.nextAtHand();
+            Assert.assertFalse(passed[entry]);
+            passed[entry] = true;
+        }
+        // Sweeping a whole turn of buckets removes every entry regardless of the shifts removal causes
+        for (int turn = 0; turn < 2 && index.size() > 0; turn++) {
+            for (int i = 0; i < 32; i++) {
+                final int entry = index.advanceHand();
+                if (entry != LongHashIndex.NO_ENTRY) {
+                    index.remove(entry);
+                }
+            }
+        }
+        Assert.assertEquals(index.size(), 0);
+        Assert.assertEquals(index.nextAtHand(), LongHashIndex.NO_ENTRY);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void insertBeyondMaximumFails() {
+        final LongHashIndex index = new LongHashIndex(1, 1, 2);
+        index.insert(1);
+        index.insert(2);
+        index.insert(3);
+    }
+
+    @Test
+    public void clearRetainsCapacity() {
+        final LongHashIndex index = new LongHashIndex(2, 4, 1000);
+        for (long key = 0; key < 100; key++) {
+            index.insert(new long[] {key, key});
+        }
+        final int capacity = index.getCapacity();
+        index.clear();
+        Assert.assertEquals(index.size(), 0);
+        Assert.assertEquals(index.find(new long[] {1, 1}), LongHashIndex.NO_ENTRY);
+        Assert.assertEquals(index.insert(new long[] {7, 7}), 0);
+        Assert.assertEquals(index.getCapacity(), capacity);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the MappedWatchlist.
+ */
+public class MappedWatchlistTests {
+
+    private static final long IPV4_MAPPED_PREFIX = 0xffff00000000L;
+
+    @Test
+    public void containsExactlyTheListedAddresses() throws IOException {
+        final Path dir = Files.createTempDirectory("watchlist");
+        final Path file = dir.resolve("bad-ips.txt");
+        final Random random = new Random(3);
+        final List<String> lines = new ArrayList<>(Arrays.asList("# bad actors", "2001:db8::1", "10.0.0.1",
+                "10.0.0.1  # repeated"));
+        final long[] listed = new long[50000];
+        for (int i = 0; i < listed.length; i++) {
+            listed[i] = random.nextInt() & 0xffffffffL;
+            lines.add((listed[i] >>> 24) + "." + ((listed[i] >>> 16) & 0xff) + "." + ((listed[i] >>> 8) & 0xff)
+                    + "." + (listed[i] & 0xff));
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        final MappedWatchlist watchlist = MappedWatchlist.open(file);
+        Assert.assertTrue(watchlist.contains(0x20010db800000000L, 1));
+        Assert.assertFalse(watchlist.contains(0x20010db800000000L, 2));
+        Assert.assertTrue(watchlist.contains(0, IPV4_MAPPED_PREFIX | 0x0a000001L));
+        for (final long addr : listed) {
+            Assert.assertTrue(watchlist.contains(0, IPV4_MAPPED_PREFIX | addr));
+        }
+        final long[] sorted = listed.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < 10000; i++) {
+            final long addr = random.nextInt() & 0xffffffffL;
+            final boolean expected = Arrays.binarySearch(sorted, addr) >= 0 || addr == 0x0a000001L;
+            Assert.assertEquals(watchlist.contains(0, IPV4_MAPPED_PREFIX | addr), expected);
+            // The same bits in IPv6 form are a different address
+            Assert.assertFalse(watchlist.contains(0, addr));
+        }
+        Assert.assertTrue(watchlist.size() <= listed.length + 2);
+    }
+
+    @Test
+    public void indexReusedUntilWatchlistChanges() throws IOException {
+        final Path dir = Files.createTempDirectory("watchlist");
+        final Path file = dir.resolve("bad-ips.txt");
+        final Path index = dir.resolve("bad-ips.txt" + MappedWatchlist.INDEX_SUFFIX);
+        Files.write(file, Arrays.asList("192.168.0.1"), StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000000));
+        Assert.assertTrue(MappedWatchlist.open(file).contains(0, IPV4_MAPPED_PREFIX | 0xc0a80001L));
+        final FileTime indexTime = FileTime.fromMillis(2000000);
+        Files.setLastModifiedTime(index, indexTime);
+
+        // An unchanged watchlist maps the existing index
+        Assert.assertTrue(MappedWatchlist.open(file).contains(0, IPV4_MAPPED_PREFIX | 0xc0a80001L));
+        Assert.assertEquals(Files.getLastModifiedTime(index), indexTime);
+
+        Files.write(file, Arrays.asList("192.168.0.2"), StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(3000000));
+        final MappedWatchlist changed = MappedWatchlist.open(file);
+        Assert.assertFalse(changed.contains(0, IPV4_MAPPED_PREFIX | 0xc0a80001L));
+        Assert.assertTrue(changed.contains(0, IPV4_MAPPED_PREFIX | 0xc0a80002L));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests for the OffHeapRecordStore.
+ */
+public class OffHeapRecordStoreTests {
+
+    private static final OffHeapRecordStore.Type[] FLOW_TYPES = {OffHeapRecordStore.Type.STRING,
+            OffHeapRecordStore.Type.INT, OffHeapRecordStore.Type.LONG, OffHeapRecordStore.Type.DOUBLE,
+            OffHeapRecordStore.Type.BOOL};
+
+    @Test
+    public void putsGetsAndRemoves() {
+        final OffHeapRecordStore store = new OffHeapRecordStore(FLOW_TYPES, new int[]{0, 1}, 39, 100, 0);
+        Assert.assertEquals(store.put(new Object[]{"10.0.0.1", 53, 10L, 1.5, true}, 0), 0);
+        Assert.assertEquals(store.put(new Object[]{"2001:db8::1", 53, 20L, null, false}, 0), 1);
+        Assert.assertEquals(store.get(new Object[]{"10.0.0.1", 53}, 0), 0);
+        Assert.assertEquals(store.get(new Object[]{"10.0.0.1", 54}, 0), OffHeapRecordStore.NO_RECORD);
+        Assert.assertEquals(store.get(new Object[]{"10.0.0.1", null}, 0), OffHeapRecordStore.NO_RECORD);
+        // Numbers are converted to the field type
+        Assert.assertEquals(store.get(new Object[]{"2001:db8::1", 53L}, 0), 1);
+        Assert.assertEquals(store.read(1), new Object[]{"2001:db8::1", 53, 20L, null, false});
+
+        // Replaces the record of the same key
+        Assert.assertEquals(store.put(new Object[]{"10.0.0.1", 53, 11L, 2.5, false}, 0), 0);
+        Assert.assertEquals(store.read(0), new Object[]{"10.0.0.1", 53, 11L, 2.5, false});
+        Assert.assertEquals(store.size(), 2);
+
+        store.remove(0);
+        Assert.assertEquals(store.get(new Object[]{"10.0.0.1", 53}, 0), OffHeapRecordStore.NO_RECORD);
+        Assert.assertEquals(store.get(new Object[]{"2001:db8::1", 53}, 0), 1);
+        Assert.assertEquals(store.size(), 1);
+        // Freed records are reused
+        Assert.assertEquals(store.put(new Object[]{"10.0.0.2", 80, 1L, 0.0, true}, 0), 0);
+    }
+
+    @Test
+    public void rejectsInvalidValues() {
+        final OffHeapRecordStore store = new OffHeapRecordStore(FLOW_TYPES, new int[]{0}, 8, 10, 0);
+        for (final Object[] values : new Object[][]{{"123456789", 1, 1L, 1.0, true}, {null, 1, 1L, 1.0, true},
+                {"a", "b", 1L, 1.0, true}, {"a", 1, 1L, 1.0, 1}}) {
+            try {
+                store.put(values, 0);
+                Assert.fail("Accepted " + values[0] + " " + values[1]);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        Assert.assertEquals(store.size(), 0);
+        Assert.assertEquals(store.next(0, 0), OffHeapRecordStore.NO_RECORD);
+        // Capacities beyond what the index can address are rejected rather than overflowing its size
+        for (final int capacity : new int[]{0, OffHeapRecordStore.MAX_CAPACITY + 1, 1 << 29, Integer.MAX_VALUE}) {
+            try {
+                new OffHeapRecordStore(FLOW_TYPES, new int[]{0}, 8, capacity, 0);
+                Assert.fail("Accepted capacity " + capacity);
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage().contains(Integer.toString(OffHeapRecordStore.MAX_CAPACITY)));
+            }
+        }
+    }
+
+    @Test
+    public void replacesInPlaceOrLeavesRecordIntact() {
+        final OffHeapRecordStore store = new OffHeapRecordStore(FLOW_TYPES, new int[]{0}, 8, 2, 0);
+        Assert.assertEquals(store.put(new Object[]{"a", 1, 1L, 1.0, true}, 0), 0);
+        Assert.assertEquals(store.put(new Object[]{"b", 2, 2L, 2.0, true}, 0), 1);
+        Assert.assertEquals(store.replace(0, new Object[]{"a", 1, 5L, 1.0, false}, 0), 0);
+        Assert.assertEquals(store.read(0), new Object[]{"a", 1, 5L, 1.0, false});
+        // Invalid values leave the record as it was
+        for (final Object[] values : new Object[][]{{"123456789", 1, 1L, 1.0, true}, {null, 1, 1L, 1.0, true}}) {
+            try {
+                store.replace(0, values, 0);
+                Assert.fail("Accepted " + values[0]);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+            Assert.assertEquals(store.get(new Object[]{"a"}, 0), 0);
+            Assert.assertEquals(store.read(0), new Object[]{"a", 1, 5L, 1.0, false});
+        }
+        // Changing the key of a record of a full store moves it to its new key
+        final int record = store.replace(0, new Object[]{"c", 3, 3L, 3.0, true}, 0);
+        Assert.assertNotEquals(record, OffHeapRecordStore.NO_RECORD);
+        Assert.assertEquals(store.get(new Object[]{"a"}, 0), OffHeapRecordStore.NO_RECORD);
+        Assert.assertEquals(store.get(new Object[]{"c"}, 0), record);
+        Assert.assertEquals(store.size(), 2);
+    }
+
+    @Test
+    public void expiresAfterTimeToLive() {
+        final OffHeapRecordStore store = new OffHeapRecordStore(FLOW_TYPES, new int[]{1}, 16, 4, 100);
+        for (int i = 0; i < 4; i++) {
+            store.put(new Object[]{"a", i, 0L, 0.0, true}, i * 10);
+        }
+        Assert.assertEquals(store.put(new Object[]{"a", 4, 0L, 0.0, true}, 50), OffHeapRecordStore.NO_RECORD);
+        // Writing renews the time to live
+        store.put(new Object[]{"b", 0, 0L, 0.0, true}, 90);
+        Assert.assertEquals(store.get(new Object[]{1}, 115), OffHeapRecordStore.NO_RECORD);
+        Assert.assertEquals(store.size(), 3);
+        Assert.assertNotEquals(store.get(new Object[]{0}, 115), OffHeapRecordStore.NO_RECORD);
+        // Scanning skips and removes expired records
+        final Set<Object> live = new HashSet<>();
+        for (int record = store.next(0, 125); record != OffHeapRecordStore.NO_RECORD;
+             record = store.next(record + 1, 125)) {
+            live.add(store.read(record)[1]);
+        }
+        Assert.assertEquals(live, new HashSet<>(Arrays.asList(0, 3)));
+        Assert.assertEquals(store.size(), 2);
+        Assert.assertNotEquals(store.put(new Object[]{"a", 4, 0L, 0.0, true}, 125), OffHeapRecordStore.NO_RECORD);
+    }
+
+    @Test
+    public void holdsManyRecordsAcrossChunks() {
+        final OffHeapRecordStore store = new OffHeapRecordStore(new OffHeapRecordStore.Type[]{
+                OffHeapRecordStore.Type.LONG, OffHeapRecordStore.Type.LONG}, new int[]{0}, 1, 200000, 0);
+        for (long i = 0; i < 200000; i++) {
+            Assert.assertNotEquals(store.put(new Object[]{i * 31, i}, 0), OffHeapRecordStore.NO_RECORD);
+        }
+        Assert.assertEquals(store.put(new Object[]{-1L, 0L}, 0), OffHeapRecordStore.NO_RECORD);
+        for (long i = 0; i < 200000; i += 2) {
+            store.remove(store.get(new Object[]{i * 31}, 0));
+        }
+        for (long i = 0; i < 200000; i++) {
+            final int record = store.get(new Object[]{i * 31}, 0);
+            if (i % 2 == 0) {
+                Assert.assertEquals(record, OffHeapRecordStore.NO_RECORD);
+            } else {
+                Assert.assertEquals(store.read(record)[1], i);
+            }
+        }
+        Assert.assertEquals(store.size(), 100000);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the PathChangeTracker.
+ */
+public class PathChangeTrackerTests {
+
+    @Test
+    public void reportsOnlyChanges() {
+        final PathChangeTracker tracker = new PathChangeTracker(16, 1000);
+        Assert.assertEquals(tracker.update(1, 5, 0), PathChangeTracker.NO_CHANGE);
+        Assert.assertEquals(tracker.update(1, 5, 10), PathChangeTracker.NO_CHANGE);
+        Assert.assertEquals(tracker.update(2, 6, 20), PathChangeTracker.NO_CHANGE);
+        Assert.assertEquals(tracker.update(1, 7, 30), 5);
+        Assert.assertEquals(tracker.getPreviousLastSeen(), 10);
+        Assert.assertEquals(tracker.update(1, 7, 40), PathChangeTracker.NO_CHANGE);
+        Assert.assertEquals(tracker.update(1, 5, 50), 7);
+        Assert.assertEquals(tracker.size(), 2);
+    }
+
+    @Test
+    public void idleFlowsForgotten() {
+        final PathChangeTracker tracker = new PathChangeTracker(4, 100);
+        tracker.update(1, 5, 0);
+        // A path taken after the flow went idle is a new flow rather than a change
+        Assert.assertEquals(tracker.update(1, 6, 500), PathChangeTracker.NO_CHANGE);
+        for (long key = 10; key < 20; key++) {
+            tracker.update(key, 1, 1000);
+        }
+        Assert.assertTrue(tracker.size() <= 4);
+        // Sweeping removes every flow idle past the timeout
+        for (int i = 0; i < 16; i++) {
+            tracker.update(100, 1, 2000 + i);
+        }
+        Assert.assertEquals(tracker.size(), 1);
+    }
+
+    @Test
+    public void boundedByMaxFlows() {
+        final PathChangeTracker tracker = new PathChangeTracker(1000, Long.MAX_VALUE / 2);
+        for (long key = 0; key < 100000; key++) {
+            tracker.update(key, (int) (key % 3), key);
+            Assert.assertTrue(tracker.size() <= 1000);
+        }
+        Assert.assertEquals(tracker.size(), 1000);
+        // Recent flows are mostly still held
+        int changes = 0;
+        for (long key = 99900; key < 100000; key++) {
+            if (tracker.update(key, 9, 100000) != PathChangeTracker.NO_CHANGE) {
+                changes++;
+            }
+        }
+        Assert.assertTrue(changes > 50, "changes " + changes);
+    }
+}
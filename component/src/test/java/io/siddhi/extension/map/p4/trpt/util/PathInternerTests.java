@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests for the PathInterner.
+ */
+public class PathInternerTests {
+
+    @Test
+    public void internsAndResolvesPaths() {
+        final PathInterner interner = new PathInterner(100);
+        final int path = interner.intern(123, 234);
+        Assert.assertEquals(interner.intern(123, 234), path);
+        Assert.assertNotEquals(interner.intern(234, 123), path);
+        Assert.assertNotEquals(interner.intern(123), path);
+        Assert.assertEquals(interner.intern(), PathInterner.EMPTY_PATH);
+        Assert.assertEquals(interner.getHops(path), Arrays.asList(123L, 234L));
+        Assert.assertEquals(interner.getLength(path), 2);
+        Assert.assertEquals(interner.getHops(PathInterner.EMPTY_PATH), new ArrayList<Long>());
+        Assert.assertEquals(interner.intern(0xfffffffeL, 7), interner.intern(0xfffffffeL, 7));
+        Assert.assertEquals(interner.getHops(interner.intern(0xfffffffeL, 7)), Arrays.asList(0xfffffffeL, 7L));
+        Assert.assertNull(interner.getHops(99));
+        Assert.assertEquals(interner.getLength(-5), -1);
+        // 123, 123-234, 234, 234-123, fffffffe and fffffffe-7
+        Assert.assertEquals(interner.size(), 6);
+    }
+
+    @Test
+    public void idsAreCompact() {
+        final PathInterner interner = new PathInterner(100);
+        Assert.assertEquals(interner.getMaxPaths(), 128);
+        final int path = interner.intern(1, 2, 3);
+        Assert.assertTrue(path > 0);
+        // The slot is within the table and the first generation of a slot is one
+        Assert.assertEquals(path >>> 7, 1);
+        // Node IDs are 32 bits
+        Assert.assertEquals(interner.intern(0x100000001L), interner.intern(1));
+        // IDs are local to the interner
+        Assert.assertNull(new PathInterner(100).getHops(path));
+    }
+
+    @Test
+    public void internsReportPaths() {
+        final PathInterner interner = new PathInterner(100);
+        final TelemetryReport trpt = new TelemetryReport(TestTelemetryReports.UDP4_2HOPS);
+        final int path = interner.intern(trpt.intHdr.mdStackHdr);
+        Assert.assertEquals(interner.intern(new TelemetryReport(TestTelemetryReports.TCP6_2HOPS).intHdr.mdStackHdr),
+                path);
+        Assert.assertEquals(interner.getHops(path), trpt.intHdr.mdStackHdr.getHops());
+    }
+
+    @Test
+    public void evictsPathsNotInternedRecently() {
+        // A single group of eight slots
+        final PathInterner interner = new PathInterner(8);
+        interner.intern(1, 2);
+        final int cold = interner.intern(3, 4);
+        Assert.assertEquals(interner.size(), 4);
+        int hot = PathInterner.NO_PATH;
+        for (int i = 0; i < 40; i++) {
+            final int path = interner.intern(1, 2);
+            Assert.assertEquals(interner.getHops(path), Arrays.asList(1L, 2L));
+            if (i >= 16) {
+                // Once the hand has passed every slot the hot path is spared, being interned each turn
+                Assert.assertEquals(path, hot);
+            }
+            hot = path;
+            final int next = interner.intern(100 + i);
+            Assert.assertEquals(interner.getHops(next), Collections.singletonList(100L + i));
+            Assert.assertTrue(interner.size() <= 8);
+        }
+        Assert.assertNull(interner.getHops(cold));
+        // A path interned again after eviction is held under a new ID, as its slot's generation is bumped on reuse
+        final int again = interner.intern(3, 4);
+        Assert.assertNotEquals(again, cold);
+        Assert.assertEquals(interner.getHops(again), Arrays.asList(3L, 4L));
+        Assert.assertNull(interner.getHops(cold));
+    }
+
+    @Test
+    public void fullGroupOfAncestorsRejectsPath() {
+        final PathInterner interner = new PathInterner(8);
+        final long[] nodeIds = new long[9];
+        for (int i = 0; i < nodeIds.length; i++) {
+            nodeIds[i] = i + 1;
+        }
+        // The eighth hop fills the group with the path's ancestors, leaving no victim for the ninth
+        Assert.assertEquals(interner.intern(Arrays.copyOf(nodeIds, 8)), interner.intern(Arrays.copyOf(nodeIds, 8)));
+        Assert.assertEquals(interner.intern(nodeIds), PathInterner.NO_PATH);
+        Assert.assertEquals(interner.getLength(interner.intern(Arrays.copyOf(nodeIds, 8))), 8);
+    }
+
+    @Test
+    public void concurrentInterningAgrees() throws Exception {
+        final PathInterner interner = new PathInterner(PathInterner.DEFAULT_MAX_PATHS);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<int[]>> results = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                results.add(executor.submit(() -> {
+                    final int[] ids = new int[5000];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = interner.intern(i % 50, i, i % 7);
+                    }
+                    return ids;
+                }));
+            }
+            final int[] first = results.get(0).get();
+            for (final Future<int[]> result : results) {
+                Assert.assertEquals(result.get(), first);
+            }
+            for (int i = 0; i < first.length; i++) {
+                Assert.assertEquals(interner.getHops(first[i]), Arrays.asList((long) (i % 50), (long) i,
+                        (long) (i % 7)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the PrefixTable.
+ */
+public class PrefixTableTests {
+
+    private static final long IPV4_MAPPED_PREFIX = 0xffff00000000L;
+
+    @Test
+    public void longestPrefixWins() {
+        final PrefixTable table = new PrefixTable(Arrays.asList(
+                "# prefix label",
+                "0.0.0.0/0        default",
+                "10.0.0.0/8       region-a",
+                "10.1.0.0/16      cmts-1",
+                "10.1.2.0/24      cmts-2",
+                "10.1.2.3         host",
+                "10.1.2.0/24      cmts-3   # replaces cmts-2",
+                "2001:db8::/32    v6-region",
+                "2001:db8:0:1::/64 v6-cmts"));
+        Assert.assertEquals(table.lookupLabel(0, IPV4_MAPPED_PREFIX | 0x08080808L), "default");
+        Assert.assertEquals(table.lookupLabel(0, IPV4_MAPPED_PREFIX | 0x0a020304L), "region-a");
+        Assert.assertEquals(table.lookupLabel(0, IPV4_MAPPED_PREFIX | 0x0a010304L), "cmts-1");
+        Assert.assertEquals(table.lookupLabel(0, IPV4_MAPPED_PREFIX | 0x0a010204L), "cmts-3");
+        Assert.assertEquals(table.lookupLabel(0, IPV4_MAPPED_PREFIX | 0x0a010203L), "host");
+        Assert.assertEquals(table.lookupLabel(0x20010db800000001L, 5), "v6-cmts");
+        Assert.assertEquals(table.lookupLabel(0x20010db800000002L, 5), "v6-region");
+        Assert.assertNull(table.lookupLabel(0x20010db900000000L, 5));
+    }
+
+    @Test
+    public void matchesLinearSearchOverRandomPrefixes() {
+        final Random random = new Random(7);
+        final int numPrefixes = 5000;
+        final List<String> lines = new ArrayList<>();
+        final long[][] prefixes = new long[numPrefixes][];
+        for (int i = 0; i < numPrefixes; i++) {
+            final boolean ipv4 = random.nextBoolean();
+            final int length = ipv4 ? random.nextInt(33) : random.nextInt(129);
+            // Addresses share leading bits so that prefixes nest
+            final long high = ipv4 ? (0x0aL << 56) | (random.nextLong() >>> 12) : 0x20010db800000000L
+                    | (random.nextLong() >>> 40);
+            final long low = ipv4 ? 0 : random.nextLong();
+            final long highMask = length >= 64 ? -1L : length == 0 ? 0 : -1L << (64 - length);
+            final long lowMask = length <= 64 ? 0 : -1L << (128 - length);
+            prefixes[i] = new long[]{ipv4 ? 4 : 6, high & highMask, low & lowMask, length};
+            lines.add(toString(ipv4, high, low) + "/" + length + " p" + i);
+        }
+        final PrefixTable table = new PrefixTable(lines);
+        int matched = 0;
+        for (int i = 0; i < 20000; i++) {
+            final boolean ipv4 = random.nextBoolean();
+            final long[] base = prefixes[random.nextInt(numPrefixes)];
+            // Addresses near prefixes exercise the boundaries
+            final long high = ipv4 ? ((0x0aL << 56) | (random.nextLong() >>> 12)) & 0xffffffff00000000L
+                    : base[0] == 6 ? base[1] ^ (random.nextInt(4) == 0 ? random.nextLong() >>> 40 : 0)
+                    : 0x20010db800000000L | (random.nextLong() >>> 40);
+            final long low = ipv4 ? 0 : random.nextLong();
+            int expectedLength = -1;
+            String expected = null;
+            for (int p = 0; p < numPrefixes; p++) {
+                final long[] prefix = prefixes[p];
+                final int length = (int) prefix[3];
+                final long highMask = length >= 64 ? -1L : length == 0 ? 0 : -1L << (64 - length);
+                final long lowMask = length <= 64 ? 0 : -1L << (128 - length);
+                if ((prefix[0] == 4) == ipv4 && (high & highMask) == prefix[1] && (low & lowMask) == prefix[2]
+                        && length >= expectedLength) {
+                    expectedLength = length;
+                    expected = "p" + p;
+                }
+            }
+            matched += expected != null ? 1 : 0;
+            final String actual = ipv4 ? table.lookupLabel(0, IPV4_MAPPED_PREFIX | (high >>> 32))
+                    : table.lookupLabel(high, low);
+            Assert.assertEquals(actual, expected);
+        }
+        Assert.assertTrue(matched > 1000, "matched " + matched);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidPrefixRejected() {
+        new PrefixTable(Arrays.asList("2001:db8::/129 bad"));
+    }
+
+    private static String toString(final boolean ipv4, final long high, final long low) {
+        if (ipv4) {
+            return (high >>> 56) + "." + ((high >>> 48) & 0xff) + "." + ((high >>> 40) & 0xff) + "."
+                    + ((high >>> 32) & 0xff);
+        }
+        final StringBuilder out = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            final long half = i < 4 ? high : low;
+            out.append(i == 0 ? "" : ":").append(Long.toHexString((half >>> (48 - (i % 4) * 16)) & 0xffff));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.RawField;
+import io.siddhi.extension.map.p4.trpt.RawReport;
+import io.siddhi.extension.map.p4.trpt.ReportField;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests for the ReportKeys.
+ */
+public class ReportKeysTests {
+
+    @Test
+    public void protocolsAbove127KeepPortsApart() {
+        final Set<Long> hashes = new HashSet<>();
+        for (int srcPort = 1000; srcPort < 1010; srcPort++) {
+            final byte[] bytes = TestTelemetryReports.UDP4_2HOPS.clone();
+            final int ipOffset = RawReport.getIpHdrOffset(bytes);
+            bytes[ipOffset + 9] = (byte) 0xfd;
+            final int protoOffset = RawReport.getProtoHdrOffset(bytes);
+            bytes[protoOffset] = (byte) (srcPort >>> 8);
+            bytes[protoOffset + 1] = (byte) srcPort;
+            final TelemetryReport trpt = new TelemetryReport(bytes);
+            Assert.assertEquals(ReportField.NEXT_PROTO.getLow(trpt), 0xfd);
+            Assert.assertEquals(ReportField.NEXT_PROTO.getLow(trpt), RawField.NEXT_PROTO.getLow(bytes, ipOffset));
+            hashes.add(ReportKeys.fiveTupleHash(trpt));
+        }
+        Assert.assertEquals(hashes.size(), 10);
+    }
+}
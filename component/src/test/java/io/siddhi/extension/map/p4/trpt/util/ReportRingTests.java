@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.ReportField;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the ReportRing.
+ */
+public class ReportRingTests {
+
+    @Test
+    public void scansByField() {
+        final TelemetryReport[] reports = {new TelemetryReport(TestTelemetryReports.UDP4_2HOPS),
+                new TelemetryReport(TestTelemetryReports.TCP4_2HOPS),
+                new TelemetryReport(TestTelemetryReports.UDP6_2HOPS),
+                new TelemetryReport(TestTelemetryReports.DROP_RPT)};
+        final ReportRing ring = new ReportRing(3 * ReportRing.BLOCK_ROWS);
+        for (int i = 0; i < 10000; i++) {
+            // Spans blocks holding a single kind of report
+            ring.append(reports[i < 5000 ? 0 : i % reports.length], i);
+        }
+        Assert.assertEquals(ring.size(), 10000);
+
+        final TelemetryReport tcp = reports[1];
+        Assert.assertEquals(ring.scan(new ReportRing.Query().whereEquals(ReportRing.Column.DST_PORT,
+                ReportField.DST_PORT.getLow(tcp)).whereEquals(ReportRing.Column.PROTOCOL,
+                ReportField.NEXT_PROTO.getLow(tcp)), (r, row) -> true), 5000 + 3750);
+        final TelemetryReport udp6 = reports[2];
+        final List<Long> times = new ArrayList<>();
+        ring.scan(new ReportRing.Query().whereSrcAddr(ReportField.SRC_ADDR.getHigh(udp6),
+                ReportField.SRC_ADDR.getLow(udp6)).where(ReportRing.Column.TIMESTAMP, 9000, 9999), (r, row) -> {
+                    times.add(r.get(ReportRing.Column.TIMESTAMP, row));
+                    return true;
+                });
+        Assert.assertEquals(times.size(), 250);
+        Assert.assertEquals(times.get(0), 9002L);
+        // Drop reports match no port
+        Assert.assertEquals(ring.scan(new ReportRing.Query().where(ReportRing.Column.SRC_PORT, 0, 65535),
+                (r, row) -> true), 5000 + 3750);
+        Assert.assertEquals(ring.scan(new ReportRing.Query().whereEquals(ReportRing.Column.NODE_ID,
+                ReportField.NODE_ID.getLow(reports[0])).where(ReportRing.Column.NODE_ID, 0, -1), (r, row) -> true), 0);
+        // Scans end early when asked
+        Assert.assertEquals(ring.scan(new ReportRing.Query(), (r, row) -> false), 1);
+    }
+
+    @Test
+    public void overwritesOldestBlocks() {
+        final TelemetryReport trpt = new TelemetryReport(TestTelemetryReports.UDP4_2HOPS);
+        final ReportRing ring = new ReportRing(2 * ReportRing.BLOCK_ROWS);
+        final int appended = 5 * ReportRing.BLOCK_ROWS + 100;
+        for (int i = 0; i < appended; i++) {
+            ring.append(trpt, i);
+        }
+        // The block being written no longer holds its oldest rows
+        Assert.assertEquals(ring.size(), ReportRing.BLOCK_ROWS + 100);
+        final long[] expected = {4 * ReportRing.BLOCK_ROWS};
+        ring.scan(new ReportRing.Query(), (r, row) -> {
+            Assert.assertEquals(r.get(ReportRing.Column.TIMESTAMP, row), expected[0]++);
+            return true;
+        });
+        Assert.assertEquals(expected[0], appended);
+        Assert.assertEquals(ring.scan(new ReportRing.Query().where(ReportRing.Column.TIMESTAMP, 0,
+                4 * ReportRing.BLOCK_ROWS + 9), (r, row) -> true), 10);
+    }
+
+    @Test
+    public void sharesByName() {
+        final ReportRing ring = ReportRing.share("ringTests", 100);
+        Assert.assertSame(ReportRing.share("ringTests", 200), ring);
+        Assert.assertSame(ReportRing.getShared("ringTests"), ring);
+        final ReportRing resized = ReportRing.share("ringTests", 2 * ReportRing.BLOCK_ROWS);
+        Assert.assertNotSame(resized, ring);
+        Assert.assertNull(ReportRing.getShared("otherRingTests"));
+
+        // Rings replaced by another are no longer released by their name
+        ReportRing.release("ringTests", ring);
+        Assert.assertSame(ReportRing.getShared("ringTests"), resized);
+        Assert.assertSame(ReportRing.share("ringTests", 2 * ReportRing.BLOCK_ROWS), resized);
+        ReportRing.release("ringTests", resized);
+        Assert.assertSame(ReportRing.getShared("ringTests"), resized);
+        ReportRing.release("ringTests", resized);
+        Assert.assertNull(ReportRing.getShared("ringTests"));
+    }
+
+    @Test
+    public void appendsWhileScanning() throws InterruptedException {
+        final TelemetryReport trpt = new TelemetryReport(TestTelemetryReports.UDP4_2HOPS);
+        final ReportRing ring = new ReportRing(2 * ReportRing.BLOCK_ROWS);
+        for (int i = 0; i < ReportRing.BLOCK_ROWS + 10; i++) {
+            ring.append(trpt, i);
+        }
+        final Thread appender = new Thread(() -> ring.append(trpt, ReportRing.BLOCK_ROWS + 10));
+        final long[] expected = {0};
+        ring.scan(new ReportRing.Query(), (r, row) -> {
+            Assert.assertEquals(r.get(ReportRing.Column.TIMESTAMP, row), expected[0]++);
+            if (expected[0] == 1) {
+                // Appends are not held up by the consumer
+                appender.start();
+                try {
+                    appender.join(10000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                Assert.assertFalse(appender.isAlive());
+            }
+            return true;
+        });
+        // The row appended to a block the scan had yet to reach is passed
+        Assert.assertEquals(expected[0], ReportRing.BLOCK_ROWS + 11);
+        Assert.assertEquals(ring.size(), ReportRing.BLOCK_ROWS + 11);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the RuleClassifier.
+ */
+public class RuleClassifierTests {
+
+    private static final long IPV4_MAPPED_PREFIX = 0xffff00000000L;
+
+    @Test
+    public void firstMatchingRuleWins() {
+        final RuleClassifier classifier = new RuleClassifier(Arrays.asList(
+                "# src dst srcPorts dstPorts proto label",
+                "10.0.0.0/8     *              *  53        udp  dns",
+                "10.1.0.0/16    192.168.1.1    *  1000-2000 tcp  tenant-a  # shadowed by nothing",
+                "*              2001:db8::/32  *  *         *    v6",
+                "",
+                "*              *              *  *         *    default"));
+        Assert.assertEquals(classifier.getNumRules(), 4);
+        Assert.assertEquals(label(classifier, v4(10, 1, 2, 3), v4(8, 8, 8, 8), 5000, 53, 17), "dns");
+        Assert.assertEquals(label(classifier, v4(10, 1, 2, 3), v4(8, 8, 8, 8), 5000, 53, 6), "default");
+        Assert.assertEquals(label(classifier, v4(10, 1, 2, 3), v4(192, 168, 1, 1), 5000, 1500, 6), "tenant-a");
+        Assert.assertEquals(label(classifier, v4(10, 2, 2, 3), v4(192, 168, 1, 1), 5000, 1500, 6), "default");
+        Assert.assertEquals(classifier.getLabel(classifier.classify(0, 1, 0x20010db800000000L, 5, 1, 2, 6)), "v6");
+        Assert.assertEquals(classifier.getLabel(classifier.classify(0, 1, 0x20010db900000000L, 5, 1, 2, 6)),
+                "default");
+
+        final RuleClassifier empty = new RuleClassifier(Arrays.asList("# no rules"));
+        Assert.assertEquals(empty.classify(0, v4(1, 2, 3, 4), 0, v4(5, 6, 7, 8), 1, 2, 6),
+                RuleClassifier.NO_MATCH);
+    }
+
+    @Test
+    public void matchesLinearSearchOverRandomRules() {
+        final Random random = new Random(42);
+        final int numRules = 2000;
+        final List<String> lines = new ArrayList<>();
+        final long[][] rules = new long[numRules][];
+        for (int i = 0; i < numRules; i++) {
+            // Prefixes within 10.0.0.0/8 so that random flows match some rules
+            final int srcLen = 8 + random.nextInt(17);
+            final int dstLen = 8 + random.nextInt(17);
+            final long src = (10L << 24) | (random.nextInt(1 << 24) & ~((1L << (32 - srcLen)) - 1));
+            final long dst = (10L << 24) | (random.nextInt(1 << 24) & ~((1L << (32 - dstLen)) - 1));
+            final int portLow = random.nextInt(1024);
+            final int portHigh = portLow + random.nextInt(1024);
+            // A protocol of -1 denotes any protocol
+            final int proto = random.nextInt(4) == 0 ? -1 : random.nextBoolean() ? 6 : 17;
+            rules[i] = new long[]{src, srcLen, dst, dstLen, portLow, portHigh, proto};
+            lines.add(toAddr(src) + "/" + srcLen + " " + toAddr(dst) + "/" + dstLen + " * "
+                    + portLow + "-" + portHigh + " " + (proto < 0 ? "*" : String.valueOf(proto)) + " rule" + i);
+        }
+        final RuleClassifier classifier = new RuleClassifier(lines);
+        Assert.assertTrue(classifier.getNumVectors() > 1);
+        int matched = 0;
+        for (int i = 0; i < 20000; i++) {
+            final long src = (10L << 24) | random.nextInt(1 << 24);
+            final long dst = (10L << 24) | random.nextInt(1 << 24);
+            final int dstPort = random.nextInt(2048);
+            final int proto = random.nextBoolean() ? 6 : 17;
+            int expected = RuleClassifier.NO_MATCH;
+            for (int rule = 0; rule < numRules; rule++) {
+                final long[] r = rules[rule];
+                if (src >>> (32 - r[1]) == r[0] >>> (32 - r[1]) && dst >>> (32 - r[3]) == r[2] >>> (32 - r[3])
+                        && dstPort >= r[4] && dstPort <= r[5] && (r[6] == -1 || r[6] == proto)) {
+                    expected = rule;
+                    break;
+                }
+            }
+            matched += expected != RuleClassifier.NO_MATCH ? 1 : 0;
+            Assert.assertEquals(classifier.classify(0, IPV4_MAPPED_PREFIX | src, 0, IPV4_MAPPED_PREFIX | dst,
+                    1234, dstPort, proto), expected);
+        }
+        Assert.assertTrue(matched > 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidRuleRejected() {
+        new RuleClassifier(Arrays.asList("10.0.0.0/33 * * * * bad"));
+    }
+
+    private static String label(final RuleClassifier classifier, final long src, final long dst, final int srcPort,
+                                final int dstPort, final int proto) {
+        final int rule = classifier.classify(0, src, 0, dst, srcPort, dstPort, proto);
+        return rule == RuleClassifier.NO_MATCH ? null : classifier.getLabel(rule);
+    }
+
+    private static long v4(final int a, final int b, final int c, final int d) {
+        return IPV4_MAPPED_PREFIX | ((long) a << 24) | (b << 16) | (c << 8) | d;
+    }
+
+    private static String toAddr(final long addr) {
+        return (addr >>> 24) + "." + ((addr >>> 16) & 0xff) + "." + ((addr >>> 8) & 0xff) + "." + (addr & 0xff);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import io.siddhi.extension.map.p4.TestTelemetryReports;
+import io.siddhi.extension.map.p4.trpt.TelemetryReport;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for the TopologyGraph.
+ */
+public class TopologyGraphTests {
+
+    @Test
+    public void learnsEdgesFromReports() {
+        final TopologyGraph graph = new TopologyGraph(16);
+        final TelemetryReport trpt = new TelemetryReport(TestTelemetryReports.UDP4_2HOPS);
+        Assert.assertEquals(graph.addPath(trpt.intHdr.mdStackHdr, 100), 1);
+        Assert.assertEquals(graph.addPath(trpt.intHdr.mdStackHdr, 200), 1);
+        Assert.assertEquals(graph.getNumNodes(), 2);
+        Assert.assertEquals(graph.getNumEdges(), 1);
+        Assert.assertEquals(graph.getNeighbours(123), new long[]{234});
+        Assert.assertEquals(graph.getNeighbours(234), new long[0]);
+        final List<long[]> edges = new ArrayList<>();
+        Assert.assertEquals(graph.drainAll((from, to, packets, newPackets, lastSeen) ->
+                edges.add(new long[]{from, to, packets, newPackets, lastSeen})), 1);
+        Assert.assertEquals(edges.get(0), new long[]{123, 234, 2, 2, 200});
+        // Unchanged edges are drained too
+        edges.clear();
+        graph.drainAll((from, to, packets, newPackets, lastSeen) ->
+                edges.add(new long[]{from, to, packets, newPackets, lastSeen}));
+        Assert.assertEquals(edges.get(0), new long[]{123, 234, 2, 0, 200});
+        Assert.assertEquals(graph.getNumChanged(), 0);
+    }
+
+    @Test
+    public void drainsOnlyChangedEdges() {
+        final TopologyGraph graph = new TopologyGraph(16);
+        graph.addEdge(1, 2, 10);
+        graph.addEdge(2, 3, 10);
+        graph.addEdge(1, 2, 20);
+        Assert.assertEquals(graph.addEdge(4, 4, 20), TopologyGraph.NO_EDGE);
+        final List<long[]> drained = new ArrayList<>();
+        final TopologyGraph.EdgeConsumer consumer = (from, to, packets, newPackets, lastSeen) ->
+                drained.add(new long[]{from, to, packets, newPackets, lastSeen});
+        Assert.assertEquals(graph.drainChanged(consumer), 2);
+        Assert.assertEquals(drained.get(0), new long[]{1, 2, 2, 2, 20});
+        Assert.assertEquals(drained.get(1), new long[]{2, 3, 1, 1, 10});
+        drained.clear();
+        Assert.assertEquals(graph.drainChanged(consumer), 0);
+        graph.addEdge(2, 3, 30);
+        graph.addEdge(0xffffffffL, 1, 30);
+        Assert.assertEquals(graph.drainChanged(consumer), 2);
+        Assert.assertEquals(drained.get(0), new long[]{2, 3, 2, 1, 30});
+        Assert.assertEquals(drained.get(1), new long[]{0xffffffffL, 1, 1, 1, 30});
+    }
+
+    @Test
+    public void boundedByMaxEdges() {
+        final TopologyGraph graph = new TopologyGraph(1000);
+        for (long node = 0; node < 2000; node++) {
+            graph.addEdge(node, node + 1, node);
+        }
+        Assert.assertEquals(graph.getNumEdges(), 1000);
+        Assert.assertEquals(graph.addEdge(5000, 5001, 0), TopologyGraph.NO_EDGE);
+        Assert.assertEquals(graph.addEdge(999, 1000, 0), 999);
+        Assert.assertEquals(graph.getDroppedEdges(), 1001);
+        Assert.assertEquals(graph.getNeighbours(0), new long[]{1});
+
+        final TopologyGraph star = new TopologyGraph(1000);
+        for (long node = 1; node <= 50; node++) {
+            star.addEdge(0, node + 99, 0);
+        }
+        final long[] fanOut = star.getNeighbours(0);
+        Arrays.sort(fanOut);
+        Assert.assertEquals(fanOut.length, 50);
+        Assert.assertEquals(fanOut[0], 100);
+        Assert.assertEquals(fanOut[49], 149);
+    }
+}
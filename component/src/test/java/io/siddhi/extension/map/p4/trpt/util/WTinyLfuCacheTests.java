@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2021 Cable Television Laboratories, Inc.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.siddhi.extension.map.p4.trpt.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the WTinyLfuCache and FileSubscriberLoader.
+ */
+public class WTinyLfuCacheTests {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    public void frequentKeysSurviveScans() {
+        final AtomicInteger loads = new AtomicInteger();
+        final WTinyLfuCache<String> cache = new WTinyLfuCache<>(1000, 60000, 600000, key -> {
+            loads.incrementAndGet();
+            return "sub-" + key;
+        }, Runnable::run);
+        // A working set of 500 active subscribers interleaved with a scan of 100000 one-off addresses
+        long scanKey = 1_000_000;
+        for (int round = 0; round < 200; round++) {
+            for (long key = 0; key < 500; key++) {
+                Assert.assertEquals(cache.get(key, 0), "sub-" + key);
+                Assert.assertEquals(cache.get(scanKey, 0), "sub-" + scanKey);
+                scanKey++;
+            }
+            Assert.assertTrue(cache.size() <= 1000);
+        }
+        // Each scanned key misses once, while the working set is only loaded whilst its frequency builds up
+        Assert.assertTrue(loads.get() < 100000 + 2000, "loads " + loads.get());
+        Assert.assertEquals(cache.getHits() + cache.getMisses(), 200000);
+        Assert.assertEquals(cache.getMisses(), loads.get());
+    }
+
+    @Test
+    public void refreshesAheadAndExpires() {
+        final AtomicInteger version = new AtomicInteger();
+        final List<Runnable> pending = new ArrayList<>();
+        final WTinyLfuCache<String> cache = new WTinyLfuCache<>(10, 100, 1000,
+                key -> key == 7 ? null : key + "v" + version.get(), pending::add);
+        Assert.assertEquals(cache.get(1, 0), "1v0");
+        Assert.assertNull(cache.get(7, 0));
+        version.set(1);
+
+        // Served from the cache until the refresh interval passes, then refreshed once in the background
+        Assert.assertEquals(cache.get(1, 50 * MILLIS), "1v0");
+        Assert.assertEquals(cache.get(1, 150 * MILLIS), "1v0");
+        Assert.assertEquals(cache.get(1, 160 * MILLIS), "1v0");
+        Assert.assertEquals(pending.size(), 1);
+        pending.remove(0).run();
+        Assert.assertEquals(cache.get(1, System.nanoTime()), "1v1");
+
+        // Expired entries are reloaded before being returned
+        version.set(2);
+        Assert.assertEquals(cache.get(1, System.nanoTime() + 2000 * MILLIS), "1v2");
+        Assert.assertEquals(cache.getMisses(), 2);
+    }
+
+    @Test
+    public void staysWithinMaxSize() {
+        final WTinyLfuCache<Long> cache = new WTinyLfuCache<>(100, 1000, 1000, key -> key * 2, Runnable::run);
+        for (long key = 0; key < 10000; key++) {
+            Assert.assertEquals(cache.get(key % 3000, 0), Long.valueOf((key % 3000) * 2));
+            Assert.assertTrue(cache.size() <= 100);
+        }
+        Assert.assertEquals(cache.size(), 100);
+    }
+
+    @Test
+    public void loadsOutsideTheLock() throws InterruptedException {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final WTinyLfuCache<String> cache = new WTinyLfuCache<>(10, 1000, 1000, key -> {
+            loads.incrementAndGet();
+            if (key == 1) {
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "sub-" + key;
+        }, Runnable::run);
+        final String[] slow = new String[2];
+        final Thread first = new Thread(() -> slow[0] = cache.get(1, 0));
+        final Thread second = new Thread(() -> slow[1] = cache.get(1, 0));
+        first.start();
+        Assert.assertTrue(loading.await(10, TimeUnit.SECONDS));
+        second.start();
+
+        // Other keys are loaded and served while the slow key loads
+        Assert.assertEquals(cache.get(2, 0), "sub-2");
+        Assert.assertEquals(cache.get(2, 0), "sub-2");
+        release.countDown();
+        first.join(10000);
+        second.join(10000);
+        Assert.assertEquals(slow, new String[]{"sub-1", "sub-1"});
+        // The waiting lookup shared the slow load
+        Assert.assertEquals(loads.get(), 2);
+        Assert.assertEquals(cache.get(1, 0), "sub-1");
+        Assert.assertEquals(loads.get(), 2);
+    }
+
+    @Test
+    public void loadFailuresReachEveryLookup() {
+        final AtomicInteger loads = new AtomicInteger();
+        final WTinyLfuCache<String> cache = new WTinyLfuCache<>(10, 1000, 1000, key -> {
+            if (loads.incrementAndGet() == 1) {
+                throw new IllegalStateException("unavailable");
+            }
+            return "sub-" + key;
+        }, Runnable::run);
+        try {
+            cache.get(1, 0);
+            Assert.fail("Expected the load to fail");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(e.getMessage(), "unavailable");
+        }
+        // Failed loads are not cached
+        Assert.assertEquals(cache.get(1, 0), "sub-1");
+        Assert.assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void loadsSubscriberFile() throws IOException {
+        final Path file = Files.createTempFile("subscribers", ".txt");
+        Files.write(file, Arrays.asList("# subscribers", "00:00:00:00:00:01 account=1 tier=gold",
+                "0a-0b-0c-0d-0e-0f account=2  # comment"), StandardCharsets.UTF_8);
+        final FileSubscriberLoader loader = new FileSubscriberLoader(file.toString());
+        Assert.assertEquals(loader.load(1), "account=1 tier=gold");
+        Assert.assertEquals(loader.load(0x0a0b0c0d0e0fL), "account=2");
+        Assert.assertNull(loader.load(2));
+        Assert.assertEquals(FileSubscriberLoader.parseMac("00:00:00:00:01:00"), 256);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidSubscriberFileRejected() throws IOException {
+        final Path file = Files.createTempFile("subscribers", ".txt");
+        Files.write(file, Arrays.asList("00:00:00:00:01 account=1"), StandardCharsets.UTF_8);
+        new FileSubscriberLoader(file.toString());
+    }
+}